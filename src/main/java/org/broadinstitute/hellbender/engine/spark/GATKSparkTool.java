@@ -82,6 +82,11 @@ public abstract class GATKSparkTool extends SparkCommandLineProgram {
             shortName = "numReducers", fullName = "numReducers", optional = true)
     protected int numReducers = 0;
 
+    @Argument(doc = "For tools that write a single BAM output, also write a splitting index (.splitting-bai) for it. " +
+            "The index is assembled from the pieces written by each partition, so the output is not read again.",
+            shortName = "createOutputBamSplittingIndex", fullName = "createOutputBamSplittingIndex", optional = true)
+    protected boolean createOutputBamSplittingIndex = false;
+
     private ReadsSparkSource readsSource;
     private SAMFileHeader readsHeader;
     private String readInput;
@@ -234,7 +239,7 @@ public abstract class GATKSparkTool extends SparkCommandLineProgram {
             ReadsSparkSink.writeReads(ctx, outputFile,
                     hasReference() ? referenceArguments.getReferenceFile().getAbsolutePath() : null,
                     reads, readsHeader, shardedOutput ? ReadsWriteFormat.SHARDED : ReadsWriteFormat.SINGLE,
-                    getRecommendedNumReducers());
+                    getRecommendedNumReducers(), createOutputBamSplittingIndex);
         } catch (IOException e) {
             throw new GATKException("unable to write bam: " + e);
         }
@@ -8,6 +8,7 @@ import org.broadinstitute.hellbender.cmdline.ArgumentCollection;
 import org.broadinstitute.hellbender.cmdline.CommandLineProgram;
 import org.broadinstitute.hellbender.engine.AuthHolder;
 
+import java.io.File;
 import java.io.Serializable;
 
 
@@ -27,6 +28,11 @@ public abstract class SparkCommandLineProgram extends CommandLineProgram impleme
     )
     public String programName;
 
+    @Argument(doc = "If specified, per-stage Spark metrics (record counts, timings, largest partitions, broadcast sizes " +
+            "and named accumulator values) are collected while the pipeline runs and written to this file as a GATKReport",
+            shortName = "sparkInstrumentationReport", fullName = "sparkInstrumentationReport", optional = true)
+    public File sparkInstrumentationReport = null;
+
     @ArgumentCollection
     public SparkCommandLineArgumentCollection sparkArgs = new SparkCommandLineArgumentCollection();
 
@@ -34,11 +40,36 @@ public abstract class SparkCommandLineProgram extends CommandLineProgram impleme
     @Override
     protected Object doWork() {
         final JavaSparkContext ctx = SparkContextFactory.getSparkContext(getProgramName(), sparkArgs.getSparkProperties(), sparkArgs.getSparkMaster());
+        final SparkInstrumentationListener instrumentation = sparkInstrumentationReport == null ? null : SparkInstrumentationListener.register(ctx);
+        boolean pipelineSucceeded = false;
         try{
             runPipeline(ctx);
+            pipelineSucceeded = true;
             return null;
         } finally {
             afterPipeline(ctx);
+            // Written after afterPipeline, so that if it stopped the context, the listener bus has been drained.
+            // Contexts that outlive the tool (like the shared test context) aren't stopped, so for them the events
+            // still queued on the bus at this point are left out of the report.
+            if (instrumentation != null) {
+                instrumentation.stopListening();
+                writeInstrumentationReport(instrumentation, pipelineSucceeded);
+            }
+        }
+    }
+
+    /**
+     * Writes the instrumentation report.  If the pipeline failed, a failure to write the report is only logged,
+     * so that it doesn't replace the pipeline's exception.
+     */
+    private void writeInstrumentationReport(final SparkInstrumentationListener instrumentation, final boolean pipelineSucceeded) {
+        try {
+            instrumentation.writeReport(sparkInstrumentationReport);
+        } catch (final RuntimeException e) {
+            if (pipelineSucceeded) {
+                throw e;
+            }
+            logger.warn("Unable to write the Spark instrumentation report to " + sparkInstrumentationReport + " after the pipeline failed", e);
         }
     }
 
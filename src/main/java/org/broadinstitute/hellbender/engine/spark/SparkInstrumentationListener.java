@@ -0,0 +1,498 @@
+package org.broadinstitute.hellbender.engine.spark;
+
+import org.apache.spark.JavaSparkListener;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.executor.InputMetrics;
+import org.apache.spark.executor.OutputMetrics;
+import org.apache.spark.executor.ShuffleReadMetrics;
+import org.apache.spark.executor.ShuffleWriteMetrics;
+import org.apache.spark.executor.TaskMetrics;
+import org.apache.spark.scheduler.AccumulableInfo;
+import org.apache.spark.scheduler.SparkListenerBlockUpdated;
+import org.apache.spark.scheduler.SparkListenerStageCompleted;
+import org.apache.spark.scheduler.SparkListenerStageSubmitted;
+import org.apache.spark.scheduler.SparkListenerTaskEnd;
+import org.apache.spark.scheduler.StageInfo;
+import org.apache.spark.storage.BlockId;
+import org.apache.spark.storage.BlockUpdatedInfo;
+import org.apache.spark.storage.BroadcastBlockId;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.report.GATKReport;
+import org.broadinstitute.hellbender.utils.report.GATKReportTable;
+import scala.collection.JavaConversions;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * A SparkListener that collects per-stage record counts, timings, the largest partitions, the sizes of broadcast
+ * variables and the values of any named accumulators a tool creates, so that a run can be profiled without
+ * scraping the Spark UI. The collected metrics are written as a {@link GATKReport} by {@link #writeReport(File)}.
+ *
+ * All event handlers run on the Spark listener bus thread; the accessors may be called from any thread.
+ */
+public final class SparkInstrumentationListener extends JavaSparkListener {
+
+    public static final String STAGES_TABLE_NAME = "SparkStages";
+    public static final String LARGEST_PARTITIONS_TABLE_NAME = "SparkLargestPartitions";
+    public static final String BROADCASTS_TABLE_NAME = "SparkBroadcasts";
+    public static final String ACCUMULATORS_TABLE_NAME = "SparkAccumulators";
+
+    public static final int DEFAULT_NUM_LARGEST_PARTITIONS = 20;
+
+    private static final Comparator<PartitionMetrics> BY_PARTITION_SIZE =
+            Comparator.comparingLong(PartitionMetrics::getRecords).thenComparingLong(PartitionMetrics::getBytes);
+
+    private final int numLargestPartitions;
+    private final Map<String, StageMetrics> stages = new LinkedHashMap<>();
+    private final PriorityQueue<PartitionMetrics> largestPartitions;
+    private final Map<String, Long> broadcastBlockSizes = new HashMap<>();
+    private final List<AccumulatorValue> accumulators = new ArrayList<>();
+    private volatile boolean listening = true;
+
+    public SparkInstrumentationListener() {
+        this(DEFAULT_NUM_LARGEST_PARTITIONS);
+    }
+
+    public SparkInstrumentationListener(final int numLargestPartitions) {
+        Utils.validateArg(numLargestPartitions > 0, "numLargestPartitions must be positive");
+        this.numLargestPartitions = numLargestPartitions;
+        this.largestPartitions = new PriorityQueue<>(numLargestPartitions, BY_PARTITION_SIZE);
+    }
+
+    /**
+     * Creates a listener and registers it with the given context.
+     */
+    public static SparkInstrumentationListener register(final JavaSparkContext ctx) {
+        Utils.nonNull(ctx);
+        final SparkInstrumentationListener listener = new SparkInstrumentationListener();
+        ctx.sc().addSparkListener(listener);
+        return listener;
+    }
+
+    /**
+     * Stops recording events. Spark 1.x has no way to unregister a listener, so this is how a listener attached
+     * to a long-lived context (e.g., the shared test context) is retired.
+     */
+    public void stopListening() {
+        listening = false;
+    }
+
+    @Override
+    public synchronized void onStageSubmitted(final SparkListenerStageSubmitted stageSubmitted) {
+        if ( listening ) {
+            getStage(stageSubmitted.stageInfo().stageId(), stageSubmitted.stageInfo().attemptId()).update(stageSubmitted.stageInfo());
+        }
+    }
+
+    @Override
+    public synchronized void onStageCompleted(final SparkListenerStageCompleted stageCompleted) {
+        if ( !listening ) {
+            return;
+        }
+        final StageInfo info = stageCompleted.stageInfo();
+        final StageMetrics stage = getStage(info.stageId(), info.attemptId());
+        stage.update(info);
+        stage.completed = true;
+        for ( final AccumulableInfo accumulable : JavaConversions.asJavaCollection(info.accumulables().values()) ) {
+            if ( !accumulable.internal() ) {
+                accumulators.add(new AccumulatorValue(info.stageId(), info.attemptId(), accumulable.name(), accumulable.value()));
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onTaskEnd(final SparkListenerTaskEnd taskEnd) {
+        if ( !listening ) {
+            return;
+        }
+        final StageMetrics stage = getStage(taskEnd.stageId(), taskEnd.stageAttemptId());
+        final long duration = taskEnd.taskInfo().duration();
+        stage.numTasksEnded++;
+        stage.totalTaskDuration += duration;
+        stage.maxTaskDuration = Math.max(stage.maxTaskDuration, duration);
+
+        final TaskMetrics metrics = taskEnd.taskMetrics();
+        if ( metrics == null ) { // failed tasks may not report metrics
+            return;
+        }
+        stage.executorRunTime += metrics.executorRunTime();
+        stage.executorDeserializeTime += metrics.executorDeserializeTime();
+        stage.resultSerializationTime += metrics.resultSerializationTime();
+        stage.jvmGCTime += metrics.jvmGCTime();
+        stage.bytesSpilled += metrics.memoryBytesSpilled() + metrics.diskBytesSpilled();
+
+        long taskRecords = 0;
+        long taskBytes = 0;
+        if ( metrics.inputMetrics().isDefined() ) {
+            final InputMetrics input = metrics.inputMetrics().get();
+            stage.inputRecords += input.recordsRead();
+            stage.inputBytes += input.bytesRead();
+            taskRecords += input.recordsRead();
+            taskBytes += input.bytesRead();
+        }
+        if ( metrics.shuffleReadMetrics().isDefined() ) {
+            final ShuffleReadMetrics shuffleRead = metrics.shuffleReadMetrics().get();
+            stage.shuffleReadRecords += shuffleRead.recordsRead();
+            stage.shuffleReadBytes += shuffleRead.totalBytesRead();
+            taskRecords += shuffleRead.recordsRead();
+            taskBytes += shuffleRead.totalBytesRead();
+        }
+        if ( metrics.outputMetrics().isDefined() ) {
+            final OutputMetrics output = metrics.outputMetrics().get();
+            stage.outputRecords += output.recordsWritten();
+            stage.outputBytes += output.bytesWritten();
+        }
+        if ( metrics.shuffleWriteMetrics().isDefined() ) {
+            final ShuffleWriteMetrics shuffleWrite = metrics.shuffleWriteMetrics().get();
+            stage.shuffleWriteRecords += shuffleWrite.shuffleRecordsWritten();
+            stage.shuffleWriteBytes += shuffleWrite.shuffleBytesWritten();
+        }
+
+        final PartitionMetrics partition = new PartitionMetrics(taskEnd.stageId(), taskEnd.stageAttemptId(),
+                taskEnd.taskInfo().index(), taskRecords, taskBytes, duration);
+        if ( largestPartitions.size() < numLargestPartitions ) {
+            largestPartitions.add(partition);
+        } else if ( BY_PARTITION_SIZE.compare(partition, largestPartitions.peek()) > 0 ) {
+            largestPartitions.poll();
+            largestPartitions.add(partition);
+        }
+    }
+
+    /**
+     * Broadcast variables are stored as serialized pieces; the master is told about each piece as it is stored,
+     * which gives us the serialized size of every broadcast without having to serialize it a second time.
+     */
+    @Override
+    public synchronized void onBlockUpdated(final SparkListenerBlockUpdated blockUpdated) {
+        if ( !listening ) {
+            return;
+        }
+        final BlockUpdatedInfo info = blockUpdated.blockUpdatedInfo();
+        final BlockId blockId = info.blockId();
+        if ( blockId instanceof BroadcastBlockId && ((BroadcastBlockId)blockId).field().startsWith("piece") ) {
+            final long size = info.memSize() + info.diskSize() + info.externalBlockStoreSize();
+            broadcastBlockSizes.merge(blockId.name(), size, Math::max);
+        }
+    }
+
+    /**
+     * @return metrics for every stage attempt seen so far, in submission order
+     */
+    public synchronized List<StageMetrics> getStageMetrics() {
+        final List<StageMetrics> result = new ArrayList<>(stages.size());
+        for ( final StageMetrics stage : stages.values() ) {
+            result.add(stage.copy());
+        }
+        return result;
+    }
+
+    /**
+     * @return the largest partitions seen so far (by records, then bytes, read), largest first
+     */
+    public synchronized List<PartitionMetrics> getLargestPartitions() {
+        final List<PartitionMetrics> result = new ArrayList<>(largestPartitions);
+        result.sort(Collections.reverseOrder(BY_PARTITION_SIZE));
+        return result;
+    }
+
+    /**
+     * @return the serialized size in bytes of each broadcast variable seen so far, keyed by broadcast id
+     */
+    public synchronized Map<Long, Long> getBroadcastSizes() {
+        final Map<Long, Long> result = new TreeMap<>();
+        for ( final Map.Entry<String, Long> block : broadcastBlockSizes.entrySet() ) {
+            final BroadcastBlockId blockId = (BroadcastBlockId)BlockId.apply(block.getKey());
+            result.merge(blockId.broadcastId(), block.getValue(), Long::sum);
+        }
+        return result;
+    }
+
+    /**
+     * @return the final value of every named accumulator in every completed stage that updated it
+     */
+    public synchronized List<AccumulatorValue> getAccumulatorValues() {
+        return new ArrayList<>(accumulators);
+    }
+
+    /**
+     * Writes all metrics collected so far as a multi-table GATKReport.
+     */
+    public void writeReport(final File output) {
+        Utils.nonNull(output);
+        try ( final PrintStream out = new PrintStream(output) ) {
+            makeReport().print(out);
+        } catch ( final FileNotFoundException e ) {
+            throw new UserException.CouldNotCreateOutputFile(output, e);
+        }
+    }
+
+    public GATKReport makeReport() {
+        final GATKReport report = new GATKReport();
+        report.addTable(makeStagesTable());
+        report.addTable(makeLargestPartitionsTable());
+        report.addTable(makeBroadcastsTable());
+        report.addTable(makeAccumulatorsTable());
+        return report;
+    }
+
+    private GATKReportTable makeStagesTable() {
+        final List<StageMetrics> stageMetrics = getStageMetrics();
+        final GATKReportTable table = new GATKReportTable(STAGES_TABLE_NAME, "Per-stage record counts and timings (times in ms)", 23, GATKReportTable.Sorting.DO_NOT_SORT);
+        for ( final String column : new String[]{"stageId", "attemptId", "name", "numTasks", "completed", "wallClockTime",
+                "totalTaskDuration", "maxTaskDuration", "executorRunTime", "executorDeserializeTime",
+                "resultSerializationTime", "jvmGCTime", "inputRecords", "inputBytes", "shuffleReadRecords",
+                "shuffleReadBytes", "shuffleWriteRecords", "shuffleWriteBytes", "outputRecords", "outputBytes",
+                "bytesSpilled", "numTasksEnded", "skewRatio"} ) {
+            table.addColumn(column, "");
+        }
+        int row = 0;
+        for ( final StageMetrics stage : stageMetrics ) {
+            int col = 0;
+            table.set(row, col++, stage.stageId);
+            table.set(row, col++, stage.attemptId);
+            table.set(row, col++, stage.name.replaceAll("\\s+", "_"));
+            table.set(row, col++, stage.numTasks);
+            table.set(row, col++, stage.completed);
+            table.set(row, col++, stage.getWallClockTime());
+            table.set(row, col++, stage.totalTaskDuration);
+            table.set(row, col++, stage.maxTaskDuration);
+            table.set(row, col++, stage.executorRunTime);
+            table.set(row, col++, stage.executorDeserializeTime);
+            table.set(row, col++, stage.resultSerializationTime);
+            table.set(row, col++, stage.jvmGCTime);
+            table.set(row, col++, stage.inputRecords);
+            table.set(row, col++, stage.inputBytes);
+            table.set(row, col++, stage.shuffleReadRecords);
+            table.set(row, col++, stage.shuffleReadBytes);
+            table.set(row, col++, stage.shuffleWriteRecords);
+            table.set(row, col++, stage.shuffleWriteBytes);
+            table.set(row, col++, stage.outputRecords);
+            table.set(row, col++, stage.outputBytes);
+            table.set(row, col++, stage.bytesSpilled);
+            table.set(row, col++, stage.numTasksEnded);
+            table.set(row, col, String.format("%.3f", stage.getSkewRatio()));
+            row++;
+        }
+        return table;
+    }
+
+    private GATKReportTable makeLargestPartitionsTable() {
+        final GATKReportTable table = new GATKReportTable(LARGEST_PARTITIONS_TABLE_NAME, "Partitions that read the most records", 6, GATKReportTable.Sorting.DO_NOT_SORT);
+        for ( final String column : new String[]{"stageId", "attemptId", "partition", "records", "bytes", "duration"} ) {
+            table.addColumn(column, "");
+        }
+        int row = 0;
+        for ( final PartitionMetrics partition : getLargestPartitions() ) {
+            table.set(row, 0, partition.stageId);
+            table.set(row, 1, partition.attemptId);
+            table.set(row, 2, partition.partition);
+            table.set(row, 3, partition.records);
+            table.set(row, 4, partition.bytes);
+            table.set(row, 5, partition.duration);
+            row++;
+        }
+        return table;
+    }
+
+    private GATKReportTable makeBroadcastsTable() {
+        final GATKReportTable table = new GATKReportTable(BROADCASTS_TABLE_NAME, "Serialized sizes of broadcast variables", 2, GATKReportTable.Sorting.DO_NOT_SORT);
+        table.addColumn("broadcastId", "");
+        table.addColumn("bytes", "");
+        int row = 0;
+        for ( final Map.Entry<Long, Long> broadcast : getBroadcastSizes().entrySet() ) {
+            table.set(row, 0, broadcast.getKey());
+            table.set(row, 1, broadcast.getValue());
+            row++;
+        }
+        return table;
+    }
+
+    private GATKReportTable makeAccumulatorsTable() {
+        final GATKReportTable table = new GATKReportTable(ACCUMULATORS_TABLE_NAME, "Values of named accumulators at the end of each stage", 4, GATKReportTable.Sorting.DO_NOT_SORT);
+        for ( final String column : new String[]{"stageId", "attemptId", "name", "value"} ) {
+            table.addColumn(column, "");
+        }
+        int row = 0;
+        for ( final AccumulatorValue accumulator : getAccumulatorValues() ) {
+            table.set(row, 0, accumulator.stageId);
+            table.set(row, 1, accumulator.attemptId);
+            table.set(row, 2, accumulator.name.replaceAll("\\s+", "_"));
+            table.set(row, 3, accumulator.value);
+            row++;
+        }
+        return table;
+    }
+
+    private StageMetrics getStage(final int stageId, final int attemptId) {
+        return stages.computeIfAbsent(stageId + "." + attemptId, k -> new StageMetrics(stageId, attemptId));
+    }
+
+    /**
+     * Aggregated task metrics for a single stage attempt.
+     */
+    public static final class StageMetrics {
+        private final int stageId;
+        private final int attemptId;
+        private String name = "";
+        private int numTasks;
+        private boolean completed;
+        private long submissionTime = -1;
+        private long completionTime = -1;
+        private int numTasksEnded;
+        private long totalTaskDuration;
+        private long maxTaskDuration;
+        private long executorRunTime;
+        private long executorDeserializeTime;
+        private long resultSerializationTime;
+        private long jvmGCTime;
+        private long inputRecords;
+        private long inputBytes;
+        private long shuffleReadRecords;
+        private long shuffleReadBytes;
+        private long shuffleWriteRecords;
+        private long shuffleWriteBytes;
+        private long outputRecords;
+        private long outputBytes;
+        private long bytesSpilled;
+
+        private StageMetrics(final int stageId, final int attemptId) {
+            this.stageId = stageId;
+            this.attemptId = attemptId;
+        }
+
+        private void update(final StageInfo info) {
+            name = info.name();
+            numTasks = info.numTasks();
+            if ( info.submissionTime().isDefined() ) {
+                submissionTime = (Long)info.submissionTime().get();
+            }
+            if ( info.completionTime().isDefined() ) {
+                completionTime = (Long)info.completionTime().get();
+            }
+        }
+
+        private StageMetrics copy() {
+            final StageMetrics copy = new StageMetrics(stageId, attemptId);
+            copy.name = name;
+            copy.numTasks = numTasks;
+            copy.completed = completed;
+            copy.submissionTime = submissionTime;
+            copy.completionTime = completionTime;
+            copy.numTasksEnded = numTasksEnded;
+            copy.totalTaskDuration = totalTaskDuration;
+            copy.maxTaskDuration = maxTaskDuration;
+            copy.executorRunTime = executorRunTime;
+            copy.executorDeserializeTime = executorDeserializeTime;
+            copy.resultSerializationTime = resultSerializationTime;
+            copy.jvmGCTime = jvmGCTime;
+            copy.inputRecords = inputRecords;
+            copy.inputBytes = inputBytes;
+            copy.shuffleReadRecords = shuffleReadRecords;
+            copy.shuffleReadBytes = shuffleReadBytes;
+            copy.shuffleWriteRecords = shuffleWriteRecords;
+            copy.shuffleWriteBytes = shuffleWriteBytes;
+            copy.outputRecords = outputRecords;
+            copy.outputBytes = outputBytes;
+            copy.bytesSpilled = bytesSpilled;
+            return copy;
+        }
+
+        public int getStageId() { return stageId; }
+        public int getAttemptId() { return attemptId; }
+        public String getName() { return name; }
+        public int getNumTasks() { return numTasks; }
+        public boolean isCompleted() { return completed; }
+        public int getNumTasksEnded() { return numTasksEnded; }
+        public long getTotalTaskDuration() { return totalTaskDuration; }
+        public long getMaxTaskDuration() { return maxTaskDuration; }
+        public long getExecutorRunTime() { return executorRunTime; }
+        public long getExecutorDeserializeTime() { return executorDeserializeTime; }
+        public long getResultSerializationTime() { return resultSerializationTime; }
+        public long getJvmGCTime() { return jvmGCTime; }
+        public long getInputRecords() { return inputRecords; }
+        public long getInputBytes() { return inputBytes; }
+        public long getShuffleReadRecords() { return shuffleReadRecords; }
+        public long getShuffleReadBytes() { return shuffleReadBytes; }
+        public long getShuffleWriteRecords() { return shuffleWriteRecords; }
+        public long getShuffleWriteBytes() { return shuffleWriteBytes; }
+        public long getOutputRecords() { return outputRecords; }
+        public long getOutputBytes() { return outputBytes; }
+        public long getBytesSpilled() { return bytesSpilled; }
+
+        /**
+         * @return the time between stage submission and completion, or -1 if the stage has not completed
+         */
+        public long getWallClockTime() {
+            return submissionTime < 0 || completionTime < 0 ? -1 : completionTime - submissionTime;
+        }
+
+        /**
+         * @return the ratio of the longest task to the mean task duration; values much greater than 1 indicate skew
+         */
+        public double getSkewRatio() {
+            return numTasksEnded == 0 || totalTaskDuration == 0 ? 1.0 : maxTaskDuration / ((double)totalTaskDuration / numTasksEnded);
+        }
+    }
+
+    /**
+     * The amount of data read by a single task.
+     */
+    public static final class PartitionMetrics {
+        private final int stageId;
+        private final int attemptId;
+        private final int partition;
+        private final long records;
+        private final long bytes;
+        private final long duration;
+
+        private PartitionMetrics(final int stageId, final int attemptId, final int partition, final long records, final long bytes, final long duration) {
+            this.stageId = stageId;
+            this.attemptId = attemptId;
+            this.partition = partition;
+            this.records = records;
+            this.bytes = bytes;
+            this.duration = duration;
+        }
+
+        public int getStageId() { return stageId; }
+        public int getAttemptId() { return attemptId; }
+        public int getPartition() { return partition; }
+        public long getRecords() { return records; }
+        public long getBytes() { return bytes; }
+        public long getDuration() { return duration; }
+    }
+
+    /**
+     * The value of a named accumulator at the end of a stage.
+     */
+    public static final class AccumulatorValue {
+        private final int stageId;
+        private final int attemptId;
+        private final String name;
+        private final String value;
+
+        private AccumulatorValue(final int stageId, final int attemptId, final String name, final String value) {
+            this.stageId = stageId;
+            this.attemptId = attemptId;
+            this.name = name;
+            this.value = value;
+        }
+
+        public int getStageId() { return stageId; }
+        public int getAttemptId() { return attemptId; }
+        public String getName() { return name; }
+        public String getValue() { return value; }
+    }
+}
@@ -1,16 +1,19 @@
 package org.broadinstitute.hellbender.engine.spark.datasources;
 
 import com.google.common.annotations.VisibleForTesting;
+import htsjdk.samtools.BAMRecordCodec;
 import htsjdk.samtools.BamFileIoUtils;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.cram.build.CramIO;
 import htsjdk.samtools.cram.common.CramVersions;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
 import htsjdk.samtools.util.BlockCompressedStreamConstants;
 import org.apache.commons.collections4.iterators.IteratorIterable;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocalFileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapred.FileAlreadyExistsException;
@@ -40,16 +43,31 @@ import org.seqdoop.hadoop_bam.KeyIgnoringBAMOutputFormat;
 import org.seqdoop.hadoop_bam.KeyIgnoringCRAMOutputFormat;
 import org.seqdoop.hadoop_bam.SAMFormat;
 import org.seqdoop.hadoop_bam.SAMRecordWritable;
+import org.seqdoop.hadoop_bam.SplittingBAMIndexer;
 import org.seqdoop.hadoop_bam.util.SAMOutputPreparer;
 import scala.Tuple2;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * ReadsSparkSink writes GATKReads to a file. This code lifts from the HadoopGenomics/Hadoop-BAM
@@ -57,6 +75,18 @@ import java.util.UUID;
  */
 public final class ReadsSparkSink {
 
+    /**
+     * Hadoop configuration property holding the granularity of the splitting index written alongside each headerless
+     * BAM part. Unset (or zero) means no partial splitting indices are written.
+     */
+    public static final String SPLITTING_INDEX_GRANULARITY_PROPERTY = "hellbender.spark.sink.splittingIndexGranularity";
+
+    /**
+     * Extension of the partial splitting index written next to each BAM part file. The partial index holds the
+     * part-relative virtual offsets of every granularity-th record in the part.
+     */
+    public static final String PARTIAL_SPLITTING_INDEX_EXTENSION = ".partial" + SplittingBAMIndexer.OUTPUT_FILE_EXTENSION;
+
     // Output format class for writing BAM files through saveAsNewAPIHadoopFile. Must be public.
     public static class SparkBAMOutputFormat extends KeyIgnoringBAMOutputFormat<NullWritable> {
         public static SAMFileHeader bamHeader = null;
@@ -88,6 +118,58 @@ public final class ReadsSparkSink {
         public SparkHeaderlessBAMOutputFormat() {
             setWriteHeader(false);
         }
+
+        @Override
+        public RecordWriter<NullWritable, SAMRecordWritable> getRecordWriter(TaskAttemptContext ctx) throws IOException {
+            final int granularity = ctx.getConfiguration().getInt(SPLITTING_INDEX_GRANULARITY_PROPERTY, 0);
+            if (granularity <= 0) {
+                return super.getRecordWriter(ctx);
+            }
+            final Path partPath = getDefaultWorkFile(ctx, BamFileIoUtils.BAM_FILE_EXTENSION);
+            return new HeaderlessBAMRecordWriterWithPartialIndex<>(partPath, bamHeader, granularity, ctx);
+        }
+    }
+
+    /**
+     * Writes a headerless, unterminated BAM part (like Hadoop-BAM's writer does for headerless output) and, as records
+     * go by, a partial splitting index holding the part-relative virtual offset of every granularity-th record.
+     * The partial indices are stitched into the splitting index of the merged BAM without having to re-scan it.
+     */
+    static final class HeaderlessBAMRecordWriterWithPartialIndex<K> extends RecordWriter<K, SAMRecordWritable> {
+        private final OutputStream partOut;
+        private final BlockCompressedOutputStream compressedOut;
+        private final BAMRecordCodec codec;
+        private final DataOutputStream indexOut;
+        private final int granularity;
+        private long recordCount = 0;
+
+        HeaderlessBAMRecordWriterWithPartialIndex(final Path partPath, final SAMFileHeader header, final int granularity,
+                                                  final TaskAttemptContext ctx) throws IOException {
+            final FileSystem fs = partPath.getFileSystem(ctx.getConfiguration());
+            this.granularity = granularity;
+            this.partOut = fs.create(partPath);
+            this.compressedOut = new BlockCompressedOutputStream(partOut, null);
+            this.codec = new BAMRecordCodec(header);
+            this.codec.setOutputStream(compressedOut);
+            this.indexOut = new DataOutputStream(fs.create(getPartialSplittingIndexPath(partPath)));
+        }
+
+        @Override
+        public void write(final K ignored, final SAMRecordWritable writable) throws IOException {
+            if (recordCount % granularity == 0) {
+                indexOut.writeLong(compressedOut.getFilePointer());
+            }
+            codec.encode(writable.get());
+            recordCount++;
+        }
+
+        @Override
+        public void close(final TaskAttemptContext ctx) throws IOException {
+            // flush the last block but do not close the BGZF stream, since that would append a terminator block
+            compressedOut.flush();
+            partOut.close();
+            indexOut.close();
+        }
     }
 
     // Output format class for writing CRAM files through saveAsNewAPIHadoopFile. Must be public.
@@ -152,6 +234,26 @@ public final class ReadsSparkSink {
     public static void writeReads(
             final JavaSparkContext ctx, final String outputFile, final String referenceFile, final JavaRDD<GATKRead> reads,
             final SAMFileHeader header, ReadsWriteFormat format, final int numReducers) throws IOException {
+        writeReads(ctx, outputFile, referenceFile, reads, header, format, numReducers, false);
+    }
+
+    /**
+     * writeReads writes rddReads to outputFile with header as the file header.
+     * @param ctx the JavaSparkContext to write.
+     * @param outputFile path to the output bam.
+     * @param referenceFile path to the reference. required for cram output, otherwise may be null.
+     * @param reads reads to write.
+     * @param header the header to put at the top of the files
+     * @param format should the output be a single file, sharded, ADAM, etc.
+     * @param numReducers the number of reducers to use when writing a single file. A value of zero indicates that the default
+     *                    should be used.
+     * @param writeSplittingIndex whether to write a Hadoop-BAM splitting index (.splitting-bai) next to a single BAM
+     *                            output. The index is assembled from partial indices written along with each part, so
+     *                            the merged BAM is never re-read. Ignored for other formats.
+     */
+    public static void writeReads(
+            final JavaSparkContext ctx, final String outputFile, final String referenceFile, final JavaRDD<GATKRead> reads,
+            final SAMFileHeader header, ReadsWriteFormat format, final int numReducers, final boolean writeSplittingIndex) throws IOException {
 
         SAMFormat samOutputFormat = IOUtils.isCramFileName(outputFile) ? SAMFormat.CRAM : SAMFormat.BAM;
 
@@ -160,6 +262,8 @@ public final class ReadsSparkSink {
                                         makeFilePathAbsolute(referenceFile) :
                                         referenceFile;
         setHadoopBAMConfigurationProperties(ctx, absoluteOutputFile, absoluteReferenceFile);
+        setSplittingIndexConfigurationProperty(ctx,
+                writeSplittingIndex && format == ReadsWriteFormat.SINGLE && samOutputFormat == SAMFormat.BAM);
 
         // The underlying reads are required to be in SAMRecord format in order to be
         // written out, so we convert them to SAMRecord explicitly here. If they're already
@@ -307,6 +411,9 @@ public final class ReadsSparkSink {
         // end-of-file markers), so to merge into a single BAM we concatenate the header with the part files and a
         // terminating end-of-file marker. Note that this has the side effect of being ever-so-slightly less efficient
         // than writing a BAM in one go because the last block of each file isn't completely full.
+        // Since every piece has a known size up front, each part lands at a fixed byte offset in the output, which
+        // lets us copy the parts in parallel when the output is on the local file system, and lets us shift the
+        // partial splitting indices of the parts (if any) into a splitting index for the merged file.
 
         final String outputParentDir = outputFile.substring(0, outputFile.lastIndexOf('/') + 1);
         // First, check for the _SUCCESS file.
@@ -325,15 +432,132 @@ public final class ReadsSparkSink {
         fs.rename(outputPath, tmpPath);
         fs.delete(outputPath, true);
 
-        try (final OutputStream out = fs.create(outputPath)) {
-            new SAMOutputPreparer().prepareForRecords(out, samOutputFormat, header); // write the header
-            mergeInto(out, tmpPath, conf);
-            writeTerminatorBlock(out, samOutputFormat);
+        final FileStatus[] parts = getBamFragments(tmpPath, fs);
+        if (parts.length == 0) {
+            throw new GATKException("Could not write bam file because no part files were found.");
+        }
+
+        final ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        new SAMOutputPreparer().prepareForRecords(headerBytes, samOutputFormat, header);
+        final ByteArrayOutputStream terminatorBytes = new ByteArrayOutputStream();
+        writeTerminatorBlock(terminatorBytes, samOutputFormat);
+
+        final long[] partOffsets = new long[parts.length];
+        long offset = headerBytes.size();
+        for (int i = 0; i < parts.length; i++) {
+            partOffsets[i] = offset;
+            offset += parts[i].getLen();
+        }
+        final long outputLength = offset + terminatorBytes.size();
+
+        if (fs instanceof LocalFileSystem) {
+            final LocalFileSystem localFs = (LocalFileSystem) fs;
+            final List<File> partFiles = new ArrayList<>(parts.length);
+            for (final FileStatus part : parts) {
+                partFiles.add(localFs.pathToFile(part.getPath()));
+            }
+            concatenateInParallel(localFs.pathToFile(outputPath), headerBytes.toByteArray(), partFiles, partOffsets,
+                    terminatorBytes.toByteArray(), outputLength);
+        } else {
+            try (final OutputStream out = fs.create(outputPath)) {
+                headerBytes.writeTo(out);
+                mergeInto(out, tmpPath, conf);
+                terminatorBytes.writeTo(out);
+            }
+        }
+
+        if (conf.getInt(SPLITTING_INDEX_GRANULARITY_PROPERTY, 0) > 0) {
+            final Path indexPath = new Path(outputFile + SplittingBAMIndexer.OUTPUT_FILE_EXTENSION);
+            try (final OutputStream indexOut = fs.create(indexPath)) {
+                mergePartialSplittingIndices(indexOut, parts, partOffsets, outputLength, fs);
+            }
         }
 
         fs.delete(tmpPath, true);
     }
 
+    /**
+     * Writes the header, every part and the terminator of a single output file into their precomputed byte ranges,
+     * copying the parts concurrently through positional channel transfers.
+     */
+    private static void concatenateInParallel(final File output, final byte[] header, final List<File> parts,
+                                              final long[] partOffsets, final byte[] terminator, final long outputLength) throws IOException {
+        final int numThreads = Math.max(1, Math.min(parts.size(), Runtime.getRuntime().availableProcessors()));
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try (final RandomAccessFile raf = new RandomAccessFile(output, "rw")) {
+            raf.setLength(outputLength);
+            final FileChannel out = raf.getChannel();
+            writeFully(out, ByteBuffer.wrap(header), 0);
+
+            final List<Future<Void>> copies = new ArrayList<>(parts.size());
+            for (int i = 0; i < parts.size(); i++) {
+                final File part = parts.get(i);
+                final long partOffset = partOffsets[i];
+                copies.add(executor.submit(() -> {
+                    try (final FileChannel in = FileChannel.open(part.toPath(), StandardOpenOption.READ)) {
+                        final long size = in.size();
+                        long copied = 0;
+                        while (copied < size) {
+                            copied += out.transferFrom(in, partOffset + copied, size - copied);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<Void> copy : copies) {
+                copy.get();
+            }
+            writeFully(out, ByteBuffer.wrap(terminator), outputLength - terminator.length);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GATKException("Interrupted while merging part files into " + output, e);
+        } catch (final ExecutionException e) {
+            throw new GATKException("Could not copy a part file into " + output, e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void writeFully(final FileChannel out, final ByteBuffer buffer, final long position) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += out.write(buffer, position + written);
+        }
+    }
+
+    /**
+     * Stitches the partial splitting indices of the parts into a Hadoop-BAM splitting index for the merged file: each
+     * part-relative virtual offset is shifted by the byte offset of its part in the merged file, and the index is
+     * terminated by the virtual offset of the end of the file, as {@link SplittingBAMIndexer#finish(long)} does.
+     */
+    @VisibleForTesting
+    static void mergePartialSplittingIndices(final OutputStream out, final FileStatus[] parts, final long[] partOffsets,
+                                             final long outputLength, final FileSystem fs) throws IOException {
+        final DataOutputStream indexOut = new DataOutputStream(out);
+        for (int i = 0; i < parts.length; i++) {
+            final Path partialIndexPath = getPartialSplittingIndexPath(parts[i].getPath());
+            final long shift = partOffsets[i] << 16;
+            try (final DataInputStream in = new DataInputStream(fs.open(partialIndexPath))) {
+                while (true) {
+                    final long virtualOffset;
+                    try {
+                        virtualOffset = in.readLong();
+                    } catch (final EOFException e) {
+                        break;
+                    }
+                    indexOut.writeLong(virtualOffset + shift);
+                }
+            }
+            fs.delete(partialIndexPath, false);
+        }
+        indexOut.writeLong(outputLength << 16);
+        indexOut.flush();
+    }
+
+    private static Path getPartialSplittingIndexPath(final Path partPath) {
+        return new Path(partPath.getParent(), partPath.getName() + PARTIAL_SPLITTING_INDEX_EXTENSION);
+    }
+
     //Terminate the aggregated output stream with an appropriate SAMOutputFormat-dependent terminator block
     private static void writeTerminatorBlock(final OutputStream out, final SAMFormat samOutputFormat) throws IOException {
         if (SAMFormat.CRAM == samOutputFormat) {
@@ -365,7 +589,8 @@ public final class ReadsSparkSink {
 
     @VisibleForTesting
     static FileStatus[] getBamFragments( final Path directory, final FileSystem fs ) throws IOException {
-        final FileStatus[] parts = fs.globStatus(new Path(directory, "part-r-[0-9][0-9][0-9][0-9][0-9]*"));
+        final FileStatus[] parts = fs.globStatus(new Path(directory, "part-r-[0-9][0-9][0-9][0-9][0-9]*"),
+                path -> !path.getName().endsWith(PARTIAL_SPLITTING_INDEX_EXTENSION));
 
         // FileSystem.globStatus() has a known bug that causes it to not sort the array returned by
         // name (despite claiming to): https://issues.apache.org/jira/browse/HADOOP-10798
@@ -384,6 +609,19 @@ public final class ReadsSparkSink {
         }
     }
 
+    /**
+     * Set (or unset, so that a stale value from a previous write through the same Spark context is not picked up)
+     * the granularity of the partial splitting indices written with each BAM part.
+     */
+    private static void setSplittingIndexConfigurationProperty(final JavaSparkContext ctx, final boolean writeSplittingIndex) {
+        final Configuration conf = ctx.hadoopConfiguration();
+        if (writeSplittingIndex) {
+            conf.setInt(SPLITTING_INDEX_GRANULARITY_PROPERTY, SplittingBAMIndexer.DEFAULT_GRANULARITY);
+        } else {
+            conf.unset(SPLITTING_INDEX_GRANULARITY_PROPERTY);
+        }
+    }
+
     /**
      * Propagate any values that need to be passed to Hadoop-BAM through configuration properties:
      *
@@ -0,0 +1,35 @@
+package org.broadinstitute.hellbender.metrics;
+
+import htsjdk.samtools.metrics.MetricBase;
+import org.broadinstitute.hellbender.utils.Utils;
+
+/**
+ * A MultiLevelCollector whose PerUnitMetricCollectors can be merged, so that several collectors can accept disjoint
+ * sets of records (e.g., on different threads) and then be combined and finished as one.
+ *
+ * Extend CombinableMultiLevelCollector instead of MultiLevelCollector and implement combineUnits to merge the data
+ * collected by two PerUnitMetricCollectors for the same unit.
+ *
+ * @param <METRIC_TYPE> The type of metrics being collected
+ * @param <HISTOGRAM_KEY> If there is are Histograms related to metrics of type <BEAN> then <HKEY> is the key value to these Histograms
+ * @param <ARGTYPE> The type of argument passed to individual PerUnitMetricCollector (see SAMRecordMultilevelCollector and PerUnitMetricCollector)
+ */
+public abstract class CombinableMultiLevelCollector<METRIC_TYPE extends MetricBase, HISTOGRAM_KEY extends Comparable<HISTOGRAM_KEY>, ARGTYPE>
+        extends MultiLevelCollector<METRIC_TYPE, HISTOGRAM_KEY, ARGTYPE> {
+
+    /**
+     * Merge the data collected by one PerUnitMetricCollector into another one for the same unit.
+     * Both were made by collectors of the same class.
+     */
+    protected abstract void combineUnits(final PerUnitMetricCollector<METRIC_TYPE, HISTOGRAM_KEY, ARGTYPE> target,
+                                         final PerUnitMetricCollector<METRIC_TYPE, HISTOGRAM_KEY, ARGTYPE> source);
+
+    /**
+     * Merge the PerUnitMetricCollectors of another collector of the same class, set up with the same accumulation
+     * levels and read groups, into ours.  The other collector shouldn't be used afterwards.
+     */
+    public void combine(final CombinableMultiLevelCollector<METRIC_TYPE, HISTOGRAM_KEY, ARGTYPE> other) {
+        Utils.validateArg(other.getClass() == getClass(), "can only combine collectors of the same class");
+        combineUnitCollectors(other, this::combineUnits);
+    }
+}
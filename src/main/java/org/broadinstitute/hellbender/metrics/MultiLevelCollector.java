@@ -8,6 +8,7 @@ import htsjdk.samtools.reference.ReferenceSequence;
 import org.broadinstitute.hellbender.exceptions.GATKException;
 
 import java.util.*;
+import java.util.function.BiConsumer;
 
 /**
  * MultiLevelCollector handles accumulating Metrics at different MetricAccumulationLevels(ALL_READS, SAMPLE, LIBRARY, READ_GROUP).
@@ -287,6 +288,35 @@ public abstract class MultiLevelCollector<METRIC_TYPE extends MetricBase, HISTOG
         }
     }
 
+    /**
+     * Merge the PerUnitMetricCollectors of another MultiLevelCollector, set up with the same accumulation levels and
+     * read groups, into ours.  Unit collectors that only the other one has are adopted as they are, and the others are
+     * merged into ours with combineUnits.  See {@link CombinableMultiLevelCollector}.
+     */
+    void combineUnitCollectors(final MultiLevelCollector<METRIC_TYPE, HISTOGRAM_KEY, ARGTYPE> other,
+                               final BiConsumer<PerUnitMetricCollector<METRIC_TYPE, HISTOGRAM_KEY, ARGTYPE>,
+                                                PerUnitMetricCollector<METRIC_TYPE, HISTOGRAM_KEY, ARGTYPE>> combineUnits) {
+        if (other.outputOrderedDistributors.size() != outputOrderedDistributors.size()) {
+            throw new GATKException("Can't combine collectors with different accumulation levels");
+        }
+        if (allReadCollector != null) {
+            combineUnits.accept(allReadCollector, other.allReadCollector);
+        }
+        for (int i = 0; i < outputOrderedDistributors.size(); ++i) {
+            final Map<String, PerUnitMetricCollector<METRIC_TYPE, HISTOGRAM_KEY, ARGTYPE>> collectors =
+                    outputOrderedDistributors.get(i).collectors;
+            for (final Map.Entry<String, PerUnitMetricCollector<METRIC_TYPE, HISTOGRAM_KEY, ARGTYPE>> entry :
+                    other.outputOrderedDistributors.get(i).collectors.entrySet()) {
+                final PerUnitMetricCollector<METRIC_TYPE, HISTOGRAM_KEY, ARGTYPE> collector = collectors.get(entry.getKey());
+                if (collector == null) {
+                    collectors.put(entry.getKey(), entry.getValue());
+                } else {
+                    combineUnits.accept(collector, entry.getValue());
+                }
+            }
+        }
+    }
+
     /**
      * Call finish on all PerUnitMetricCollectors
      */
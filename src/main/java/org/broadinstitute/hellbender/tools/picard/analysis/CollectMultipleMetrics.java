@@ -98,6 +98,10 @@ public final class CollectMultipleMetrics extends PicardCommandLineProgram {
     @Argument(doc = "List of metrics programs to apply during the pass through the SAM file.")
     public List<Program> PROGRAM = CollectionUtil.makeList(Program.values());
 
+    @Argument(doc = "If true, run each metrics program on a thread of its own, and feed them all batches of records " +
+            "from the thread reading the input.")
+    public boolean PARALLEL_COLLECTORS = false;
+
     /**
      * Contents of PROGRAM list is transferred to this list during command-line validation, so that an outside
      * developer can invoke this class programmatically and provide alternative Programs to run by calling
@@ -139,7 +143,7 @@ public final class CollectMultipleMetrics extends PicardCommandLineProgram {
             programs.add(instance);
         }
 
-        SinglePassSamProgram.makeItSo(INPUT, REFERENCE_SEQUENCE, ASSUME_SORTED, STOP_AFTER, programs);
+        SinglePassSamProgram.makeItSo(INPUT, REFERENCE_SEQUENCE, ASSUME_SORTED, STOP_AFTER, programs, PARALLEL_COLLECTORS);
 
         return null;
     }
@@ -0,0 +1,183 @@
+package org.broadinstitute.hellbender.tools.picard.analysis;
+
+import htsjdk.samtools.BAMRecord;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.reference.ReferenceSequence;
+import htsjdk.samtools.util.StringUtil;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Runs the acceptRead() method of each of a set of SinglePassSamPrograms on a thread of its own.
+ *
+ * The reading thread fills batches of records (with their reference sequences), and hands each full batch to every
+ * program's thread through a bounded queue, so at most batchesInFlight batches per program are waiting at any time,
+ * and the reader blocks when the slowest program falls that far behind.  Each program is only ever called from its
+ * own thread, so its state needs no synchronization, and the programs see the records in input order, as they would
+ * when run serially.
+ *
+ * The batches are shared by all the programs, so the records must be fully decoded before they're handed over:
+ * SAMRecords decode themselves lazily, and that isn't thread safe.  The reader should call {@link #decode} on each
+ * record before passing it to {@link #accept}.
+ */
+final class ParallelCollectorRunner implements AutoCloseable {
+    static final int DEFAULT_BATCH_SIZE = 1000;
+    static final int DEFAULT_BATCHES_IN_FLIGHT = 8;
+
+    private static final Batch END_OF_INPUT = new Batch(0);
+
+    private final int batchSize;
+    private final List<CollectorThread> collectorThreads;
+    private Batch batch;
+
+    ParallelCollectorRunner( final Collection<SinglePassSamProgram> programs ) {
+        this(programs, DEFAULT_BATCH_SIZE, DEFAULT_BATCHES_IN_FLIGHT);
+    }
+
+    ParallelCollectorRunner( final Collection<SinglePassSamProgram> programs,
+                             final int batchSize, final int batchesInFlight ) {
+        if (batchSize < 1 || batchesInFlight < 1) {
+            throw new IllegalArgumentException("batch size and number of batches in flight must be positive");
+        }
+        this.batchSize = batchSize;
+        this.batch = new Batch(batchSize);
+        this.collectorThreads = new ArrayList<>(programs.size());
+        for (final SinglePassSamProgram program : programs) {
+            final CollectorThread thread = new CollectorThread(program, batchesInFlight);
+            collectorThreads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Force the lazy decoding of everything the collectors might look at, so that the record can be read safely
+     * from several threads at once.  The bases of records that don't come from a BAM are upper-cased here, too,
+     * since some collectors (e.g., CollectAlignmentSummaryMetrics) would otherwise do that in place.
+     */
+    static void decode( final SAMRecord rec ) {
+        rec.getCigar();
+        final byte[] readBases = rec.getReadBases();
+        if (!(rec instanceof BAMRecord)) StringUtil.toUpperCase(readBases);
+        rec.getBaseQualities();
+        rec.getAttributes();
+        rec.getAlignmentEnd();
+        rec.getAlignmentBlocks();
+    }
+
+    /** Queue up a (decoded) record and its reference sequence for all the programs. */
+    void accept( final SAMRecord rec, final ReferenceSequence ref ) {
+        batch.recs[batch.size] = rec;
+        batch.refs[batch.size] = ref;
+        if (++batch.size == batchSize) {
+            dispatch(batch);
+            batch = new Batch(batchSize);
+        }
+    }
+
+    /**
+     * Hand off the last partial batch, and wait for all the programs to process everything.
+     * Any exception thrown by a program's acceptRead() is rethrown here.
+     */
+    @Override
+    public void close() {
+        try {
+            if (batch.size > 0 && !anyFailed()) dispatch(batch);
+        } finally {
+            batch = new Batch(0);
+            for (final CollectorThread thread : collectorThreads) {
+                thread.put(END_OF_INPUT);
+            }
+            for (final CollectorThread thread : collectorThreads) {
+                try {
+                    thread.join();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new GATKException("Interrupted while waiting for metrics collectors to finish.", e);
+                }
+            }
+        }
+        rethrowFailure();
+    }
+
+    private void dispatch( final Batch fullBatch ) {
+        rethrowFailure();
+        for (final CollectorThread thread : collectorThreads) {
+            thread.put(fullBatch);
+        }
+    }
+
+    private boolean anyFailed() {
+        return collectorThreads.stream().anyMatch(thread -> thread.failure != null);
+    }
+
+    private void rethrowFailure() {
+        for (final CollectorThread thread : collectorThreads) {
+            final Throwable failure = thread.failure;
+            if (failure instanceof RuntimeException) throw (RuntimeException)failure;
+            if (failure instanceof Error) throw (Error)failure;
+            if (failure != null) throw new GATKException("Metrics collector failed.", failure);
+        }
+    }
+
+    /** a chunk of records, with the reference sequence for each (which may be null) */
+    private static final class Batch {
+        final SAMRecord[] recs;
+        final ReferenceSequence[] refs;
+        int size;
+
+        Batch( final int capacity ) {
+            recs = new SAMRecord[capacity];
+            refs = new ReferenceSequence[capacity];
+        }
+    }
+
+    /**
+     * Feeds batches from its queue to one program.  If the program throws, the thread keeps draining its queue
+     * (so the reader never blocks on it) until it sees the end of the input.
+     */
+    private static final class CollectorThread extends Thread {
+        private final SinglePassSamProgram program;
+        private final BlockingQueue<Batch> queue;
+        volatile Throwable failure;
+
+        CollectorThread( final SinglePassSamProgram program, final int batchesInFlight ) {
+            super("MetricsCollector-" + program.getClass().getSimpleName());
+            setDaemon(true);
+            this.program = program;
+            this.queue = new ArrayBlockingQueue<>(batchesInFlight);
+        }
+
+        void put( final Batch batch ) {
+            try {
+                queue.put(batch);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GATKException("Interrupted while handing records to metrics collectors.", e);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                Batch batch;
+                while ((batch = queue.take()) != END_OF_INPUT) {
+                    if (failure != null) continue;
+                    try {
+                        for (int idx = 0; idx != batch.size; ++idx) {
+                            program.acceptRead(batch.recs[idx], batch.refs[idx]);
+                        }
+                    } catch (final Throwable t) {
+                        failure = t;
+                    }
+                }
+            } catch (final InterruptedException e) {
+                failure = e;
+            }
+        }
+    }
+}
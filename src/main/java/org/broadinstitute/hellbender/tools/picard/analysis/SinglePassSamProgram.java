@@ -10,6 +10,7 @@ import htsjdk.samtools.reference.ReferenceSequenceFileWalker;
 import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.SequenceUtil;
+import htsjdk.samtools.util.StringUtil;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
@@ -59,6 +60,20 @@ public abstract class SinglePassSamProgram extends PicardCommandLineProgram {
                                 final boolean assumeSorted,
                                 final long stopAfter,
                                 final Collection<SinglePassSamProgram> programs) {
+        makeItSo(input, referenceSequence, assumeSorted, stopAfter, programs, false);
+    }
+
+    /**
+     * Like the other makeItSo, but if parallelCollectors is true, each program's acceptRead() runs on a thread of
+     * its own, and this thread just reads and decodes the records (see {@link ParallelCollectorRunner}).
+     * The programs' setup() and finish() methods are still called on this thread.
+     */
+    public static void makeItSo(final File input,
+                                final File referenceSequence,
+                                final boolean assumeSorted,
+                                final long stopAfter,
+                                final Collection<SinglePassSamProgram> programs,
+                                final boolean parallelCollectors) {
 
         // Setup the standard inputs
         IOUtil.assertFileIsReadable(input);
@@ -102,33 +117,47 @@ public abstract class SinglePassSamProgram extends PicardCommandLineProgram {
 
         final ProgressLogger progress = new ProgressLogger(logger);
 
-        for (final SAMRecord rec : in) {
-            final ReferenceSequence ref;
-            if (walker == null || rec.getReferenceIndex() == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX) {
-                ref = null;
-            } else {
-                ref = walker.get(rec.getReferenceIndex());
-            }
+        try (final ParallelCollectorRunner runner = parallelCollectors ? new ParallelCollectorRunner(programs) : null) {
+            ReferenceSequence lastRef = null;
+            for (final SAMRecord rec : in) {
+                final ReferenceSequence ref;
+                if (walker == null || rec.getReferenceIndex() == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX) {
+                    ref = null;
+                } else {
+                    ref = walker.get(rec.getReferenceIndex());
+                }
 
-            for (final SinglePassSamProgram program : programs) {
-                program.acceptRead(rec, ref);
-            }
+                if (runner == null) {
+                    for (final SinglePassSamProgram program : programs) {
+                        program.acceptRead(rec, ref);
+                    }
+                } else {
+                    // Some programs (e.g., CollectGcBiasMetrics) upper-case the reference bases in place, which
+                    // would race with the other threads reading them, so we do it once, up front, instead.
+                    if (ref != null && ref != lastRef) {
+                        StringUtil.toUpperCase(ref.getBases());
+                        lastRef = ref;
+                    }
+                    ParallelCollectorRunner.decode(rec);
+                    runner.accept(rec, ref);
+                }
 
-            progress.record(rec);
+                progress.record(rec);
 
-            // See if we need to terminate early?
-            if (stopAfter > 0 && progress.getCount() >= stopAfter) {
-                break;
-            }
+                // See if we need to terminate early?
+                if (stopAfter > 0 && progress.getCount() >= stopAfter) {
+                    break;
+                }
 
-            // And see if we're into the unmapped reads at the end
-            if (!anyUseNoRefReads && rec.getReferenceIndex() == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX) {
-                break;
+                // And see if we're into the unmapped reads at the end
+                if (!anyUseNoRefReads && rec.getReferenceIndex() == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX) {
+                    break;
+                }
             }
+        } finally {
+            CloserUtil.close(in);
         }
 
-        CloserUtil.close(in);
-
         for (final SinglePassSamProgram program : programs) {
             program.finish();
         }
@@ -2,6 +2,7 @@ package org.broadinstitute.hellbender.tools.picard.analysis.directed;
 
 import htsjdk.samtools.SAMReadGroupRecord;
 import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordIterator;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
 import htsjdk.samtools.metrics.MetricsFile;
@@ -9,16 +10,19 @@ import htsjdk.samtools.reference.ReferenceSequenceFile;
 import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
 import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Interval;
 import htsjdk.samtools.util.IntervalList;
 import htsjdk.samtools.util.SequenceUtil;
 import org.broadinstitute.hellbender.cmdline.Argument;
 import org.broadinstitute.hellbender.cmdline.PicardCommandLineProgram;
 import org.broadinstitute.hellbender.cmdline.StandardArgumentDefinitions;
+import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.metrics.MetricAccumulationLevel;
 import org.broadinstitute.hellbender.metrics.MultiLevelMetrics;
 import org.broadinstitute.hellbender.utils.runtime.ProgressLogger;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
@@ -69,6 +73,10 @@ public abstract class CollectTargetedMetrics<METRIC extends MultiLevelMetrics, C
     @Argument(optional = true, doc = "An optional file to output per target coverage information to.")
     public File PER_TARGET_COVERAGE;
 
+    @Argument(doc = "If greater than 1, split the genome into shards, and collect the metrics for them on this many " +
+            "threads, each with a collector of its own. Requires an indexed input file.")
+    public int NUM_THREADS = 1;
+
     /**
      * Asserts that files are readable and writable and then fires off an
      * HsMetricsCalculator instance to do the real work.
@@ -111,10 +119,39 @@ public abstract class CollectTargetedMetrics<METRIC extends MultiLevelMetrics, C
                 getProbeSetName()
         );
 
-        final ProgressLogger progress = new ProgressLogger(logger);
-        for (final SAMRecord record : reader) {
-            collector.acceptRecord(record, null);
-            progress.record(record);
+        if (NUM_THREADS > 1) {
+            if (!reader.hasIndex()) {
+                throw new UserException.BadInput("NUM_THREADS > 1 requires an index for " + INPUT.getAbsolutePath());
+            }
+            final List<ShardWorker> workers = new ArrayList<>(NUM_THREADS);
+            workers.add(new ShardWorker(collector));
+            while (workers.size() < NUM_THREADS) {
+                // the copies share the overlap detectors and per-target GC of the first collector
+                workers.add(new ShardWorker(collector.makeEmptyCopy()));
+            }
+            try {
+                GenomeShards.traverse(
+                        GenomeShards.scatterGenome(reader.getFileHeader(), NUM_THREADS * GenomeShards.SHARDS_PER_WORKER),
+                        workers, ShardWorker::process);
+            } finally {
+                workers.forEach(worker -> CloserUtil.close(worker.reader));
+            }
+
+            // The shards only hold the reads that have a position, so the rest are collected here.
+            try (final SAMRecordIterator unplaced = reader.queryUnmapped()) {
+                while (unplaced.hasNext()) {
+                    collector.acceptRecord(unplaced.next(), null);
+                }
+            }
+            for (final ShardWorker worker : workers.subList(1, workers.size())) {
+                collector.combine(worker.collector);
+            }
+        } else {
+            final ProgressLogger progress = new ProgressLogger(logger);
+            for (final SAMRecord record : reader) {
+                collector.acceptRecord(record, null);
+                progress.record(record);
+            }
         }
 
         // Write the output file
@@ -141,6 +178,10 @@ public abstract class CollectTargetedMetrics<METRIC extends MultiLevelMetrics, C
     }
 
     protected String[] customCommandLineValidation() {
+        if (NUM_THREADS < 1) {
+            return new String[]{"NUM_THREADS must be at least 1."};
+        }
+
         if (PER_TARGET_COVERAGE != null && (METRIC_ACCUMULATION_LEVEL.size() != 1 ||
                 METRIC_ACCUMULATION_LEVEL.iterator().next() != MetricAccumulationLevel.ALL_READS)) {
             return new String[]{"PER_TARGET_COVERAGE can be specified only when METRIC_ACCUMULATION_LEVEL is set " +
@@ -153,4 +194,28 @@ public abstract class CollectTargetedMetrics<METRIC extends MultiLevelMetrics, C
 
         return super.customCommandLineValidation();
     }
+
+    /**
+     * One thread of a sharded traversal, with its own reader and collector.  Each read is given to the collector
+     * of the shard holding its start, so that all reads are counted once.
+     */
+    private final class ShardWorker {
+        final TargetMetricsCollector<METRIC> collector;
+        final SamReader reader = SamReaderFactory.makeDefault().referenceSequence(REFERENCE_SEQUENCE).open(INPUT);
+
+        ShardWorker(final TargetMetricsCollector<METRIC> collector) {
+            this.collector = collector;
+        }
+
+        void process(final Interval interval) {
+            try (final SAMRecordIterator records = reader.query(interval.getContig(), interval.getStart(), interval.getEnd(), false)) {
+                while (records.hasNext()) {
+                    final SAMRecord record = records.next();
+                    if (record.getAlignmentStart() >= interval.getStart()) {
+                        collector.acceptRecord(record, null);
+                    }
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,381 @@
+package org.broadinstitute.hellbender.tools.picard.analysis.directed;
+
+import htsjdk.samtools.AlignmentBlock;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.filter.SamRecordFilter;
+import htsjdk.samtools.reference.ReferenceSequenceFile;
+import htsjdk.samtools.reference.ReferenceSequenceFileWalker;
+import htsjdk.samtools.util.Interval;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.runtime.ProgressLogger;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the coverage and base quality histograms of {@link CollectWgsMetrics} without a SamLocusIterator.
+ *
+ * Instead of building a pileup at each locus, each read is swept once, block by block, and each of its bases
+ * either bumps the depth of its locus in a circular array, or is counted as excluded.  A locus is tallied when the
+ * reads have moved past it.  Rather than collecting the names of the reads at each locus to avoid counting
+ * overlapping mates twice, each read is clipped against the earlier reads with the same name that are still in
+ * the window: a base is excluded as overlap if one of them has a base at the same locus that passed the base
+ * quality cutoff.
+ *
+ * The results are identical to those of the SamLocusIterator-based loop, including the record filter counts when
+ * stopping after some number of loci: the input is read exactly as far as the SamLocusIterator would have read it.
+ * The input must be coordinate sorted.
+ *
+ * A collector can also be restricted to one interval of the genome, so that the genome can be processed in shards.
+ * It then expects all the reads that overlap the interval, and only counts the filtered reads that start in it,
+ * so that the results summed over a set of intervals that tile the genome are again the same as above.
+ */
+final class FastWgsMetricsCollector {
+    private final ReferenceSequenceFileWalker refWalker;   // null when restricted to an interval
+    private final List<SamRecordFilter> filters;
+    private final int minBaseQuality;
+    private final int coverageCap;
+    private final long stopAfter;
+    private final ProgressLogger progress;
+
+    private final long[] depthHistogram;
+    private final long[] baseQHistogram;
+    private long basesExcludedByBaseq = 0;
+    private long basesExcludedByOverlap = 0;
+    private long basesExcludedByCapping = 0;
+
+    // the contig being tallied, the loci on it we have bases for (and might tally), and the next one to tally
+    private int contigIndex = -1;
+    private String contigName;
+    private byte[] contigBases;
+    private int firstPosition;
+    private int lastPosition;
+    private int nextPosition;
+    private final int lastContigIndex;
+    private final int countFilteredFrom;   // reads that start before this locus were counted by another collector
+    private long nonNLociSeen = 0;
+    private boolean done = false;
+
+    // the last locus to tally when stopping early (i.e., the stopAfter-th non-N locus), once it's known
+    private int stopContigIndex = Integer.MAX_VALUE;
+    private int stopPosition = Integer.MAX_VALUE;
+
+    // circular array of the depths at loci nextPosition .. nextPosition + depths.length - 1
+    private int[] depths = new int[1024];
+
+    // the aligned reads that might still overlap later ones, by name, and in order of their starts
+    private final Map<String, PendingRead> pendingByName = new HashMap<>();
+    private final ArrayDeque<PendingRead> pendingByStart = new ArrayDeque<>();
+    private boolean[] overlapped = new boolean[512];
+
+    private int previousContigIndex = -1;
+    private int previousStart = 0;
+
+    // the last locus covered by the reads accumulated so far on the contig of the latest one
+    private int coveredContigIndex = -1;
+    private int coveredEnd = 0;
+    // once the reads pass the stop locus: the locus which the next read must pass to end the input
+    private int triggerContigIndex = -1;
+    private int triggerPosition = -1;
+
+    FastWgsMetricsCollector( final ReferenceSequenceFileWalker refWalker, final List<SamRecordFilter> filters,
+                             final int minBaseQuality, final int coverageCap, final long stopAfter,
+                             final ProgressLogger progress ) {
+        this.refWalker = refWalker;
+        this.filters = filters;
+        this.minBaseQuality = minBaseQuality;
+        this.coverageCap = coverageCap;
+        this.stopAfter = stopAfter;
+        this.progress = progress;
+        this.depthHistogram = new long[coverageCap + 1];
+        this.baseQHistogram = new long[Byte.MAX_VALUE];
+        this.lastContigIndex = refWalker.getSequenceDictionary().size() - 1;
+        this.countFilteredFrom = 0;
+    }
+
+    /**
+     * A collector for one interval of the genome, with its own filters.  The bases of the interval are read
+     * from the (indexed) reference when it's constructed.
+     */
+    FastWgsMetricsCollector( final ReferenceSequenceFile ref, final SAMSequenceDictionary dictionary,
+                             final Interval interval, final List<SamRecordFilter> filters,
+                             final int minBaseQuality, final int coverageCap ) {
+        this.refWalker = null;
+        this.filters = filters;
+        this.minBaseQuality = minBaseQuality;
+        this.coverageCap = coverageCap;
+        this.stopAfter = -1;
+        this.progress = null;
+        this.depthHistogram = new long[coverageCap + 1];
+        this.baseQHistogram = new long[Byte.MAX_VALUE];
+        this.contigIndex = dictionary.getSequenceIndex(interval.getContig());
+        this.contigName = interval.getContig();
+        this.contigBases = ref.getSubsequenceAt(interval.getContig(), interval.getStart(), interval.getEnd()).getBases();
+        this.firstPosition = interval.getStart();
+        this.lastPosition = interval.getEnd();
+        this.nextPosition = interval.getStart();
+        this.lastContigIndex = contigIndex;
+        this.countFilteredFrom = interval.getStart();
+    }
+
+    /** Sweep the (coordinate sorted) reads, and tally all loci of the genome, or as many as we've been asked to. */
+    void process( final Iterator<SAMRecord> reads ) {
+        boolean draining = false;
+        while (reads.hasNext()) {
+            final SAMRecord rec = reads.next();
+            if (isFilteredOut(rec, rec.getAlignmentStart() >= countFilteredFrom)) continue;
+
+            // The SamLocusIterator reads one record past the one that lets it emit the last locus we need.
+            if (draining) break;
+
+            // Unmapped reads at the end of the input: no more loci will be covered.
+            if (rec.getReferenceIndex() == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX) {
+                draining = true;
+                continue;
+            }
+            if (rec.getReadUnmappedFlag() || rec.getReadFailsVendorQualityCheckFlag()) continue;
+
+            advanceTo(rec);
+            if (isPastStop(rec)) {
+                draining = true;
+                continue;
+            }
+            accumulate(rec);
+        }
+        tallyUpTo(Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    long[] getDepthHistogram() { return depthHistogram; }
+
+    long[] getBaseQHistogram() { return baseQHistogram; }
+
+    long getBasesExcludedByBaseq() { return basesExcludedByBaseq; }
+
+    long getBasesExcludedByOverlap() { return basesExcludedByOverlap; }
+
+    long getBasesExcludedByCapping() { return basesExcludedByCapping; }
+
+    /** Applies the filters the way an AggregateFilter does, so that only the first failing one counts the read. */
+    private boolean isFilteredOut( final SAMRecord rec, final boolean count ) {
+        for (final SamRecordFilter filter : filters) {
+            final boolean filteredOut = count || !(filter instanceof CountingFilter) ?
+                    filter.filterOut(rec) : ((CountingFilter)filter).reallyFilterOut(rec);
+            if (filteredOut) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Whether the SamLocusIterator would have emitted the stop locus upon seeing this read.  It does that for a read
+     * that starts after the stop locus, if that locus is covered by the earlier reads.  Otherwise, the stop locus is
+     * emitted with the start of the next covered stretch, i.e., for a read that starts after the first read that
+     * has an aligned base after the stop locus.
+     */
+    private boolean isPastStop( final SAMRecord rec ) {
+        if (stopPosition == Integer.MAX_VALUE) return false;
+        final int recContigIndex = rec.getReferenceIndex();
+        final int recStart = rec.getAlignmentStart();
+        if (triggerContigIndex == -1) {
+            if (!isAfter(recContigIndex, recStart, stopContigIndex, stopPosition)) return false;
+            if (coveredContigIndex == stopContigIndex && coveredEnd >= stopPosition) return true;
+            if (rec.getAlignmentBlocks().isEmpty()) return false;
+            triggerContigIndex = recContigIndex;
+            triggerPosition = recStart;
+            return false;
+        }
+        return isAfter(recContigIndex, recStart, triggerContigIndex, triggerPosition);
+    }
+
+    private static boolean isAfter( final int contigIndex1, final int position1,
+                                    final int contigIndex2, final int position2 ) {
+        return contigIndex1 > contigIndex2 || contigIndex1 == contigIndex2 && position1 > position2;
+    }
+
+    /** Tally all the loci before the start of the read, which will get no more coverage. */
+    private void advanceTo( final SAMRecord rec ) {
+        if (isAfter(previousContigIndex, previousStart, rec.getReferenceIndex(), rec.getAlignmentStart())) {
+            throw new UserException("The input file must be coordinate sorted, but " + rec.getReadName() +
+                    " starts before the previous read.");
+        }
+        previousContigIndex = rec.getReferenceIndex();
+        previousStart = rec.getAlignmentStart();
+        tallyUpTo(rec.getReferenceIndex(), rec.getAlignmentStart());
+    }
+
+    private void accumulate( final SAMRecord rec ) {
+        final int recContigIndex = rec.getReferenceIndex();
+        final int recStart = rec.getAlignmentStart();
+        final List<AlignmentBlock> blocks = rec.getAlignmentBlocks();
+        if (blocks.isEmpty()) return;
+        final AlignmentBlock lastBlock = blocks.get(blocks.size() - 1);
+        final int recEnd = lastBlock.getReferenceStart() + lastBlock.getLength() - 1;
+        if (coveredContigIndex != recContigIndex) {
+            coveredContigIndex = recContigIndex;
+            coveredEnd = 0;
+        }
+        coveredEnd = Math.max(coveredEnd, recEnd);
+        if (done) return;
+
+        // Loci past the end of the contig (or interval), or past the stop locus, are never tallied.
+        final int end = Math.min(recEnd, recContigIndex == stopContigIndex ? stopPosition : lastPosition);
+        final boolean anyOverlap = end >= recStart && markOverlaps(rec, recContigIndex, recStart, end);
+        ensureDepthCapacity(end);
+
+        final byte[] quals = rec.getBaseQualities();
+        for (final AlignmentBlock block : blocks) {
+            final int refStart = block.getReferenceStart();
+            final int readStart = block.getReadStart() - 1;
+            final int length = Math.min(block.getLength(), end - refStart + 1);
+            for (int i = Math.max(0, firstPosition - refStart); i < length; ++i) {
+                final int position = refStart + i;
+                if (contigBases[position - firstPosition] == 'N') continue;
+                final byte qual = quals[readStart + i];
+                if (qual < minBaseQuality)                        { ++basesExcludedByBaseq;   continue; }
+                if (anyOverlap && overlapped[position - recStart]) { ++basesExcludedByOverlap; continue; }
+                final int depth = ++depths[position & (depths.length - 1)];
+                if (depth <= coverageCap) {
+                    ++baseQHistogram[qual];
+                } else {
+                    ++basesExcludedByCapping;
+                }
+            }
+        }
+
+        final PendingRead pending = new PendingRead(rec, recContigIndex, recEnd, pendingByName.get(rec.getReadName()));
+        pendingByName.put(rec.getReadName(), pending);
+        pendingByStart.addLast(pending);
+    }
+
+    /**
+     * Marks the loci in start..end at which an earlier read with the same name has a base that passes the base
+     * quality cutoff.  Returns false if there are no such loci.
+     */
+    private boolean markOverlaps( final SAMRecord rec, final int recContigIndex, final int start, final int end ) {
+        PendingRead pending;
+        while ((pending = pendingByStart.peekFirst()) != null &&
+                (pending.contigIndex != recContigIndex || pending.end < start)) {
+            pendingByStart.removeFirst();
+            forget(pending);
+        }
+
+        boolean anyMarked = false;
+        for (pending = pendingByName.get(rec.getReadName()); pending != null; pending = pending.earlier) {
+            if (pending.contigIndex != recContigIndex || pending.end < start) continue;
+            if (!anyMarked) {
+                if (overlapped.length < end - start + 1) overlapped = new boolean[2 * (end - start + 1)];
+                Arrays.fill(overlapped, 0, end - start + 1, false);
+                anyMarked = true;
+            }
+            final byte[] quals = pending.rec.getBaseQualities();
+            for (final AlignmentBlock block : pending.rec.getAlignmentBlocks()) {
+                final int refStart = block.getReferenceStart();
+                final int from = Math.max(start, refStart);
+                final int to = Math.min(end, refStart + block.getLength() - 1);
+                for (int position = from; position <= to; ++position) {
+                    if (quals[block.getReadStart() - 1 + position - refStart] >= minBaseQuality) {
+                        overlapped[position - start] = true;
+                    }
+                }
+            }
+        }
+        return anyMarked;
+    }
+
+    private void forget( final PendingRead pending ) {
+        final String name = pending.rec.getReadName();
+        final PendingRead latest = pendingByName.get(name);
+        if (latest == pending) {
+            if (pending.earlier == null) {
+                pendingByName.remove(name);
+            } else {
+                pendingByName.put(name, pending.earlier);
+            }
+            return;
+        }
+        for (PendingRead later = latest; later != null; later = later.earlier) {
+            if (later.earlier == pending) {
+                later.earlier = pending.earlier;
+                return;
+            }
+        }
+    }
+
+    private void ensureDepthCapacity( final int end ) {
+        final int needed = end - nextPosition + 1;
+        if (needed <= depths.length) return;
+        int capacity = depths.length;
+        while (capacity < needed) capacity *= 2;
+        final int[] newDepths = new int[capacity];
+        for (int position = nextPosition; position != nextPosition + depths.length; ++position) {
+            newDepths[position & (capacity - 1)] = depths[position & (depths.length - 1)];
+        }
+        depths = newDepths;
+    }
+
+    /** Tally all the loci before the given one, moving on to later contigs as necessary. */
+    private void tallyUpTo( final int targetContigIndex, final int targetPosition ) {
+        while (!done) {
+            if (contigIndex == -1 || nextPosition > lastPosition) {
+                if (contigIndex + 1 > lastContigIndex || contigIndex + 1 > targetContigIndex) return;
+                loadContig(contigIndex + 1);
+                continue;
+            }
+            if (contigIndex == targetContigIndex && nextPosition >= targetPosition) return;
+            tallyLocus();
+        }
+    }
+
+    private void loadContig( final int newContigIndex ) {
+        final SAMSequenceRecord sequence = refWalker.getSequenceDictionary().getSequence(newContigIndex);
+        contigIndex = newContigIndex;
+        contigName = sequence.getSequenceName();
+        contigBases = refWalker.get(newContigIndex).getBases();
+        firstPosition = 1;
+        lastPosition = contigBases.length;
+        nextPosition = 1;
+
+        // The stop locus only depends on the reference, since every locus is tallied, covered or not.
+        if (stopAfter > 0 && stopPosition == Integer.MAX_VALUE) {
+            for (int position = 1; position <= contigBases.length; ++position) {
+                if (contigBases[position - 1] != 'N' && ++nonNLociSeen == stopAfter) {
+                    stopContigIndex = newContigIndex;
+                    stopPosition = position;
+                    break;
+                }
+            }
+        }
+    }
+
+    private void tallyLocus() {
+        final int position = nextPosition++;
+        final int idx = position & (depths.length - 1);
+        final int depth = depths[idx];
+        depths[idx] = 0;
+        if (contigBases[position - firstPosition] == 'N') return;
+
+        ++depthHistogram[Math.min(depth, coverageCap)];
+        if (progress != null) progress.record(contigName, position);
+        if (contigIndex == stopContigIndex && position == stopPosition) done = true;
+    }
+
+    /** An aligned read that a later read with the same name might overlap. */
+    private static final class PendingRead {
+        final SAMRecord rec;
+        final int contigIndex;
+        final int end;
+        PendingRead earlier;
+
+        PendingRead( final SAMRecord rec, final int contigIndex, final int end, final PendingRead earlier ) {
+            this.rec = rec;
+            this.contigIndex = contigIndex;
+            this.end = end;
+            this.earlier = earlier;
+        }
+    }
+}
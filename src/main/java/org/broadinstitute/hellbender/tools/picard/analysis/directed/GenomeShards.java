@@ -0,0 +1,124 @@
+package org.broadinstitute.hellbender.tools.picard.analysis.directed;
+
+import com.google.common.base.Stopwatch;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.util.Interval;
+import htsjdk.samtools.util.IntervalList;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.tools.picard.interval.IntervalListScatterer;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Splits the genome into shards, and runs a traversal of each shard on a pool of workers.
+ *
+ * Each worker is an object holding whatever state the traversal needs (readers, partial results, ...) and is only
+ * ever used by one thread.  The shards are handed out to the workers as they become free, so the caller should
+ * make a few more shards than workers to even out the load, and then merge the workers' results.
+ * Progress is logged as each shard is finished.
+ */
+final class GenomeShards {
+    // how many shards to make per worker
+    static final int SHARDS_PER_WORKER = 4;
+
+    private static final Logger logger = LogManager.getLogger(GenomeShards.class);
+
+    private GenomeShards() {}
+
+    /** Tiles all the contigs of the header's dictionary with the given number of (roughly equal) shards. */
+    static List<IntervalList> scatterGenome( final SAMFileHeader header, final int shardCount ) {
+        final IntervalList genome = new IntervalList(header);
+        for (final SAMSequenceRecord sequence : header.getSequenceDictionary().getSequences()) {
+            genome.add(new Interval(sequence.getSequenceName(), 1, sequence.getSequenceLength()));
+        }
+        return new IntervalListScatterer(IntervalListScatterer.Mode.INTERVAL_SUBDIVISION).scatter(genome, shardCount, true);
+    }
+
+    /**
+     * Calls processInterval on each interval of each shard, with one of the workers, each on a thread of its own.
+     * Returns when all the shards have been processed.  An exception thrown by processInterval is rethrown here,
+     * but only once all the workers have stopped, so the caller can safely close whatever they hold.
+     */
+    static <WORKER> void traverse( final List<IntervalList> shards, final List<WORKER> workers,
+                                   final BiConsumer<WORKER, Interval> processInterval ) {
+        Utils.validateArg(!workers.isEmpty(), "there must be at least one worker");
+        final Queue<IntervalList> pending = new ConcurrentLinkedQueue<>(shards);
+        final AtomicInteger nFinished = new AtomicInteger();
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final ExecutorService executor = Executors.newFixedThreadPool(workers.size());
+        try {
+            final List<Future<?>> futures = new ArrayList<>(workers.size());
+            for (final WORKER worker : workers) {
+                futures.add(executor.submit(() -> {
+                    IntervalList shard;
+                    while ((shard = pending.poll()) != null) {
+                        try {
+                            for (final Interval interval : shard) {
+                                processInterval.accept(worker, interval);
+                            }
+                        } catch (final RuntimeException e) {
+                            // so that the other workers stop after their current shard
+                            pending.clear();
+                            throw e;
+                        }
+                        logger.info("Finished " + nFinished.incrementAndGet() + " of " + shards.size() +
+                                " genome shards (the last one ending at " + lastLocus(shard) + ") in " +
+                                stopwatch.elapsed(TimeUnit.SECONDS) + "s");
+                    }
+                }));
+            }
+            // wait for every worker, even after one has failed, so the caller doesn't clean up a worker still in use
+            RuntimeException failure = null;
+            for (final Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (final ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof RuntimeException ? (RuntimeException)e.getCause() :
+                                new GATKException("Problem processing a shard of the genome", e.getCause());
+                    }
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new GATKException("Interrupted while processing the genome in shards", e);
+                }
+            }
+            if (failure != null) throw failure;
+        } finally {
+            pending.clear();
+            executor.shutdownNow();
+            awaitTermination(executor);
+        }
+    }
+
+    // Waits for the running workers to stop.  If we're interrupted, we stop waiting, and leave the thread interrupted.
+    private static void awaitTermination( final ExecutorService executor ) {
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.info("Waiting for the genome shard workers to stop");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String lastLocus( final IntervalList shard ) {
+        final List<Interval> intervals = shard.getIntervals();
+        if (intervals.isEmpty()) return "nothing";
+        final Interval last = intervals.get(intervals.size() - 1);
+        return last.getContig() + ":" + last.getEnd();
+    }
+}
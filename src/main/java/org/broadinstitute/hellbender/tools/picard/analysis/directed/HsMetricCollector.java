@@ -22,6 +22,15 @@ public final class HsMetricCollector extends TargetMetricsCollector<HsMetrics> {
         super(accumulationLevels, samRgRecords, refFile, perTargetCoverage, targetIntervals, probeIntervals, probeSetName);
     }
 
+    private HsMetricCollector(final HsMetricCollector prototype) {
+        super(prototype);
+    }
+
+    @Override
+    public HsMetricCollector makeEmptyCopy() {
+        return new HsMetricCollector(this);
+    }
+
     @Override
     public HsMetrics convertMetric(final TargetMetrics targetMetrics) {
         final HsMetrics hsMetrics = new HsMetrics();
@@ -20,10 +20,10 @@ import htsjdk.samtools.util.StringUtil;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.metrics.CombinableMultiLevelCollector;
 import org.broadinstitute.hellbender.metrics.MetricAccumulationLevel;
 import org.broadinstitute.hellbender.metrics.MultiLevelMetrics;
 import org.broadinstitute.hellbender.metrics.PerUnitMetricCollector;
-import org.broadinstitute.hellbender.metrics.SAMRecordMultiLevelCollector;
 
 import java.io.File;
 import java.io.IOException;
@@ -43,7 +43,7 @@ import java.util.*;
  *
  * @author Jonathan Burke
  */
-public abstract class TargetMetricsCollector<METRIC_TYPE extends MultiLevelMetrics> extends SAMRecordMultiLevelCollector<METRIC_TYPE, Integer> {
+public abstract class TargetMetricsCollector<METRIC_TYPE extends MultiLevelMetrics> extends CombinableMultiLevelCollector<METRIC_TYPE, Integer, SAMRecord> {
 
     // What is considered "near" to the bait
     private static final int NEAR_PROBE_DISTANCE = 250;
@@ -85,6 +85,10 @@ public abstract class TargetMetricsCollector<METRIC_TYPE extends MultiLevelMetri
     private final Map<Interval, Coverage> coverageByTargetForRead;
     private final Coverage [] cov;
 
+    //Kept to set up copies of this collector, see makeEmptyCopy
+    private final Set<MetricAccumulationLevel> accumulationLevels;
+    private final List<SAMReadGroupRecord> samRgRecords;
+
     //Converts a targetMetric into a more specific metric of METRIC_TYPE
     public abstract METRIC_TYPE convertMetric(final TargetMetrics targetMetrics);
 
@@ -156,6 +160,8 @@ public abstract class TargetMetricsCollector<METRIC_TYPE extends MultiLevelMetri
 
     public TargetMetricsCollector(final Set<MetricAccumulationLevel> accumulationLevels, final List<SAMReadGroupRecord> samRgRecords, final ReferenceSequenceFile refFile,
                                   final File perTargetCoverage, final IntervalList targetIntervals, final IntervalList probeIntervals, final String probeSetName) {
+        this.accumulationLevels = accumulationLevels;
+        this.samRgRecords = samRgRecords;
         this.perTargetCoverage = perTargetCoverage;
         this.probeSetName = probeSetName;
 
@@ -200,6 +206,47 @@ public abstract class TargetMetricsCollector<METRIC_TYPE extends MultiLevelMetri
         setup(accumulationLevels, samRgRecords);
     }
 
+    /**
+     * Makes an empty collector set up like the prototype, sharing its overlap detectors and per-target GC rather
+     * than computing them again.  Only the per-read scratch coverage is its own.
+     */
+    protected TargetMetricsCollector(final TargetMetricsCollector<METRIC_TYPE> prototype) {
+        this.accumulationLevels = prototype.accumulationLevels;
+        this.samRgRecords = prototype.samRgRecords;
+        this.perTargetCoverage = prototype.perTargetCoverage;
+        this.probeSetName = prototype.probeSetName;
+        this.allProbes = prototype.allProbes;
+        this.allTargets = prototype.allTargets;
+        this.probeDetector = prototype.probeDetector;
+        this.targetDetector = prototype.targetDetector;
+        this.probeTerritory = prototype.probeTerritory;
+        this.targetTerritory = prototype.targetTerritory;
+        this.genomeSize = prototype.genomeSize;
+        this.intervalToGc = prototype.intervalToGc;
+
+        int i = 0;
+        cov = new Coverage[prototype.cov.length];
+        this.coverageByTargetForRead = new LinkedHashMap<>(cov.length * 2, 0.5f);
+        for (final Interval target : prototype.coverageByTargetForRead.keySet()) {
+            final Coverage coverage = new Coverage(target, 0);
+            this.coverageByTargetForRead.put(target, coverage);
+            cov[i++] = coverage;
+        }
+
+        setup(accumulationLevels, samRgRecords);
+    }
+
+    /**
+     * Makes a collector of the same class with the same settings, that hasn't seen any records yet, to collect
+     * metrics for some of the records on a thread of its own before being combined into this one.
+     */
+    public abstract TargetMetricsCollector<METRIC_TYPE> makeEmptyCopy();
+
+    @Override
+    protected SAMRecord makeArg(final SAMRecord samRec, final ReferenceSequence refSeq) {
+        return samRec;
+    }
+
     @Override
     protected PerUnitMetricCollector<METRIC_TYPE, Integer, SAMRecord> makeChildCollector(final String sample, final String library, final String readGroup) {
         final PerUnitTargetMetricCollector collector =  new PerUnitTargetMetricCollector(probeSetName, coverageByTargetForRead.keySet(),
@@ -222,6 +269,12 @@ public abstract class TargetMetricsCollector<METRIC_TYPE extends MultiLevelMetri
         return collector;
     }
 
+    @Override
+    protected void combineUnits(final PerUnitMetricCollector<METRIC_TYPE, Integer, SAMRecord> target,
+                                final PerUnitMetricCollector<METRIC_TYPE, Integer, SAMRecord> source) {
+        ((PerUnitTargetMetricCollector) target).combine((PerUnitTargetMetricCollector) source);
+    }
+
     /**
      * Collect the Target Metrics for one unit of "accumulation" (i.e. for one sample, or for one library ...)
      */
@@ -371,6 +424,30 @@ public abstract class TargetMetricsCollector<METRIC_TYPE extends MultiLevelMetri
 
         }
 
+        /**
+         * Adds the counts and the per-target coverage collected by another collector for the same unit (on other
+         * records) to this one.  Must be called before {@link #finish}.
+         */
+        public void combine(final PerUnitTargetMetricCollector source) {
+            this.metrics.TOTAL_READS               += source.metrics.TOTAL_READS;
+            this.metrics.PF_READS                  += source.metrics.PF_READS;
+            this.metrics.PF_BASES                  += source.metrics.PF_BASES;
+            this.metrics.PF_UNIQUE_READS           += source.metrics.PF_UNIQUE_READS;
+            this.metrics.PF_SELECTED_PAIRS         += source.metrics.PF_SELECTED_PAIRS;
+            this.metrics.PF_SELECTED_UNIQUE_PAIRS  += source.metrics.PF_SELECTED_UNIQUE_PAIRS;
+            this.metrics.PF_UQ_READS_ALIGNED       += source.metrics.PF_UQ_READS_ALIGNED;
+            this.metrics.PF_UQ_BASES_ALIGNED       += source.metrics.PF_UQ_BASES_ALIGNED;
+            this.metrics.ON_PROBE_BASES            += source.metrics.ON_PROBE_BASES;
+            this.metrics.NEAR_PROBE_BASES          += source.metrics.NEAR_PROBE_BASES;
+            this.metrics.OFF_PROBE_BASES           += source.metrics.OFF_PROBE_BASES;
+            this.metrics.ON_TARGET_BASES           += source.metrics.ON_TARGET_BASES;
+            this.metrics.ON_TARGET_FROM_PAIR_BASES += source.metrics.ON_TARGET_FROM_PAIR_BASES;
+
+            for (final Map.Entry<Interval, Coverage> entry : source.coverageByTarget.entrySet()) {
+                this.coverageByTarget.get(entry.getKey()).add(entry.getValue());
+            }
+        }
+
         @Override
         public void finish() {
             metrics.PCT_PF_READS         = metrics.PF_READS / (double) metrics.TOTAL_READS;
@@ -575,6 +652,13 @@ public abstract class TargetMetricsCollector<METRIC_TYPE extends MultiLevelMetri
             }
         }
 
+        /** Adds the depths of another coverage object of the same size, capping them as addBase does. */
+        public void add(final Coverage other) {
+            for (int i = 0; i < this.depths.length; ++i) {
+                this.depths[i] = (short) Math.min(this.depths[i] + other.depths[i], Short.MAX_VALUE);
+            }
+        }
+
         /** Returns true if any base in the range has coverage of > 1 */
         public boolean hasCoverage() {
             for (final short s : depths) {
@@ -22,6 +22,15 @@ public final class TargetedPcrMetricsCollector extends TargetMetricsCollector<Ta
         super(accumulationLevels, samRgRecords, refFile, perTargetCoverage, targetIntervals, probeIntervals, probeSetName);
     }
 
+    private TargetedPcrMetricsCollector(final TargetedPcrMetricsCollector prototype) {
+        super(prototype);
+    }
+
+    @Override
+    public TargetedPcrMetricsCollector makeEmptyCopy() {
+        return new TargetedPcrMetricsCollector(this);
+    }
+
     @Override
     public TargetedPcrMetrics convertMetric(TargetMetrics targetMetrics) {
         final TargetedPcrMetrics pcrMetrics = new TargetedPcrMetrics();
@@ -17,6 +17,7 @@ import java.io.File;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -55,9 +56,18 @@ public final class MarkDuplicates extends AbstractMarkDuplicatesCommandLineProgr
     @Argument(doc = "Report Memory Stats at various times during the run")
     public boolean reportMemoryStats = false;
 
+    @Argument(doc = "If true, hold the read ends as packed records in large arrays instead of as objects, sort them " +
+            "with a radix sort, and match the mates with an open addressing hash table. The results are the same, but " +
+            "it is faster and uses less memory. The share of the memory set by SORTING_COLLECTION_SIZE_RATIO is split " +
+            "equally between the pair and fragment collections and the mate map, and each of them spills to disk once " +
+            "it outgrows its third.")
+    public boolean USE_PACKED_READ_ENDS = false;
 
-    private SortingCollection<ReadEndsForMarkDuplicates> pairSort;
-    private SortingCollection<ReadEndsForMarkDuplicates> fragSort;
+    @Argument(doc = "Number of threads to sort the read ends with. Only used with USE_PACKED_READ_ENDS.")
+    public int NUM_THREADS = 1;
+
+    private ReadEndsSorter pairSort;
+    private ReadEndsSorter fragSort;
     private SortingLongCollection duplicateIndexes;
     private int numDuplicateIndices = 0;
 
@@ -176,6 +186,14 @@ public final class MarkDuplicates extends AbstractMarkDuplicatesCommandLineProgr
         return null;
     }
 
+    @Override
+    protected String[] customCommandLineValidation() {
+        if (NUM_THREADS < 1) {
+            return new String[]{"NUM_THREADS must be at least 1."};
+        }
+        return super.customCommandLineValidation();
+    }
+
     @VisibleForTesting
     long numOpticalDuplicates() { return ((long) this.libraryIdGenerator.getOpticalDuplicatesByLibraryIdMap().getSumOfValues()); } // cast as long due to returning a double
 
@@ -195,24 +213,26 @@ public final class MarkDuplicates extends AbstractMarkDuplicatesCommandLineProgr
      * duplication, caching to disk as necessary to sort them.
      */
     private void buildSortedReadEndLists() {
-        final int maxInMemory = (int) ((Runtime.getRuntime().maxMemory() * SORTING_COLLECTION_SIZE_RATIO) / ReadEndsForMarkDuplicates.SIZE_OF);
-        logger.info("Will retain up to " + maxInMemory + " data points before spilling to disk.");
-
-        this.pairSort = SortingCollection.newInstance(ReadEndsForMarkDuplicates.class,
-                new ReadEndsForMarkDuplicatesCodec(),
-                new ReadEndsMDComparator(),
-                maxInMemory,
-                TMP_DIR);
-
-        this.fragSort = SortingCollection.newInstance(ReadEndsForMarkDuplicates.class,
-                new ReadEndsForMarkDuplicatesCodec(),
-                new ReadEndsMDComparator(),
-                maxInMemory,
-                TMP_DIR);
+        final ReadEndsForMarkDuplicatesMap tmp;
+        if (USE_PACKED_READ_ENDS) {
+            // one budget for the pair and fragment collections and the mate map together, so a third each
+            final double budget = Runtime.getRuntime().maxMemory() * SORTING_COLLECTION_SIZE_RATIO / 3;
+            final int maxInMemory = (int) Math.min(budget / PackedReadEndsCollection.SIZE_OF, Integer.MAX_VALUE);
+            logger.info("Will retain up to " + maxInMemory + " packed data points before spilling to disk.");
+            this.pairSort = new PackedReadEndsCollection(maxInMemory, NUM_THREADS, TMP_DIR);
+            this.fragSort = new PackedReadEndsCollection(maxInMemory, NUM_THREADS, TMP_DIR);
+            tmp = new PackedReadEndsMap((int) Math.min(budget / PackedReadEndsMap.SIZE_OF, Integer.MAX_VALUE),
+                    MAX_FILE_HANDLES_FOR_READ_ENDS_MAP);
+        } else {
+            final int maxInMemory = (int) ((Runtime.getRuntime().maxMemory() * SORTING_COLLECTION_SIZE_RATIO) / ReadEndsForMarkDuplicates.SIZE_OF);
+            logger.info("Will retain up to " + maxInMemory + " data points before spilling to disk.");
+            this.pairSort = newSortingCollection(maxInMemory);
+            this.fragSort = newSortingCollection(maxInMemory);
+            tmp = new DiskBasedReadEndsForMarkDuplicatesMap(MAX_FILE_HANDLES_FOR_READ_ENDS_MAP);
+        }
 
         try(final SamHeaderAndIterator headerAndIterator = openInputs()) {
             final SAMFileHeader header = headerAndIterator.header;
-            final ReadEndsForMarkDuplicatesMap tmp = new DiskBasedReadEndsForMarkDuplicatesMap(MAX_FILE_HANDLES_FOR_READ_ENDS_MAP);
             long index = 0;
             final ProgressLogger progress = new ProgressLogger(logger, (int) 1e6, "Read");
             final CloseableIterator<SAMRecord> iterator = headerAndIterator.iterator;
@@ -306,6 +326,29 @@ public final class MarkDuplicates extends AbstractMarkDuplicatesCommandLineProgr
         this.fragSort.doneAdding();
     }
 
+    /** Wraps a SortingCollection of read ends, which spills them to disk as objects, in a ReadEndsSorter. */
+    private ReadEndsSorter newSortingCollection(final int maxInMemory) {
+        final SortingCollection<ReadEndsForMarkDuplicates> collection = SortingCollection.newInstance(ReadEndsForMarkDuplicates.class,
+                new ReadEndsForMarkDuplicatesCodec(),
+                new ReadEndsMDComparator(),
+                maxInMemory,
+                TMP_DIR);
+
+        return new ReadEndsSorter() {
+            @Override
+            public void add(final ReadEndsForMarkDuplicates readEnds) { collection.add(readEnds); }
+
+            @Override
+            public void doneAdding() { collection.doneAdding(); }
+
+            @Override
+            public Iterator<ReadEndsForMarkDuplicates> iterator() { return collection.iterator(); }
+
+            @Override
+            public void cleanup() { collection.cleanup(); }
+        };
+    }
+
     /** Builds a read ends object that represents a single read. */
     private ReadEndsForMarkDuplicates buildReadEnds(final SAMFileHeader header, final long index, final SAMRecord rec) {
         final ReadEndsForMarkDuplicates ends = new ReadEndsForMarkDuplicates();
@@ -488,6 +531,20 @@ public final class MarkDuplicates extends AbstractMarkDuplicatesCommandLineProgr
         }
     }
 
+    /**
+     * The part of SortingCollection's interface that is used to sort the read ends, so that they can either be
+     * sorted as objects, or packed into arrays (see {@link PackedReadEndsCollection}).
+     */
+    interface ReadEndsSorter extends Iterable<ReadEndsForMarkDuplicates> {
+        void add(ReadEndsForMarkDuplicates readEnds);
+
+        /** Called once all the read ends have been added, before iterating over them in sorted order. */
+        void doneAdding();
+
+        /** Deletes any temporary files. */
+        void cleanup();
+    }
+
     /** Comparator for ReadEndsForMarkDuplicates that orders by read1 position then pair orientation then read2 position. */
     static class ReadEndsMDComparator implements Comparator<ReadEndsForMarkDuplicates>, Serializable {
         private static final long serialVersionUID = 1L;
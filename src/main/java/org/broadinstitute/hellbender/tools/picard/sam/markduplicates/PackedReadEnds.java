@@ -0,0 +1,99 @@
+package org.broadinstitute.hellbender.tools.picard.sam.markduplicates;
+
+import org.broadinstitute.hellbender.utils.read.markduplicates.ReadEndsForMarkDuplicates;
+
+/**
+ * Encodes ReadEndsForMarkDuplicates as fixed-width records of longs, so that large numbers of them can be held in a
+ * few big arrays instead of as objects.
+ *
+ * The first KEY_WIDTH longs of a record are its sort key: compared as unsigned numbers, they order the records by
+ * library, read1 position, orientation and read2 position, like {@link MarkDuplicates.ReadEndsMDComparator}.  They
+ * are followed by the indexes of the reads in the file, which break the remaining ties, then by the score and the
+ * information for optical duplicate detection.
+ */
+final class PackedReadEnds {
+    /** Number of longs in a record. */
+    static final int WIDTH = 7;
+
+    /** Number of longs at the start of a record that make up its sort key. */
+    static final int KEY_WIDTH = 3;
+
+    /** Number of bytes a record takes. */
+    static final int SIZE_OF = WIDTH * Long.BYTES;
+
+    private static final int READ1_INDEX = 3;
+    private static final int READ2_INDEX = 4;
+    private static final int SCORE_AND_TILE = 5;
+    private static final int LOCATION = 6;
+
+    // added to ints so that, as unsigned numbers, they sort in the same order as signed ones
+    private static final long INT_OFFSET = 1L << 31;
+
+    private PackedReadEnds() {}
+
+    /** Writes the read ends into the record starting at the given offset of the slab. */
+    static void encode( final ReadEndsForMarkDuplicates ends, final long[] slab, final int offset ) {
+        slab[offset] = ((long) (ends.libraryId - Short.MIN_VALUE) << 48) |
+                ((ends.read1ReferenceIndex + INT_OFFSET) << 16);
+        slab[offset + 1] = ((ends.read1Coordinate + INT_OFFSET) << 8) | (ends.orientation - Byte.MIN_VALUE);
+        slab[offset + 2] = ((ends.read2ReferenceIndex + INT_OFFSET) << 32) | (ends.read2Coordinate + INT_OFFSET);
+        slab[offset + READ1_INDEX] = ends.read1IndexInFile;
+        slab[offset + READ2_INDEX] = ends.read2IndexInFile;
+        slab[offset + SCORE_AND_TILE] = ((ends.score & 0xFFFFL) << 48) | ((ends.readGroup & 0xFFFFL) << 32) |
+                ((ends.tile & 0xFFFFL) << 16) | (ends.orientationForOpticalDuplicates & 0xFFL);
+        slab[offset + LOCATION] = ((ends.x & 0xFFFFL) << 16) | (ends.y & 0xFFFFL);
+    }
+
+    /** Makes a new read ends object out of the record starting at the given offset of the slab. */
+    static ReadEndsForMarkDuplicates decode( final long[] slab, final int offset ) {
+        final ReadEndsForMarkDuplicates ends = new ReadEndsForMarkDuplicates();
+        final long libraryAndRead1Reference = slab[offset];
+        final long read1CoordinateAndOrientation = slab[offset + 1];
+        final long read2Position = slab[offset + 2];
+        ends.libraryId = (short) ((libraryAndRead1Reference >>> 48) + Short.MIN_VALUE);
+        ends.read1ReferenceIndex = (int) (((libraryAndRead1Reference >>> 16) & 0xFFFFFFFFL) - INT_OFFSET);
+        ends.read1Coordinate = (int) ((read1CoordinateAndOrientation >>> 8) - INT_OFFSET);
+        ends.orientation = (byte) ((read1CoordinateAndOrientation & 0xFF) + Byte.MIN_VALUE);
+        ends.read2ReferenceIndex = (int) ((read2Position >>> 32) - INT_OFFSET);
+        ends.read2Coordinate = (int) ((read2Position & 0xFFFFFFFFL) - INT_OFFSET);
+        ends.read1IndexInFile = slab[offset + READ1_INDEX];
+        ends.read2IndexInFile = slab[offset + READ2_INDEX];
+
+        final long scoreAndTile = slab[offset + SCORE_AND_TILE];
+        ends.score = (short) (scoreAndTile >>> 48);
+        ends.readGroup = (short) (scoreAndTile >>> 32);
+        ends.tile = (short) (scoreAndTile >>> 16);
+        ends.orientationForOpticalDuplicates = (byte) scoreAndTile;
+
+        final long location = slab[offset + LOCATION];
+        ends.x = (short) (location >>> 16);
+        ends.y = (short) location;
+        return ends;
+    }
+
+    /** True if the two records have the same sort key, i.e. only their indexes in the file can tell them apart. */
+    static boolean sameKey( final long[] lhs, final int lhsOffset, final long[] rhs, final int rhsOffset ) {
+        for (int i = 0; i < KEY_WIDTH; i++) {
+            if (lhs[lhsOffset + i] != rhs[rhsOffset + i]) return false;
+        }
+        return true;
+    }
+
+    /** Compares two records in the order of ReadEndsMDComparator. */
+    static int compare( final long[] lhs, final int lhsOffset, final long[] rhs, final int rhsOffset ) {
+        for (int i = 0; i < KEY_WIDTH; i++) {
+            final int retval = Long.compareUnsigned(lhs[lhsOffset + i], rhs[rhsOffset + i]);
+            if (retval != 0) return retval;
+        }
+        return compareIndexes(lhs, lhsOffset, rhs, rhsOffset);
+    }
+
+    /**
+     * Compares two records by the indexes of their reads in the file.  Unlike ReadEndsMDComparator, which truncates
+     * the difference to an int, this is a total order even for files of more than 2^31 records.
+     */
+    static int compareIndexes( final long[] lhs, final int lhsOffset, final long[] rhs, final int rhsOffset ) {
+        final int retval = Long.compare(lhs[lhsOffset + READ1_INDEX], rhs[rhsOffset + READ1_INDEX]);
+        return retval != 0 ? retval : Long.compare(lhs[lhsOffset + READ2_INDEX], rhs[rhsOffset + READ2_INDEX]);
+    }
+}
@@ -0,0 +1,410 @@
+package org.broadinstitute.hellbender.tools.picard.sam.markduplicates;
+
+import htsjdk.samtools.util.IOUtil;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.markduplicates.ReadEndsForMarkDuplicates;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+import static org.broadinstitute.hellbender.tools.picard.sam.markduplicates.PackedReadEnds.KEY_WIDTH;
+import static org.broadinstitute.hellbender.tools.picard.sam.markduplicates.PackedReadEnds.WIDTH;
+
+/**
+ * A sorting collection of read ends that holds them as packed records (see {@link PackedReadEnds}) in one big array
+ * of longs rather than as objects, and sorts them with a radix sort split between threads.  The records only go to
+ * disk when there are more of them than the memory budget allows: each time the array fills up, it is sorted and
+ * written out as a run, and the runs are merged with what is left in memory when iterating.
+ *
+ * Like SortingCollection, the read ends are added, then doneAdding() is called, then they are iterated over once,
+ * in the order of {@link MarkDuplicates.ReadEndsMDComparator}, and finally cleanup() deletes the temporary files.
+ */
+final class PackedReadEndsCollection implements MarkDuplicates.ReadEndsSorter {
+    /** Number of bytes of memory a record takes, including its share of the buffers used by the sort. */
+    static final int SIZE_OF = 2 * PackedReadEnds.SIZE_OF + 2 * (Long.BYTES + Integer.BYTES);
+
+    // largest number of records that fit in a Java array
+    private static final int MAX_RECORDS_IN_ARRAY = (Integer.MAX_VALUE - 8) / WIDTH;
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+    private static final int DIGITS_PER_WORD = Long.SIZE / RADIX_BITS;
+
+    // below this many records per thread, the sort isn't worth splitting
+    private static final int MIN_RECORDS_PER_THREAD = 1 << 16;
+
+    private final int maxRecordsInRam;
+    private final int numThreads;
+    private final File[] tmpDirs;
+    private final List<File> runs = new ArrayList<>();
+
+    private long[] records = new long[0];
+    private long[] buffer = null;
+    private int size = 0;
+    private boolean doneAdding = false;
+    private ExecutorService executor = null;
+
+    /**
+     * @param maxRecordsInRam how many records to hold in memory before spilling them to disk
+     * @param numThreads how many threads to sort with
+     * @param tmpDirs where to write the runs that are spilled to disk
+     */
+    PackedReadEndsCollection( final int maxRecordsInRam, final int numThreads, final List<File> tmpDirs ) {
+        Utils.validateArg(numThreads >= 1, "there must be at least one thread");
+        Utils.validateArg(!tmpDirs.isEmpty(), "there must be at least one temporary directory");
+        this.maxRecordsInRam = Math.max(1, Math.min(maxRecordsInRam, MAX_RECORDS_IN_ARRAY));
+        this.numThreads = numThreads;
+        this.tmpDirs = tmpDirs.toArray(new File[tmpDirs.size()]);
+    }
+
+    @Override
+    public void add( final ReadEndsForMarkDuplicates readEnds ) {
+        if (doneAdding) throw new IllegalStateException("Cannot add read ends after doneAdding() has been called.");
+        if (size == maxRecordsInRam) spill();
+        if ((size + 1) * WIDTH > records.length) grow();
+        PackedReadEnds.encode(readEnds, records, size * WIDTH);
+        ++size;
+    }
+
+    /** Sorts the records that are in memory.  No more read ends can be added after this. */
+    @Override
+    public void doneAdding() {
+        if (doneAdding) return;
+        doneAdding = true;
+        try {
+            sort();
+        } finally {
+            buffer = null;
+            shutdownExecutor();
+        }
+    }
+
+    /** Iterates over all the read ends, in order.  Can only be called after doneAdding(). */
+    @Override
+    public Iterator<ReadEndsForMarkDuplicates> iterator() {
+        if (!doneAdding) throw new IllegalStateException("Cannot iterate over read ends before doneAdding() has been called.");
+        return runs.isEmpty() ? new InMemoryIterator() : new MergingIterator();
+    }
+
+    /** Deletes the runs spilled to disk, and lets go of the records in memory. */
+    @Override
+    public void cleanup() {
+        runs.forEach(File::delete);
+        runs.clear();
+        records = null;
+        buffer = null;
+        size = 0;
+        shutdownExecutor();
+    }
+
+    private void grow() {
+        final int capacity = (int) Math.min(maxRecordsInRam, Math.max(INITIAL_CAPACITY, 2L * records.length / WIDTH));
+        records = Arrays.copyOf(records, capacity * WIDTH);
+    }
+
+    /** Sorts the records in memory, and writes them to a new run on disk. */
+    private void spill() {
+        sort();
+        try {
+            final File run = IOUtil.newTempFile("readEnds.", ".tmp", tmpDirs, IOUtil.FIVE_GBS);
+            run.deleteOnExit();
+            runs.add(run);
+            try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), 1 << 16))) {
+                for (int i = 0; i < size * WIDTH; i++) {
+                    out.writeLong(records[i]);
+                }
+            }
+        } catch (final IOException e) {
+            throw new GATKException("Error spilling read ends to disk.", e);
+        }
+        size = 0;
+    }
+
+    /**
+     * Sorts the records in memory.  This is a least significant digit radix sort of the record numbers by their keys,
+     * one word of the key at a time, so that each pass only moves a key word and a record number rather than whole
+     * records; the passes are split between the threads.  The records are then moved into the sorted order, and
+     * each group of records with the same key is sorted by file index.
+     */
+    private void sort() {
+        if (size < 2) return;
+        if (buffer == null || buffer.length < size * WIDTH) buffer = new long[records.length];
+
+        final int chunks = Math.max(1, Math.min(numThreads, size / MIN_RECORDS_PER_THREAD));
+        final int[] chunkStarts = new int[chunks + 1];
+        for (int chunk = 0; chunk <= chunks; chunk++) {
+            chunkStarts[chunk] = (int) ((long) size * chunk / chunks);
+        }
+        final long[] varyingBits = findVaryingBits(chunks, chunkStarts);
+        // the number of keys with each digit in each chunk, which then become the offsets to move them to
+        final int[][] counts = new int[chunks][RADIX];
+
+        int[] order = new int[size];
+        int[] orderBuffer = new int[size];
+        long[] keys = new long[size];
+        long[] keysBuffer = new long[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+
+        for (int word = KEY_WIDTH - 1; word >= 0; word--) {
+            if (varyingBits[word] == 0) continue;
+            final long[] slab = records;
+            final int keyWord = word;
+            final int[] currentOrder = order;
+            final long[] currentKeys = keys;
+            forEachChunk(chunks, chunk -> {
+                for (int i = chunkStarts[chunk]; i < chunkStarts[chunk + 1]; i++) {
+                    currentKeys[i] = slab[currentOrder[i] * WIDTH + keyWord];
+                }
+            });
+
+            for (int digit = 0; digit < DIGITS_PER_WORD; digit++) {
+                final int shift = digit * RADIX_BITS;
+                // all the keys have the same digit, so there's nothing to move
+                if (((varyingBits[word] >>> shift) & (RADIX - 1)) == 0) continue;
+                final long[] fromKeys = keys;
+                final long[] toKeys = keysBuffer;
+                final int[] fromOrder = order;
+                final int[] toOrder = orderBuffer;
+
+                forEachChunk(chunks, chunk -> {
+                    final int[] chunkCounts = counts[chunk];
+                    Arrays.fill(chunkCounts, 0);
+                    for (int i = chunkStarts[chunk]; i < chunkStarts[chunk + 1]; i++) {
+                        ++chunkCounts[(int) (fromKeys[i] >>> shift) & (RADIX - 1)];
+                    }
+                });
+
+                countsToOffsets(counts);
+                forEachChunk(chunks, chunk -> {
+                    final int[] offsets = counts[chunk];
+                    for (int i = chunkStarts[chunk]; i < chunkStarts[chunk + 1]; i++) {
+                        final int to = offsets[(int) (fromKeys[i] >>> shift) & (RADIX - 1)]++;
+                        toKeys[to] = fromKeys[i];
+                        toOrder[to] = fromOrder[i];
+                    }
+                });
+                keys = toKeys;
+                keysBuffer = fromKeys;
+                order = toOrder;
+                orderBuffer = fromOrder;
+            }
+        }
+
+        final long[] from = records;
+        final long[] to = buffer;
+        final int[] sortedOrder = order;
+        forEachChunk(chunks, chunk -> {
+            for (int i = chunkStarts[chunk]; i < chunkStarts[chunk + 1]; i++) {
+                System.arraycopy(from, sortedOrder[i] * WIDTH, to, i * WIDTH, WIDTH);
+            }
+        });
+        records = to;
+        buffer = from;
+
+        int groupStart = 0;
+        for (int i = 1; i <= size; i++) {
+            if (i == size || !PackedReadEnds.sameKey(records, (i - 1) * WIDTH, records, i * WIDTH)) {
+                if (i - groupStart > 1) sortByIndexes(groupStart, i);
+                groupStart = i;
+            }
+        }
+    }
+
+    /**
+     * Finds which bits of each word of the keys are not the same in all the records, in one pass over them.  The
+     * passes of the sort over digits with none of those bits would not move anything, and are skipped.
+     */
+    private long[] findVaryingBits( final int chunks, final int[] chunkStarts ) {
+        // the bits of the key words that differ from those of the first record, in each chunk
+        final long[][] differences = new long[chunks][KEY_WIDTH];
+        final long[] slab = records;
+        forEachChunk(chunks, chunk -> {
+            final long[] chunkDifferences = differences[chunk];
+            for (int i = chunkStarts[chunk]; i < chunkStarts[chunk + 1]; i++) {
+                for (int word = 0; word < KEY_WIDTH; word++) {
+                    chunkDifferences[word] |= slab[i * WIDTH + word] ^ slab[word];
+                }
+            }
+        });
+
+        final long[] varyingBits = new long[KEY_WIDTH];
+        for (final long[] chunkDifferences : differences) {
+            for (int word = 0; word < KEY_WIDTH; word++) {
+                varyingBits[word] |= chunkDifferences[word];
+            }
+        }
+        return varyingBits;
+    }
+
+    /**
+     * Turns the counts of each digit in each chunk into the offset where the first record with that digit in that
+     * chunk goes.
+     */
+    private static void countsToOffsets( final int[][] counts ) {
+        int offset = 0;
+        for (int digit = 0; digit < RADIX; digit++) {
+            for (final int[] chunkCounts : counts) {
+                final int count = chunkCounts[digit];
+                chunkCounts[digit] = offset;
+                offset += count;
+            }
+        }
+    }
+
+    /**
+     * Sorts the records from start (inclusive) to end (exclusive), which all have the same key, by their indexes in
+     * the file.  They are usually in order already, since they are added in the order of the file.
+     */
+    private void sortByIndexes( final int start, final int end ) {
+        boolean sorted = true;
+        for (int i = start + 1; i < end && sorted; i++) {
+            sorted = PackedReadEnds.compareIndexes(records, (i - 1) * WIDTH, records, i * WIDTH) <= 0;
+        }
+        if (sorted) return;
+
+        final Integer[] order = new Integer[end - start];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = start + i;
+        }
+        final long[] slab = records;
+        Arrays.sort(order, (lhs, rhs) -> PackedReadEnds.compareIndexes(slab, lhs * WIDTH, slab, rhs * WIDTH));
+        for (int i = 0; i < order.length; i++) {
+            System.arraycopy(slab, order[i] * WIDTH, buffer, (start + i) * WIDTH, WIDTH);
+        }
+        System.arraycopy(buffer, start * WIDTH, slab, start * WIDTH, order.length * WIDTH);
+    }
+
+    /** Runs the task on each chunk, with the first chunk on the calling thread and the others on the executor. */
+    private void forEachChunk( final int chunks, final IntConsumer task ) {
+        if (chunks == 1) {
+            task.accept(0);
+            return;
+        }
+        if (executor == null) executor = Executors.newFixedThreadPool(numThreads - 1);
+
+        final List<Future<?>> futures = new ArrayList<>(chunks - 1);
+        for (int chunk = 1; chunk < chunks; chunk++) {
+            final int thisChunk = chunk;
+            futures.add(executor.submit(() -> task.accept(thisChunk)));
+        }
+        task.accept(0);
+        for (final Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (final ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                throw new GATKException("Problem sorting read ends", e.getCause());
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GATKException("Interrupted while sorting read ends", e);
+            }
+        }
+    }
+
+    private void shutdownExecutor() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /** Iterates over the records in memory, when nothing was spilled. */
+    private final class InMemoryIterator implements Iterator<ReadEndsForMarkDuplicates> {
+        private int next = 0;
+
+        @Override
+        public boolean hasNext() { return next < size; }
+
+        @Override
+        public ReadEndsForMarkDuplicates next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return PackedReadEnds.decode(records, next++ * WIDTH);
+        }
+    }
+
+    /** A position in a sorted sequence of records: either the records in memory, or a run on disk. */
+    private abstract static class Cursor {
+        final long[] record = new long[WIDTH];
+
+        /** Loads the next record, or returns false if there are none left. */
+        abstract boolean advance();
+    }
+
+    /** Iterates over the records in memory and in the runs on disk, merging them into one sequence. */
+    private final class MergingIterator implements Iterator<ReadEndsForMarkDuplicates> {
+        private final PriorityQueue<Cursor> queue = new PriorityQueue<>(runs.size() + 1,
+                (lhs, rhs) -> PackedReadEnds.compare(lhs.record, 0, rhs.record, 0));
+
+        MergingIterator() {
+            final List<Cursor> cursors = new ArrayList<>(runs.size() + 1);
+            for (final File run : runs) {
+                cursors.add(new RunCursor(run));
+            }
+            cursors.add(new Cursor() {
+                private int next = 0;
+
+                @Override
+                boolean advance() {
+                    if (next == size) return false;
+                    System.arraycopy(records, next++ * WIDTH, record, 0, WIDTH);
+                    return true;
+                }
+            });
+            for (final Cursor cursor : cursors) {
+                if (cursor.advance()) queue.add(cursor);
+            }
+        }
+
+        @Override
+        public boolean hasNext() { return !queue.isEmpty(); }
+
+        @Override
+        public ReadEndsForMarkDuplicates next() {
+            final Cursor cursor = queue.poll();
+            if (cursor == null) throw new NoSuchElementException();
+            final ReadEndsForMarkDuplicates readEnds = PackedReadEnds.decode(cursor.record, 0);
+            if (cursor.advance()) queue.add(cursor);
+            return readEnds;
+        }
+    }
+
+    /** Reads back a run spilled to disk, which always holds maxRecordsInRam records. */
+    private final class RunCursor extends Cursor {
+        private final DataInputStream in;
+        private int remaining = maxRecordsInRam;
+
+        RunCursor( final File run ) {
+            try {
+                in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), 1 << 16));
+            } catch (final IOException e) {
+                throw new GATKException("Error reading read ends spilled to disk.", e);
+            }
+        }
+
+        @Override
+        boolean advance() {
+            try {
+                if (remaining == 0) {
+                    in.close();
+                    return false;
+                }
+                --remaining;
+                for (int i = 0; i < WIDTH; i++) {
+                    record[i] = in.readLong();
+                }
+                return true;
+            } catch (final IOException e) {
+                throw new GATKException("Error reading read ends spilled to disk.", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.broadinstitute.hellbender.tools.picard.sam.markduplicates;
+
+import org.broadinstitute.hellbender.utils.read.markduplicates.DiskBasedReadEndsForMarkDuplicatesMap;
+import org.broadinstitute.hellbender.utils.read.markduplicates.ReadEndsForMarkDuplicates;
+import org.broadinstitute.hellbender.utils.read.markduplicates.ReadEndsForMarkDuplicatesMap;
+
+import static org.broadinstitute.hellbender.tools.picard.sam.markduplicates.PackedReadEnds.WIDTH;
+
+/**
+ * A ReadEndsForMarkDuplicatesMap that holds the read ends packed (see {@link PackedReadEnds}) in an open addressing
+ * hash table with linear probing, so that the only objects it keeps are the keys.  Once the table holds as many read
+ * ends as the memory budget allows, any more go to a {@link DiskBasedReadEndsForMarkDuplicatesMap}, so that only
+ * the overflow is spilled to disk.
+ */
+final class PackedReadEndsMap implements ReadEndsForMarkDuplicatesMap {
+    /**
+     * Rough number of bytes of memory an entry takes: two slots of the table (which is at most half full), and a
+     * typical key.
+     */
+    static final int SIZE_OF = 2 * (PackedReadEnds.SIZE_OF + 8) + 80;
+
+    // the table is kept at most half full, and its slots must fit in a Java array
+    private static final int MAX_CAPACITY = 1 << 28;
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private final int maxRecordsInRam;
+    private final int maxOpenFiles;
+
+    private String[] keys = new String[INITIAL_CAPACITY];
+    private long[] values = new long[INITIAL_CAPACITY * WIDTH];
+    private int size = 0;
+    private ReadEndsForMarkDuplicatesMap overflow = null;
+
+    /**
+     * @param maxRecordsInRam how many read ends to hold in the table before spilling them to disk
+     * @param maxOpenFiles maximum number of file handles to keep open when spilling read ends to disk
+     */
+    PackedReadEndsMap( final int maxRecordsInRam, final int maxOpenFiles ) {
+        this.maxRecordsInRam = Math.max(1, Math.min(maxRecordsInRam, MAX_CAPACITY / 2));
+        this.maxOpenFiles = maxOpenFiles;
+    }
+
+    /** Looks for the key in the table first, then in the overflow on disk, if any.  */
+    @Override
+    public ReadEndsForMarkDuplicates remove( final int mateSequenceIndex, final String key ) {
+        final int mask = keys.length - 1;
+        for (int slot = home(key, mask); keys[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot].equals(key)) {
+                final ReadEndsForMarkDuplicates readEnds = PackedReadEnds.decode(values, slot * WIDTH);
+                delete(slot);
+                return readEnds;
+            }
+        }
+        return overflow == null ? null : overflow.remove(mateSequenceIndex, key);
+    }
+
+    @Override
+    public void put( final int mateSequenceIndex, final String key, final ReadEndsForMarkDuplicates readEnds ) {
+        if (size == maxRecordsInRam) {
+            if (overflow == null) overflow = new DiskBasedReadEndsForMarkDuplicatesMap(maxOpenFiles);
+            overflow.put(mateSequenceIndex, key, readEnds);
+            return;
+        }
+        if (2 * (size + 1) > keys.length) grow();
+
+        final int mask = keys.length - 1;
+        int slot = home(key, mask);
+        while (keys[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        PackedReadEnds.encode(readEnds, values, slot * WIDTH);
+        ++size;
+    }
+
+    @Override
+    public int size() {
+        return overflow == null ? size : size + overflow.size();
+    }
+
+    @Override
+    public int sizeInRam() {
+        return overflow == null ? size : size + overflow.sizeInRam();
+    }
+
+    /** The slot where the probe for the key starts. */
+    private static int home( final String key, final int mask ) {
+        // spread the bits, since String hash codes of similar keys differ mostly in their low bits
+        final int hash = key.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private void grow() {
+        final String[] oldKeys = keys;
+        final long[] oldValues = values;
+        keys = new String[oldKeys.length * 2];
+        values = new long[keys.length * WIDTH];
+
+        final int mask = keys.length - 1;
+        for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+            if (oldKeys[oldSlot] == null) continue;
+            int slot = home(oldKeys[oldSlot], mask);
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[oldSlot];
+            System.arraycopy(oldValues, oldSlot * WIDTH, values, slot * WIDTH, WIDTH);
+        }
+    }
+
+    /**
+     * Empties the slot, and then moves back the entries after it in its cluster that would no longer be found
+     * (because their probe starts at or before the hole), so that no tombstones are needed.
+     */
+    private void delete( final int slot ) {
+        final int mask = keys.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next] != null; next = (next + 1) & mask) {
+            final int home = home(keys[next], mask);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                System.arraycopy(values, next * WIDTH, values, hole * WIDTH, WIDTH);
+                hole = next;
+            }
+        }
+        keys[hole] = null;
+        --size;
+    }
+}
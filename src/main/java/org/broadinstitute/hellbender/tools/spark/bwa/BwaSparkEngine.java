@@ -3,33 +3,26 @@ package org.broadinstitute.hellbender.tools.spark.bwa;
 import com.github.lindenb.jbwa.jni.BwaIndex;
 import com.github.lindenb.jbwa.jni.BwaMem;
 import com.github.lindenb.jbwa.jni.ShortRead;
-import com.google.common.base.Stopwatch;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.UnmodifiableIterator;
 import htsjdk.samtools.*;
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
+import org.apache.spark.TaskContext;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.apache.spark.broadcast.Broadcast;
+import org.apache.spark.util.TaskCompletionListener;
 import org.broadinstitute.hellbender.exceptions.GATKException;
 import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.Utils;
-import org.broadinstitute.hellbender.utils.bwa.BWANativeLibrary;
-import org.broadinstitute.hellbender.utils.gcs.BucketUtils;
-import org.broadinstitute.hellbender.utils.io.IOUtils;
+import org.broadinstitute.hellbender.utils.bwa.BwaIndexManager;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.read.SAMRecordToGATKReadAdapter;
 import org.seqdoop.hadoop_bam.BAMInputFormat;
 import scala.Tuple2;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 
 /**
  * A reusable core functionality of running BWA on Spark.
@@ -42,8 +35,6 @@ import java.util.concurrent.TimeUnit;
  */
 public final class BwaSparkEngine implements Serializable{
 
-    private static final Logger log = LogManager.getLogger(BwaSparkEngine.class);
-
     private static final long serialVersionUID = 1L;
     private final int numThreads;
     private final int fixedChunkSize;
@@ -102,38 +93,22 @@ public final class BwaSparkEngine implements Serializable{
 
     private JavaRDD<String> align(final JavaRDD<Tuple2<ShortRead, ShortRead>> shortReadPairs) {
         return shortReadPairs.mapPartitions(iter -> () -> {
-            BWANativeLibrary.load();
-
-            try {
-                final File localRef = BucketUtils.isHadoopUrl(referenceFileName) ? localizeReferenceAndBwaIndexFiles(referenceFileName) : new File(referenceFileName);
-                final BwaIndex index = new BwaIndex(localRef);
-                final BwaMem mem = new BwaMem(index);
-                return Utils.concatIterators(alignChunks(mem, iter));
-            } catch (final IOException e) {
-                throw new GATKException("Cannot run BWA-MEM", e);
-            }
+            // the index is loaded once per executor, and shared by all its tasks
+            final BwaIndex index = BwaIndexManager.acquire(referenceFileName);
+            final BwaMem mem = new BwaMem(index);
+            // release the index when the task completes, rather than when the alignments run out, so that it's
+            // released even if the task fails or the alignments aren't all consumed
+            TaskContext.get().addTaskCompletionListener(new TaskCompletionListener() {
+                @Override
+                public void onTaskCompletion(final TaskContext context) {
+                    mem.dispose();
+                    BwaIndexManager.release(referenceFileName);
+                }
+            });
+            return Utils.concatIterators(alignChunks(mem, iter));
         });
     }
 
-
-    public static File localizeReferenceAndBwaIndexFiles(final String referenceFilename) throws IOException {
-        final Stopwatch downloadRefStopwatch = Stopwatch.createStarted();
-        final File localRef = File.createTempFile("referenceFileName", ".fa");
-        if (!localRef.delete()) {
-            throw new IOException("Cannot delete temporary file for reference: " + localRef);
-        }
-        final Path localPath = localRef.toPath();
-        final Path remotePath = IOUtils.getPath(referenceFilename);
-        Files.copy(remotePath, localPath);
-        for (final String extension : new String[] { ".amb", ".ann", ".bwt", ".pac", ".sa" }) {
-            Files.copy(remotePath.resolveSibling(remotePath.getFileName() + extension),
-                    localPath.resolveSibling(localPath.getFileName() + extension));
-        }
-        downloadRefStopwatch.stop();
-        log.info("Time to download reference: " + downloadRefStopwatch.elapsed(TimeUnit.SECONDS) + "s");
-        return localRef;
-    }
-
     /**
      * Aligns a collection ("chunk") of read pairs against the reference using BWA-MEM. Alignment is done in parallel
      * using a thread pool.
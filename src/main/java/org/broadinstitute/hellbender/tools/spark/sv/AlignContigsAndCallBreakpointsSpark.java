@@ -1,5 +1,6 @@
 package org.broadinstitute.hellbender.tools.spark.sv;
 
+import org.apache.commons.io.FilenameUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.spark.api.java.JavaPairRDD;
@@ -42,6 +43,14 @@ public class AlignContigsAndCallBreakpointsSpark extends GATKSparkTool {
             fullName = "inputFile", optional = false)
     private String input;
 
+    @Argument(doc = "Treat the input as a directory of FASTQ files, one per breakpoint (as written by " +
+                    "FindBreakpointEvidenceSpark), and assemble them in-process rather than reading assembled contigs.",
+            shortName = "assemble", fullName = "assembleFastqs", optional = true)
+    private boolean assembleFastqs = false;
+
+    /** the FASTQ files written by FindBreakpointEvidenceSpark are named assembly<breakpointId>.fastq */
+    private static final String FASTQ_FILE_PREFIX = "assembly";
+
     private static final Logger log = LogManager.getLogger(AlignContigsAndCallBreakpointsSpark.class);
 
     @Override
@@ -52,21 +61,21 @@ public class AlignContigsAndCallBreakpointsSpark extends GATKSparkTool {
     @Override
     protected void runTool(final JavaSparkContext ctx) {
 
-        final JavaRDD<String> inputAssemblies = ctx.textFile(input).cache();
-
-        final long numInputPartitions = inputAssemblies.count();
-
-        final int numPartitions = Math.max(ctx.defaultParallelism (), (int) Math.ceil((double) numInputPartitions / (double) NUM_ASSEMBLIES_PER_PARTITION));
-        final JavaPairRDD<String, String> contigCollectionByBreakpointId =
-                inputAssemblies
-                        .flatMapToPair(RunSGAViaProcessBuilderOnSpark::splitAssemblyLine)
-                        .coalesce(numPartitions);
-
         final JavaPairRDD<String, ContigsCollection> breakpointIdsToContigsCollection =
-                contigCollectionByBreakpointId.mapValues(ContigsCollection::fromPackedFasta);
-        final String referenceFileName = referenceArguments.getReferenceFileName();
+                assembleFastqs ? assembleFastqs(ctx, input) : loadContigs(ctx, input);
+        final JavaPairRDD<String, AssembledBreakpoint> assembledBreakpoints =
+                alignAssemblies(breakpointIdsToContigsCollection, referenceArguments.getReferenceFileName());
+        assembledBreakpoints.saveAsTextFile(output);
+    }
 
-        final JavaPairRDD<String, AssembledBreakpoint> assembledBreakpoints = breakpointIdsToContigsCollection.mapPartitionsToPair(iter -> {
+    /**
+     * Align the contigs of each breakpoint's assembly to the reference, and call breakpoints from the alignments.
+     * Each partition loads the BWA index once, so the input shouldn't be over-partitioned.
+     */
+    static JavaPairRDD<String, AssembledBreakpoint> alignAssemblies(
+            final JavaPairRDD<String, ContigsCollection> breakpointIdsToContigsCollection,
+            final String referenceFileName) {
+        return breakpointIdsToContigsCollection.mapPartitionsToPair(iter -> {
             try {
                 try (final ContigAligner contigAligner = new ContigAligner(referenceFileName)) {
                     final List<Tuple2<String, AssembledBreakpoint>> results = new ArrayList<>(NUM_ASSEMBLIES_PER_PARTITION * EXPECTED_BREAKPOINTS_PER_ASSEMBLY);
@@ -81,7 +90,37 @@ public class AlignContigsAndCallBreakpointsSpark extends GATKSparkTool {
             }
 
         });
-        assembledBreakpoints.saveAsTextFile(output);
+    }
+
+    /** Read the packed FASTA lines for each breakpoint, as written by RunSGAViaProcessBuilderOnSpark. */
+    private static JavaPairRDD<String, ContigsCollection> loadContigs(final JavaSparkContext ctx, final String input) {
+        final JavaRDD<String> inputAssemblies = ctx.textFile(input).cache();
+
+        final long numInputPartitions = inputAssemblies.count();
+
+        final int numPartitions = Math.max(ctx.defaultParallelism (), (int) Math.ceil((double) numInputPartitions / (double) NUM_ASSEMBLIES_PER_PARTITION));
+        final JavaPairRDD<String, String> contigCollectionByBreakpointId =
+                inputAssemblies
+                        .flatMapToPair(RunSGAViaProcessBuilderOnSpark::splitAssemblyLine)
+                        .coalesce(numPartitions);
+
+        return contigCollectionByBreakpointId.mapValues(ContigsCollection::fromPackedFasta);
+    }
+
+    /**
+     * Assemble the reads in each breakpoint's FASTQ file with {@link SVDeBruijnAssembler}.
+     * The contigs go straight on to alignment: there's no external process, and nothing is written to disk.
+     */
+    private static JavaPairRDD<String, ContigsCollection> assembleFastqs(final JavaSparkContext ctx, final String fastqDir) {
+        // wholeTextFiles packs many small files into each partition, so we don't over-partition the alignment
+        return ctx.wholeTextFiles(fastqDir)
+                .mapToPair(pathAndContents -> new Tuple2<>(breakpointIdFromFastqPath(pathAndContents._1()),
+                                                           new SVDeBruijnAssembler().assembleFastq(pathAndContents._2())))
+                .filter(idAndContigs -> !idAndContigs._2().getContents().isEmpty());
+    }
+
+    static String breakpointIdFromFastqPath(final String fastqPath) {
+        return FilenameUtils.getBaseName(fastqPath).replace(FASTQ_FILE_PREFIX, "");
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,137 @@
+package org.broadinstitute.hellbender.tools.spark.sv;
+
+import com.esotericsoftware.kryo.DefaultSerializer;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import org.broadinstitute.hellbender.utils.Utils;
+
+/**
+ * A blocked Bloom filter:  a compact, approximate set that can say that a key is definitely absent, or that it might
+ * be present.  It's meant to be broadcast alongside one of the big exact lookup tables and checked first, so that the
+ * typical probe (a miss) never touches the table.
+ *
+ * All the bits for a key are set in a single 512-bit block (one cache line), so each test costs one cache miss,
+ * at the price of a slightly higher false-positive rate than a classic Bloom filter of the same size.
+ * Keys are supplied as 64-bit hashes; there are convenience methods for SVKmers (as raw (valHigh, valLow) pairs) and
+ * for strings (like template names).
+ */
+@DefaultSerializer(BlockedBloomFilter.Serializer.class)
+public final class BlockedBloomFilter {
+    public static final int DEFAULT_BITS_PER_ENTRY = 10;
+    private static final int BLOCK_BITS = 512;
+    private static final int LONGS_PER_BLOCK = BLOCK_BITS / Long.SIZE;
+    private static final int BITS_PER_PROBE = 9; // log2(BLOCK_BITS)
+    private static final int PROBE_MASK = BLOCK_BITS - 1;
+    private static final int N_PROBES = 7; // 7 probes x 9 bits each fit in one 64-bit hash
+    private static final int MAX_BLOCKS = Integer.MAX_VALUE / LONGS_PER_BLOCK;
+
+    private final long[] bits;
+    private final int nBlocks;
+
+    public BlockedBloomFilter( final long expectedEntries ) { this(expectedEntries, DEFAULT_BITS_PER_ENTRY); }
+
+    public BlockedBloomFilter( final long expectedEntries, final int bitsPerEntry ) {
+        Utils.validateArg(expectedEntries >= 0, "expected entries can't be negative");
+        Utils.validateArg(bitsPerEntry > 0, "bits per entry must be positive");
+        final long nBlocksNeeded = Math.max(1L, (expectedEntries * bitsPerEntry + BLOCK_BITS - 1) / BLOCK_BITS);
+        if ( nBlocksNeeded > MAX_BLOCKS ) throw new IllegalStateException("Bloom filter is too big.");
+        nBlocks = (int)nBlocksNeeded;
+        bits = new long[nBlocks * LONGS_PER_BLOCK];
+    }
+
+    private BlockedBloomFilter( final Kryo kryo, final Input input ) {
+        nBlocks = input.readInt();
+        bits = input.readLongs(nBlocks * LONGS_PER_BLOCK);
+    }
+
+    private void serialize( final Kryo kryo, final Output output ) {
+        output.writeInt(nBlocks);
+        output.writeLongs(bits);
+    }
+
+    public void add( final long hash ) {
+        final int blockStart = blockStart(hash);
+        long probeBits = probeBits(hash);
+        for ( int probe = 0; probe != N_PROBES; ++probe ) {
+            final int bit = (int)probeBits & PROBE_MASK;
+            bits[blockStart + (bit >>> 6)] |= 1L << bit;
+            probeBits >>>= BITS_PER_PROBE;
+        }
+    }
+
+    /** False means the key was never added.  True means it probably was. */
+    public boolean mightContain( final long hash ) {
+        final int blockStart = blockStart(hash);
+        long probeBits = probeBits(hash);
+        for ( int probe = 0; probe != N_PROBES; ++probe ) {
+            final int bit = (int)probeBits & PROBE_MASK;
+            if ( (bits[blockStart + (bit >>> 6)] & (1L << bit)) == 0L ) return false;
+            probeBits >>>= BITS_PER_PROBE;
+        }
+        return true;
+    }
+
+    public void add( final long valHigh, final long valLow ) { add(hashKmer(valHigh, valLow)); }
+    public boolean mightContain( final long valHigh, final long valLow ) {
+        return mightContain(hashKmer(valHigh, valLow));
+    }
+
+    public void add( final SVKmer kmer ) { add(kmer.getValHigh(), kmer.getValLow()); }
+    public boolean mightContain( final SVKmer kmer ) { return mightContain(kmer.getValHigh(), kmer.getValLow()); }
+
+    public void add( final CharSequence str ) { add(hashString(str)); }
+    public boolean mightContain( final CharSequence str ) { return mightContain(hashString(str)); }
+
+    /** size of the bit array */
+    public long getNBytes() { return (long)bits.length * Long.BYTES; }
+
+    /**
+     * The chance that a key that was never added tests positive, estimated from the fill of each block
+     * (the average over blocks of the fraction of bits set, raised to the number of probes).
+     */
+    public double getEstimatedFalsePositiveRate() {
+        double sum = 0.;
+        for ( int blockStart = 0; blockStart != bits.length; blockStart += LONGS_PER_BLOCK ) {
+            int nBitsSet = 0;
+            for ( int idx = blockStart; idx != blockStart + LONGS_PER_BLOCK; ++idx ) {
+                nBitsSet += Long.bitCount(bits[idx]);
+            }
+            sum += Math.pow((double)nBitsSet / BLOCK_BITS, N_PROBES);
+        }
+        return sum / nBlocks;
+    }
+
+    /** the block is chosen from the high half of the hash by multiply-shift, which avoids a modulus */
+    private int blockStart( final long hash ) {
+        return (int)(((hash >>> 32) * nBlocks) >>> 32) * LONGS_PER_BLOCK;
+    }
+
+    /** the bits within the block come from the whole hash, scrambled so they're independent of the block choice */
+    private static long probeBits( final long hash ) { return hash * 0x9E3779B97F4A7C15L; }
+
+    public static long hashKmer( final long valHigh, final long valLow ) { return PackedSVKmerSet.hash64(valHigh, valLow); }
+
+    /** 64-bit FNV-1a over the characters, followed by the murmur3 64-bit finalizer */
+    public static long hashString( final CharSequence str ) {
+        long hash = 0xcbf29ce484222325L;
+        final int len = str.length();
+        for ( int idx = 0; idx != len; ++idx ) {
+            hash ^= str.charAt(idx);
+            hash *= 0x100000001b3L;
+        }
+        return PackedSVKmerSet.fmix64(hash);
+    }
+
+    public static final class Serializer extends com.esotericsoftware.kryo.Serializer<BlockedBloomFilter> {
+        @Override
+        public void write( final Kryo kryo, final Output output, final BlockedBloomFilter filter ) {
+            filter.serialize(kryo, output);
+        }
+
+        @Override
+        public BlockedBloomFilter read( final Kryo kryo, final Input input, final Class<BlockedBloomFilter> klass ) {
+            return new BlockedBloomFilter(kryo, input);
+        }
+    }
+}
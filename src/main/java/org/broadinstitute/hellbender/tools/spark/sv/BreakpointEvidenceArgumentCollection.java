@@ -0,0 +1,139 @@
+package org.broadinstitute.hellbender.tools.spark.sv;
+
+import org.broadinstitute.hellbender.cmdline.Argument;
+import org.broadinstitute.hellbender.cmdline.ArgumentCollectionDefinition;
+
+/**
+ * The parameters and the optional intermediate output locations for finding breakpoint evidence, and for gathering
+ * the reads to assemble for each putative breakpoint.
+ * Shared by {@link FindBreakpointEvidenceSpark} and {@link StructuralVariationDiscoveryPipelineSpark}.
+ */
+public final class BreakpointEvidenceArgumentCollection implements ArgumentCollectionDefinition {
+    private static final long serialVersionUID = 1L;
+
+    @Argument(doc = "Kmer size.", fullName = "kSize")
+    public int kSize = FindBreakpointEvidenceSpark.defaultParams.kSize;
+
+    @Argument(doc = "Minimum kmer entropy", fullName = "kmerEntropy")
+    public double minEntropy = FindBreakpointEvidenceSpark.defaultParams.minEntropy;
+
+    @Argument(doc = "The minimum mapping quality for reads used to gather evidence of breakpoints.",
+            fullName = "minEvidenceMapQ", optional = true)
+    public int minEvidenceMapQ = FindBreakpointEvidenceSpark.defaultParams.minEvidenceMapQ;
+
+    @Argument(doc = "The minimum length of the matched portion of an interesting alignment.  "+
+            "Reads that don't match at least this many reference bases won't be used in gathering evidence.",
+            fullName = "minEvidenceMatchLength", optional = true)
+    public int minEvidenceMatchLength = FindBreakpointEvidenceSpark.defaultParams.minEvidenceMatchLength;
+
+    @Argument(doc = "Intervals with more than this much coverage are filtered out, because the reads mapped to "+
+            "that interval are clearly not exclusively local to the interval.", fullName = "maxIntervalCoverage")
+    public int maxIntervalCoverage = FindBreakpointEvidenceSpark.defaultParams.maxIntervalCoverage;
+
+    @Argument(doc = "Minimum number of reads in cluster to declare an interval of interest.",
+            fullName = "minEvidenceCount")
+    public int minEvidenceCount = FindBreakpointEvidenceSpark.defaultParams.minEvidenceCount;
+
+    @Argument(doc = "Guess for the total number of kmers in one partition of the input file.",
+            fullName = "totalKmersPerPartitionGuess")
+    public int totalKmersPerPartitionGuess = FindBreakpointEvidenceSpark.defaultParams.totalKmersPerPartitionGuess;
+
+    @Argument(doc = "Minimum count of kmer within reads partition to be considered in finding high frequency kmers.",
+            fullName = "minKmerCountWithinPartition")
+    public int minKmerCountWithinPartition = FindBreakpointEvidenceSpark.defaultParams.minKmerCountWithinPartition;
+
+    @Argument(doc = "Unique error-free kmers per partition", fullName = "uniqueErrorFreeKmersPerPartition")
+    public int uniqueErrorFreeKmersPerPartitionGuess = FindBreakpointEvidenceSpark.defaultParams.uniqueErrorFreeKmersPerPartitionGuess;
+
+    @Argument(doc = "Count for kmer to be considered high frequency.", fullName = "minHighFrequencyKmerCount")
+    public int minHighFrequencyKmerCount = FindBreakpointEvidenceSpark.defaultParams.minHighFrequencyKmerCount;
+
+    @Argument(doc = "KmerCleaner maximum number of intervals for a localizing kmer.", fullName = "cleanerMaxIntervals")
+    public int cleanerMaxIntervals = FindBreakpointEvidenceSpark.defaultParams.cleanerMaxIntervals;
+
+    @Argument(doc = "KmerCleaner minimum kmer count.", fullName = "cleanerMinKmerCount")
+    public int cleanerMinKmerCount = FindBreakpointEvidenceSpark.defaultParams.cleanerMinKmerCount;
+
+    @Argument(doc = "KmerCleaner maximum kmer count.", fullName = "cleanerMaxKmerCount")
+    public int cleanerMaxKmerCount = FindBreakpointEvidenceSpark.defaultParams.cleanerMaxKmerCount;
+
+    @Argument(doc = "KmerCleaner unique error-free kmers per partition", fullName = "cleanerKmersPerPartitionGuess")
+    public int cleanerKmersPerPartitionGuess = FindBreakpointEvidenceSpark.defaultParams.cleanerKmersPerPartitionGuess;
+
+    @Argument(doc = "Guess at the ratio of reads in the final assembly to the number reads mapped to the interval.",
+            fullName = "assemblyToMappedSizeRatioGuess")
+    public int assemblyToMappedSizeRatioGuess = FindBreakpointEvidenceSpark.defaultParams.assemblyToMappedSizeRatioGuess;
+
+    @Argument(doc = "Maximum FASTQ file size.", fullName = "maxFASTQSize")
+    public int maxFASTQSize = FindBreakpointEvidenceSpark.defaultParams.maxFASTQSize;
+
+    @Argument(doc = "Exclusion interval padding.", fullName = "exclusionIntervalPadding")
+    public int exclusionIntervalPadding = FindBreakpointEvidenceSpark.defaultParams.exclusionIntervalPadding;
+
+    @Argument(doc = "Include read mapping location in FASTQ files.", fullName = "includeMappingLocation")
+    public boolean includeMappingLocation = true;
+
+    @Argument(doc = "Repartition the reads by sampled coverage before gathering evidence, so that high-coverage "+
+            "regions are spread over several partitions rather than creating straggler tasks.",
+            fullName = "balancePartitionsByCoverage", optional = true)
+    public boolean balancePartitionsByCoverage = false;
+
+    @Argument(doc = "Cache a compact, serialized projection of the reads holding just what the evidence passes need, "+
+            "so that the reads are read and decoded only once rather than once per pass.",
+            fullName = "cacheReadProjection", optional = true)
+    public boolean cacheReadProjection = false;
+
+    // --------- locations ----------
+
+    @Argument(doc = "file for read metadata", fullName = "readMetadata", optional = true)
+    public String metadataFile;
+
+    @Argument(doc = "directory for evidence output", fullName = "breakpointEvidenceDir", optional = true)
+    public String evidenceDir;
+
+    @Argument(doc = "file for breakpoint intervals output", fullName = "breakpointIntervals", optional = true)
+    public String intervalFile;
+
+    @Argument(doc = "file for mapped qname intervals output", fullName = "qnameIntervalsMapped", optional = true)
+    public String qNamesMappedFile;
+
+    @Argument(doc = "file for high frequency kmers output", fullName = "highFrequencyKmers", optional = true)
+    public String highFrequencyKmersFile;
+
+    @Argument(doc = "file for kmer intervals output", fullName = "kmerIntervals", optional = true)
+    public String kmerFile;
+
+    @Argument(doc = "file for mapped qname intervals output", fullName = "qnameIntervalsForAssembly", optional = true)
+    public String qNamesAssemblyFile;
+
+    /**
+     * This is a file that calls out the coordinates of intervals in the reference assembly to exclude from
+     * consideration when calling putative breakpoints.
+     * Each line is a tab-delimited interval with 1-based inclusive coordinates like this:
+     *  chr1	124535434	142535434
+     */
+    @Argument(doc = "file of reference intervals to exclude", fullName = "exclusionIntervals", optional = true)
+    public String exclusionIntervalsFile;
+
+    /**
+     * This is a path to a file of kmers that appear too frequently in the reference to be usable as probes to localize
+     * reads.  We don't calculate it here, because it depends only on the reference.
+     * The program FindBadGenomicKmersSpark can produce such a list for you.
+     */
+    @Argument(doc = "file containing ubiquitous kmer list. see FindBadGenomicKmersSpark to generate it.",
+            fullName = "kmersToIgnore")
+    public String kmersToIgnoreFile;
+
+    FindBreakpointEvidenceSpark.Params getParams() {
+        return new FindBreakpointEvidenceSpark.Params(kSize, minEntropy, minEvidenceMapQ, minEvidenceMatchLength,
+                maxIntervalCoverage, minEvidenceCount, totalKmersPerPartitionGuess, minKmerCountWithinPartition,
+                uniqueErrorFreeKmersPerPartitionGuess, minHighFrequencyKmerCount,
+                cleanerMaxIntervals, cleanerMinKmerCount, cleanerMaxKmerCount, cleanerKmersPerPartitionGuess,
+                assemblyToMappedSizeRatioGuess, maxFASTQSize, exclusionIntervalPadding);
+    }
+
+    FindBreakpointEvidenceSpark.Locations getLocations() {
+        return new FindBreakpointEvidenceSpark.Locations(metadataFile, evidenceDir, intervalFile, qNamesMappedFile,
+                highFrequencyKmersFile, kmerFile, qNamesAssemblyFile, exclusionIntervalsFile);
+    }
+}
@@ -1,7 +1,6 @@
 package org.broadinstitute.hellbender.tools.spark.sv;
 
 import com.github.lindenb.jbwa.jni.AlnRgn;
-import com.github.lindenb.jbwa.jni.BwaIndex;
 import com.github.lindenb.jbwa.jni.BwaMem;
 import com.github.lindenb.jbwa.jni.ShortRead;
 import htsjdk.samtools.Cigar;
@@ -10,15 +9,12 @@ import htsjdk.samtools.TextCigarCodec;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.broadinstitute.hellbender.exceptions.GATKException;
-import org.broadinstitute.hellbender.tools.spark.bwa.BwaSparkEngine;
 import org.broadinstitute.hellbender.utils.SimpleInterval;
-import org.broadinstitute.hellbender.utils.bwa.BWANativeLibrary;
-import org.broadinstitute.hellbender.utils.gcs.BucketUtils;
+import org.broadinstitute.hellbender.utils.bwa.BwaIndexManager;
 import org.broadinstitute.hellbender.utils.read.CigarUtils;
 import scala.Tuple2;
 
 import java.io.Closeable;
-import java.io.File;
 import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collector;
@@ -30,27 +26,17 @@ import static org.broadinstitute.hellbender.tools.spark.sv.RunSGAViaProcessBuild
 
 public class ContigAligner implements Closeable {
 
-    static String referencePath;
-
-    final BwaIndex index;
+    private final String referencePath;
     final BwaMem bwaMem;
 
     private static final Logger log = LogManager.getLogger(ContigAligner.class);
 
-    static {
-        BWANativeLibrary.load();
-    }
-
+    /**
+     * Aligns with the BWA index for the reference, which is shared by all the aligners in this JVM.
+     */
     public ContigAligner(final String referenceFilePath) throws IOException {
         referencePath = referenceFilePath;
-
-        try {
-            index = new BwaIndex(LocalizedReference.INSTANCE);
-            log.info("Created BWA index");
-        } catch (final IOException e) {
-            throw new GATKException("Unable to load reference", e);
-        }
-        bwaMem = new BwaMem(index);
+        bwaMem = new BwaMem(BwaIndexManager.acquire(referenceFilePath));
         log.info("Created BWA MEM");
     }
 
@@ -125,9 +111,9 @@ public class ContigAligner implements Closeable {
     }
 
     public void close() {
-        log.info("closing BWA mem and index");
+        log.info("closing BWA mem and releasing index");
         bwaMem.dispose();
-        index.close();
+        BwaIndexManager.release(referencePath);
     }
 
     /**
@@ -261,16 +247,4 @@ public class ContigAligner implements Closeable {
         }
     }
 
-    private static class LocalizedReference {
-        static File INSTANCE;
-
-        static {
-            try {
-                INSTANCE = BucketUtils.isHadoopUrl(ContigAligner.referencePath) ? BwaSparkEngine.localizeReferenceAndBwaIndexFiles(ContigAligner.referencePath) : new File(ContigAligner.referencePath);
-            } catch (final IOException e) {
-                throw new GATKException("unable to localize reference", e);
-            }
-        }
-    }
-
 }
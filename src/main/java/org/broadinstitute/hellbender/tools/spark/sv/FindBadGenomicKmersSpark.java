@@ -5,6 +5,7 @@ import com.google.common.annotations.VisibleForTesting;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.SAMSequenceRecord;
+import org.apache.spark.HashPartitioner;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.broadinstitute.hellbender.cmdline.Argument;
@@ -20,7 +21,6 @@ import scala.Tuple2;
 
 import java.io.*;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * SparkTool to identify 63-mers in the reference that occur more than 3 times.
@@ -34,6 +34,10 @@ public final class FindBadGenomicKmersSpark extends GATKSparkTool {
     private static final int REF_RECORD_LEN = 10000;
     // assuming we have ~1Gb/core, we can process ~1M kmers per partition
     private static final int REF_RECORDS_PER_PARTITION = 1024*1024 / REF_RECORD_LEN;
+    // kmers are assigned to partitions by their minimizer, the canonical m-mer (of this size) with the smallest hash
+    @VisibleForTesting static final int MINIMIZER_SIZE = 15;
+    // 8M kmers take 128MB, plus the same again for sorting
+    @VisibleForTesting static final int MAX_KMERS_IN_MEMORY = 8*1024*1024;
 
     @Argument(doc = "file for ubiquitous kmer output", shortName = StandardArgumentDefinitions.OUTPUT_SHORT_NAME,
             fullName = StandardArgumentDefinitions.OUTPUT_LONG_NAME)
@@ -49,6 +53,14 @@ public final class FindBadGenomicKmersSpark extends GATKSparkTool {
             fullName = "highCopyIntervals", optional = true)
     private List<String> highCopyIntervals;
 
+    @Argument(doc = "maximum number of kmers each partition counts in memory before spilling sorted runs to disk",
+            fullName = "maxKmersInMemory", optional = true)
+    private int maxKmersInMemory = MAX_KMERS_IN_MEMORY;
+
+    @Argument(doc = "write the kmers in binary form rather than as text (kmersToIgnore accepts either)",
+            fullName = "binaryOutput", optional = true)
+    private boolean binaryOutput = false;
+
     @Override
     public boolean requiresReference() {
         return true;
@@ -62,12 +74,14 @@ public final class FindBadGenomicKmersSpark extends GATKSparkTool {
         if ( hdr != null ) dict = hdr.getSequenceDictionary();
         final PipelineOptions options = getAuthenticatedGCSOptions();
         final ReferenceMultiSource referenceMultiSource = getReference();
-        Collection<SVKmer> killList = findBadGenomicKmers(ctx, kSize, minEntropy, referenceMultiSource, options, dict);
+        Collection<SVKmer> killList =
+                findBadGenomicKmers(ctx, kSize, minEntropy, referenceMultiSource, options, dict, maxKmersInMemory);
         if ( highCopyIntervals != null && !highCopyIntervals.isEmpty() ) {
             killList = uniquify(killList,
                                 processIntervals(kSize, minEntropy, highCopyIntervals, referenceMultiSource, options));
         }
-        SVUtils.writeKmersFile(kSize, outputFile, options, killList);
+        if ( binaryOutput ) SVUtils.writeKmersBinaryFile(kSize, outputFile, options, killList);
+        else SVUtils.writeKmersFile(kSize, outputFile, options, killList);
     }
 
     /** Find high copy number kmers in the reference sequence */
@@ -77,32 +91,148 @@ public final class FindBadGenomicKmersSpark extends GATKSparkTool {
                                                     final ReferenceMultiSource ref,
                                                     final PipelineOptions options,
                                                     final SAMSequenceDictionary readsDict ) {
+        return findBadGenomicKmers(ctx, kSize, minEntropy, ref, options, readsDict, MAX_KMERS_IN_MEMORY);
+    }
+
+    /** Find high copy number kmers in the reference sequence */
+    public static List<SVKmer> findBadGenomicKmers( final JavaSparkContext ctx,
+                                                    final int kSize,
+                                                    final double minEntropy,
+                                                    final ReferenceMultiSource ref,
+                                                    final PipelineOptions options,
+                                                    final SAMSequenceDictionary readsDict,
+                                                    final int maxKmersInMemory ) {
         // Generate reference sequence RDD.
         final JavaRDD<byte[]> refRDD = getRefRDD(ctx, kSize, ref, options, readsDict);
 
         // Find the high copy number kmers
-        return processRefRDD(kSize, minEntropy, refRDD);
+        return processRefRDD(kSize, minEntropy, refRDD, maxKmersInMemory);
+    }
+
+    @VisibleForTesting static List<SVKmer> processRefRDD( final int kSize,
+                                                          final double minEntropy,
+                                                          final JavaRDD<byte[]> refRDD ) {
+        return processRefRDD(kSize, minEntropy, refRDD, MAX_KMERS_IN_MEMORY);
     }
 
     /**
-     * Turn a text file of overlapping records from a reference sequence into an RDD, and do a classic map/reduce:
-     * Kmerize, mapping to a pair <kmer,1>, reduce by summing values by key, filter out <kmer,N> where
-     * N <= MAX_KMER_FREQ, and collect the high frequency kmers back in the driver.
+     * Turn a text file of overlapping records from a reference sequence into an RDD, and count kmers:
+     * Cut each record into super-kmers (runs of successive kmers that share a minimizer), and shuffle the super-kmers
+     * to a partition chosen by their minimizer. A kmer and its reverse complement have the same minimizer, so all
+     * copies of a canonical kmer land in the same partition, and shuffling super-kmers moves far less data than
+     * shuffling individual kmers. Each partition then kmerizes its super-kmers and sort-counts the canonical kmers as
+     * packed longs (spilling to disk as necessary), keeping those that occur more than MAX_KMER_FREQ times.
+     * The high frequency kmers are collected back in the driver.
      */
     @VisibleForTesting static List<SVKmer> processRefRDD( final int kSize,
                                                           final double minEntropy,
-                                                          final JavaRDD<byte[]> refRDD ) {
+                                                          final JavaRDD<byte[]> refRDD,
+                                                          final int maxKmersInMemory ) {
+        final int nPartitions = refRDD.partitions().size();
         return refRDD
-                .flatMapToPair(seq ->
-                        SVKmerizerWithLowComplexityFilter.stream(seq, kSize, minEntropy)
-                                .map(kmer -> new Tuple2<>(kmer.canonical(kSize), 1))
-                                .collect(Collectors.toCollection(() -> new ArrayList<>(seq.length))))
-                .reduceByKey(Integer::sum)
-                .filter(kv -> kv._2 > MAX_KMER_FREQ)
-                .map(kv -> kv._1)
+                .flatMapToPair(seq -> getSuperKmers(seq, kSize, nPartitions))
+                .partitionBy(new HashPartitioner(nPartitions))
+                .mapPartitions(itr -> countKmers(itr, kSize, minEntropy, maxKmersInMemory))
                 .collect();
     }
 
+    /** kmerize the super-kmers, and sort-count the canonical kmers */
+    private static List<SVKmer> countKmers( final Iterator<Tuple2<Integer, byte[]>> superKmerItr,
+                                            final int kSize,
+                                            final double minEntropy,
+                                            final int maxKmersInMemory ) {
+        try ( final SortingSVKmerCounter counter = new SortingSVKmerCounter(maxKmersInMemory) ) {
+            while ( superKmerItr.hasNext() ) {
+                SVKmerizer.forEachCanonicalKmer(superKmerItr.next()._2, kSize, minEntropy, counter::add);
+            }
+            return counter.getKmersWithCountAbove(MAX_KMER_FREQ);
+        }
+    }
+
+    /**
+     * Cut a sequence into super-kmers: maximal runs of successive valid (ACGT only) kmers that share a minimizer.
+     * Each super-kmer is returned with the partition of its minimizer.
+     * The minimizer of a kmer is the canonical m-mer within it having the smallest hash, so it depends only on the
+     * canonical form of the kmer.
+     */
+    @VisibleForTesting static List<Tuple2<Integer, byte[]>> getSuperKmers( final byte[] seq,
+                                                                           final int kSize,
+                                                                           final int nPartitions ) {
+        final List<Tuple2<Integer, byte[]>> superKmers = new ArrayList<>();
+        final int seqLen = seq.length;
+        if ( seqLen < kSize ) return superKmers;
+
+        // hash each canonical m-mer, noting the position of the last invalid base as we go
+        final int mSize = Math.min(kSize, MINIMIZER_SIZE);
+        final long mMask = (1L << (2*mSize)) - 1L;
+        final int rcShift = 2*(mSize - 1);
+        final int[] mmerHashes = new int[seqLen - mSize + 1];
+        final int[] lastInvalidBase = new int[seqLen];
+        long fwd = 0L;
+        long rc = 0L;
+        int lastInvalid = -1;
+        for ( int idx = 0; idx != seqLen; ++idx ) {
+            final int baseVal;
+            switch ( seq[idx] ) {
+                case 'a': case 'A': baseVal = 0; break;
+                case 'c': case 'C': baseVal = 1; break;
+                case 'g': case 'G': baseVal = 2; break;
+                case 't': case 'T': baseVal = 3; break;
+                default: baseVal = -1; break;
+            }
+            if ( baseVal < 0 ) {
+                lastInvalid = idx;
+                fwd = rc = 0L;
+            } else {
+                fwd = ((fwd << 2) | baseVal) & mMask;
+                rc = (rc >>> 2) | ((long)(3 - baseVal) << rcShift);
+            }
+            lastInvalidBase[idx] = lastInvalid;
+            final int mmerStart = idx - mSize + 1;
+            if ( mmerStart >= 0 ) {
+                // m-mers with invalid bases are only ever in invalid kmers, so their hash doesn't matter
+                mmerHashes[mmerStart] = PackedSVKmerSet.hash(Math.min(fwd, rc), 0L);
+            }
+        }
+
+        // slide a window of kSize-mSize+1 m-mers along the sequence, tracking the minimum hash with a monotone deque
+        final int mmersPerKmer = kSize - mSize + 1;
+        final int[] deque = new int[mmerHashes.length];
+        int head = 0;
+        int tail = 0;
+        int superKmerStart = -1;
+        int superKmerMinimizer = 0;
+        final int nKmers = seqLen - kSize + 1;
+        for ( int kmerStart = 0; kmerStart != nKmers; ++kmerStart ) {
+            final int firstMmer = kmerStart == 0 ? 0 : kmerStart + mmersPerKmer - 1;
+            for ( int mmer = firstMmer; mmer != kmerStart + mmersPerKmer; ++mmer ) {
+                while ( tail != head && mmerHashes[deque[tail-1]] >= mmerHashes[mmer] ) --tail;
+                deque[tail++] = mmer;
+            }
+            while ( deque[head] < kmerStart ) ++head;
+            final int minimizer = mmerHashes[deque[head]];
+
+            final boolean isValid = lastInvalidBase[kmerStart + kSize - 1] < kmerStart;
+            if ( superKmerStart != -1 && (!isValid || minimizer != superKmerMinimizer) ) {
+                superKmers.add(superKmer(seq, superKmerStart, kmerStart - 1 + kSize, superKmerMinimizer, nPartitions));
+                superKmerStart = -1;
+            }
+            if ( isValid && superKmerStart == -1 ) {
+                superKmerStart = kmerStart;
+                superKmerMinimizer = minimizer;
+            }
+        }
+        if ( superKmerStart != -1 ) {
+            superKmers.add(superKmer(seq, superKmerStart, seqLen, superKmerMinimizer, nPartitions));
+        }
+        return superKmers;
+    }
+
+    private static Tuple2<Integer, byte[]> superKmer( final byte[] seq, final int start, final int end,
+                                                      final int minimizer, final int nPartitions ) {
+        return new Tuple2<>(Math.floorMod(minimizer, nPartitions), Arrays.copyOfRange(seq, start, end));
+    }
+
     /**
      * Create an RDD from the reference sequences.
      * The reference sequences are transformed into a single, large collection of byte arrays. The collection is then
@@ -8,11 +8,16 @@ import com.google.cloud.dataflow.sdk.options.PipelineOptions;
 import com.google.common.annotations.VisibleForTesting;
 import htsjdk.samtools.*;
 import org.apache.commons.collections4.iterators.SingletonIterator;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.apache.spark.HashPartitioner;
+import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.apache.spark.broadcast.Broadcast;
+import org.apache.spark.storage.StorageLevel;
 import org.broadinstitute.hellbender.cmdline.Argument;
+import org.broadinstitute.hellbender.cmdline.ArgumentCollection;
 import org.broadinstitute.hellbender.cmdline.CommandLineProgramProperties;
 import org.broadinstitute.hellbender.cmdline.StandardArgumentDefinitions;
 import org.broadinstitute.hellbender.cmdline.programgroups.SparkProgramGroup;
@@ -21,6 +26,7 @@ import org.broadinstitute.hellbender.exceptions.GATKException;
 import org.broadinstitute.hellbender.tools.spark.utils.*;
 import org.broadinstitute.hellbender.utils.gcs.BucketUtils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.spark.SparkUtils;
 import scala.Tuple2;
 
 import java.io.*;
@@ -60,112 +66,14 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
                     0                        // exclusion interval extra padding
             );
 
-    @Argument(doc = "Kmer size.", fullName = "kSize")
-    private int kSize = defaultParams.kSize;
-
-    @Argument(doc = "Minimum kmer entropy", fullName = "kmerEntropy")
-    private double minEntropy = defaultParams.minEntropy;
-
-    @Argument(doc = "The minimum mapping quality for reads used to gather evidence of breakpoints.",
-            fullName = "minEvidenceMapQ", optional = true)
-    private int minEvidenceMapQ = defaultParams.minEvidenceMapQ;
-
-    @Argument(doc = "The minimum length of the matched portion of an interesting alignment.  "+
-            "Reads that don't match at least this many reference bases won't be used in gathering evidence.",
-            fullName = "minEvidenceMatchLength", optional = true)
-    private int minEvidenceMatchLength = defaultParams.minEvidenceMatchLength;
-
-    @Argument(doc = "Intervals with more than this much coverage are filtered out, because the reads mapped to "+
-            "that interval are clearly not exclusively local to the interval.", fullName = "maxIntervalCoverage")
-    private int maxIntervalCoverage = defaultParams.maxIntervalCoverage;
-
-    @Argument(doc = "Minimum number of reads in cluster to declare an interval of interest.",
-            fullName = "minEvidenceCount")
-    private int minEvidenceCount = defaultParams.minEvidenceCount;
-
-    @Argument(doc = "Guess for the total number of kmers in one partition of the input file.",
-            fullName = "totalKmersPerPartitionGuess")
-    private int totalKmersPerPartitionGuess = defaultParams.totalKmersPerPartitionGuess;
-
-    @Argument(doc = "Minimum count of kmer within reads partition to be considered in finding high frequency kmers.",
-            fullName = "minKmerCountWithinPartition")
-    private int minKmerCountWithinPartition = defaultParams.minKmerCountWithinPartition;
-
-    @Argument(doc = "Unique error-free kmers per partition", fullName = "uniqueErrorFreeKmersPerPartition")
-    private int uniqueErrorFreeKmersPerPartitionGuess = defaultParams.uniqueErrorFreeKmersPerPartitionGuess;
-
-    @Argument(doc = "Count for kmer to be considered high frequency.", fullName = "minHighFrequencyKmerCount")
-    private int minHighFrequencyKmerCount = defaultParams.minHighFrequencyKmerCount;
-
-    @Argument(doc = "KmerCleaner maximum number of intervals for a localizing kmer.", fullName = "cleanerMaxIntervals")
-    private int cleanerMaxIntervals = defaultParams.cleanerMaxIntervals;
-
-    @Argument(doc = "KmerCleaner minimum kmer count.", fullName = "cleanerMinKmerCount")
-    private int cleanerMinKmerCount = defaultParams.cleanerMinKmerCount;
-
-    @Argument(doc = "KmerCleaner maximum kmer count.", fullName = "cleanerMaxKmerCount")
-    private int cleanerMaxKmerCount = defaultParams.cleanerMaxKmerCount;
-
-    @Argument(doc = "KmerCleaner unique error-free kmers per partition", fullName = "cleanerKmersPerPartitionGuess")
-    private int cleanerKmersPerPartitionGuess = defaultParams.cleanerKmersPerPartitionGuess;
-
-    @Argument(doc = "Guess at the ratio of reads in the final assembly to the number reads mapped to the interval.",
-            fullName = "assemblyToMappedSizeRatioGuess")
-    private int assemblyToMappedSizeRatioGuess = defaultParams.assemblyToMappedSizeRatioGuess;
-
-    @Argument(doc = "Maximum FASTQ file size.", fullName = "maxFASTQSize")
-    private int maxFASTQSize = defaultParams.maxFASTQSize;
-
-    @Argument(doc = "Exclusion interval padding.", fullName = "exclusionIntervalPadding")
-    private int exclusionIntervalPadding = defaultParams.exclusionIntervalPadding;
-
-    @Argument(doc = "Include read mapping location in FASTQ files.", fullName = "includeMappingLocation")
-    private boolean includeMappingLocation = true;
-
-    // --------- locations ----------
+    @ArgumentCollection(doc = "parameters and optional intermediate outputs for gathering breakpoint evidence")
+    private final BreakpointEvidenceArgumentCollection evidenceArgs = new BreakpointEvidenceArgumentCollection();
 
     @Argument(doc = "directory for fastq output", shortName = StandardArgumentDefinitions.OUTPUT_SHORT_NAME,
             fullName = StandardArgumentDefinitions.OUTPUT_LONG_NAME)
     private String outputDir;
 
-    @Argument(doc = "file for read metadata", fullName = "readMetadata", optional = true)
-    private String metadataFile;
-
-    @Argument(doc = "directory for evidence output", fullName = "breakpointEvidenceDir", optional = true)
-    private String evidenceDir;
-
-    @Argument(doc = "file for breakpoint intervals output", fullName = "breakpointIntervals", optional = true)
-    private String intervalFile;
-
-    @Argument(doc = "file for mapped qname intervals output", fullName = "qnameIntervalsMapped", optional = true)
-    private String qNamesMappedFile;
-
-    @Argument(doc = "file for high frequency kmers output", fullName = "highFrequencyKmers", optional = true)
-    private String highFrequencyKmersFile;
-
-    @Argument(doc = "file for kmer intervals output", fullName = "kmerIntervals", optional = true)
-    private String kmerFile;
-
-    @Argument(doc = "file for mapped qname intervals output", fullName = "qnameIntervalsForAssembly", optional = true)
-    private String qNamesAssemblyFile;
-
-    /**
-     * This is a file that calls out the coordinates of intervals in the reference assembly to exclude from
-     * consideration when calling putative breakpoints.
-     * Each line is a tab-delimited interval with 1-based inclusive coordinates like this:
-     *  chr1	124535434	142535434
-     */
-    @Argument(doc = "file of reference intervals to exclude", fullName = "exclusionIntervals", optional = true)
-    private String exclusionIntervalsFile;
-
-    /**
-     * This is a path to a file of kmers that appear too frequently in the reference to be usable as probes to localize
-     * reads.  We don't calculate it here, because it depends only on the reference.
-     * The program FindBadGenomicKmersSpark can produce such a list for you.
-     */
-    @Argument(doc = "file containing ubiquitous kmer list. see FindBadGenomicKmersSpark to generate it.",
-            fullName = "kmersToIgnore")
-    private String kmersToIgnoreFile;
+    private static final Logger log = LogManager.getLogger(FindBreakpointEvidenceSpark.class);
 
     @Override
     public boolean requiresReads()
@@ -176,50 +84,115 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
     @Override
     protected void runTool( final JavaSparkContext ctx ) {
         final SAMFileHeader header = getHeaderForReads();
+        final PipelineOptions pipelineOptions = getAuthenticatedGCSOptions();
+        // write a FASTQ file for each interval
+        final String outDir = outputDir;
+        final int maxFastqSize = evidenceArgs.maxFASTQSize;
+        final List<SVInterval> intervals =
+                gatherFastqsForAssembly(ctx, header, getUnfilteredReads(), evidenceArgs, pipelineOptions,
+                        (fastqsByInterval, nIntervals) ->
+                                fastqsByInterval
+                                        .map(intervalAndFastqBytes -> writeFastq(intervalAndFastqBytes, outDir, maxFastqSize))
+                                        .collect());
+
+        if ( !intervals.isEmpty() ) log("Wrote FASTQs for assembly.");
+    }
+
+    /**
+     * Does something with the FASTQ records gathered for each interval (like write them to files, or assemble them),
+     * and returns a disposition for each interval for the intervals file.
+     */
+    @FunctionalInterface
+    interface FastqsHandler {
+        /**
+         * @param fastqsByInterval the FASTQ records for each interval, keyed by interval ID.  The RDD can only be
+         *                         evaluated until this method returns.
+         * @param nIntervals the number of intervals
+         */
+        List<Tuple2<Integer, String>> handle( JavaPairRDD<Integer, List<byte[]>> fastqsByInterval, int nIntervals );
+    }
+
+    /**
+     * Find the putative breakpoint intervals, gather the FASTQ records of the reads to assemble for each of them,
+     * and hand them to the fastqsHandler.  The FASTQ records stay in an RDD keyed by interval ID, so that the handler
+     * can write them out, or just carry on with assembly.  If an intervals file was asked for, it's written with the
+     * dispositions the handler returns.
+     * Returns the intervals.  The handler isn't called if there are none.
+     */
+    static List<SVInterval> gatherFastqsForAssembly(
+            final JavaSparkContext ctx,
+            final SAMFileHeader header,
+            final JavaRDD<GATKRead> inputReads,
+            final BreakpointEvidenceArgumentCollection evidenceArgs,
+            final PipelineOptions pipelineOptions,
+            final FastqsHandler fastqsHandler )
+    {
         if ( header.getSortOrder() != SAMFileHeader.SortOrder.coordinate ) {
             throw new GATKException("The reads must be coordinate sorted.");
         }
 
-        final Locations locations =
-                new Locations(metadataFile, evidenceDir, intervalFile, qNamesMappedFile,
-                                highFrequencyKmersFile, kmerFile, qNamesAssemblyFile, exclusionIntervalsFile);
-        final Params params =
-                new Params(kSize, minEntropy, minEvidenceMapQ, minEvidenceMatchLength, maxIntervalCoverage,
-                            minEvidenceCount, totalKmersPerPartitionGuess, minKmerCountWithinPartition,
-                            uniqueErrorFreeKmersPerPartitionGuess, minHighFrequencyKmerCount,
-                            cleanerMaxIntervals, cleanerMinKmerCount, cleanerMaxKmerCount, cleanerKmersPerPartitionGuess,
-                            assemblyToMappedSizeRatioGuess, maxFASTQSize, exclusionIntervalPadding);
-
-        final PipelineOptions pipelineOptions = getAuthenticatedGCSOptions();
-        final JavaRDD<GATKRead> unfilteredReads = getUnfilteredReads();
-        final JavaRDD<GATKRead> allPrimaryLines =
-                unfilteredReads.filter(read -> !read.isSecondaryAlignment() && !read.isSupplementaryAlignment());
+        final Locations locations = evidenceArgs.getLocations();
+        final Params params = evidenceArgs.getParams();
+
+        final JavaRDD<GATKRead> orderedReads = !evidenceArgs.balancePartitionsByCoverage ? inputReads :
+                SparkUtils.coverageBalancedCoordinateSort(inputReads, header, inputReads.partitions().size());
+        final JavaRDD<GATKRead> unfilteredReads;
+        final JavaRDD<?> cachedRDD;
+        if ( evidenceArgs.cacheReadProjection ) {
+            // all later passes rebuild the reads from the cached projections
+            final JavaRDD<SVReadProjection> projections = SVReadProjection.projectAndCache(orderedReads, header);
+            cachedRDD = projections;
+            unfilteredReads = SVReadProjection.toReads(projections, header);
+        } else if ( evidenceArgs.balancePartitionsByCoverage ) {
+            // the reads are traversed several times, so keep the shuffled reads rather than repeating the shuffle
+            unfilteredReads = orderedReads.cache();
+            cachedRDD = unfilteredReads;
+        } else {
+            unfilteredReads = orderedReads;
+            cachedRDD = null;
+        }
+        // Once the FASTQs have been gathered, the cached reads are released before the FASTQs are handed on, so that
+        // they don't sit on the executors through whatever the handler does with them (e.g., assembly and alignment).
+        final FastqsHandler handler = cachedRDD == null ? fastqsHandler : (fastqsByInterval, nIntervals) -> {
+            fastqsByInterval.persist(StorageLevel.MEMORY_AND_DISK_SER());
+            try {
+                fastqsByInterval.count();
+                cachedRDD.unpersist();
+                return fastqsHandler.handle(fastqsByInterval, nIntervals);
+            } finally {
+                fastqsByInterval.unpersist();
+            }
+        };
+        try {
+            final JavaRDD<GATKRead> allPrimaryLines =
+                    unfilteredReads.filter(read -> !read.isSecondaryAlignment() && !read.isSupplementaryAlignment());
+
+            // develop evidence, intervals, and, finally, a set of template names for each interval
+            final Tuple2<List<SVInterval>, HopscotchUniqueMultiMap<String, Integer, QNameAndInterval>> intervalsAndQNameMap =
+                    getMappedQNamesSet(params, ctx, header, unfilteredReads, locations, pipelineOptions);
+            if ( intervalsAndQNameMap == null || intervalsAndQNameMap._1.isEmpty() ) {
+                return Collections.emptyList();
+            }
+            final List<SVInterval> intervals = intervalsAndQNameMap._1;
+            final HopscotchUniqueMultiMap<String, Integer, QNameAndInterval> qNamesMultiMap = intervalsAndQNameMap._2;
 
-        // develop evidence, intervals, and, finally, a set of template names for each interval
-        final Tuple2<List<SVInterval>, HopscotchUniqueMultiMap<String, Integer, QNameAndInterval>> intervalsAndQNameMap =
-                getMappedQNamesSet(params, ctx, header, unfilteredReads, locations, pipelineOptions);
-        final List<SVInterval> intervals = intervalsAndQNameMap._1;
-        if ( intervals.isEmpty() ) return;
+            // supplement the template names with other reads that share kmers
+            addAssemblyQNames(params, ctx, evidenceArgs.kmersToIgnoreFile, qNamesMultiMap, allPrimaryLines,
+                                locations, pipelineOptions);
 
-        final HopscotchUniqueMultiMap<String, Integer, QNameAndInterval> qNamesMultiMap = intervalsAndQNameMap._2;
+            final List<Tuple2<Integer, String>> intervalDispositions =
+                    generateFastqs(ctx, qNamesMultiMap, allPrimaryLines, intervals.size(),
+                                    evidenceArgs.includeMappingLocation, handler);
 
-        // supplement the template names with other reads that share kmers
-        addAssemblyQNames(params, ctx, kmersToIgnoreFile, qNamesMultiMap, allPrimaryLines, locations, pipelineOptions);
+            // record the intervals
+            if ( locations.intervalFile != null ) {
+                writeIntervalFile(locations.intervalFile, pipelineOptions, header, intervals, intervalDispositions);
+            }
 
-        // write a FASTQ file for each interval
-        final String outDir = outputDir;
-        final int maxFastqSize = maxFASTQSize;
-        final boolean includeMapLoc = includeMappingLocation;
-        final List<Tuple2<Integer, String>> intervalDispositions =
-                generateFastqs(ctx, qNamesMultiMap, allPrimaryLines, intervals.size(), includeMapLoc,
-                                intervalAndFastqBytes -> writeFastq(intervalAndFastqBytes, outDir, maxFastqSize));
-
-        // record the intervals
-        if ( locations.intervalFile != null ) {
-            writeIntervalFile(locations.intervalFile, pipelineOptions, header, intervals, intervalDispositions);
+            return intervals;
+        } finally {
+            if ( cachedRDD != null ) cachedRDD.unpersist();
         }
-
-        log("Wrote FASTQs for assembly.");
     }
 
     /** write a file describing each interval */
@@ -263,7 +236,7 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
      * clean up by removing some intervals that are bogus as evidenced by ubiquitous kmers,
      * and return a set of template names and the intervals to which they belong.
      */
-    private Tuple2<List<SVInterval>, HopscotchUniqueMultiMap<String, Integer, QNameAndInterval>> getMappedQNamesSet(
+    private static Tuple2<List<SVInterval>, HopscotchUniqueMultiMap<String, Integer, QNameAndInterval>> getMappedQNamesSet(
             final Params params,
             final JavaSparkContext ctx,
             final SAMFileHeader header,
@@ -332,7 +305,7 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
      * get the template names of all reads sharing these kmers (regardless of where or if they're mapped),
      * and add these template names to the set of names for each interval.
      */
-    private void addAssemblyQNames(
+    private static void addAssemblyQNames(
             final Params params,
             final JavaSparkContext ctx,
             final String kmersToIgnoreFile,
@@ -364,7 +337,7 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
      * filter out kmers that appear too often in this read set or in the genome to be helpful in localizing reads,
      * and return the set of kmers that appear in each interval.
      */
-    private HopscotchUniqueMultiMap<SVKmer, Integer, KmerAndInterval> getKmerAndIntervalsSet(
+    private static PackedSVKmerIntervalMultiMap getKmerAndIntervalsSet(
             final Params params,
             final JavaSparkContext ctx,
             final String kmersToIgnoreFile,
@@ -380,8 +353,8 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
         kmerKillSet.addAll(kmerKillList);
         log("Ignoring a total of " + kmerKillSet.size() + " unique common kmers.");
 
-        final HopscotchUniqueMultiMap<SVKmer, Integer, KmerAndInterval> kmerMultiMap =
-                new HopscotchUniqueMultiMap<>(
+        final PackedSVKmerIntervalMultiMap kmerMultiMap =
+                new PackedSVKmerIntervalMultiMap(
                     getKmerIntervals(params, ctx, qNamesMultiMap, kmerKillSet, goodPrimaryLines, locations, pipelineOptions));
         log("Discovered " + kmerMultiMap.size() + " kmers.");
 
@@ -390,33 +363,49 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
 
     /**
      * Transform all the reads for a supplied set of template names in each inverval into FASTQ records
-     * for each interval, and do something with the list of FASTQ records for each interval (like write it to a file).
+     * for each interval, and do something with the FASTQ records for each interval (like write them to files).
+     * The broadcast template names are destroyed once the handler returns.
      */
     @VisibleForTesting static List<Tuple2<Integer, String>> generateFastqs(final JavaSparkContext ctx,
                                        final HopscotchUniqueMultiMap<String, Integer, QNameAndInterval> qNamesMultiMap,
                                        final JavaRDD<GATKRead> reads,
                                        final int nIntervals,
                                        final boolean includeMappingLocation,
-                                       final org.apache.spark.api.java.function.Function<Tuple2<Integer, List<byte[]>>, Tuple2<Integer, String>> fastqHandler) {
+                                       final FastqsHandler fastqsHandler) {
         final Broadcast<HopscotchUniqueMultiMap<String, Integer, QNameAndInterval>> broadcastQNamesMultiMap =
                 ctx.broadcast(qNamesMultiMap);
-        final int nPartitions = reads.partitions().size();
+        final Broadcast<BlockedBloomFilter> broadcastQNamesFilter = ctx.broadcast(getQNamesFilter(qNamesMultiMap));
+
+        try {
+            return fastqsHandler.handle(getFastqsByInterval(broadcastQNamesMultiMap, broadcastQNamesFilter, reads,
+                                                            nIntervals, includeMappingLocation),
+                                        nIntervals);
+        } finally {
+            broadcastQNamesMultiMap.destroy();
+            broadcastQNamesFilter.destroy();
+        }
+    }
 
-        final List<Tuple2<Integer, String>> intervalDispositions =
-            reads
+    /**
+     * Transform all the reads for a supplied set of template names in each interval into FASTQ records,
+     * and group them by interval.
+     * The broadcast template names (and their filter) must stay live as long as the returned RDD might be evaluated.
+     */
+    private static JavaPairRDD<Integer, List<byte[]>> getFastqsByInterval(
+            final Broadcast<HopscotchUniqueMultiMap<String, Integer, QNameAndInterval>> broadcastQNamesMultiMap,
+            final Broadcast<BlockedBloomFilter> broadcastQNamesFilter,
+            final JavaRDD<GATKRead> reads,
+            final int nIntervals,
+            final boolean includeMappingLocation ) {
+        final int nPartitions = reads.partitions().size();
+        return reads
                 .mapPartitionsToPair(readItr ->
-                        new ReadsForQNamesFinder(broadcastQNamesMultiMap.value(), nIntervals,
-                                includeMappingLocation).call(readItr), false)
+                        new ReadsForQNamesFinder(broadcastQNamesMultiMap.value(), broadcastQNamesFilter.value(),
+                                nIntervals, includeMappingLocation).call(readItr), false)
                 .combineByKey(x -> x,
                                 FindBreakpointEvidenceSpark::combineLists,
                                 FindBreakpointEvidenceSpark::combineLists,
-                                new HashPartitioner(nPartitions), false, null)
-                .map(fastqHandler)
-                .collect();
-
-        broadcastQNamesMultiMap.destroy();
-
-        return intervalDispositions;
+                                new HashPartitioner(nPartitions), false, null);
     }
 
     /** Concatenate two lists. */
@@ -450,10 +439,11 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
     @VisibleForTesting static List<QNameAndInterval> getAssemblyQNames(
             final Params params,
             final JavaSparkContext ctx,
-            final HopscotchUniqueMultiMap<SVKmer, Integer, KmerAndInterval> kmerMultiMap,
+            final PackedSVKmerIntervalMultiMap kmerMultiMap,
             final JavaRDD<GATKRead> reads ) {
-        final Broadcast<HopscotchUniqueMultiMap<SVKmer, Integer, KmerAndInterval>> broadcastKmerMultiMap =
+        final Broadcast<PackedSVKmerIntervalMultiMap> broadcastKmerMultiMap =
                 ctx.broadcast(kmerMultiMap);
+        final Broadcast<BlockedBloomFilter> broadcastKmerFilter = ctx.broadcast(getKmersFilter(kmerMultiMap));
 
         final int kSize = params.kSize;
         final double minEntropy = params.minEntropy;
@@ -461,10 +451,12 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
             reads
                 .mapPartitions(readItr ->
                         new MapPartitioner<>(readItr,
-                                new QNamesForKmersFinder(kSize, minEntropy, broadcastKmerMultiMap.value())), false)
+                                new QNamesForKmersFinder(kSize, minEntropy, broadcastKmerMultiMap.value(),
+                                                        broadcastKmerFilter.value())), false)
                 .collect();
 
         broadcastKmerMultiMap.destroy();
+        broadcastKmerFilter.destroy();
 
         return qNames;
     }
@@ -479,9 +471,11 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
             final Locations locations,
             final PipelineOptions pipelineOptions ) {
 
-        final Broadcast<Set<SVKmer>> broadcastKmerKillSet = ctx.broadcast(kmerKillSet);
+        final Broadcast<PackedSVKmerSet> broadcastKmerKillSet = ctx.broadcast(new PackedSVKmerSet(kmerKillSet));
+        final Broadcast<BlockedBloomFilter> broadcastKmerKillFilter = ctx.broadcast(getKillSetFilter(kmerKillSet));
         final Broadcast<HopscotchUniqueMultiMap<String, Integer, QNameAndInterval>> broadcastQNameAndIntervalsMultiMap =
                 ctx.broadcast(qNamesMultiMap);
+        final Broadcast<BlockedBloomFilter> broadcastQNamesFilter = ctx.broadcast(getQNamesFilter(qNamesMultiMap));
 
         // given a set of template names with interval IDs and a kill set of ubiquitous kmers,
         // produce a set of interesting kmers for each interval ID
@@ -495,14 +489,17 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
             reads
                 .mapPartitionsToPair(readItr ->
                         new MapPartitioner<>(readItr,
-                            new QNameKmerizer(broadcastQNameAndIntervalsMultiMap.value(),
-                                            broadcastKmerKillSet.value(), kSize, minEntropy)), false)
+                            new QNameKmerizer(broadcastQNameAndIntervalsMultiMap.value(), broadcastQNamesFilter.value(),
+                                            broadcastKmerKillSet.value(), broadcastKmerKillFilter.value(),
+                                            kSize, minEntropy)), false)
                 .reduceByKey(Integer::sum)
                 .mapPartitions(itr -> new KmerCleaner(itr, kmersPerPartitionGuess, minKmers, maxKmers, maxIntervals))
                 .collect();
 
         broadcastQNameAndIntervalsMultiMap.destroy();
+        broadcastQNamesFilter.destroy();
         broadcastKmerKillSet.destroy();
+        broadcastKmerKillFilter.destroy();
 
         // record the kmers with their interval IDs
         if ( locations.kmerFile != null ) {
@@ -551,7 +548,7 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
         return kmers;
     }
 
-    private List<SVInterval> removeIntervalsNearGapsAndLog( final List<SVInterval> intervals,
+    private static List<SVInterval> removeIntervalsNearGapsAndLog( final List<SVInterval> intervals,
                                                             final int minDistanceToGap,
                                                             final ReadMetadata readMetadata,
                                                             final String exclusionIntervalsFile,
@@ -589,7 +586,7 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
                 .collect(Collectors.toCollection(() -> new ArrayList<>(intervals.size())));
     }
 
-    private List<SVInterval> removeHighCoverageIntervalsAndLog( final Params params,
+    private static List<SVInterval> removeHighCoverageIntervalsAndLog( final Params params,
                                                                 final JavaSparkContext ctx,
                                                                 final Broadcast<ReadMetadata> broadcastMetadata,
                                                                 final List<SVInterval> intervals,
@@ -734,8 +731,38 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
         return intervals;
     }
 
-    private void log( final String message ) {
-        logger.info(message);
+    /** Bloom filter to screen reads by template name before looking them up in the template name multi-map. */
+    private static BlockedBloomFilter getQNamesFilter(
+            final HopscotchUniqueMultiMap<String, Integer, QNameAndInterval> qNamesMultiMap ) {
+        final BlockedBloomFilter filter = new BlockedBloomFilter(qNamesMultiMap.size());
+        qNamesMultiMap.forEach(qNameAndInterval -> filter.add(qNameAndInterval.getKey()));
+        logFilter("template names", filter);
+        return filter;
+    }
+
+    /** Bloom filter to screen kmers before looking them up in the kmer multi-map. */
+    private static BlockedBloomFilter getKmersFilter( final PackedSVKmerIntervalMultiMap kmerMultiMap ) {
+        final BlockedBloomFilter filter = new BlockedBloomFilter(kmerMultiMap.size());
+        kmerMultiMap.forEachKmer(filter::add);
+        logFilter("interval kmers", filter);
+        return filter;
+    }
+
+    /** Bloom filter to screen kmers before looking them up in the set of kmers to ignore. */
+    private static BlockedBloomFilter getKillSetFilter( final Set<SVKmer> kmerKillSet ) {
+        final BlockedBloomFilter filter = new BlockedBloomFilter(kmerKillSet.size());
+        kmerKillSet.forEach(filter::add);
+        logFilter("kmers to ignore", filter);
+        return filter;
+    }
+
+    private static void logFilter( final String contents, final BlockedBloomFilter filter ) {
+        log("Bloom filter for " + contents + ": " + filter.getNBytes() + " bytes, estimated false-positive rate " +
+                String.format("%.4f", filter.getEstimatedFalsePositiveRate()) + ".");
+    }
+
+    private static void log( final String message ) {
+        log.info(message);
     }
 
     @VisibleForTesting static class Locations {
@@ -1085,6 +1112,11 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
             this.intervalId = intervalId;
         }
 
+        KmerAndInterval( final long valHigh, final long valLow, final int intervalId ) {
+            super(valHigh, valLow);
+            this.intervalId = intervalId;
+        }
+
         private KmerAndInterval(final Kryo kryo, final Input input ) {
             super(kryo, input);
             intervalId = input.readInt();
@@ -1132,33 +1164,42 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
     /**
      * Class that acts as a mapper from a stream of reads to a stream of KmerAndIntervals.
      * The template names of reads to kmerize, along with a set of kmers to ignore are passed in (by broadcast).
+     * Each comes with a Bloom filter that's checked first, so that most misses never probe the big tables.
      */
     private static final class QNameKmerizer implements Function<GATKRead, Iterator<Tuple2<KmerAndInterval, Integer>>> {
         private final HopscotchUniqueMultiMap<String, Integer, QNameAndInterval> qNameAndIntervalMultiMap;
-        private final Set<SVKmer> kmersToIgnore;
+        private final BlockedBloomFilter qNamesFilter;
+        private final PackedSVKmerSet kmersToIgnore;
+        private final BlockedBloomFilter kmersToIgnoreFilter;
         private final int kSize;
         private final double minEntropy;
         private final ArrayList<Tuple2<KmerAndInterval, Integer>> tupleList = new ArrayList<>();
 
         QNameKmerizer( final HopscotchUniqueMultiMap<String, Integer, QNameAndInterval> qNameAndIntervalMultiMap,
-                       final Set<SVKmer> kmersToIgnore, final int kSize, final double minEntropy ) {
+                       final BlockedBloomFilter qNamesFilter,
+                       final PackedSVKmerSet kmersToIgnore, final BlockedBloomFilter kmersToIgnoreFilter,
+                       final int kSize, final double minEntropy ) {
             this.qNameAndIntervalMultiMap = qNameAndIntervalMultiMap;
+            this.qNamesFilter = qNamesFilter;
             this.kmersToIgnore = kmersToIgnore;
+            this.kmersToIgnoreFilter = kmersToIgnoreFilter;
             this.kSize = kSize;
             this.minEntropy = minEntropy;
         }
 
         public Iterator<Tuple2<KmerAndInterval, Integer>> apply( final GATKRead read ) {
             final String qName = read.getName();
-            final Iterator<QNameAndInterval> names = qNameAndIntervalMultiMap.findEach(qName);
             tupleList.clear();
+            if ( !qNamesFilter.mightContain(qName) ) return tupleList.iterator();
+            final Iterator<QNameAndInterval> names = qNameAndIntervalMultiMap.findEach(qName);
             while ( names.hasNext() ) {
                 final int intervalId = names.next().getIntervalId();
-                SVKmerizerWithLowComplexityFilter.stream(read.getBases(), kSize, minEntropy)
-                        .map(kmer -> kmer.canonical(kSize))
-                        .filter(kmer -> !kmersToIgnore.contains(kmer))
-                        .map(kmer -> new KmerAndInterval(kmer, intervalId))
-                        .forEach(kmerCountAndInterval -> tupleList.add(new Tuple2<>(kmerCountAndInterval, 1)));
+                SVKmerizer.forEachCanonicalKmer(read.getBases(), kSize, minEntropy, ( valHigh, valLow ) -> {
+                    if ( !kmersToIgnoreFilter.mightContain(valHigh, valLow) ||
+                            !kmersToIgnore.contains(valHigh, valLow) ) {
+                        tupleList.add(new Tuple2<>(new KmerAndInterval(valHigh, valLow, intervalId), 1));
+                    }
+                });
             }
             return tupleList.iterator();
         }
@@ -1234,13 +1275,12 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
                      final int minKmerCountWithinPartition ) {
             final HopscotchMap<SVKmer, Integer, KmerAndCount> kmerMap = new HopscotchMap<>(totalKmersPerPartitionGuess);
             while ( readItr.hasNext() ) {
-                SVKmerizerWithLowComplexityFilter.stream(readItr.next().getBases(), kSize, minEntropy)
-                        .map(kmer -> kmer.canonical(kSize))
-                        .forEach(kmer -> {
-                            final KmerAndCount kmerAndCount = kmerMap.find(kmer);
-                            if ( kmerAndCount != null ) kmerAndCount.incrementCount();
-                            else kmerMap.add(new KmerAndCount(kmer));
-                        });
+                SVKmerizer.forEachCanonicalKmer(readItr.next().getBases(), kSize, minEntropy, ( valHigh, valLow ) -> {
+                    final SVKmer kmer = new SVKmer(valHigh, valLow);
+                    final KmerAndCount kmerAndCount = kmerMap.find(kmer);
+                    if ( kmerAndCount != null ) kmerAndCount.incrementCount();
+                    else kmerMap.add(new KmerAndCount(kmer));
+                });
             }
             final Iterator<KmerAndCount> kmerItr = kmerMap.iterator();
             while ( kmerItr.hasNext() ) {
@@ -1317,28 +1357,27 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
     private static final class QNamesForKmersFinder implements Function<GATKRead, Iterator<QNameAndInterval>> {
         private final int kSize;
         private final double minEntropy;
-        private final HopscotchUniqueMultiMap<SVKmer, Integer, KmerAndInterval> kmerMultiMap;
+        private final PackedSVKmerIntervalMultiMap kmerMultiMap;
+        private final BlockedBloomFilter kmerFilter;
         private final Set<Integer> intervalIdSet = new HashSet<>();
         private final List<QNameAndInterval> qNameAndIntervalList = new ArrayList<>();
         private final Iterator<QNameAndInterval> emptyIterator = Collections.emptyIterator();
 
         QNamesForKmersFinder( final int kSize, final double minEntropy,
-                              final HopscotchUniqueMultiMap<SVKmer, Integer, KmerAndInterval> kmerMultiMap ) {
+                              final PackedSVKmerIntervalMultiMap kmerMultiMap, final BlockedBloomFilter kmerFilter ) {
             this.kSize = kSize;
             this.minEntropy = minEntropy;
             this.kmerMultiMap = kmerMultiMap;
+            this.kmerFilter = kmerFilter;
         }
 
         public Iterator<QNameAndInterval> apply(final GATKRead read) {
             intervalIdSet.clear();
-            SVKmerizerWithLowComplexityFilter.stream(read.getBases(), kSize, minEntropy)
-                    .map( kmer -> kmer.canonical(kSize) )
-                    .forEach( kmer -> {
-                        final Iterator<KmerAndInterval> itr = kmerMultiMap.findEach(kmer);
-                        while ( itr.hasNext() ) {
-                            intervalIdSet.add(itr.next().getValue());
-                        }
-                    });
+            SVKmerizer.forEachCanonicalKmer(read.getBases(), kSize, minEntropy, ( valHigh, valLow ) -> {
+                if ( kmerFilter.mightContain(valHigh, valLow) ) {
+                    kmerMultiMap.forEachIntervalId(valHigh, valLow, intervalIdSet::add);
+                }
+            });
             if (intervalIdSet.isEmpty()) return emptyIterator;
             qNameAndIntervalList.clear();
             final String qName = read.getName();
@@ -1353,14 +1392,17 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
      */
     private static final class ReadsForQNamesFinder {
         private final HopscotchUniqueMultiMap<String, Integer, QNameAndInterval> qNamesMultiMap;
+        private final BlockedBloomFilter qNamesFilter;
         private final int nIntervals;
         private final int nReadsPerInterval;
         private final boolean includeMappingLocation;
 
         @SuppressWarnings("unchecked")
         ReadsForQNamesFinder( final HopscotchUniqueMultiMap<String, Integer, QNameAndInterval> qNamesMultiMap,
+                              final BlockedBloomFilter qNamesFilter,
                               final int nIntervals, final boolean includeMappingLocation ) {
             this.qNamesMultiMap = qNamesMultiMap;
+            this.qNamesFilter = qNamesFilter;
             this.nIntervals = nIntervals;
             this.nReadsPerInterval = 2*qNamesMultiMap.size()/nIntervals;
             this.includeMappingLocation = includeMappingLocation;
@@ -1373,6 +1415,7 @@ public final class FindBreakpointEvidenceSpark extends GATKSparkTool {
             while ( readsItr.hasNext() ) {
                 final GATKRead read = readsItr.next();
                 final String readName = read.getName();
+                if ( !qNamesFilter.mightContain(readName) ) continue;
                 final Iterator<QNameAndInterval> namesItr = qNamesMultiMap.findEach(readName);
                 byte[] fastqBytes = null;
                 while ( namesItr.hasNext() ) {
@@ -0,0 +1,148 @@
+package org.broadinstitute.hellbender.tools.spark.sv;
+
+import com.esotericsoftware.kryo.DefaultSerializer;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+import static org.broadinstitute.hellbender.tools.spark.sv.PackedSVKmerSet.EMPTY;
+
+/**
+ * A multi-map of SVKmers onto interval IDs with distinct entries, stored in flat primitive arrays:
+ * the raw (valHigh, valLow) pair of each kmer in a long[], and the interval ID in a parallel int[].
+ * Entries for the same kmer all live on the kmer's linear probe chain.
+ * Like {@link PackedSVKmerSet}, it has no per-entry objects and is serialized as raw blocks that need no rehashing
+ * when deserialized, which is what we want for the broadcast of the kmer-to-interval map.
+ */
+@DefaultSerializer(PackedSVKmerIntervalMultiMap.Serializer.class)
+public final class PackedSVKmerIntervalMultiMap {
+    private long[] kmers; // valHigh, valLow for each slot
+    private int[] intervalIds;
+    private int size;
+
+    public PackedSVKmerIntervalMultiMap() { this(0); }
+
+    public PackedSVKmerIntervalMultiMap( final int expectedSize ) {
+        Utils.validateArg(expectedSize >= 0, "expected size can't be negative");
+        allocate(PackedSVKmerSet.capacityFor(expectedSize));
+    }
+
+    public PackedSVKmerIntervalMultiMap( final Collection<? extends Map.Entry<SVKmer, Integer>> entries ) {
+        this(entries.size());
+        entries.forEach(entry -> add(entry.getKey(), entry.getValue()));
+    }
+
+    private PackedSVKmerIntervalMultiMap( final Kryo kryo, final Input input ) {
+        size = input.readInt();
+        final int capacity = input.readInt();
+        kmers = input.readLongs(2*capacity);
+        intervalIds = input.readInts(capacity);
+    }
+
+    private void serialize( final Kryo kryo, final Output output ) {
+        output.writeInt(size);
+        output.writeInt(intervalIds.length);
+        output.writeLongs(kmers);
+        output.writeInts(intervalIds);
+    }
+
+    /** number of distinct <kmer, intervalId> entries */
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    /** Returns true if the entry wasn't already present. */
+    public boolean add( final SVKmer kmer, final int intervalId ) {
+        final long valHigh = kmer.getValHigh();
+        final long valLow = kmer.getValLow();
+        final int mask = intervalIds.length - 1;
+        int slot = PackedSVKmerSet.hash(valHigh, valLow) & mask;
+        while ( kmers[2*slot] != EMPTY ) {
+            if ( kmers[2*slot] == valHigh && kmers[2*slot+1] == valLow && intervalIds[slot] == intervalId ) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        kmers[2*slot] = valHigh;
+        kmers[2*slot+1] = valLow;
+        intervalIds[slot] = intervalId;
+        if ( ++size > PackedSVKmerSet.maxLoad(intervalIds.length) ) resize();
+        return true;
+    }
+
+    /** Hand each interval ID associated with the kmer to the consumer. */
+    public void forEachIntervalId( final SVKmer kmer, final IntConsumer intervalIdConsumer ) {
+        forEachIntervalId(kmer.getValHigh(), kmer.getValLow(), intervalIdConsumer);
+    }
+
+    /** Like the SVKmer version, but for a kmer given as a raw (valHigh, valLow) pair. */
+    public void forEachIntervalId( final long valHigh, final long valLow, final IntConsumer intervalIdConsumer ) {
+        final int mask = intervalIds.length - 1;
+        int slot = PackedSVKmerSet.hash(valHigh, valLow) & mask;
+        long slotHigh;
+        while ( (slotHigh = kmers[2*slot]) != EMPTY ) {
+            if ( slotHigh == valHigh && kmers[2*slot+1] == valLow ) intervalIdConsumer.accept(intervalIds[slot]);
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public boolean containsKey( final SVKmer kmer ) {
+        final long valHigh = kmer.getValHigh();
+        final long valLow = kmer.getValLow();
+        final int mask = intervalIds.length - 1;
+        int slot = PackedSVKmerSet.hash(valHigh, valLow) & mask;
+        long slotHigh;
+        while ( (slotHigh = kmers[2*slot]) != EMPTY ) {
+            if ( slotHigh == valHigh && kmers[2*slot+1] == valLow ) return true;
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /** Hand the kmer of each entry to the consumer (so a kmer with several interval IDs is seen several times). */
+    public void forEachKmer( final SVKmerizer.KmerConsumer kmerConsumer ) {
+        for ( int idx = 0; idx < kmers.length; idx += 2 ) {
+            if ( kmers[idx] != EMPTY ) kmerConsumer.accept(kmers[idx], kmers[idx+1]);
+        }
+    }
+
+    private void allocate( final int capacity ) {
+        kmers = new long[2*capacity];
+        for ( int idx = 0; idx < kmers.length; idx += 2 ) kmers[idx] = EMPTY;
+        intervalIds = new int[capacity];
+    }
+
+    private void resize() {
+        final long[] oldKmers = kmers;
+        final int[] oldIntervalIds = intervalIds;
+        allocate(PackedSVKmerSet.doubleCapacity(oldIntervalIds.length));
+        final int mask = intervalIds.length - 1;
+        for ( int oldSlot = 0; oldSlot != oldIntervalIds.length; ++oldSlot ) {
+            final long valHigh = oldKmers[2*oldSlot];
+            if ( valHigh == EMPTY ) continue;
+            final long valLow = oldKmers[2*oldSlot+1];
+            int slot = PackedSVKmerSet.hash(valHigh, valLow) & mask;
+            while ( kmers[2*slot] != EMPTY ) slot = (slot + 1) & mask;
+            kmers[2*slot] = valHigh;
+            kmers[2*slot+1] = valLow;
+            intervalIds[slot] = oldIntervalIds[oldSlot];
+        }
+    }
+
+    public static final class Serializer extends com.esotericsoftware.kryo.Serializer<PackedSVKmerIntervalMultiMap> {
+        @Override
+        public void write( final Kryo kryo, final Output output, final PackedSVKmerIntervalMultiMap kmerMultiMap ) {
+            kmerMultiMap.serialize(kryo, output);
+        }
+
+        @Override
+        public PackedSVKmerIntervalMultiMap read( final Kryo kryo, final Input input,
+                                                  final Class<PackedSVKmerIntervalMultiMap> klass ) {
+            return new PackedSVKmerIntervalMultiMap(kryo, input);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package org.broadinstitute.hellbender.tools.spark.sv;
+
+import com.esotericsoftware.kryo.DefaultSerializer;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.Collection;
+
+/**
+ * A set of SVKmers stored as raw (valHigh, valLow) pairs in a flat long[] open-addressing (linear probe) table.
+ * There's no per-kmer object, and serialization just writes the table as a block of longs, so deserializing a
+ * broadcast copy doesn't rehash anything.
+ *
+ * An SVKmer's valHigh has at most 63 significant bits (K is less than 64), so an all-ones valHigh marks an empty slot.
+ */
+@DefaultSerializer(PackedSVKmerSet.Serializer.class)
+public final class PackedSVKmerSet {
+    static final long EMPTY = -1L;
+    private static final int MIN_CAPACITY = 16;
+    // the biggest table of 2 longs per slot whose length fits in an int
+    static final int MAX_CAPACITY = 1 << 29;
+
+    private long[] kmers; // valHigh, valLow for each slot
+    private int size;
+
+    public PackedSVKmerSet() { this(0); }
+
+    public PackedSVKmerSet( final int expectedSize ) {
+        Utils.validateArg(expectedSize >= 0, "expected size can't be negative");
+        kmers = emptyTable(capacityFor(expectedSize));
+    }
+
+    public PackedSVKmerSet( final Collection<SVKmer> kmerCollection ) {
+        this(kmerCollection.size());
+        kmerCollection.forEach(this::add);
+    }
+
+    private PackedSVKmerSet( final Kryo kryo, final Input input ) {
+        size = input.readInt();
+        final int capacity = input.readInt();
+        kmers = input.readLongs(2*capacity);
+    }
+
+    private void serialize( final Kryo kryo, final Output output ) {
+        output.writeInt(size);
+        output.writeInt(kmers.length/2);
+        output.writeLongs(kmers);
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    /** Returns true if the kmer wasn't already present. */
+    public boolean add( final SVKmer kmer ) {
+        final long valHigh = kmer.getValHigh();
+        final long valLow = kmer.getValLow();
+        final int mask = kmers.length/2 - 1;
+        int slot = hash(valHigh, valLow) & mask;
+        while ( kmers[2*slot] != EMPTY ) {
+            if ( kmers[2*slot] == valHigh && kmers[2*slot+1] == valLow ) return false;
+            slot = (slot + 1) & mask;
+        }
+        kmers[2*slot] = valHigh;
+        kmers[2*slot+1] = valLow;
+        if ( ++size > maxLoad(kmers.length/2) ) resize();
+        return true;
+    }
+
+    public boolean contains( final SVKmer kmer ) {
+        return contains(kmer.getValHigh(), kmer.getValLow());
+    }
+
+    /** Test for a kmer given as a raw (valHigh, valLow) pair, like those from {@link SVKmerizer#forEachCanonicalKmer}. */
+    public boolean contains( final long valHigh, final long valLow ) {
+        final int mask = kmers.length/2 - 1;
+        int slot = hash(valHigh, valLow) & mask;
+        long slotHigh;
+        while ( (slotHigh = kmers[2*slot]) != EMPTY ) {
+            if ( slotHigh == valHigh && kmers[2*slot+1] == valLow ) return true;
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    private void resize() {
+        final long[] oldKmers = kmers;
+        kmers = emptyTable(doubleCapacity(oldKmers.length/2));
+        final int mask = kmers.length/2 - 1;
+        for ( int idx = 0; idx < oldKmers.length; idx += 2 ) {
+            final long valHigh = oldKmers[idx];
+            if ( valHigh == EMPTY ) continue;
+            final long valLow = oldKmers[idx+1];
+            int slot = hash(valHigh, valLow) & mask;
+            while ( kmers[2*slot] != EMPTY ) slot = (slot + 1) & mask;
+            kmers[2*slot] = valHigh;
+            kmers[2*slot+1] = valLow;
+        }
+    }
+
+    private static long[] emptyTable( final int capacity ) {
+        final long[] table = new long[2*capacity];
+        for ( int idx = 0; idx < table.length; idx += 2 ) table[idx] = EMPTY;
+        return table;
+    }
+
+    /** a power of 2 big enough to hold the expected number of entries without exceeding the max load */
+    static int capacityFor( final int expectedSize ) {
+        int capacity = MIN_CAPACITY;
+        while ( maxLoad(capacity) < expectedSize ) {
+            capacity = doubleCapacity(capacity);
+        }
+        return capacity;
+    }
+
+    /** the capacity to grow a full table to */
+    static int doubleCapacity( final int capacity ) {
+        if ( capacity >= MAX_CAPACITY ) throw new IllegalStateException("Packed kmer table is too big.");
+        return 2*capacity;
+    }
+
+    /** we keep the table at most 2/3 full to keep the linear probe chains short */
+    static int maxLoad( final int capacity ) { return (int)(2L*capacity/3); }
+
+    /** mix the bits of both halves of the kmer (the murmur3 64-bit finalizer) */
+    static int hash( final long valHigh, final long valLow ) {
+        return (int)hash64(valHigh, valLow);
+    }
+
+    /** all 64 bits of the kmer's hash, for clients (like {@link BlockedBloomFilter}) that need more than an int */
+    static long hash64( final long valHigh, final long valLow ) {
+        return fmix64(valHigh * 0x9E3779B97F4A7C15L ^ valLow);
+    }
+
+    static long fmix64( long hash ) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    public static final class Serializer extends com.esotericsoftware.kryo.Serializer<PackedSVKmerSet> {
+        @Override
+        public void write( final Kryo kryo, final Output output, final PackedSVKmerSet kmerSet ) {
+            kmerSet.serialize(kryo, output);
+        }
+
+        @Override
+        public PackedSVKmerSet read( final Kryo kryo, final Input input, final Class<PackedSVKmerSet> klass ) {
+            return new PackedSVKmerSet(kryo, input);
+        }
+    }
+}
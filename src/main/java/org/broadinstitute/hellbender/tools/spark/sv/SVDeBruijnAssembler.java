@@ -0,0 +1,263 @@
+package org.broadinstitute.hellbender.tools.spark.sv;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.broadinstitute.hellbender.tools.spark.sv.RunSGAViaProcessBuilderOnSpark.ContigsCollection;
+import org.broadinstitute.hellbender.utils.BaseUtils;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.*;
+
+import static org.broadinstitute.hellbender.tools.spark.sv.SVKmer.Base;
+
+/**
+ * In-process de Bruijn graph assembler for the small read sets gathered for each putative breakpoint.
+ * It's a lightweight stand-in for running the SGA pipeline in an external process:
+ * <ol>
+ *     <li>Count canonical kmers in the reads, and drop the ones seen fewer than minKmerCount times (errors).</li>
+ *     <li>Clip tips: dead-end unitigs shorter than maxTipKmers kmers that hang off a fork.</li>
+ *     <li>Pop simple bubbles (alternate paths of no more than 2K kmers between the same pair of kmers, like those
+ *         made by a SNP or small indel on one haplotype, or a recurrent error) by keeping the best-supported path.</li>
+ *     <li>Compact the remaining graph into unitigs, and report those at least minContigLength long.</li>
+ * </ol>
+ * Contigs are named like SGA's ("&gt;contig-N length 0"), so they can go wherever SGA's contigs go.
+ */
+public final class SVDeBruijnAssembler {
+    public static final int DEFAULT_KMER_SIZE = 51;
+    public static final int DEFAULT_MIN_KMER_COUNT = 2;
+    public static final int DEFAULT_MAX_TIP_KMERS = DEFAULT_KMER_SIZE;
+    public static final int DEFAULT_MIN_CONTIG_LENGTH = 2*DEFAULT_KMER_SIZE;
+
+    private static final Base[] BASES = Base.values();
+    private static final int MAX_SIMPLIFICATION_ROUNDS = 10;
+
+    private final int kSize;
+    private final int minKmerCount;
+    private final int maxTipKmers;
+    private final int minContigLength;
+
+    public SVDeBruijnAssembler() {
+        this(DEFAULT_KMER_SIZE, DEFAULT_MIN_KMER_COUNT, DEFAULT_MAX_TIP_KMERS, DEFAULT_MIN_CONTIG_LENGTH);
+    }
+
+    public SVDeBruijnAssembler( final int kSize, final int minKmerCount, final int maxTipKmers,
+                                final int minContigLength ) {
+        Utils.validateArg(kSize > 0 && kSize < 64 && (kSize & 1) != 0, "K must be odd, and between 1 and 63.");
+        Utils.validateArg(minKmerCount > 0, "minimum kmer count must be positive");
+        Utils.validateArg(maxTipKmers >= 0, "maximum tip size can't be negative");
+        this.kSize = kSize;
+        this.minKmerCount = minKmerCount;
+        this.maxTipKmers = maxTipKmers;
+        this.minContigLength = minContigLength;
+    }
+
+    /** Assemble the reads in the text of an (interleaved) FASTQ file. */
+    public ContigsCollection assembleFastq( final String fastqContents ) {
+        final List<byte[]> reads = new ArrayList<>();
+        final String[] lines = fastqContents.split("\n");
+        for ( int lineNo = 1; lineNo < lines.length; lineNo += 4 ) {
+            reads.add(lines[lineNo].trim().getBytes());
+        }
+        return assemble(reads);
+    }
+
+    /** Assemble the reads in a list of FASTQ records, like those gathered by {@link FindBreakpointEvidenceSpark}. */
+    public ContigsCollection assembleFastqRecords( final List<byte[]> fastqRecords ) {
+        final List<byte[]> reads = new ArrayList<>(fastqRecords.size());
+        for ( final byte[] fastqRecord : fastqRecords ) {
+            // the bases are on the 2nd line of the record
+            int start = 0;
+            while ( start < fastqRecord.length && fastqRecord[start] != '\n' ) ++start;
+            int end = ++start;
+            while ( end < fastqRecord.length && fastqRecord[end] != '\n' ) ++end;
+            if ( start < end ) reads.add(Arrays.copyOfRange(fastqRecord, start, end));
+        }
+        return assemble(reads);
+    }
+
+    /** Assemble some read sequences into contigs. */
+    public ContigsCollection assemble( final List<byte[]> reads ) {
+        final List<String> contigs = new ArrayList<>();
+        for ( final String unitig : buildUnitigs(reads) ) {
+            if ( unitig.length() >= minContigLength ) contigs.add(unitig);
+        }
+        // longest first, like SGA's numbering
+        contigs.sort(Comparator.comparingInt(String::length).reversed().thenComparing(Comparator.naturalOrder()));
+        final List<String> fastaLines = new ArrayList<>(2*contigs.size());
+        for ( int contigNo = 0; contigNo != contigs.size(); ++contigNo ) {
+            final String contig = contigs.get(contigNo);
+            fastaLines.add(">contig-" + contigNo + " " + contig.length() + " 0");
+            fastaLines.add(contig);
+        }
+        return new ContigsCollection(fastaLines);
+    }
+
+    @VisibleForTesting List<String> buildUnitigs( final List<byte[]> reads ) {
+        final Map<SVKmer, Integer> kmerCounts = getSolidKmerCounts(reads);
+        final Set<SVKmer> solidKmers = kmerCounts.keySet();
+        List<String> unitigs = compact(solidKmers);
+        for ( int round = 0; round != MAX_SIMPLIFICATION_ROUNDS; ++round ) {
+            final boolean clipped = maxTipKmers > 0 && clipTips(unitigs, solidKmers);
+            if ( clipped ) unitigs = compact(solidKmers);
+            final boolean popped = popBubbles(unitigs, kmerCounts);
+            if ( popped ) unitigs = compact(solidKmers);
+            if ( !clipped && !popped ) break;
+        }
+        return unitigs;
+    }
+
+    /** counts of the canonical kmers that occur at least minKmerCount times */
+    private Map<SVKmer, Integer> getSolidKmerCounts( final List<byte[]> reads ) {
+        final int nKmersGuess = reads.stream().mapToInt(read -> Math.max(0, read.length - kSize + 1)).sum();
+        final Map<SVKmer, Integer> kmerCounts = new HashMap<>(SVUtils.hashMapCapacity(nKmersGuess));
+        for ( final byte[] read : reads ) {
+            final SVKmerizer kmerizer = new SVKmerizer(read, kSize);
+            while ( kmerizer.hasNext() ) {
+                kmerCounts.merge(kmerizer.next().canonical(kSize), 1, Integer::sum);
+            }
+        }
+        kmerCounts.values().removeIf(count -> count < minKmerCount);
+        return kmerCounts;
+    }
+
+    /**
+     * Find unitigs that run between the same pair of kmers, and remove the kmers of all but the one with the
+     * highest mean kmer count.  Returns true if any were removed.
+     */
+    private boolean popBubbles( final List<String> unitigs, final Map<SVKmer, Integer> kmerCounts ) {
+        final Set<SVKmer> solidKmers = kmerCounts.keySet();
+        final Map<List<SVKmer>, List<String>> branchesByEnds = new HashMap<>();
+        for ( final String unitig : unitigs ) {
+            if ( unitig.length() - kSize + 1 > 2*kSize ) continue;
+            final List<SVKmer> predecessors =
+                    getPredecessors(SVKmerizer.toKmer(unitig.substring(0, kSize)), solidKmers);
+            final List<SVKmer> successors =
+                    getSuccessors(SVKmerizer.toKmer(unitig.substring(unitig.length() - kSize)), solidKmers);
+            if ( predecessors.size() != 1 || successors.size() != 1 ) continue;
+            // the same path read on the other strand runs from rc(successor) to rc(predecessor)
+            final SVKmer start = predecessors.get(0);
+            final SVKmer end = successors.get(0);
+            final SVKmer rcStart = end.reverseComplement(kSize);
+            final SVKmer rcEnd = start.reverseComplement(kSize);
+            final boolean isForward = start.compareTo(rcStart) < 0 || (start.equals(rcStart) && end.compareTo(rcEnd) <= 0);
+            final List<SVKmer> ends = isForward ? Arrays.asList(start, end) : Arrays.asList(rcStart, rcEnd);
+            branchesByEnds.computeIfAbsent(ends, k -> new ArrayList<>()).add(unitig);
+        }
+        boolean popped = false;
+        for ( final List<String> branches : branchesByEnds.values() ) {
+            if ( branches.size() < 2 ) continue;
+            String bestBranch = null;
+            double bestMeanCount = -1.;
+            for ( final String branch : branches ) {
+                final double meanCount = meanKmerCount(branch, kmerCounts);
+                if ( meanCount > bestMeanCount ) {
+                    bestMeanCount = meanCount;
+                    bestBranch = branch;
+                }
+            }
+            for ( final String branch : branches ) {
+                if ( branch.equals(bestBranch) ) continue;
+                final SVKmerizer kmerizer = new SVKmerizer(branch, kSize);
+                while ( kmerizer.hasNext() ) solidKmers.remove(kmerizer.next().canonical(kSize));
+                popped = true;
+            }
+        }
+        return popped;
+    }
+
+    private double meanKmerCount( final String unitig, final Map<SVKmer, Integer> kmerCounts ) {
+        long total = 0;
+        int nKmers = 0;
+        final SVKmerizer kmerizer = new SVKmerizer(unitig, kSize);
+        while ( kmerizer.hasNext() ) {
+            total += kmerCounts.get(kmerizer.next().canonical(kSize));
+            nKmers += 1;
+        }
+        return (double)total / nKmers;
+    }
+
+    /**
+     * Remove the kmers of short, dead-end unitigs that join a node having another neighbor on the same side.
+     * (A dead end that leads into a fork isn't a tip: it's likely the end of the sequence.)
+     * Returns true if any were removed.
+     */
+    private boolean clipTips( final List<String> unitigs, final Set<SVKmer> solidKmers ) {
+        final List<String> tips = new ArrayList<>();
+        for ( final String unitig : unitigs ) {
+            final int nKmers = unitig.length() - kSize + 1;
+            if ( nKmers >= maxTipKmers ) continue;
+            final SVKmer firstKmer = SVKmerizer.toKmer(unitig.substring(0, kSize));
+            final SVKmer lastKmer = SVKmerizer.toKmer(unitig.substring(unitig.length() - kSize));
+            final List<SVKmer> predecessors = getPredecessors(firstKmer, solidKmers);
+            final List<SVKmer> successors = getSuccessors(lastKmer, solidKmers);
+            final boolean isTip;
+            if ( predecessors.isEmpty() ) {
+                isTip = successors.size() == 1 && getPredecessors(successors.get(0), solidKmers).size() > 1;
+            } else if ( successors.isEmpty() ) {
+                isTip = predecessors.size() == 1 && getSuccessors(predecessors.get(0), solidKmers).size() > 1;
+            } else {
+                isTip = false;
+            }
+            if ( isTip ) tips.add(unitig);
+        }
+        for ( final String tip : tips ) {
+            final SVKmerizer kmerizer = new SVKmerizer(tip, kSize);
+            while ( kmerizer.hasNext() ) solidKmers.remove(kmerizer.next().canonical(kSize));
+        }
+        return !tips.isEmpty();
+    }
+
+    /** walk maximal non-branching paths through the graph */
+    private List<String> compact( final Set<SVKmer> solidKmers ) {
+        final List<String> unitigs = new ArrayList<>();
+        final Set<SVKmer> usedKmers = new HashSet<>(SVUtils.hashMapCapacity(solidKmers.size()));
+        for ( final SVKmer kmer : solidKmers ) {
+            if ( !usedKmers.add(kmer) ) continue;
+            final StringBuilder leftExtension = extendRight(kmer.reverseComplement(kSize), solidKmers, usedKmers);
+            final StringBuilder rightExtension = extendRight(kmer, solidKmers, usedKmers);
+            final StringBuilder unitig = new StringBuilder(leftExtension.length() + kSize + rightExtension.length());
+            for ( int idx = leftExtension.length() - 1; idx >= 0; --idx ) {
+                unitig.append((char)BaseUtils.simpleComplement((byte)leftExtension.charAt(idx)));
+            }
+            unitig.append(kmer.toString(kSize)).append(rightExtension);
+            unitigs.add(unitig.toString());
+        }
+        return unitigs;
+    }
+
+    /** the bases added by following unique successors, as long as each successor has a unique predecessor */
+    private StringBuilder extendRight( SVKmer kmer, final Set<SVKmer> solidKmers, final Set<SVKmer> usedKmers ) {
+        final StringBuilder extension = new StringBuilder();
+        while ( true ) {
+            SVKmer next = null;
+            for ( final Base base : BASES ) {
+                final SVKmer successor = kmer.successor(base, kSize);
+                if ( solidKmers.contains(successor.canonical(kSize)) ) {
+                    if ( next != null ) return extension; // branch
+                    next = successor;
+                }
+            }
+            if ( next == null || getPredecessors(next, solidKmers).size() != 1 ) return extension;
+            if ( !usedKmers.add(next.canonical(kSize)) ) return extension; // cycle
+            extension.append(BaseUtils.BASE_CHARS[(int)next.lastBase().value]);
+            kmer = next;
+        }
+    }
+
+    private List<SVKmer> getSuccessors( final SVKmer kmer, final Set<SVKmer> solidKmers ) {
+        final List<SVKmer> successors = new ArrayList<>(BASES.length);
+        for ( final Base base : BASES ) {
+            final SVKmer successor = kmer.successor(base, kSize);
+            if ( solidKmers.contains(successor.canonical(kSize)) ) successors.add(successor);
+        }
+        return successors;
+    }
+
+    private List<SVKmer> getPredecessors( final SVKmer kmer, final Set<SVKmer> solidKmers ) {
+        final List<SVKmer> predecessors = new ArrayList<>(BASES.length);
+        for ( final Base base : BASES ) {
+            final SVKmer predecessor = kmer.predecessor(base, kSize);
+            if ( solidKmers.contains(predecessor.canonical(kSize)) ) predecessors.add(predecessor);
+        }
+        return predecessors;
+    }
+}
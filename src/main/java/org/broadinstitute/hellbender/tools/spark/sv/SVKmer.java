@@ -50,7 +50,7 @@ public class SVKmer implements Comparable<SVKmer> {
 
     public SVKmer( final SVKmer that ) { this.valHigh = that.valHigh; this.valLow = that.valLow; }
 
-    private SVKmer( final long valHigh, final long valLow ) { this.valHigh = valHigh; this.valLow = valLow; }
+    SVKmer( final long valHigh, final long valLow ) { this.valHigh = valHigh; this.valLow = valLow; }
 
     protected SVKmer( final Kryo kryo, final Input input ) {
         valHigh = input.readLong();
@@ -131,6 +131,12 @@ public class SVKmer implements Comparable<SVKmer> {
         return reverseComplement(kSize);
     }
 
+    /** The most significant K bits, for packed kmer collections. */
+    final long getValHigh() { return valHigh; }
+
+    /** The least significant K bits, for packed kmer collections. */
+    final long getValLow() { return valLow; }
+
     public final Base firstBase( final int kSize ) { return Base.values()[(int)(valHigh >> (kSize-2))]; }
     public final Base lastBase() { return Base.values()[(int)(valLow & 3)]; }
 
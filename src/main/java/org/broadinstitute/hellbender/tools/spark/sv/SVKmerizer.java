@@ -64,6 +64,93 @@ public class SVKmerizer implements Iterator<SVKmer> {
         return stream(new ASCIICharSequence(seq),kSize);
     }
 
+    /** Receives each kmer as the raw (valHigh, valLow) pair of an SVKmer. */
+    @FunctionalInterface
+    public interface KmerConsumer {
+        void accept( long valHigh, long valLow );
+    }
+
+    /**
+     * Hand the canonical form of each kmer in the sequence to the consumer, without making any objects.
+     * Like the iterator, it silently skips over parts of the sequence that have characters other than A, C, G, or T.
+     * K must be odd.
+     */
+    public static void forEachCanonicalKmer( final byte[] seq, final int kSize, final KmerConsumer consumer ) {
+        forEachCanonicalKmer(seq, kSize, 0., consumer);
+    }
+
+    /**
+     * Hand the canonical form of each kmer in the sequence having at least minEntropy base-wise Shannon entropy to the
+     * consumer, without making any objects.  The kmers passed are the same as those you'd get from
+     * {@link SVKmerizerWithLowComplexityFilter} followed by {@link SVKmer#canonical}.
+     * The forward kmer, its reverse-complement, and its base counts are all rolled along the sequence one base at a
+     * time, so the cost per kmer is a few shifts and masks, and four table lookups if there's an entropy threshold.
+     * K must be odd.
+     */
+    public static void forEachCanonicalKmer( final byte[] seq, final int kSize, final double minEntropy,
+                                             final KmerConsumer consumer ) {
+        Utils.validateArg(kSize >= 1 && kSize < 64 && (kSize & 1) != 0, "K must be odd, and between 1 and 63.");
+        final long mask = (1L << kSize) - 1L;
+        final boolean filterEntropy = minEntropy > 0.;
+        final double[] entropies = filterEntropy ? SVKmerizerWithLowComplexityFilter.getEntropies(kSize) : null;
+        long fwdHigh = 0L, fwdLow = 0L; // poly-A
+        long rcHigh = mask, rcLow = mask; // poly-T
+        int nA = kSize, nC = 0, nG = 0, nT = 0; // base counts of the forward kmer
+        int validBaseCount = 0;
+        for ( final byte baseChar : seq ) {
+            final int base;
+            switch ( baseChar ) {
+                case 'a': case 'A': base = 0; break;
+                case 'c': case 'C': base = 1; break;
+                case 'g': case 'G': base = 2; break;
+                case 't': case 'T': base = 3; break;
+                default: validBaseCount = 0; continue;
+            }
+            if ( filterEntropy ) {
+                switch ( (int)(fwdHigh >> (kSize-2)) ) { // the leading base is rolling out of the kmer
+                    case 0: nA -= 1; break;
+                    case 1: nC -= 1; break;
+                    case 2: nG -= 1; break;
+                    default: nT -= 1; break;
+                }
+                switch ( base ) {
+                    case 0: nA += 1; break;
+                    case 1: nC += 1; break;
+                    case 2: nG += 1; break;
+                    default: nT += 1; break;
+                }
+            }
+            // the same bit-twiddling as SVKmer.successor for the forward kmer ...
+            fwdHigh = ((fwdHigh << 2) | (fwdLow >> (kSize-2))) & mask;
+            fwdLow = ((fwdLow << 2) | base) & mask;
+            // ... and as SVKmer.predecessor with the complementary base for the reverse-complement
+            rcLow = ((rcLow >> 2) | (rcHigh << (kSize-2))) & mask;
+            rcHigh = ((rcHigh >> 2) | ((long)(3 - base) << (kSize-2))) & mask;
+
+            if ( ++validBaseCount < kSize ) continue;
+            if ( filterEntropy &&
+                    entropies[nA] + entropies[nC] + entropies[nG] + entropies[nT] < minEntropy ) continue;
+            // an odd-K kmer is canonical if the high bit of its middle base (the low bit of valHigh) is 0
+            if ( (fwdHigh & 1L) == 0 ) consumer.accept(fwdHigh, fwdLow);
+            else consumer.accept(rcHigh, rcLow);
+        }
+    }
+
+    /**
+     * Put the raw (valHigh, valLow) pairs of the canonical kmers of the sequence that pass the entropy filter into a
+     * reusable buffer, which must have room for 2*(seq.length-kSize+1) longs.  Returns the number of kmers.
+     */
+    public static int canonicalKmers( final byte[] seq, final int kSize, final double minEntropy, final long[] buffer ) {
+        Utils.validateArg(buffer.length >= 2L*(seq.length-kSize+1), "kmer buffer is too small");
+        final int[] nKmers = new int[1];
+        forEachCanonicalKmer(seq, kSize, minEntropy, ( valHigh, valLow ) -> {
+            final int idx = 2*nKmers[0]++;
+            buffer[idx] = valHigh;
+            buffer[idx+1] = valLow;
+        });
+        return nKmers[0];
+    }
+
     protected SVKmer nextKmer( SVKmer tmpKmer, int validBaseCount ) {
         final int len = seq.length();
         while ( idx < len ) {
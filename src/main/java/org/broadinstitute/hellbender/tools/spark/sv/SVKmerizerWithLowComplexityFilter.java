@@ -1,6 +1,5 @@
 package org.broadinstitute.hellbender.tools.spark.sv;
 
-import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
@@ -69,7 +68,8 @@ public class SVKmerizerWithLowComplexityFilter extends SVKmerizer {
             idx += 1;
 
             if ( ++validBaseCount >= kSize ) {
-                final double entropy = Arrays.stream(baseCounts).mapToDouble(count -> entropies[count]).sum();
+                double entropy = 0.;
+                for ( final int count : baseCounts ) entropy += entropies[count];
                 if ( entropy >= minEntropy ) return tmpKmer;
             }
         }
@@ -80,7 +80,7 @@ public class SVKmerizerWithLowComplexityFilter extends SVKmerizer {
      * This returns an array where the i'th entry is the contribution to the total entropy of a kmer of some
      * base that occurs i times in a kmer of the given size.
      */
-    private static double[] getEntropies( final int kSize ) {
+    static double[] getEntropies( final int kSize ) {
         double[] result = entropyMap.get(kSize);
         if ( result == null ) {
             result = new double[kSize+1];
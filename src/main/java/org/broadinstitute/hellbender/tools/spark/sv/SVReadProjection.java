@@ -0,0 +1,230 @@
+package org.broadinstitute.hellbender.tools.spark.sv;
+
+import com.esotericsoftware.kryo.DefaultSerializer;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import htsjdk.samtools.*;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.storage.StorageLevel;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.SAMRecordToGATKReadAdapter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The part of a read that the breakpoint evidence passes look at: template name, flags, alignment and mate positions,
+ * cigar, read group, supplementary alignments (the SA tag, which split read evidence reports), and bases (packed two
+ * per byte) and qualities. All other attributes are dropped.
+ *
+ * <p>
+ *     The reads are traversed several times to find breakpoint evidence. Caching these compact projections in
+ *     serialized form lets the later traversals skip re-reading and re-decoding the input reads.
+ * </p>
+ */
+@DefaultSerializer(SVReadProjection.Serializer.class)
+public final class SVReadProjection {
+    private static final byte[] BASES = "=ACMGRSVTWYHKDBN".getBytes();
+    private static final byte[] BASE_TO_NIBBLE = new byte[256];
+    static {
+        for ( int idx = 0; idx != BASE_TO_NIBBLE.length; ++idx ) BASE_TO_NIBBLE[idx] = 15; // N
+        for ( int nibble = 0; nibble != BASES.length; ++nibble ) {
+            BASE_TO_NIBBLE[BASES[nibble]] = (byte)nibble;
+            BASE_TO_NIBBLE[Character.toLowerCase(BASES[nibble])] = (byte)nibble;
+        }
+    }
+
+    private final String name;
+    private final int flags;
+    private final int contigId;
+    private final int start;
+    private final int mappingQuality;
+    private final int[] cigar;
+    private final int mateContigId;
+    private final int mateStart;
+    private final int fragmentLength;
+    private final int readGroupId;
+    private final String tagSA;
+    private final int length;
+    private final byte[] packedBases;
+    private final byte[] quals;
+
+    /**
+     * Project a read.
+     * @param contigIdMap the index of each contig name
+     * @param readGroupIdMap the index of each read group ID
+     */
+    public SVReadProjection( final GATKRead read,
+                             final Map<String, Integer> contigIdMap,
+                             final Map<String, Integer> readGroupIdMap ) {
+        name = read.getName();
+        flags = getFlags(read);
+        contigId = read.getAssignedContig() == null ? -1 : contigIdMap.getOrDefault(read.getAssignedContig(), -1);
+        start = read.getAssignedStart();
+        mappingQuality = read.getMappingQuality();
+        final List<CigarElement> cigarElements = read.getCigarElements();
+        cigar = new int[cigarElements.size()];
+        for ( int idx = 0; idx != cigar.length; ++idx ) {
+            final CigarElement element = cigarElements.get(idx);
+            cigar[idx] = element.getLength() << 4 | CigarOperator.enumToBinary(element.getOperator());
+        }
+        if ( read.isPaired() && !read.mateIsUnmapped() ) {
+            mateContigId = contigIdMap.getOrDefault(read.getMateContig(), -1);
+            mateStart = read.getMateStart();
+        } else {
+            mateContigId = -1;
+            mateStart = 0;
+        }
+        fragmentLength = read.getFragmentLength();
+        readGroupId = read.getReadGroup() == null ? -1 : readGroupIdMap.getOrDefault(read.getReadGroup(), -1);
+        tagSA = read.getAttributeAsString(SAMTag.SA.name());
+        final byte[] bases = read.getBases();
+        length = bases.length;
+        packedBases = new byte[(length + 1) / 2];
+        for ( int idx = 0; idx != length; ++idx ) {
+            packedBases[idx >> 1] |= BASE_TO_NIBBLE[bases[idx] & 0xff] << ((idx & 1) == 0 ? 4 : 0);
+        }
+        quals = read.getBaseQualities();
+    }
+
+    private SVReadProjection( final Kryo kryo, final Input input ) {
+        name = input.readString();
+        flags = input.readInt();
+        contigId = input.readInt();
+        start = input.readInt();
+        mappingQuality = input.readInt();
+        final int nCigarElements = input.readInt();
+        cigar = input.readInts(nCigarElements);
+        mateContigId = input.readInt();
+        mateStart = input.readInt();
+        fragmentLength = input.readInt();
+        readGroupId = input.readInt();
+        tagSA = input.readString();
+        length = input.readInt();
+        packedBases = input.readBytes((length + 1) / 2);
+        final int nQuals = input.readInt();
+        quals = input.readBytes(nQuals);
+    }
+
+    private void serialize( final Kryo kryo, final Output output ) {
+        output.writeString(name);
+        output.writeInt(flags);
+        output.writeInt(contigId);
+        output.writeInt(start);
+        output.writeInt(mappingQuality);
+        output.writeInt(cigar.length);
+        output.writeInts(cigar);
+        output.writeInt(mateContigId);
+        output.writeInt(mateStart);
+        output.writeInt(fragmentLength);
+        output.writeInt(readGroupId);
+        output.writeString(tagSA);
+        output.writeInt(length);
+        output.writeBytes(packedBases);
+        output.writeInt(quals.length);
+        output.writeBytes(quals);
+    }
+
+    public String getName() { return name; }
+
+    /**
+     * Rebuild a (headerless) read.
+     * @param contigNames contig names indexed as in the contig ID map used to make the projection
+     * @param readGroupIds read group IDs indexed as in the read group ID map used to make the projection
+     */
+    public GATKRead toRead( final String[] contigNames, final String[] readGroupIds ) {
+        final SAMRecord record = new SAMRecord(null);
+        record.setReadName(name);
+        record.setFlags(flags);
+        record.setReferenceName(contigId == -1 ? SAMRecord.NO_ALIGNMENT_REFERENCE_NAME : contigNames[contigId]);
+        record.setAlignmentStart(start);
+        record.setMappingQuality(mappingQuality);
+        final CigarElement[] cigarElements = new CigarElement[cigar.length];
+        for ( int idx = 0; idx != cigar.length; ++idx ) {
+            cigarElements[idx] = new CigarElement(cigar[idx] >>> 4, CigarOperator.binaryToEnum(cigar[idx] & 0xf));
+        }
+        record.setCigar(new Cigar(Arrays.asList(cigarElements)));
+        record.setMateReferenceName(mateContigId == -1 ? SAMRecord.NO_ALIGNMENT_REFERENCE_NAME : contigNames[mateContigId]);
+        record.setMateAlignmentStart(mateStart);
+        record.setInferredInsertSize(fragmentLength);
+        if ( readGroupId != -1 ) record.setAttribute(SAMTag.RG.name(), readGroupIds[readGroupId]);
+        if ( tagSA != null ) record.setAttribute(SAMTag.SA.name(), tagSA);
+        final byte[] bases = new byte[length];
+        for ( int idx = 0; idx != length; ++idx ) {
+            bases[idx] = BASES[(packedBases[idx >> 1] >> ((idx & 1) == 0 ? 4 : 0)) & 0xf];
+        }
+        record.setReadBases(bases);
+        record.setBaseQualities(quals);
+        return SAMRecordToGATKReadAdapter.headerlessReadAdapter(record);
+    }
+
+    /**
+     * Project the reads and cache the projections in serialized form.  The partitioning of the input is preserved.
+     * Rebuild the reads with {@link #toReads}, and unpersist the projections when you're done with them.
+     */
+    public static JavaRDD<SVReadProjection> projectAndCache( final JavaRDD<GATKRead> reads, final SAMFileHeader header ) {
+        final Map<String, Integer> contigIdMap = indexMap(getContigNames(header));
+        final Map<String, Integer> readGroupIdMap = indexMap(getReadGroupIds(header));
+        return reads
+                .map(read -> new SVReadProjection(read, contigIdMap, readGroupIdMap))
+                .persist(StorageLevel.MEMORY_AND_DISK_SER());
+    }
+
+    /** The reads rebuilt from their projections. */
+    public static JavaRDD<GATKRead> toReads( final JavaRDD<SVReadProjection> projections, final SAMFileHeader header ) {
+        final String[] contigNames = getContigNames(header);
+        final String[] readGroupIds = getReadGroupIds(header);
+        return projections.map(projection -> projection.toRead(contigNames, readGroupIds));
+    }
+
+    private static String[] getContigNames( final SAMFileHeader header ) {
+        return header.getSequenceDictionary().getSequences().stream()
+                .map(SAMSequenceRecord::getSequenceName).toArray(String[]::new);
+    }
+
+    private static String[] getReadGroupIds( final SAMFileHeader header ) {
+        return header.getReadGroups().stream().map(SAMReadGroupRecord::getReadGroupId).toArray(String[]::new);
+    }
+
+    private static Map<String, Integer> indexMap( final String[] names ) {
+        final Map<String, Integer> map = new HashMap<>(SVUtils.hashMapCapacity(names.length));
+        for ( int idx = 0; idx != names.length; ++idx ) {
+            map.put(names[idx], idx);
+        }
+        return map;
+    }
+
+    private static int getFlags( final GATKRead read ) {
+        int flags = 0;
+        if ( read.isPaired() ) {
+            flags |= SAMFlag.READ_PAIRED.intValue();
+            if ( read.isProperlyPaired() ) flags |= SAMFlag.PROPER_PAIR.intValue();
+            if ( read.mateIsUnmapped() ) flags |= SAMFlag.MATE_UNMAPPED.intValue();
+            if ( read.mateIsReverseStrand() ) flags |= SAMFlag.MATE_REVERSE_STRAND.intValue();
+            if ( read.isFirstOfPair() ) flags |= SAMFlag.FIRST_OF_PAIR.intValue();
+            if ( read.isSecondOfPair() ) flags |= SAMFlag.SECOND_OF_PAIR.intValue();
+        }
+        if ( read.isUnmapped() ) flags |= SAMFlag.READ_UNMAPPED.intValue();
+        if ( read.isReverseStrand() ) flags |= SAMFlag.READ_REVERSE_STRAND.intValue();
+        if ( read.isSecondaryAlignment() ) flags |= SAMFlag.NOT_PRIMARY_ALIGNMENT.intValue();
+        if ( read.failsVendorQualityCheck() ) flags |= SAMFlag.READ_FAILS_VENDOR_QUALITY_CHECK.intValue();
+        if ( read.isDuplicate() ) flags |= SAMFlag.DUPLICATE_READ.intValue();
+        if ( read.isSupplementaryAlignment() ) flags |= SAMFlag.SUPPLEMENTARY_ALIGNMENT.intValue();
+        return flags;
+    }
+
+    public static final class Serializer extends com.esotericsoftware.kryo.Serializer<SVReadProjection> {
+        @Override
+        public void write( final Kryo kryo, final Output output, final SVReadProjection projection ) {
+            projection.serialize(kryo, output);
+        }
+
+        @Override
+        public SVReadProjection read( final Kryo kryo, final Input input, final Class<SVReadProjection> klass ) {
+            return new SVReadProjection(kryo, input);
+        }
+    }
+}
@@ -13,15 +13,39 @@ import java.util.*;
  */
 public final class SVUtils {
 
+    // the first 4 bytes of a binary kmers file: "SVK1".  a text kmers file starts with one of "ACGT".
+    private static final int KMERS_BINARY_FILE_MAGIC = 0x53564B31;
+
     /**
      * Read a file of kmers.
-     * Each line must be exactly SVConstants.KMER_SIZE characters long, and must match [ACGT]*.
+     * The file may be binary (see writeKmersBinaryFile), or text: in the latter case,
+     * each line must be exactly SVConstants.KMER_SIZE characters long, and must match [ACGT]*.
      */
     public static Set<SVKmer> readKmersFile( final int kSize, final String kmersFile, final PipelineOptions popts ) {
         final Set<SVKmer> kmers;
 
-        try ( final BufferedReader rdr =
-                      new BufferedReader(new InputStreamReader(BucketUtils.openFile(kmersFile, popts))) ) {
+        try ( final BufferedInputStream is = new BufferedInputStream(BucketUtils.openFile(kmersFile, popts)) ) {
+            is.mark(Integer.BYTES);
+            final DataInputStream dis = new DataInputStream(is);
+            int magic = 0;
+            try { magic = dis.readInt(); } catch ( final EOFException eofe ) { /* a short text file */ }
+            if ( magic == KMERS_BINARY_FILE_MAGIC ) {
+                final int fileKSize = dis.readInt();
+                if ( fileKSize != kSize ) {
+                    throw new GATKException("SVKmer kill set " + kmersFile + " has K=" + fileKSize +
+                            " but we were expecting K=" + kSize);
+                }
+                final long nKmers = dis.readLong();
+                kmers = new HopscotchSet<>((int)nKmers);
+                for ( long kmerNo = 0; kmerNo != nKmers; ++kmerNo ) {
+                    final long valHigh = dis.readLong();
+                    kmers.add(new SVKmer(valHigh, dis.readLong()));
+                }
+                return kmers;
+            }
+            is.reset();
+
+            final BufferedReader rdr = new BufferedReader(new InputStreamReader(is));
             final long fileLength = BucketUtils.fileSize(kmersFile, popts);
             kmers = new HopscotchSet<>((int)(fileLength/(kSize+1)));
             String line;
@@ -61,6 +85,29 @@ public final class SVUtils {
         }
     }
 
+    /**
+     * Write kmers to file in binary form: a magic number, K, the number of kmers, and the sorted kmers as pairs of
+     * longs. It's less than a third the size of the text form, and it's read without parsing.
+     */
+    public static void writeKmersBinaryFile( final int kSize, final String kmersFile, final PipelineOptions popts,
+                                             final Collection<SVKmer> kmers ) {
+        final List<SVKmer> sortedKmers = new ArrayList<>(kmers);
+        Collections.sort(sortedKmers);
+        try ( final DataOutputStream os =
+                      new DataOutputStream(new BufferedOutputStream(BucketUtils.createFile(kmersFile, popts))) ) {
+            os.writeInt(KMERS_BINARY_FILE_MAGIC);
+            os.writeInt(kSize);
+            os.writeLong(sortedKmers.size());
+            for ( final SVKmer kmer : sortedKmers ) {
+                os.writeLong(kmer.getValHigh());
+                os.writeLong(kmer.getValLow());
+            }
+        }
+        catch ( final IOException ioe ) {
+            throw new GATKException("Unable to write kmers to "+kmersFile, ioe);
+        }
+    }
+
     /** Read intervals from file. */
     public static List<SVInterval> readIntervalsFile( final String intervalsFile, final PipelineOptions popts,
                                                       final Map<String, Integer> contigNameMap ) {
@@ -0,0 +1,224 @@
+package org.broadinstitute.hellbender.tools.spark.sv;
+
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.io.IOUtils;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Counts kmers by sorting them.
+ * Kmers are kept as raw (valHigh, valLow) pairs in a flat long[] buffer. When the buffer fills up, it's radix sorted,
+ * collapsed into <kmer,count> records, and spilled to a temporary file. At the end, the sorted runs are merged.
+ * So the memory used is bounded by maxKmersInMemory, no matter how many kmers are added.
+ * Not thread safe.
+ */
+public final class SortingSVKmerCounter implements AutoCloseable {
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    private static final int RADIX_BITS = 16;
+    private static final int RADIX_MASK = (1 << RADIX_BITS) - 1;
+    private static final int RUN_RECORD_SIZE = 2*Long.BYTES + Integer.BYTES;
+
+    private final int maxKmersInMemory;
+    private long[] kmers; // valHigh, valLow for each kmer
+    private long[] scratch; // for sorting
+    private int nKmers;
+    private final List<File> runFiles = new ArrayList<>();
+
+    public SortingSVKmerCounter( final int maxKmersInMemory ) {
+        Utils.validateArg(maxKmersInMemory > 0, "max kmers in memory must be positive");
+        this.maxKmersInMemory = maxKmersInMemory;
+        this.kmers = new long[2*Math.min(INITIAL_CAPACITY, maxKmersInMemory)];
+    }
+
+    public void add( final SVKmer kmer ) {
+        add(kmer.getValHigh(), kmer.getValLow());
+    }
+
+    /** Add a kmer given as a raw (valHigh, valLow) pair, like those from {@link SVKmerizer#forEachCanonicalKmer}. */
+    public void add( final long valHigh, final long valLow ) {
+        if ( 2*nKmers == kmers.length ) {
+            if ( nKmers < maxKmersInMemory ) {
+                final long[] newKmers = new long[2*(int)Math.min(2L*nKmers, maxKmersInMemory)];
+                System.arraycopy(kmers, 0, newKmers, 0, 2*nKmers);
+                kmers = newKmers;
+            } else {
+                spill();
+            }
+        }
+        kmers[2*nKmers] = valHigh;
+        kmers[2*nKmers+1] = valLow;
+        nKmers += 1;
+    }
+
+    /** Number of times the buffer was spilled to disk. */
+    public int getNSpills() { return runFiles.size(); }
+
+    /**
+     * Returns the kmers (in sorted order) that were added more than maxCount times.
+     * The counter is spent after this call.
+     */
+    public List<SVKmer> getKmersWithCountAbove( final long maxCount ) {
+        final List<SVKmer> result = new ArrayList<>();
+        if ( runFiles.isEmpty() ) {
+            sortKmers();
+            int idx = 0;
+            while ( idx != nKmers ) {
+                final long valHigh = kmers[2*idx];
+                final long valLow = kmers[2*idx+1];
+                final int start = idx;
+                while ( ++idx != nKmers && kmers[2*idx] == valHigh && kmers[2*idx+1] == valLow ) {}
+                if ( idx - start > maxCount ) result.add(new SVKmer(valHigh, valLow));
+            }
+            nKmers = 0;
+            return result;
+        }
+
+        spill();
+        kmers = scratch = null;
+        final PriorityQueue<RunReader> runs = new PriorityQueue<>(runFiles.size());
+        try {
+            for ( final File runFile : runFiles ) {
+                final RunReader run = new RunReader(runFile);
+                if ( run.next() ) runs.add(run);
+                else run.close();
+            }
+            while ( !runs.isEmpty() ) {
+                RunReader run = runs.poll();
+                final long valHigh = run.valHigh;
+                final long valLow = run.valLow;
+                long count = 0;
+                while ( true ) {
+                    count += run.count;
+                    if ( run.next() ) runs.add(run);
+                    else run.close();
+                    if ( runs.isEmpty() || runs.peek().valHigh != valHigh || runs.peek().valLow != valLow ) break;
+                    run = runs.poll();
+                }
+                if ( count > maxCount ) result.add(new SVKmer(valHigh, valLow));
+            }
+        }
+        catch ( final IOException ioe ) {
+            throw new GATKException("Unable to merge spilled kmer counts.", ioe);
+        }
+        finally {
+            for ( final RunReader run : runs ) {
+                try { run.close(); } catch ( final IOException ioe ) { /* we're going to delete it anyway */ }
+            }
+            close();
+        }
+        return result;
+    }
+
+    /** Deletes any spill files. */
+    @Override
+    public void close() {
+        runFiles.forEach(File::delete);
+        runFiles.clear();
+    }
+
+    /** sort the buffer, and write it to a temp file as a sorted run of <kmer,count> records */
+    private void spill() {
+        sortKmers();
+        final File runFile = IOUtils.createTempFile("svKmerCounts", ".run");
+        runFiles.add(runFile);
+        try ( final DataOutputStream os =
+                      new DataOutputStream(new BufferedOutputStream(new FileOutputStream(runFile))) ) {
+            int idx = 0;
+            while ( idx != nKmers ) {
+                final long valHigh = kmers[2*idx];
+                final long valLow = kmers[2*idx+1];
+                final int start = idx;
+                while ( ++idx != nKmers && kmers[2*idx] == valHigh && kmers[2*idx+1] == valLow ) {}
+                os.writeLong(valHigh);
+                os.writeLong(valLow);
+                os.writeInt(idx - start);
+            }
+        }
+        catch ( final IOException ioe ) {
+            throw new GATKException("Unable to spill kmer counts to " + runFile, ioe);
+        }
+        nKmers = 0;
+    }
+
+    private void sortKmers() {
+        if ( scratch == null || scratch.length < 2*nKmers ) scratch = new long[kmers.length];
+        radixSort(kmers, scratch, nKmers);
+    }
+
+    /**
+     * Stable LSD radix sort of an array of (valHigh, valLow) pairs into (valHigh, valLow) order.
+     * The values are non-negative (at most 63 significant bits), and passes over digits that are zero for every
+     * pair are skipped.
+     */
+    static void radixSort( final long[] pairs, final long[] scratch, final int nPairs ) {
+        long orHigh = 0L;
+        long orLow = 0L;
+        for ( int idx = 0; idx != nPairs; ++idx ) {
+            orHigh |= pairs[2*idx];
+            orLow |= pairs[2*idx+1];
+        }
+        final int[] counts = new int[1 << RADIX_BITS];
+        long[] src = pairs;
+        long[] dst = scratch;
+        for ( int offset = 1; offset >= 0; --offset ) { // the low value first, then the high value
+            final long orVal = offset == 1 ? orLow : orHigh;
+            for ( int shift = 0; shift < Long.SIZE && (orVal >>> shift) != 0L; shift += RADIX_BITS ) {
+                Arrays.fill(counts, 0);
+                for ( int idx = 0; idx != nPairs; ++idx ) {
+                    counts[(int)(src[2*idx+offset] >>> shift) & RADIX_MASK] += 1;
+                }
+                int total = 0;
+                for ( int digit = 0; digit <= RADIX_MASK; ++digit ) {
+                    final int count = counts[digit];
+                    counts[digit] = total;
+                    total += count;
+                }
+                for ( int idx = 0; idx != nPairs; ++idx ) {
+                    final int pos = counts[(int)(src[2*idx+offset] >>> shift) & RADIX_MASK]++;
+                    dst[2*pos] = src[2*idx];
+                    dst[2*pos+1] = src[2*idx+1];
+                }
+                final long[] tmp = src; src = dst; dst = tmp;
+            }
+        }
+        if ( src != pairs ) System.arraycopy(src, 0, pairs, 0, 2*nPairs);
+    }
+
+    /** the current <kmer,count> record of a sorted run */
+    private static final class RunReader implements Comparable<RunReader>, Closeable {
+        private final DataInputStream is;
+        private long nRecordsLeft;
+        long valHigh;
+        long valLow;
+        int count;
+
+        RunReader( final File runFile ) throws IOException {
+            is = new DataInputStream(new BufferedInputStream(new FileInputStream(runFile)));
+            nRecordsLeft = runFile.length() / RUN_RECORD_SIZE;
+        }
+
+        boolean next() throws IOException {
+            if ( nRecordsLeft == 0 ) return false;
+            nRecordsLeft -= 1;
+            valHigh = is.readLong();
+            valLow = is.readLong();
+            count = is.readInt();
+            return true;
+        }
+
+        @Override
+        public int compareTo( final RunReader that ) {
+            int result = Long.compare(this.valHigh, that.valHigh);
+            if ( result == 0 ) result = Long.compare(this.valLow, that.valLow);
+            return result;
+        }
+
+        @Override
+        public void close() throws IOException { is.close(); }
+    }
+}
@@ -0,0 +1,132 @@
+package org.broadinstitute.hellbender.tools.spark.sv;
+
+import com.google.cloud.dataflow.sdk.options.PipelineOptions;
+import htsjdk.samtools.SAMFileHeader;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.broadinstitute.hellbender.cmdline.Argument;
+import org.broadinstitute.hellbender.cmdline.ArgumentCollection;
+import org.broadinstitute.hellbender.cmdline.CommandLineProgramProperties;
+import org.broadinstitute.hellbender.cmdline.StandardArgumentDefinitions;
+import org.broadinstitute.hellbender.cmdline.programgroups.SparkProgramGroup;
+import org.broadinstitute.hellbender.engine.spark.GATKSparkTool;
+import org.broadinstitute.hellbender.tools.spark.sv.RunSGAViaProcessBuilderOnSpark.ContigsCollection;
+import scala.Tuple2;
+
+import java.util.List;
+
+import static org.broadinstitute.hellbender.tools.spark.sv.AlignContigsAndCallBreakpointsSpark.NUM_ASSEMBLIES_PER_PARTITION;
+
+/**
+ * Runs the whole SV discovery workflow in one Spark job:  it finds breakpoint evidence and gathers the reads for
+ * each putative breakpoint (as {@link FindBreakpointEvidenceSpark} does), assembles them with
+ * {@link SVDeBruijnAssembler}, and aligns the contigs and calls breakpoints (as
+ * {@link AlignContigsAndCallBreakpointsSpark} does).
+ * The stages are chained through RDDs, so nothing is written to storage between them unless it's asked for.
+ */
+@CommandLineProgramProperties(summary="Find breakpoint evidence, assemble the reads for each putative breakpoint, " +
+        "align the contigs to the reference, and call breakpoints from them, all in one pass.",
+        oneLineSummary="Discover structural variant breakpoints from reads",
+        programGroup = SparkProgramGroup.class)
+public final class StructuralVariationDiscoveryPipelineSpark extends GATKSparkTool {
+    private static final long serialVersionUID = 1L;
+
+    @ArgumentCollection(doc = "parameters and optional intermediate outputs for gathering breakpoint evidence")
+    private final BreakpointEvidenceArgumentCollection evidenceArgs = new BreakpointEvidenceArgumentCollection();
+
+    @Argument(doc = "file for assembled breakpoint output", shortName = StandardArgumentDefinitions.OUTPUT_SHORT_NAME,
+            fullName = StandardArgumentDefinitions.OUTPUT_LONG_NAME)
+    private String output;
+
+    @Argument(doc = "directory for (optional) FASTQ output, one file per putative breakpoint, for debugging",
+            fullName = "fastqDir", optional = true)
+    private String fastqDir;
+
+    @Argument(doc = "file for (optional) assembled contigs output, in the packed FASTA format that " +
+            "AlignContigsAndCallBreakpointsSpark reads, for debugging", fullName = "contigsFile", optional = true)
+    private String contigsFile;
+
+    @Override
+    public boolean requiresReads() {
+        return true;
+    }
+
+    @Override
+    public boolean requiresReference() {
+        return true;
+    }
+
+    @Override
+    protected void runTool( final JavaSparkContext ctx ) {
+        final SAMFileHeader header = getHeaderForReads();
+        final PipelineOptions pipelineOptions = getAuthenticatedGCSOptions();
+
+        final List<SVInterval> intervals =
+                FindBreakpointEvidenceSpark.gatherFastqsForAssembly(ctx, header, getUnfilteredReads(),
+                        evidenceArgs, pipelineOptions,
+                        (fastqsByInterval, nIntervals) -> assembleAndCallBreakpoints(ctx, fastqsByInterval, nIntervals));
+        if ( intervals.isEmpty() ) {
+            logger.info("No putative breakpoints found.");
+        }
+    }
+
+    /**
+     * Assemble the reads for each interval, align the contigs and call breakpoints from them, and return what became
+     * of each interval, for the intervals file.
+     */
+    private List<Tuple2<Integer, String>> assembleAndCallBreakpoints(
+            final JavaSparkContext ctx,
+            final JavaPairRDD<Integer, List<byte[]>> fastqsByInterval,
+            final int nIntervals ) {
+        // the assemblies are traversed once to call breakpoints, and once more to gather the dispositions
+        final JavaPairRDD<Integer, Tuple2<String, ContigsCollection>> assemblies =
+                assemble(fastqsByInterval, evidenceArgs.maxFASTQSize, fastqDir)
+                        .coalesce(Math.max(ctx.defaultParallelism(),
+                                (int)Math.ceil((double)nIntervals / NUM_ASSEMBLIES_PER_PARTITION)))
+                        .cache();
+
+        final JavaPairRDD<String, ContigsCollection> contigs =
+                assemblies
+                        .filter(assembly -> assembly._2._2 != null && !assembly._2._2.getContents().isEmpty())
+                        .mapToPair(assembly -> new Tuple2<>(assembly._1.toString(), assembly._2._2));
+
+        if ( contigsFile != null ) {
+            contigs.map(assembly -> assembly._1 + "\t" + assembly._2.toPackedFasta())
+                    .saveAsTextFile(contigsFile);
+        }
+
+        AlignContigsAndCallBreakpointsSpark.alignAssemblies(contigs, referenceArguments.getReferenceFileName())
+                .saveAsTextFile(output);
+
+        final List<Tuple2<Integer, String>> intervalDispositions =
+                assemblies.mapToPair(assembly -> new Tuple2<>(assembly._1, assembly._2._1)).collect();
+        assemblies.unpersist();
+        return intervalDispositions;
+    }
+
+    /**
+     * Assemble the reads for each interval, skipping intervals with more than maxFastqSize bytes of FASTQ records.
+     * If fastqDir isn't null, each interval's FASTQ is written there, too.
+     * Returns the disposition of each interval, and its contigs (null if it wasn't assembled).
+     */
+    private static JavaPairRDD<Integer, Tuple2<String, ContigsCollection>> assemble(
+            final JavaPairRDD<Integer, List<byte[]>> fastqsByInterval,
+            final int maxFastqSize,
+            final String fastqDir ) {
+        return fastqsByInterval
+                .mapToPair(intervalAndFastqs -> {
+                    final long fastqSize = intervalAndFastqs._2.stream().mapToLong(fastqRec -> fastqRec.length).sum();
+                    if ( fastqSize > maxFastqSize ) {
+                        return new Tuple2<>(intervalAndFastqs._1,
+                                new Tuple2<>("FASTQ not assembled -- too big (" + fastqSize + " bytes).", null));
+                    }
+                    String disposition = "";
+                    if ( fastqDir != null ) {
+                        disposition = FindBreakpointEvidenceSpark.writeFastq(intervalAndFastqs, fastqDir, maxFastqSize)._2 + " ";
+                    }
+                    final ContigsCollection contigs = new SVDeBruijnAssembler().assembleFastqRecords(intervalAndFastqs._2);
+                    disposition += "Assembled " + contigs.getContents().size() + " contigs.";
+                    return new Tuple2<>(intervalAndFastqs._1, new Tuple2<>(disposition, contigs));
+                });
+    }
+}
@@ -123,8 +123,8 @@ public final class GenotypeAlleleCounts implements Comparable<GenotypeAlleleCoun
      * Increases the allele counts a number of times.
      *
      * <p>
-     *     This method must not be invoked on cached genotype-allele-counts that are meant to remain constant,
-     *     such as the ones contained in {@link GenotypeLikelihoodCalculators#genotypeTableByPloidy}.
+     *     This method must not be invoked on genotype-allele-counts that are meant to remain constant,
+     *     such as the ones returned by {@link GenotypeLikelihoodCalculator#genotypeAlleleCountsAt(int)}.
      * </p>
      *
      * @param times the number of times to increase.
@@ -142,8 +142,8 @@ public final class GenotypeAlleleCounts implements Comparable<GenotypeAlleleCoun
      * Updates the genotype counts to match the next genotype.
      *
      * <p>
-     *     This method must not be invoked on cached genotype-allele-counts that are meant to remain constant,
-     *     such as the ones contained in {@link GenotypeLikelihoodCalculators#genotypeTableByPloidy}
+     *     This method must not be invoked on genotype-allele-counts that are meant to remain constant,
+     *     such as the ones returned by {@link GenotypeLikelihoodCalculator#genotypeAlleleCountsAt(int)}.
      * </p>
      */
     protected void increase() {
@@ -585,6 +585,22 @@ public final class GenotypeAlleleCounts implements Comparable<GenotypeAlleleCoun
     }
 
 
+    /**
+     * Instantiates a genotype given its index and sorted allele counts.
+     *
+     * <p>No checks are done for the sake of performance; the invoker must make sure that the input is consistent.</p>
+     *
+     * @param ploidy the ploidy of the genotype.
+     * @param index the index of the genotype.
+     * @param sortedAlleleCounts the sorted allele counts as described in {@link #GenotypeAlleleCounts(int, int, int...)}.
+     *                           The new instance takes ownership of this array.
+     *
+     * @return never {@code null}.
+     */
+    protected static GenotypeAlleleCounts fromSortedAlleleCounts(final int ploidy, final int index, final int[] sortedAlleleCounts) {
+        return new GenotypeAlleleCounts(ploidy, index, sortedAlleleCounts);
+    }
+
     /**
      * Returns the largest allele index present in the genotype.
      *
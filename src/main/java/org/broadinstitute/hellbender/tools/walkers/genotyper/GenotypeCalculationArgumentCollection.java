@@ -2,6 +2,7 @@ package org.broadinstitute.hellbender.tools.walkers.genotyper;
 
 import org.broadinstitute.hellbender.cmdline.Advanced;
 import org.broadinstitute.hellbender.cmdline.Argument;
+import org.broadinstitute.hellbender.cmdline.Hidden;
 import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.variant.HomoSapiensConstants;
 
@@ -34,6 +35,8 @@ public final class GenotypeCalculationArgumentCollection implements Serializable
         this.MAX_ALTERNATE_ALLELES = other.MAX_ALTERNATE_ALLELES;
         this.inputPrior = new ArrayList<>(other.inputPrior);
         this.samplePloidy = other.samplePloidy;
+        this.afCalculationCacheSize = other.afCalculationCacheSize;
+        this.afCalculationFastPathMinimumPL = other.afCalculationFastPathMinimumPL;
     }
 
     /**
@@ -154,4 +157,20 @@ public final class GenotypeCalculationArgumentCollection implements Serializable
      */
     @Argument(shortName="ploidy", fullName="sample_ploidy", doc="Ploidy (number of chromosomes) per sample. For pooled data, set to (Number of samples in each pool * Sample Ploidy).", optional=true)
     public int samplePloidy = HomoSapiensConstants.DEFAULT_PLOIDY;
+
+    /**
+     * Sites with the same allele count, per-sample ploidies and PLs share the same AF calculation result, so this
+     * many results are kept in a LRU cache in front of the AF calculator. 0 disables the cache.
+     */
+    @Hidden
+    @Argument(fullName = "afCalculationCacheSize", shortName = "afCacheSize", doc = "Number of AF calculation results to cache, 0 to disable", optional = true)
+    public int afCalculationCacheSize = 0;
+
+    /**
+     * Sites where every sample has a hom-ref PL of 0 and all other PLs at least this large skip the exact AF
+     * calculation and are taken as monomorphic. 0 disables this shortcut.
+     */
+    @Hidden
+    @Argument(fullName = "afCalculationFastPathMinimumPL", shortName = "afFastPathPL", doc = "Minimum non hom-ref PL for a site to be treated as clearly hom-ref by the AF calculation, 0 to disable", optional = true)
+    public int afCalculationFastPathMinimumPL = 0;
 }
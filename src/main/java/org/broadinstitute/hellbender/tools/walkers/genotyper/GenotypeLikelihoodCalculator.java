@@ -6,6 +6,7 @@ import org.broadinstitute.hellbender.utils.MathUtils;
 import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.genotyper.LikelihoodMatrix;
 
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.PriorityQueue;
 
@@ -23,24 +24,15 @@ public final class GenotypeLikelihoodCalculator {
      * Offset table for this calculator.
      *
      * <p>
-     *     This is a shallow copy of {@link GenotypeLikelihoodCalculators#alleleFirstGenotypeOffsetByPloidy} when the calculator was created
-     *     thus it follows the same format as that array. Please refer to its documentation.
+     *     This table is shared with other calculators with the same ploidy and allele count and must not be modified.
+     *     It has {@link #ploidy} + 1 rows and {@link #alleleCount} + 1 columns. The entry in row <i>p</i> and column
+     *     <i>a</i> is the index of the first genotype of ploidy <i>p</i> whose highest allele is <i>a</i>, that is, the
+     *     number of genotypes of ploidy <i>p</i> over the alleles below <i>a</i>: <i>C(p + a - 1, p)</i> (row 0 is
+     *     0 for column 0 and 1 for any other).
      * </p>
-     *
-     * <p>You can assume that this offset table contain at least (probably more) the numbers corresponding to the allele count and ploidy for this calculator.
-     * However since it might have more than that and so you must use {@link #alleleCount} and {@link #ploidy} when
-     * iterating through this array rather that its length or the length of its components.</p>.
      */
     private final int[][] alleleFirstGenotypeOffsetByPloidy;
 
-    /**
-     * Genotype table for this calculator.
-     *
-     * <p>It is ensure that it contains all the genotypes for this calculator ploidy and allele count, maybe more. For
-     * that reason you must use {@link #genotypeCount} when iterating through this array and not relay on its length.</p>
-     */
-    private final GenotypeAlleleCounts[] genotypeAlleleCounts;
-
     /**
      * Number of genotypes given this calculator {@link #ploidy} and {@link #alleleCount}.
      */
@@ -61,12 +53,6 @@ public final class GenotypeLikelihoodCalculator {
      */
     private final PriorityQueue<Integer> alleleHeap;
 
-    /**
-     * Cache of the last genotype-allele-count requested using {@link #genotypeAlleleCountsAt(int)}, when it
-     * goes beyond the maximum genotype-allele-count static capacity. Check on that method documentation for details.
-     */
-    private GenotypeAlleleCounts lastOverheadCounts;
-
     /**
      * Buffer used as a temporary container for likelihood components for genotypes stratified by alleles, allele frequency and reads.
      *
@@ -141,11 +127,9 @@ public final class GenotypeLikelihoodCalculator {
      * Creates a new calculator providing its ploidy and number of genotyping alleles.
      */
     protected GenotypeLikelihoodCalculator(final int ploidy, final int alleleCount,
-                                           final int[][] alleleFirstGenotypeOffsetByPloidy,
-                                           final GenotypeAlleleCounts[][] genotypeTableByPloidy) {
+                                           final int[][] alleleFirstGenotypeOffsetByPloidy) {
         Utils.validateArg(ploidy > 0, () -> "ploidy must be at least 1 but was " + ploidy);
         this.alleleFirstGenotypeOffsetByPloidy = alleleFirstGenotypeOffsetByPloidy;
-        genotypeAlleleCounts = genotypeTableByPloidy[ploidy];
         this.alleleCount = alleleCount;
         this.ploidy = ploidy;
         genotypeCount = this.alleleFirstGenotypeOffsetByPloidy[ploidy][alleleCount];
@@ -213,13 +197,11 @@ public final class GenotypeLikelihoodCalculator {
     /**
      * Returns the genotype associated to a particular likelihood index.
      *
-     * <p>If {@code index} is larger than {@link GenotypeLikelihoodCalculators#MAXIMUM_STRONG_REF_GENOTYPE_PER_PLOIDY},
-     *  this method will reconstruct that genotype-allele-count iteratively from the largest strongly referenced count available.
-     *  or the last requested index genotype.
-     *  </p>
-     *
-     * <p> Therefore if you are iterating through all genotype-allele-counts you should do sequentially and incrementally, to
-     * avoid a large efficiency drop </p>.
+     * <p>
+     *     The genotype is decoded from the index using the offset table, so each call returns a new instance and
+     *     the cost does not depend on the index. If you are iterating through all genotype-allele-counts
+     *     sequentially it is still more efficient to do so incrementally.
+     * </p>
      *
      * @param index query likelihood-index.
      * @return never {@code null}.
@@ -227,17 +209,39 @@ public final class GenotypeLikelihoodCalculator {
     public GenotypeAlleleCounts genotypeAlleleCountsAt(final int index) {
         Utils.validateArg(index >= 0 && index < genotypeCount, () -> "invalid likelihood index: " + index + " >= " + genotypeCount
                     + " (genotype count for nalleles = " + alleleCount + " and ploidy " + ploidy);
-        if (index < GenotypeLikelihoodCalculators.MAXIMUM_STRONG_REF_GENOTYPE_PER_PLOIDY) {
-            return genotypeAlleleCounts[index];
-        } else if (lastOverheadCounts == null || lastOverheadCounts.index() > index) {
-            final GenotypeAlleleCounts result = genotypeAlleleCounts[GenotypeLikelihoodCalculators.MAXIMUM_STRONG_REF_GENOTYPE_PER_PLOIDY - 1].copy();
-            result.increase(index - GenotypeLikelihoodCalculators.MAXIMUM_STRONG_REF_GENOTYPE_PER_PLOIDY + 1);
-            lastOverheadCounts = result;
-            return result.copy();
-        } else {
-            lastOverheadCounts.increase(index - lastOverheadCounts.index());
-            return lastOverheadCounts.copy();
+        // The allele for each ploidy p, from the largest to the smallest allele in the genotype, is the largest one
+        // whose offset does not exceed what is left of the index. Alleles are found in decreasing order so that
+        // the search for the next one can start where the previous one ended.
+        final int[] sortedAlleleCounts = new int[maximumDistinctAllelesInGenotype << 1];
+        int remainder = index;
+        int allele = alleleCount - 1;
+        int distinctAlleleCount = 0;
+        for (int p = ploidy; p > 0; p--) {
+            final int[] offsets = alleleFirstGenotypeOffsetByPloidy[p];
+            while (offsets[allele] > remainder) {
+                allele--;
+            }
+            remainder -= offsets[allele];
+            if (distinctAlleleCount > 0 && sortedAlleleCounts[(distinctAlleleCount - 1) << 1] == allele) {
+                sortedAlleleCounts[((distinctAlleleCount - 1) << 1) + 1]++;
+            } else {
+                sortedAlleleCounts[distinctAlleleCount << 1] = allele;
+                sortedAlleleCounts[(distinctAlleleCount << 1) + 1] = 1;
+                distinctAlleleCount++;
+            }
+        }
+        // components were added in decreasing allele order.
+        for (int i = 0, j = (distinctAlleleCount - 1) << 1; i < j; i += 2, j -= 2) {
+            final int swapAllele = sortedAlleleCounts[i];
+            final int swapCount = sortedAlleleCounts[i + 1];
+            sortedAlleleCounts[i] = sortedAlleleCounts[j];
+            sortedAlleleCounts[i + 1] = sortedAlleleCounts[j + 1];
+            sortedAlleleCounts[j] = swapAllele;
+            sortedAlleleCounts[j + 1] = swapCount;
         }
+        final int sortedAlleleCountsLength = distinctAlleleCount << 1;
+        return GenotypeAlleleCounts.fromSortedAlleleCounts(ploidy, index, sortedAlleleCountsLength == sortedAlleleCounts.length
+                ? sortedAlleleCounts : Arrays.copyOf(sortedAlleleCounts, sortedAlleleCountsLength));
     }
 
     /**
@@ -295,8 +299,8 @@ public final class GenotypeLikelihoodCalculator {
     private double[][] genotypeLikelihoodByRead(final double[] readLikelihoodComponentsByAlleleCount, final int readCount) {
 
         // Here we don't use the convenience of {@link #genotypeAlleleCountsAt(int)} within the loop to spare instantiations of
-        // GenotypeAlleleCounts class when we are dealing with many genotypes.
-        GenotypeAlleleCounts alleleCounts = genotypeAlleleCounts[0];
+        // GenotypeAlleleCounts class when we are dealing with many genotypes; a single instance is updated in place instead.
+        final GenotypeAlleleCounts alleleCounts = GenotypeAlleleCounts.first(ploidy);
 
         for (int genotypeIndex = 0; genotypeIndex < genotypeCount; genotypeIndex++) {
             final double[] readLikelihoods = this.readLikelihoodsByGenotypeIndex[genotypeIndex];
@@ -311,27 +315,9 @@ public final class GenotypeLikelihoodCalculator {
                 default:
                     manyComponentGenotypeLikelihoodByRead(alleleCounts,readLikelihoods,readLikelihoodComponentsByAlleleCount, readCount);
             }
-            if (genotypeIndex < genotypeCount - 1) {
-                alleleCounts = nextGenotypeAlleleCounts(alleleCounts);
-            }
-        }
-        return readLikelihoodsByGenotypeIndex;
-    }
-
-    private GenotypeAlleleCounts nextGenotypeAlleleCounts(final GenotypeAlleleCounts alleleCounts) {
-        final int index = alleleCounts.index();
-        final GenotypeAlleleCounts result;
-        final int cmp = index - GenotypeLikelihoodCalculators.MAXIMUM_STRONG_REF_GENOTYPE_PER_PLOIDY + 1;
-        if (cmp < 0) {
-            result = genotypeAlleleCounts[index + 1];
-        } else if (cmp == 0) {
-            result = genotypeAlleleCounts[index].copy();
-            result.increase();
-        } else {
             alleleCounts.increase();
-            result = alleleCounts;
         }
-        return result;
+        return readLikelihoodsByGenotypeIndex;
     }
 
     /**
@@ -522,12 +508,10 @@ public final class GenotypeLikelihoodCalculator {
         final int[] result = new int[resultLength];
         final int[] sortedAlleleCounts = new int[Math.max(ploidy, alleleCount) << 1];
         alleleHeap.clear();
-        GenotypeAlleleCounts alleleCounts = genotypeAlleleCounts[0];
+        final GenotypeAlleleCounts alleleCounts = GenotypeAlleleCounts.first(ploidy);
         for (int i = 0; i < resultLength; i++) {
             genotypeIndexMapPerGenotypeIndex(i,alleleCounts, oldToNewAlleleIndexMap, result, sortedAlleleCounts);
-            if (i < resultLength - 1) {
-                alleleCounts = nextGenotypeAlleleCounts(alleleCounts);
-            }
+            alleleCounts.increase();
         }
         return result;
     }
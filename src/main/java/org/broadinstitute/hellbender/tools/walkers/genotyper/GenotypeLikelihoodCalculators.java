@@ -7,6 +7,8 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Genotype likelihood calculator utility.
@@ -15,57 +17,56 @@ import java.util.Arrays;
  *     This class provide genotype likelihood calculators with any number of alleles able given an arbitrary ploidy and allele
  *     count (number of distinct alleles).
  * </p>
+ *
+ * <p>
+ *     Genotypes are indexed following the combinatorial number system: the index of a genotype of ploidy <i>p</i> whose
+ *     alleles sorted in decreasing order are <i>a<sub>p</sub> &ge; ... &ge; a<sub>1</sub></i> is the sum of the number
+ *     of genotypes of ploidy <i>i</i> with alleles less than <i>a<sub>i</sub></i> for every <i>i</i>. Thus the only
+ *     table required for a ploidy and allele count is that of those numbers, described in
+ *     {@link #buildAlleleFirstGenotypeOffsetTable(int, int)}, which is small even for large ploidies.
+ * </p>
+ *
+ * <p>
+ *     Tables are created on demand for each requested ploidy and allele count and are never modified afterwards.
+ *     Instances are thread-safe and look-ups of existing tables do not block.
+ * </p>
  */
 public final class GenotypeLikelihoodCalculators {
 
     private static final Logger logger = LogManager.getLogger(GenotypeLikelihoodCalculators.class);
 
-    /**
-     * The current maximum ploidy supported by the tables.
-     * <p>
-     *     Its initial value indicates the initial capacity of the shared {@link #genotypeTableByPloidy}. Feel free
-     *     to change it to anything reasonable that is non-negative.
-     * </p>
-     */
-    private int maximumPloidy = 2; // its initial value is the initial capacity of the shared tables.
-
-    /**
-     * Maximum possible number of genotypes that this calculator can handle.
-     */
-    public static final int MAXIMUM_STRONG_REF_GENOTYPE_PER_PLOIDY = 1000;
-
     /**
      * Mark to indicate genotype-count overflow due to a large number of allele and ploidy;
      */
     static final int GENOTYPE_COUNT_OVERFLOW = -1;
 
     /**
-     * The current maximum allele index supported by the tables.
-     * <p>
-     *     Its initial value indicates the initial capacity of the shared {@link #alleleFirstGenotypeOffsetByPloidy} table.
-     *     Feel free to change it to anything reasonable that is non-negative.
-     * </p>
-     */
-    private int maximumAllele = 1; // its initial value is the initial capacity of the shared tables.
-
-    /**
-     * Shared copy of the offset table as described in {@link #buildGenotypeAlleleCountsTable(int, int, int[][])}.
-     *
-     * This reference holds the largest requested so far in terms of maximum-allele and maximum-ploidy.
+     * Tables created so far indexed by {@link #tableKey(int, int)}.
      */
-    private int[][] alleleFirstGenotypeOffsetByPloidy =
-            buildAlleleFirstGenotypeOffsetTable(maximumPloidy, maximumAllele);
-
+    private final ConcurrentMap<Long, GenotypeTable> tables = new ConcurrentHashMap<>();
 
     /**
-     * Shared table of genotypes give the ploidy sorted by their index in the likelihood array.
-     *
-     * <p>
-     *  Its format is described in {@link #buildGenotypeAlleleCountsTable(int, int, int[][])}.
-     * </p>
+     * Immutable genotype count and offset table for a given ploidy and allele count.
      */
-    private GenotypeAlleleCounts[][] genotypeTableByPloidy =
-            buildGenotypeAlleleCountsTable(maximumPloidy,maximumAllele,alleleFirstGenotypeOffsetByPloidy);
+    private static final class GenotypeTable {
+
+        /**
+         * Number of genotypes or {@link #GENOTYPE_COUNT_OVERFLOW} if too large.
+         */
+        private final int genotypeCount;
+
+        /**
+         * Offset table as described in {@link #buildAlleleFirstGenotypeOffsetTable(int, int)}; {@code null} if the
+         * genotype count overflows.
+         */
+        private final int[][] alleleFirstGenotypeOffsetByPloidy;
+
+        private GenotypeTable(final int ploidy, final int alleleCount) {
+            genotypeCount = calculateGenotypeCount(ploidy, alleleCount);
+            alleleFirstGenotypeOffsetByPloidy = genotypeCount == GENOTYPE_COUNT_OVERFLOW ? null
+                    : buildAlleleFirstGenotypeOffsetTable(ploidy, alleleCount);
+        }
+    }
 
     public GenotypeLikelihoodCalculators(){
 
@@ -116,8 +117,8 @@ public final class GenotypeLikelihoodCalculators {
      * </pre>
      *
      * <p>
-     *    Note: if someone can come with a close form computable 0(1) (respect to ploidy and allele count)
-     *     please let the author know.
+     *     That is, <i>Offset[p][a] = C(p + a - 1, p)</i>, the number of multisets of size <i>p</i> drawn from
+     *     <i>a</i> alleles.
      * </p>
      *
      * <p>
@@ -138,6 +139,11 @@ public final class GenotypeLikelihoodCalculators {
      *     Offsets in this row are 0 for the first column and 1 for any others.
      * </p>
      *
+     * <p>
+     *     The caller must make sure that the genotype count for {@code maximumPloidy} and {@code maximumAllele} does
+     *     not overflow; all other entries are smaller than that one.
+     * </p>
+     *
      * @param maximumPloidy maximum supported ploidy.
      * @param maximumAllele maximum supported allele index.
      *
@@ -159,94 +165,39 @@ public final class GenotypeLikelihoodCalculators {
         for (int ploidy = 1; ploidy < rowCount; ploidy++) {
             for (int allele = 1; allele < colCount; allele++) {
                 result[ploidy][allele] = result[ploidy][allele - 1] + result[ploidy - 1][allele];
-                if (result[ploidy][allele] < result[ploidy][allele - 1]) {
-                    result[ploidy][allele] = GENOTYPE_COUNT_OVERFLOW;
-                }
             }
         }
         return result;
     }
 
     /**
-     * Composes a table with the lists of all possible genotype allele counts given the the ploidy and maximum allele index.
-     * <p>
-     *     The resulting matrix has at least as many rows as {@code maximumPloidy } + 1 as the first row with index 0 correspond
-     *     to ploidy == 0. Each row array has as many positions as necessary to contain all possible genotype-allele-counts in increasing order.
-     *     This quantity varies with the ploidy.
-     * </p>
-     *
-     * <p>
-     *     Therefore <code>result[3][4]</code> would contain the 5th genotype with ploidy 3, and <code>result[4].length</code>
-     *     would be equal to the count of possible genotypes for ploidy 4.
-     * </p>
-     *
-     * @param maximumPloidy maximum ploidy to use in queries to the resulting table.
-     * @param maximumAllele maximum allele index to use in queries to the resulting table.
-     * @param offsetTable an allele first genotype offset table as constructed using {@link #buildAlleleFirstGenotypeOffsetTable(int, int)}
-     *                    that supports at least up to {@code maximumAllele} and {@code maximumPloidy}.
+     * Calculates the number of genotypes, <i>C(ploidy + alleleCount - 1, alleleCount - 1)</i>, without building any table.
+     * It takes at most <i>min(ploidy, alleleCount)</i> steps.
      *
-     * @throws IllegalArgumentException if {@code maximumPloidy} or {@code maximumAllele} is negative, or {@code offsetTable} is {@code null},
-     *   or it does not have the capacity to handle the requested maximum ploidy or allele index.
-     *
-     * @return never {@code null}.
+     * @return {@link #GENOTYPE_COUNT_OVERFLOW} if the result is larger than {@link Integer#MAX_VALUE}.
      */
-    private static GenotypeAlleleCounts[][] buildGenotypeAlleleCountsTable(final int maximumPloidy, final int maximumAllele, final int[][] offsetTable) {
-        checkPloidyAndMaximumAllele(maximumPloidy, maximumAllele);
-        checkOffsetTableCapacity(offsetTable,maximumPloidy,maximumAllele);
-        final int rowCount = maximumPloidy + 1;
-        final GenotypeAlleleCounts[][] result = new GenotypeAlleleCounts[rowCount][]; // each row has a different number of columns.
-
-        for (int ploidy = 0; ploidy <= maximumPloidy; ploidy++) {
-            result[ploidy] = buildGenotypeAlleleCountsArray(ploidy, maximumAllele, offsetTable);
+    private static int calculateGenotypeCount(final int ploidy, final int alleleCount) {
+        if (alleleCount == 0) {
+            return 0;
         }
-
-        return result;
-    }
-
-    /**
-     * Builds a genotype-allele-counts array given the genotype ploidy and how many genotype you need.
-     * <p>
-     *     The result is guarantee to have exactly {@code length} positions and the elements are sorted
-     *     in agreement with the standard way to display genotypes following the VCF standard.
-     * </p>
-     *
-     * <p> Notice that is possible to request ploidy ==0. In that case the resulting array will have repetitions
-     * of the empty genotype allele count.
-     * </p>
-     *
-     * <p>
-     *     For example,
-     *
-     *     <pre>
-     *         ploidy = 1, length = 5 : [ {A}, {B}, {C}, {D}, {E} ]
-     *         ploidy = 2, length = 7 : [ {AA}, {AB}, {BB}, {AC}, {BC}, {CC}, {AD}
-     *         ploidy = 3, length = 10 : [ {AAA}, {AAB}, {ABB}, {BBB}, {AAC}, {ABC}, {BBC}, {BCC}, {CCC}, {AAD} ]
-     *     </pre>
-     * </p>
-     *
-     * @param ploidy requested ploidy.
-     * @param alleleCount number of different alleles that the genotype table must support.
-     * @param genotypeOffsetTable table with the offset of the first genotype that contain an allele given
-     *                            the ploidy and its index.
-     *
-     * @throws IllegalArgumentException if {@code ploidy} or {@code length} is negative.
-     *
-     * @return never {@code null}, follows the specification above.
-     */
-    private static GenotypeAlleleCounts[] buildGenotypeAlleleCountsArray(final int ploidy, final int alleleCount, final int[][] genotypeOffsetTable) {
-        Utils.validateArg(ploidy >= 0, () -> "the requested ploidy cannot be negative: " + ploidy);
-        Utils.validateArg(alleleCount >= 0, () -> "the requested maximum allele cannot be negative: " + alleleCount);
-        final int length = genotypeOffsetTable[ploidy][alleleCount];
-        final int strongRefLength = length == GENOTYPE_COUNT_OVERFLOW ? MAXIMUM_STRONG_REF_GENOTYPE_PER_PLOIDY : Math.min(length, MAXIMUM_STRONG_REF_GENOTYPE_PER_PLOIDY);
-        final GenotypeAlleleCounts[] result = new GenotypeAlleleCounts[strongRefLength];
-        result[0] = GenotypeAlleleCounts.first(ploidy);
-        for (int genotypeIndex = 1; genotypeIndex < strongRefLength; genotypeIndex++) {
-            result[genotypeIndex] = result[genotypeIndex - 1].next();
+        final long n = (long) ploidy + alleleCount - 1;
+        final long k = Math.min(ploidy, alleleCount - 1);
+        if (k == 0) {
+            return 1;
+        } else if (n > Integer.MAX_VALUE) {
+            return GENOTYPE_COUNT_OVERFLOW;
         }
-        return result;
+        long result = 1;
+        // result == C(n - k + i, i) after each iteration, so it never decreases and the division is exact.
+        for (long i = 1; i <= k; i++) {
+            result = result * (n - k + i) / i;
+            if (result > Integer.MAX_VALUE) {
+                return GENOTYPE_COUNT_OVERFLOW;
+            }
+        }
+        return (int) result;
     }
 
-
     /**
      * Returns an instance given its ploidy and the number of alleles.
      *
@@ -260,46 +211,38 @@ public final class GenotypeLikelihoodCalculators {
     public GenotypeLikelihoodCalculator getInstance(final int ploidy, final int alleleCount) {
         checkPloidyAndMaximumAllele(ploidy, alleleCount);
 
-        if (calculateGenotypeCountUsingTables(ploidy, alleleCount) == GENOTYPE_COUNT_OVERFLOW) {
-            final double largeGenotypeCount = Math.pow(10, MathUtils.log10BinomialCoefficient(ploidy + alleleCount - 1, alleleCount - 1));
-            throw new IllegalArgumentException(String.format("the number of genotypes is too large for ploidy %d and allele %d: approx. %.0f", ploidy, alleleCount, largeGenotypeCount));
+        final GenotypeTable table = table(ploidy, alleleCount);
+        if (table.genotypeCount == GENOTYPE_COUNT_OVERFLOW) {
+            throw genotypeCountOverflow(ploidy, alleleCount);
         }
-
-        // At this point the tables must have at least the requested capacity, likely to be much more.
-        return new GenotypeLikelihoodCalculator(ploidy, alleleCount, alleleFirstGenotypeOffsetByPloidy, genotypeTableByPloidy);
+        return new GenotypeLikelihoodCalculator(ploidy, alleleCount, table.alleleFirstGenotypeOffsetByPloidy);
     }
 
     /**
-     * Update of shared tables
+     * Returns the table for a ploidy and allele count, creating it if needed.
      *
-     * @param requestedMaximumAllele the new requested maximum allele maximum.
-     * @param requestedMaximumPloidy the new requested ploidy maximum.
+     * @param ploidy the requested ploidy.
+     * @param alleleCount the requested allele count.
      */
-    private void ensureCapacity(final int requestedMaximumAllele, final int requestedMaximumPloidy) {
-
-        final boolean needsToExpandAlleleCapacity = requestedMaximumAllele > maximumAllele;
-        final boolean needsToExpandPloidyCapacity = requestedMaximumPloidy > maximumPloidy;
-
-        // Double check with the lock on to avoid double work.
-        if (!needsToExpandAlleleCapacity && !needsToExpandPloidyCapacity) {
-            return;
+    private GenotypeTable table(final int ploidy, final int alleleCount) {
+        final Long key = tableKey(ploidy, alleleCount);
+        final GenotypeTable existing = tables.get(key);
+        if (existing != null) {
+            return existing;
         }
+        return tables.computeIfAbsent(key, k -> {
+            logger.debug("Creating genotype table for ploidy:" + ploidy + " allele count:" + alleleCount);
+            return new GenotypeTable(ploidy, alleleCount);
+        });
+    }
 
-        final int newMaximumPloidy = Math.max(maximumPloidy, requestedMaximumPloidy);
-        final int newMaximumAllele = Math.max(maximumAllele, requestedMaximumAllele);
-
-        logger.debug("Expanding capacity ploidy:" + maximumPloidy + "->" + newMaximumPloidy + " allele:" +  maximumAllele +"->" + newMaximumAllele );
-
-        // Update tables first.
-        alleleFirstGenotypeOffsetByPloidy = buildAlleleFirstGenotypeOffsetTable(newMaximumPloidy,newMaximumAllele);
-        genotypeTableByPloidy = buildGenotypeAlleleCountsTable(newMaximumPloidy,newMaximumAllele,alleleFirstGenotypeOffsetByPloidy);
+    private static Long tableKey(final int ploidy, final int alleleCount) {
+        return ((long) ploidy << 32) | alleleCount;
+    }
 
-        if (needsToExpandAlleleCapacity) {
-            maximumAllele = requestedMaximumAllele;
-        }
-        if (needsToExpandPloidyCapacity) {
-            maximumPloidy = requestedMaximumPloidy;
-        }
+    private static IllegalArgumentException genotypeCountOverflow(final int ploidy, final int alleleCount) {
+        final double largeGenotypeCount = Math.pow(10, MathUtils.log10BinomialCoefficient(ploidy + alleleCount - 1, alleleCount - 1));
+        return new IllegalArgumentException(String.format("the number of genotypes is too large for ploidy %d and allele %d: approx. %.0f", ploidy, alleleCount, largeGenotypeCount));
     }
 
     /**
@@ -318,15 +261,6 @@ public final class GenotypeLikelihoodCalculators {
         Utils.validateArg(maximumAllele >= 0, () -> "the maximum allele index provided cannot be negative: " + maximumAllele);
     }
 
-    private static void checkOffsetTableCapacity(final int[][] offsetTable, final int maximumPloidy, final int maximumAllele) {
-        Utils.nonNull(offsetTable, "the allele first genotype offset table provided cannot be null");
-        Utils.validateArg(offsetTable.length > maximumPloidy, () -> "the allele first genotype offset table provided does not have enough " +
-                    "capacity for requested maximum ploidy: " + maximumPloidy);
-        Utils.validateArg(offsetTable[0].length >= maximumAllele, () -> "the allele first genotype offset table provided does not have enough " +
-                    "capacity for requested maximum allele index: " + maximumAllele);
-    }
-
-
     /**
      * Returns the number of possible genotypes given the ploidy and number of different alleles.
      * @param ploidy the requested ploidy.
@@ -338,11 +272,10 @@ public final class GenotypeLikelihoodCalculators {
      * @return the number of genotypes given ploidy and allele count (0 or greater).
      */
     public int genotypeCount(final int ploidy, final int alleleCount) {
-
-        final int result = calculateGenotypeCountUsingTables(ploidy, alleleCount);
+        checkPloidyAndMaximumAllele(ploidy, alleleCount);
+        final int result = calculateGenotypeCount(ploidy, alleleCount);
         if (result == GENOTYPE_COUNT_OVERFLOW) {
-            final double largeGenotypeCount = Math.pow(10, MathUtils.log10BinomialCoefficient(ploidy + alleleCount - 1, alleleCount - 1));
-            throw new IllegalArgumentException(String.format("the number of genotypes is too large for ploidy %d and allele %d: approx. %.0f", ploidy, alleleCount, largeGenotypeCount));
+            throw genotypeCountOverflow(ploidy, alleleCount);
         }
         return result;
     }
@@ -379,12 +312,4 @@ public final class GenotypeLikelihoodCalculators {
         }
         throw new GATKException("Code should never reach here.");
     }
-
-    private int calculateGenotypeCountUsingTables(int ploidy, int alleleCount) {
-        checkPloidyAndMaximumAllele(ploidy, alleleCount);
-        if (ploidy > maximumPloidy || alleleCount > maximumAllele) {
-            ensureCapacity(alleleCount, ploidy);
-        }
-        return alleleFirstGenotypeOffsetByPloidy[ploidy][alleleCount];
-    }
-}
\ No newline at end of file
+}
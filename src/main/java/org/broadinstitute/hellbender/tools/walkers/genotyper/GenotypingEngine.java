@@ -58,7 +58,11 @@ public abstract class GenotypingEngine<Config extends StandardCallerArgumentColl
                                final AFCalculatorProvider afCalculatorProvider) {
         this.configuration = Utils.nonNull(configuration, "the configuration cannot be null");
         this.samples = Utils.nonNull(samples, "the sample list cannot be null");
-        this.afCalculatorProvider = Utils.nonNull(afCalculatorProvider, "the AF calculator provider cannot be null");
+        Utils.nonNull(afCalculatorProvider, "the AF calculator provider cannot be null");
+        final int afCacheSize = configuration.genotypeArgs.afCalculationCacheSize;
+        final int afFastPathMinimumPL = configuration.genotypeArgs.afCalculationFastPathMinimumPL;
+        this.afCalculatorProvider = afCacheSize > 0 || afFastPathMinimumPL > 0
+                ? new CachingAFCalculatorProvider(afCalculatorProvider, afCacheSize, afFastPathMinimumPL) : afCalculatorProvider;
         logger = LogManager.getLogger(getClass());
         numberOfGenomes = this.samples.numberOfSamples() * configuration.genotypeArgs.samplePloidy;
         log10AlleleFrequencyPriorsSNPs = composeAlleleFrequencyPriorProvider(numberOfGenomes,
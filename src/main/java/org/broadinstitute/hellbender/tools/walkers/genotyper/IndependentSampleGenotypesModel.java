@@ -1,5 +1,6 @@
 package org.broadinstitute.hellbender.tools.walkers.genotyper;
 
+import com.google.common.annotations.VisibleForTesting;
 import htsjdk.variant.variantcontext.Allele;
 import htsjdk.variant.variantcontext.GenotypeLikelihoods;
 import org.broadinstitute.hellbender.utils.Utils;
@@ -7,21 +8,42 @@ import org.broadinstitute.hellbender.utils.genotyper.AlleleList;
 import org.broadinstitute.hellbender.utils.genotyper.AlleleListPermutation;
 import org.broadinstitute.hellbender.utils.genotyper.LikelihoodMatrix;
 
+import java.io.Closeable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * This class delegates genotyping to allele count- and ploidy-dependent {@link GenotypeLikelihoodCalculator}s
  * under the assumption that sample genotypes are independent conditional on their population frequencies.
+ *
+ * <p>
+ *     When constructed with more than one thread, samples are split into chunks that are genotyped concurrently
+ *     in a ForkJoin pool. Each worker thread keeps its own calculators, as these have mutable buffers, all obtained
+ *     from a shared thread-safe {@link GenotypeLikelihoodCalculators}. The resulting per-sample likelihoods are
+ *     collected in sample order, so the outcome does not depend on the number of threads.
+ * </p>
  */
-public final class IndependentSampleGenotypesModel {
+public final class IndependentSampleGenotypesModel implements Closeable {
     private static final int DEFAULT_CACHE_PLOIDY_CAPACITY = 10;
     private static final int DEFAULT_CACHE_ALLELE_CAPACITY = 50;
 
+    /**
+     * Minimum number of samples per chunk processed by a worker thread; below this the overhead of
+     * dispatching work to other threads would not pay off.
+     */
+    @VisibleForTesting
+    static final int MINIMUM_SAMPLES_PER_CHUNK = 16;
+
     private final int cacheAlleleCountCapacity;
     private final int cachePloidyCapacity;
-    private GenotypeLikelihoodCalculator[][] likelihoodCalculators;
+    private final ThreadLocal<GenotypeLikelihoodCalculator[][]> likelihoodCalculators;
     private final GenotypeLikelihoodCalculators calculators;
+    private final int numThreads;
+    private final ForkJoinPool pool;
 
     public IndependentSampleGenotypesModel() { this(DEFAULT_CACHE_PLOIDY_CAPACITY, DEFAULT_CACHE_ALLELE_CAPACITY); }
 
@@ -29,10 +51,23 @@ public final class IndependentSampleGenotypesModel {
      *  Initialize model with given maximum allele count and ploidy for caching
      */
     public IndependentSampleGenotypesModel(final int calculatorCachePloidyCapacity, final int calculatorCacheAlleleCapacity) {
+        this(calculatorCachePloidyCapacity, calculatorCacheAlleleCapacity, 1);
+    }
+
+    /**
+     * Initialize model with given maximum allele count and ploidy for caching and the number of threads used
+     * to genotype samples.
+     *
+     * @param numThreads number of threads; 1 genotypes all samples on the calling thread.
+     */
+    public IndependentSampleGenotypesModel(final int calculatorCachePloidyCapacity, final int calculatorCacheAlleleCapacity, final int numThreads) {
+        Utils.validateArg(numThreads > 0, "numThreads must be positive");
         cachePloidyCapacity = calculatorCachePloidyCapacity;
         cacheAlleleCountCapacity = calculatorCacheAlleleCapacity;
-        likelihoodCalculators = new GenotypeLikelihoodCalculator[calculatorCachePloidyCapacity][calculatorCacheAlleleCapacity];
+        likelihoodCalculators = ThreadLocal.withInitial(() -> new GenotypeLikelihoodCalculator[cachePloidyCapacity][cacheAlleleCountCapacity]);
         calculators = new GenotypeLikelihoodCalculators();
+        this.numThreads = numThreads;
+        pool = numThreads > 1 ? new ForkJoinPool(numThreads) : null;
     }
 
     public <A extends Allele> GenotypingLikelihoods<A> calculateLikelihoods(final AlleleList<A> genotypingAlleles, final GenotypingData<A> data) {
@@ -44,35 +79,82 @@ public final class IndependentSampleGenotypesModel {
 
         final int sampleCount = data.numberOfSamples();
         final PloidyModel ploidyModel = data.ploidyModel();
-        final List<GenotypeLikelihoods> genotypeLikelihoods = new ArrayList<>(sampleCount);
         final int alleleCount = genotypingAlleles.numberOfAlleles();
 
-        GenotypeLikelihoodCalculator likelihoodsCalculator = sampleCount > 0 ? getLikelihoodsCalculator(ploidyModel.samplePloidy(0), alleleCount) : null;
+        // the sample matrices are lazily created by the read-likelihoods, so we get them all on this thread.
+        final List<LikelihoodMatrix<A>> sampleMatrices = new ArrayList<>(sampleCount);
         for (int i = 0; i < sampleCount; i++) {
+            sampleMatrices.add(data.readLikelihoods().sampleMatrix(i));
+        }
+
+        final GenotypeLikelihoods[] genotypeLikelihoods = new GenotypeLikelihoods[sampleCount];
+        final int chunkCount = pool == null ? 1 : Math.min(numThreads * 4, sampleCount / MINIMUM_SAMPLES_PER_CHUNK);
+        if (chunkCount <= 1) {
+            calculateLikelihoods(ploidyModel, sampleMatrices, alleleLikelihoodMatrixMapper, alleleCount, 0, sampleCount, genotypeLikelihoods);
+        } else {
+            final List<RecursiveAction> chunks = new ArrayList<>(chunkCount);
+            for (int c = 0; c < chunkCount; c++) {
+                final int from = (int) ((long) sampleCount * c / chunkCount);
+                final int to = (int) ((long) sampleCount * (c + 1) / chunkCount);
+                chunks.add(new RecursiveAction() {
+                    private static final long serialVersionUID = 1L;
+                    @Override
+                    protected void compute() {
+                        calculateLikelihoods(ploidyModel, sampleMatrices, alleleLikelihoodMatrixMapper, alleleCount, from, to, genotypeLikelihoods);
+                    }
+                });
+            }
+            pool.invoke(new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
+                @Override
+                protected void compute() {
+                    ForkJoinTask.invokeAll(chunks);
+                }
+            });
+        }
+        return new GenotypingLikelihoods<>(genotypingAlleles, ploidyModel, Arrays.asList(genotypeLikelihoods));
+    }
+
+    // Genotypes the samples in the [from, to) index range.
+    private <A extends Allele> void calculateLikelihoods(final PloidyModel ploidyModel, final List<LikelihoodMatrix<A>> sampleMatrices,
+                                                         final AlleleLikelihoodMatrixMapper<A> alleleLikelihoodMatrixMapper,
+                                                         final int alleleCount, final int from, final int to, final GenotypeLikelihoods[] result) {
+        GenotypeLikelihoodCalculator likelihoodsCalculator = null;
+        for (int i = from; i < to; i++) {
             final int samplePloidy = ploidyModel.samplePloidy(i);
 
             // get a new likelihoodsCalculator if this sample's ploidy differs from the previous sample's
-            if (samplePloidy != likelihoodsCalculator.ploidy()) {
+            if (likelihoodsCalculator == null || samplePloidy != likelihoodsCalculator.ploidy()) {
                 likelihoodsCalculator = getLikelihoodsCalculator(samplePloidy, alleleCount);
             }
 
-            final LikelihoodMatrix<A> sampleLikelihoods = alleleLikelihoodMatrixMapper.apply(data.readLikelihoods().sampleMatrix(i));
-            genotypeLikelihoods.add(likelihoodsCalculator.genotypeLikelihoods(sampleLikelihoods));
+            final LikelihoodMatrix<A> sampleLikelihoods = alleleLikelihoodMatrixMapper.apply(sampleMatrices.get(i));
+            result[i] = likelihoodsCalculator.genotypeLikelihoods(sampleLikelihoods);
         }
-        return new GenotypingLikelihoods<>(genotypingAlleles, ploidyModel, genotypeLikelihoods);
     }
 
     private GenotypeLikelihoodCalculator getLikelihoodsCalculator(final int samplePloidy, final int alleleCount) {
         if (samplePloidy >= cachePloidyCapacity || alleleCount >= cacheAlleleCountCapacity) {
             return calculators.getInstance(samplePloidy, alleleCount);
         }
-        final GenotypeLikelihoodCalculator result = likelihoodCalculators[samplePloidy][alleleCount];
+        final GenotypeLikelihoodCalculator[][] threadCalculators = likelihoodCalculators.get();
+        final GenotypeLikelihoodCalculator result = threadCalculators[samplePloidy][alleleCount];
         if (result != null) {
             return result;
         } else {
             final GenotypeLikelihoodCalculator newOne = calculators.getInstance(samplePloidy, alleleCount);
-            likelihoodCalculators[samplePloidy][alleleCount] = newOne;
+            threadCalculators[samplePloidy][alleleCount] = newOne;
             return newOne;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Shuts down the worker threads, if any.
+     */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+}
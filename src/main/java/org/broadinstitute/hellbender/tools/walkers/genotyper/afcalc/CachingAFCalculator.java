@@ -0,0 +1,285 @@
+package org.broadinstitute.hellbender.tools.walkers.genotyper.afcalc;
+
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.GenotypeLikelihoods;
+import htsjdk.variant.variantcontext.VariantContext;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.broadinstitute.hellbender.utils.MathUtils;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.*;
+
+/**
+ * AF calculator that memoizes the results of another one.
+ *
+ * <p>
+ *     The AF calculation only depends on the number of alleles, the ploidy and PLs of each sample (visited in sample
+ *     name order) and the priors, so sites that share these get the same result. This is common in GVCF and joint
+ *     genotyping runs where most sites repeat a handful of PL patterns. Results are kept in a bounded LRU cache keyed
+ *     by those values and are remapped to the alleles of the site that requested them. Sites with genotypes whose
+ *     likelihoods are not backed by PLs are not cached.
+ * </p>
+ *
+ * <p>
+ *     Optionally, sites where every sample is confidently hom-ref, that is the hom-ref PL is 0 and every other PL is
+ *     at least {@code fastPathMinimumPL}, skip the exact calculation. The likelihood of AC &gt; 0 is then approximated
+ *     by its dominant term, the configurations with a single alternative allele copy. Such sites are called monomorphic
+ *     with overwhelming confidence either way; the fast path is disabled unless a positive threshold is given.
+ * </p>
+ *
+ * <p>Like any other AF calculator, instances are not thread-safe.</p>
+ */
+public final class CachingAFCalculator extends AFCalculator {
+
+    public static final int DEFAULT_CACHE_SIZE = 10_000;
+
+    /**
+     * Value of the fast path PL threshold that disables it.
+     */
+    public static final int NO_FAST_PATH = 0;
+
+    private final AFCalculator delegate;
+
+    private final int fastPathMinimumPL;
+
+    private final Map<SiteKey, CachedResult> cache;
+
+    private long cacheHits;
+
+    private long cacheMisses;
+
+    private long fastPathCount;
+
+    /**
+     * @param delegate the calculator that performs the actual calculation.
+     * @param cacheSize maximum number of results kept, 0 to disable the cache.
+     * @param fastPathMinimumPL minimum PL of every non hom-ref genotype for a site to be taken as clearly hom-ref
+     *                          without doing the exact calculation; {@link #NO_FAST_PATH} to disable.
+     */
+    public CachingAFCalculator(final AFCalculator delegate, final int cacheSize, final int fastPathMinimumPL) {
+        this.delegate = Utils.nonNull(delegate, "the delegate calculator cannot be null");
+        Utils.validateArg(cacheSize >= 0, "the cache size cannot be negative");
+        Utils.validateArg(fastPathMinimumPL >= 0, "the fast path minimum PL cannot be negative");
+        this.fastPathMinimumPL = fastPathMinimumPL;
+        this.cache = new LinkedHashMap<SiteKey, CachedResult>(Math.min(cacheSize, 1024), 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<SiteKey, CachedResult> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    @Override
+    public AFCalculationResult getLog10PNonRef(final VariantContext vc, final int defaultPloidy, final int maximumAlternativeAlleles, final double[] log10AlleleFrequencyPriors) {
+        Utils.nonNull(vc, "VariantContext cannot be null");
+        Utils.nonNull(log10AlleleFrequencyPriors, "priors vector cannot be null");
+        Utils.validateArg( vc.getNAlleles() > 1, "VariantContext has only a single reference allele, but getLog10PNonRef requires at least one at all " + vc);
+
+        if (fastPathMinimumPL != NO_FAST_PATH) {
+            final AFCalculationResult clearlyHomRef = clearlyHomRefResult(vc, defaultPloidy, log10AlleleFrequencyPriors);
+            if (clearlyHomRef != null) {
+                fastPathCount++;
+                return clearlyHomRef;
+            }
+        }
+
+        final SiteKey key = SiteKey.of(vc, defaultPloidy, maximumAlternativeAlleles, log10AlleleFrequencyPriors);
+        if (key == null) {
+            return delegate.getLog10PNonRef(vc, defaultPloidy, maximumAlternativeAlleles, log10AlleleFrequencyPriors);
+        }
+        final CachedResult cached = cache.get(key);
+        if (cached != null) {
+            cacheHits++;
+            return cached.remapTo(vc.getAlleles());
+        }
+        cacheMisses++;
+        final AFCalculationResult result = delegate.getLog10PNonRef(vc, defaultPloidy, maximumAlternativeAlleles, log10AlleleFrequencyPriors);
+        final CachedResult newEntry = CachedResult.of(result, vc.getAlleles());
+        if (newEntry != null) {
+            cache.put(key, newEntry);
+        }
+        return result;
+    }
+
+    @Override
+    protected AFCalculationResult computeLog10PNonRef(final VariantContext vc, final int defaultPloidy, final double[] log10AlleleFrequencyPriors, final StateTracker stateTracker) {
+        return delegate.computeLog10PNonRef(vc, defaultPloidy, log10AlleleFrequencyPriors, stateTracker);
+    }
+
+    @Override
+    protected StateTracker getStateTracker(final boolean reset, final int maximumAlternativeAlleleCount) {
+        return delegate.getStateTracker(reset, maximumAlternativeAlleleCount);
+    }
+
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    /**
+     * Number of sites resolved by the clearly hom-ref fast path.
+     */
+    public long getFastPathCount() {
+        return fastPathCount;
+    }
+
+    /**
+     * Returns the result for a site where every sample is confidently hom-ref, {@code null} if that is not the case.
+     * Only haploid and diploid samples are supported.
+     */
+    private AFCalculationResult clearlyHomRefResult(final VariantContext vc, final int defaultPloidy, final double[] log10AlleleFrequencyPriors) {
+        final int alleleCount = vc.getNAlleles();
+        // the (unnormalized) likelihood ratio of AC > 0 vs AC == 0 is dominated by the configurations with one
+        // alternative allele copy: for each sample the genotypes with exactly one alternative allele.
+        double singleAltCopyLikelihoodSum = 0;
+        int informativeSampleCount = 0;
+        for (final Genotype genotype : vc.getGenotypes().iterateInSampleNameOrder()) {
+            if (!genotype.hasLikelihoods()) {
+                continue;
+            }
+            final int[] pls = genotype.getPL();
+            if (pls[0] != 0) {
+                return null;
+            }
+            final int ploidy = genotype.getPloidy() <= 0 ? defaultPloidy : genotype.getPloidy();
+            if (ploidy > 2) {
+                return null;
+            }
+            for (int i = 1; i < pls.length; i++) {
+                if (pls[i] < fastPathMinimumPL) {
+                    return null;
+                }
+            }
+            // the genotypes with a single copy of alt allele a are "a" for haploids and "ref/a" for diploids.
+            for (int a = 1; a < alleleCount; a++) {
+                final int index = ploidy == 1 ? a : GenotypeLikelihoods.calculatePLindex(0, a);
+                if (index >= pls.length) {
+                    return null;
+                }
+                singleAltCopyLikelihoodSum += Math.pow(10, pls[index] * -0.1);
+            }
+            informativeSampleCount++;
+        }
+        if (informativeSampleCount == 0) {
+            return null;
+        }
+
+        final double log10LikelihoodOfAFGT0 = Math.log10(singleAltCopyLikelihoodSum / informativeSampleCount);
+        final double[] log10Likelihoods = MathUtils.normalizeFromLog10(new double[]{0.0, log10LikelihoodOfAFGT0}, true);
+        final double[] log10Priors = MathUtils.normalizeFromLog10(new double[]{log10AlleleFrequencyPriors[0], MathUtils.log10SumLog10(log10AlleleFrequencyPriors, 1)}, true);
+        final Map<Allele, Double> log10pRefByAllele = new LinkedHashMap<>(alleleCount);
+        for (final Allele allele : vc.getAlternateAlleles()) {
+            log10pRefByAllele.put(allele, 0.0);
+        }
+        return new AFCalculationResult(new int[alleleCount - 1], vc.getAlleles(), log10Likelihoods, log10Priors, log10pRefByAllele);
+    }
+
+    /**
+     * A cached result stored relative to the positions of the alleles of the site that produced it.
+     */
+    private static final class CachedResult {
+        private final AFCalculationResult result;
+        private final List<Allele> alleles;
+        private final int[] usedAlleleIndexes;
+
+        private CachedResult(final AFCalculationResult result, final List<Allele> alleles, final int[] usedAlleleIndexes) {
+            this.result = result;
+            this.alleles = alleles;
+            this.usedAlleleIndexes = usedAlleleIndexes;
+        }
+
+        /**
+         * @return {@code null} if the result cannot be expressed in terms of the site alleles.
+         */
+        private static CachedResult of(final AFCalculationResult result, final List<Allele> siteAlleles) {
+            final List<Allele> used = result.getAllelesUsedInGenotyping();
+            final int[] usedAlleleIndexes = new int[used.size()];
+            for (int i = 0; i < usedAlleleIndexes.length; i++) {
+                usedAlleleIndexes[i] = siteAlleles.indexOf(used.get(i));
+                if (usedAlleleIndexes[i] == -1) {
+                    return null;
+                }
+            }
+            return new CachedResult(result, new ArrayList<>(siteAlleles), usedAlleleIndexes);
+        }
+
+        private AFCalculationResult remapTo(final List<Allele> siteAlleles) {
+            if (siteAlleles.equals(alleles)) {
+                return result;
+            }
+            final List<Allele> used = new ArrayList<>(usedAlleleIndexes.length);
+            for (final int index : usedAlleleIndexes) {
+                used.add(siteAlleles.get(index));
+            }
+            final Map<Allele, Double> log10pRefByAllele = new LinkedHashMap<>(used.size());
+            for (int i = 1; i < used.size(); i++) {
+                log10pRefByAllele.put(used.get(i), result.getLog10PosteriorOfAFEq0ForAllele(result.getAllelesUsedInGenotyping().get(i)));
+            }
+            return new AFCalculationResult(result.getAlleleCountsOfMLE(), used,
+                    new double[]{result.getLog10LikelihoodOfAFEq0(), result.getLog10LikelihoodOfAFGT0()},
+                    new double[]{result.getLog10PriorOfAFEq0(), result.getLog10PriorOfAFGT0()},
+                    log10pRefByAllele);
+        }
+    }
+
+    /**
+     * Cache key made of all the inputs that the AF calculation depends on.
+     */
+    private static final class SiteKey {
+        private final int[] values;
+        private final double[] priors;
+        private final int hashCode;
+
+        private SiteKey(final int[] values, final double[] priors) {
+            this.values = values;
+            this.priors = priors;
+            this.hashCode = 31 * Arrays.hashCode(values) + Arrays.hashCode(priors);
+        }
+
+        /**
+         * @return {@code null} if the site cannot be cached.
+         */
+        private static SiteKey of(final VariantContext vc, final int defaultPloidy, final int maximumAlternativeAlleles, final double[] priors) {
+            final IntArrayList values = new IntArrayList(3 + vc.getNSamples() * 5);
+            values.add(vc.getNAlleles());
+            values.add(defaultPloidy);
+            values.add(maximumAlternativeAlleles);
+            for (final Genotype genotype : vc.getGenotypes().iterateInSampleNameOrder()) {
+                values.add(genotype.getPloidy());
+                final int[] pls = genotype.getPL();
+                if (pls == null) {
+                    if (genotype.hasLikelihoods()) {
+                        return null;
+                    }
+                    values.add(-1);
+                } else {
+                    values.add(pls.length);
+                    values.addElements(values.size(), pls);
+                }
+            }
+            return new SiteKey(values.toIntArray(), priors.clone());
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            } else if (!(o instanceof SiteKey)) {
+                return false;
+            }
+            final SiteKey other = (SiteKey) o;
+            return hashCode == other.hashCode && Arrays.equals(values, other.values) && Arrays.equals(priors, other.priors);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.broadinstitute.hellbender.tools.walkers.genotyper.afcalc;
+
+import htsjdk.variant.variantcontext.VariantContext;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Wraps the calculators of another provider in {@link CachingAFCalculator}s.
+ *
+ * <p>
+ *     Each calculator returned by the underlying provider gets its own cache. Wrappers are kept per thread, so this
+ *     provider is as thread-safe as the one it wraps.
+ * </p>
+ */
+public final class CachingAFCalculatorProvider extends AFCalculatorProvider {
+
+    private final AFCalculatorProvider delegate;
+
+    private final int cacheSize;
+
+    private final int fastPathMinimumPL;
+
+    private final ThreadLocal<Map<AFCalculator, CachingAFCalculator>> calculators = ThreadLocal.withInitial(IdentityHashMap::new);
+
+    /**
+     * @param delegate the provider of the calculators to wrap.
+     * @param cacheSize maximum number of results kept per calculator.
+     * @param fastPathMinimumPL see {@link CachingAFCalculator#CachingAFCalculator(AFCalculator, int, int)}.
+     */
+    public CachingAFCalculatorProvider(final AFCalculatorProvider delegate, final int cacheSize, final int fastPathMinimumPL) {
+        this.delegate = Utils.nonNull(delegate, "the delegate provider cannot be null");
+        Utils.validateArg(cacheSize >= 0, "the cache size cannot be negative");
+        Utils.validateArg(fastPathMinimumPL >= 0, "the fast path minimum PL cannot be negative");
+        this.cacheSize = cacheSize;
+        this.fastPathMinimumPL = fastPathMinimumPL;
+    }
+
+    @Override
+    public AFCalculator getInstance(final VariantContext variantContext, final int defaultPloidy, final int maximumAltAlleles) {
+        return wrap(delegate.getInstance(variantContext, defaultPloidy, maximumAltAlleles));
+    }
+
+    @Override
+    public AFCalculator getInstance(final int ploidy, final int maximumAltAlleles) {
+        return wrap(delegate.getInstance(ploidy, maximumAltAlleles));
+    }
+
+    private AFCalculator wrap(final AFCalculator calculator) {
+        return calculators.get().computeIfAbsent(calculator, c -> new CachingAFCalculator(c, cacheSize, fastPathMinimumPL));
+    }
+}
@@ -42,7 +42,7 @@ import java.io.Serializable;
    insertion). q[i] gives the phred scaled posterior probability of
    state[i] being wrong.
  */
-public final class BAQ implements Serializable {
+public class BAQ implements Serializable {
     private static final long serialVersionUID = 1L;
 
     private static final Logger logger = LogManager.getLogger(BAQ.class);
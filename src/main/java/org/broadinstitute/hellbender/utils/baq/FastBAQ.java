@@ -0,0 +1,407 @@
+package org.broadinstitute.hellbender.utils.baq;
+
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A faster version of {@link BAQ} for callers that BAQ many reads with the same parameters, such as BQSR.
+ *
+ * <p>The forward-backward HMM of {@link #hmm_glocal} is computed in single precision. This is safe because every row
+ * of the forward and backward matrices is rescaled to sum to one (the scaling factors are kept in double precision),
+ * so values only underflow when their contribution to the posteriors is negligible anyway; the MAP step multiplies the
+ * forward and backward values in double precision. The resulting qualities can still differ from {@link BAQ} by one
+ * in the rare cases where the posterior lands right on a rounding boundary.</p>
+ *
+ * <p>Within each row of the band the match and insertion states, which only depend on the previous row, are computed in
+ * a loop free of dependencies between cells, and only the deletion states are left in a sequential loop. The matrices,
+ * scaling factors and emission probabilities live in buffers that are grown as needed and reused across reads.</p>
+ *
+ * <p>In addition, the BAQ qualities of the last {@link #DEFAULT_CACHE_SIZE} distinct (reference window, read bases,
+ * base qualities, cigar) tuples are cached, so duplicate reads are only BAQ'ed once.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+public final class FastBAQ extends BAQ {
+    private static final long serialVersionUID = 1L;
+
+    public static final int DEFAULT_CACHE_SIZE = 10000;
+
+    private static final float EM = 0.33333333333f;
+    private static final float EI = 0.25f;
+
+    /**
+     * BASE_CLASS[b] is the index of the base b in ACGT, ignoring case, or -1 if it is not one of those
+     */
+    private static final byte[] BASE_CLASS = new byte[256];
+    static {
+        Arrays.fill(BASE_CLASS, (byte) -1);
+        final String bases = "ACGT";
+        for ( int i = 0; i < bases.length(); i++ ) {
+            BASE_CLASS[bases.charAt(i)] = (byte) i;
+            BASE_CLASS[Character.toLowerCase(bases.charAt(i))] = (byte) i;
+        }
+    }
+
+    private final int cacheSize;
+
+    // emission probabilities of a match and a mismatch, indexed by base quality
+    private final float[] matchEpsilons = new float[256];
+    private final float[] mismatchEpsilons = new float[256];
+
+    private transient float[] f;
+    private transient float[] b;
+    private transient double[] s;
+    private transient float[] epsilons;
+    private transient Map<CacheKey, CachedResult> cache;
+    private long cacheHits = 0;
+    private long cacheMisses = 0;
+
+    /**
+     * Use defaults for everything
+     */
+    public FastBAQ() {
+        this(DEFAULT_GOP);
+    }
+
+    /**
+     * Use defaults for everything but the gap open penalty
+     *
+     * @param gapOpenPenalty phred scaled gap open penalty
+     */
+    public FastBAQ(final double gapOpenPenalty) {
+        super(gapOpenPenalty);
+        this.cacheSize = DEFAULT_CACHE_SIZE;
+        initializeEpsilons();
+    }
+
+    /**
+     * @param d gap open prob (not phred scaled!).
+     * @param e gap extension prob.
+     * @param b band width
+     * @param minBaseQual All bases with Q < minBaseQual are up'd to this value
+     * @param cacheSize maximum number of BAQ results to cache; 0 disables the cache
+     */
+    public FastBAQ(final double d, final double e, final int b, final byte minBaseQual, final int cacheSize) {
+        super(d, e, b, minBaseQual);
+        Utils.validateArg(cacheSize >= 0, "cacheSize must be non-negative");
+        this.cacheSize = cacheSize;
+        initializeEpsilons();
+    }
+
+    private void initializeEpsilons() {
+        for ( int q = 0; q < 256; q++ ) {
+            final double qual = Math.pow(10, -Math.max(q, getMinBaseQual()) / 10.);
+            matchEpsilons[q] = (float) (1 - qual);
+            mismatchEpsilons[q] = (float) qual * EM;
+        }
+    }
+
+    /**
+     * @return the number of reads whose BAQ was taken from the cache
+     */
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * @return the number of reads whose BAQ had to be calculated
+     */
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    @Override
+    public BAQCalculationResult calcBAQFromHMM(final GATKRead read, final byte[] ref, final int refOffset) {
+        if ( cacheSize == 0 ) {
+            return super.calcBAQFromHMM(read, ref, refOffset);
+        }
+        if ( cache == null ) {
+            cache = new LinkedHashMap<CacheKey, CachedResult>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<CacheKey, CachedResult> eldest) {
+                    return size() > cacheSize;
+                }
+            };
+        }
+
+        final byte[] bases = read.getBases();
+        final byte[] quals = read.getBaseQualities();
+        final CacheKey key = new CacheKey(ref, bases, quals, read.getCigar().toString(), refOffset);
+        final CachedResult cached = cache.get(key);
+        if ( cached != null ) {
+            cacheHits++;
+            if ( cached.bq == null ) {
+                return null;
+            }
+            final BAQCalculationResult result = new BAQCalculationResult(bases, quals, ref);
+            System.arraycopy(cached.bq, 0, result.bq, 0, cached.bq.length);
+            System.arraycopy(cached.state, 0, result.state, 0, cached.state.length);
+            return result;
+        }
+
+        cacheMisses++;
+        final BAQCalculationResult result = super.calcBAQFromHMM(read, ref, refOffset);
+        cache.put(key, result == null ? new CachedResult(null, null) : new CachedResult(result.bq.clone(), result.state.clone()));
+        return result;
+    }
+
+    @Override
+    public int hmm_glocal(final byte[] ref, final byte[] query, final int qstart, final int l_query, final byte[] _iqual, final int[] state, final byte[] q) {
+        if ( ref == null ) throw new GATKException("BUG: ref sequence is null");
+        if ( query == null ) throw new GATKException("BUG: query sequence is null");
+        if ( _iqual == null ) throw new GATKException("BUG: query quality vector is null");
+        if ( query.length != _iqual.length ) throw new GATKException("BUG: read sequence length != qual length");
+        if ( l_query < 1 ) throw new GATKException("BUG: length of query sequence < 0: " + l_query);
+        if ( qstart < 0 ) throw new GATKException("BUG: query sequence start < 0: " + qstart);
+
+        final int l_ref = ref.length;
+        final double cd = getGapOpenProb();
+        final double ce = getGapExtensionProb();
+        final int cb = getBandWidth();
+        final byte minBaseQual = getMinBaseQual();
+
+        // set band width, exactly as BAQ does
+        int bw = l_ref > l_query ? l_ref : l_query;
+        if ( cb < Math.abs(l_ref - l_query) ) {
+            bw = Math.abs(l_ref - l_query) + 3;
+        }
+        if ( bw > cb ) bw = cb;
+        if ( bw < Math.abs(l_ref - l_query) ) {
+            bw = Math.abs(l_ref - l_query);
+        }
+        final int bw2 = bw * 2 + 1;
+        final int rowWidth = bw2 * 3 + 6;
+
+        prepareBuffers(l_query, rowWidth, bw2);
+        final float[] f = this.f;
+        final float[] b = this.b;
+        final double[] s = this.s;
+        final float[] epsilons = this.epsilons;
+
+        // initialize transition probabilities
+        final double sM, sI, bM, bI;
+        sM = sI = 1. / (2 * l_query + 2);
+        bM = (1 - cd) / l_ref; bI = cd / l_ref; // (bM+bI)*l_ref==1
+
+        final float m0 = (float) ((1 - cd - cd) * (1 - sM)), m1 = (float) (cd * (1 - sM)), m2 = m1;
+        final float m3 = (float) ((1 - ce) * (1 - sI)), m4 = (float) (ce * (1 - sI));
+        final float m6 = (float) (1 - ce), m8 = (float) ce;
+
+        /*** forward ***/
+        // f[0]
+        f[setU(bw, 0, 0)] = 1f;
+        s[0] = 1.;
+        { // f[1]
+            final int end = l_ref < bw + 1 ? l_ref : bw + 1;
+            final byte qyi = query[qstart];
+            final int qual = _iqual[qstart] & 0xFF;
+            double sum = 0.;
+            for ( int k = 1; k <= end; ++k ) {
+                final int u = rowWidth + setU(bw, 1, k);
+                f[u] = (float) (epsilon(ref[k - 1], qyi, qual) * bM);
+                f[u + 1] = (float) (EI * bI);
+                sum += f[u] + f[u + 1];
+            }
+            s[1] = sum;
+            rescale(f, rowWidth + setU(bw, 1, 1), rowWidth + setU(bw, 1, end) + 2, (float) (1. / sum));
+        }
+
+        // f[2..l_query]
+        for ( int i = 2; i <= l_query; ++i ) {
+            final int fi = i * rowWidth, fi1 = (i - 1) * rowWidth;
+            final int beg = Math.max(1, i - bw), end = Math.min(l_ref, i + bw);
+            final byte qyi = query[qstart + i - 1];
+            final int qual = _iqual[qstart + i - 1] & 0xFF;
+            final int xi = Math.max(i - bw, 0), xi1 = Math.max(i - 1 - bw, 0);
+            for ( int k = beg; k <= end; ++k ) {
+                epsilons[k - beg] = epsilon(ref[k - 1], qyi, qual);
+            }
+
+            // match and insertion states only depend on the previous row
+            for ( int k = beg; k <= end; ++k ) {
+                final int u = fi + (k + 1 - xi) * 3, v11 = fi1 + (k - xi1) * 3, v10 = fi1 + (k + 1 - xi1) * 3;
+                f[u] = epsilons[k - beg] * (m0 * f[v11] + m3 * f[v11 + 1] + m6 * f[v11 + 2]);
+                f[u + 1] = EI * (m1 * f[v10] + m4 * f[v10 + 1]);
+            }
+            // deletion states depend on the previous cell of the same row
+            double sum = 0.;
+            for ( int k = beg; k <= end; ++k ) {
+                final int u = fi + (k + 1 - xi) * 3;
+                f[u + 2] = m2 * f[u - 3] + m8 * f[u - 1];
+                sum += f[u] + f[u + 1] + f[u + 2];
+            }
+            s[i] = sum;
+            rescale(f, fi + setU(bw, i, beg), fi + setU(bw, i, end) + 2, (float) (1. / sum));
+        }
+        { // f[l_query+1]
+            final int fl = l_query * rowWidth;
+            double sum = 0.;
+            for ( int k = 1; k <= l_ref; ++k ) {
+                final int u = setU(bw, l_query, k);
+                if ( u < 3 || u >= bw2 * 3 + 3 ) continue;
+                sum += f[fl + u] * sM + f[fl + u + 1] * sI;
+            }
+            s[l_query + 1] = sum; // the last scaling factor
+        }
+
+        /*** backward ***/
+        // b[l_query] (b[l_query+1][0]=1 and thus \tilde{b}[][]=1/s[l_query+1]; this is where s[l_query+1] comes from)
+        {
+            final int bl = l_query * rowWidth;
+            final float bMatch = (float) (sM / s[l_query] / s[l_query + 1]);
+            final float bInsertion = (float) (sI / s[l_query] / s[l_query + 1]);
+            for ( int k = 1; k <= l_ref; ++k ) {
+                final int u = setU(bw, l_query, k);
+                if ( u < 3 || u >= bw2 * 3 + 3 ) continue;
+                b[bl + u] = bMatch;
+                b[bl + u + 1] = bInsertion;
+            }
+        }
+        // b[l_query-1..1]
+        for ( int i = l_query - 1; i >= 1; --i ) {
+            final int bi = i * rowWidth, bi1 = (i + 1) * rowWidth;
+            final int beg = Math.max(1, i - bw), end = Math.min(l_ref, i + bw);
+            final float y = i > 1 ? 1f : 0f;
+            final byte qyi1 = query[qstart + i];
+            final int qual = _iqual[qstart + i] & 0xFF;
+            final int xi = Math.max(i - bw, 0), xi1 = Math.max(i + 1 - bw, 0);
+
+            // e * b[i+1][k+1], which only depends on the next row; bi1[v11] is folded into e as in BAQ
+            for ( int k = beg; k <= end; ++k ) {
+                final int v11 = bi1 + (k + 2 - xi1) * 3;
+                epsilons[k - beg] = (k >= l_ref ? 0f : epsilon(ref[k], qyi1, qual)) * b[v11];
+            }
+            // deletion states depend on the next cell of the same row
+            for ( int k = end; k >= beg; --k ) {
+                final int u = bi + (k + 1 - xi) * 3;
+                b[u + 2] = (epsilons[k - beg] * m6 + m8 * b[u + 5]) * y;
+            }
+            for ( int k = beg; k <= end; ++k ) {
+                final int u = bi + (k + 1 - xi) * 3, v10 = bi1 + (k + 1 - xi1) * 3;
+                final float e = epsilons[k - beg];
+                final float insertion = EI * b[v10 + 1];
+                b[u] = e * m0 + m1 * insertion + m2 * b[u + 5];
+                b[u + 1] = e * m3 + m4 * insertion;
+            }
+            rescale(b, bi + setU(bw, i, beg), bi + setU(bw, i, end) + 2, (float) (1. / s[i]));
+        }
+
+        /*** MAP ***/
+        for ( int i = 1; i <= l_query; ++i ) {
+            final int row = i * rowWidth;
+            final int beg = Math.max(1, i - bw), end = Math.min(l_ref, i + bw);
+            double sum = 0., max = 0.;
+            int max_k = -1;
+            for ( int k = beg; k <= end; ++k ) {
+                final int u = row + setU(bw, i, k);
+                double z;
+                sum += (z = (double) f[u] * b[u]); if ( z > max ) { max = z; max_k = (k - 1) << 2; }
+                sum += (z = (double) f[u + 1] * b[u + 1]); if ( z > max ) { max = z; max_k = (k - 1) << 2 | 1; }
+            }
+            max /= sum;
+            if ( state != null ) state[qstart + i - 1] = max_k;
+            if ( q != null ) {
+                final int k = (int) (-4.343 * Math.log(1. - max) + .499); // = 10*log10(1-max)
+                q[qstart + i - 1] = (byte) (k > 100 ? 99 : (k < minBaseQual ? minBaseQual : k));
+            }
+        }
+
+        return 0;
+    }
+
+    private float epsilon(final byte refBase, final byte readBase, final int qual) {
+        final int refClass = BASE_CLASS[refBase & 0xFF], readClass = BASE_CLASS[readBase & 0xFF];
+        if ( refClass < 0 || readClass < 0 ) {
+            return 1f;
+        }
+        return refClass == readClass ? matchEpsilons[qual] : mismatchEpsilons[qual];
+    }
+
+    /**
+     * Makes sure the buffers can hold l_query + 1 rows of the given width, and clears them
+     */
+    private void prepareBuffers(final int l_query, final int rowWidth, final int bw2) {
+        final int size = (l_query + 1) * rowWidth;
+        if ( f == null || f.length < size ) {
+            f = new float[size];
+            b = new float[size];
+        } else {
+            // cells just outside of the band of a row are read by the next row, and must be zero
+            Arrays.fill(f, 0, size, 0f);
+            Arrays.fill(b, 0, size, 0f);
+        }
+        if ( s == null || s.length < l_query + 2 ) {
+            s = new double[l_query + 2];
+        }
+        if ( epsilons == null || epsilons.length < bw2 + 1 ) {
+            epsilons = new float[bw2 + 1];
+        }
+    }
+
+    private static void rescale(final float[] values, final int from, final int to, final float factor) {
+        for ( int k = from; k <= to; ++k ) {
+            values[k] *= factor;
+        }
+    }
+
+    private static int setU(final int b, final int i, final int k) {
+        final int x = i - b;
+        return (k + 1 - (x > 0 ? x : 0)) * 3;
+    }
+
+    private static final class CacheKey {
+        private final byte[] ref;
+        private final byte[] bases;
+        private final byte[] quals;
+        private final String cigar;
+        private final int refOffset;
+        private final int hashCode;
+
+        private CacheKey(final byte[] ref, final byte[] bases, final byte[] quals, final String cigar, final int refOffset) {
+            // keep copies, as callers may modify the arrays (e.g. when overwriting the qualities with the BAQ ones)
+            this.ref = ref.clone();
+            this.bases = bases.clone();
+            this.quals = quals.clone();
+            this.cigar = cigar;
+            this.refOffset = refOffset;
+            int hash = Arrays.hashCode(this.ref);
+            hash = 31 * hash + Arrays.hashCode(this.bases);
+            hash = 31 * hash + Arrays.hashCode(this.quals);
+            hash = 31 * hash + cigar.hashCode();
+            this.hashCode = 31 * hash + refOffset;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if ( this == o ) return true;
+            if ( o == null || getClass() != o.getClass() ) return false;
+            final CacheKey other = (CacheKey) o;
+            return hashCode == other.hashCode && refOffset == other.refOffset && cigar.equals(other.cigar)
+                    && Arrays.equals(bases, other.bases) && Arrays.equals(quals, other.quals) && Arrays.equals(ref, other.ref);
+        }
+    }
+
+    /**
+     * BAQ qualities and states of a read, or nulls if the read cannot be BAQ'ed
+     */
+    private static final class CachedResult {
+        private final byte[] bq;
+        private final int[] state;
+
+        private CachedResult(final byte[] bq, final int[] state) {
+            this.bq = bq;
+            this.state = state;
+        }
+    }
+}
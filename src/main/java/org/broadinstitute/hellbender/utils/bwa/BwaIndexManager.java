@@ -0,0 +1,176 @@
+package org.broadinstitute.hellbender.utils.bwa;
+
+import com.github.lindenb.jbwa.jni.BwaIndex;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.gcs.BucketUtils;
+import org.broadinstitute.hellbender.utils.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps one loaded BWA index per reference for the whole JVM (i.e., for a Spark executor), so that the multi-gigabyte
+ * index is localized and loaded once, rather than once per task or partition.
+ *
+ * <p>
+ *     Clients {@link #acquire} the index for a reference, and {@link #release} it when they're done. The index stays
+ *     loaded while nobody is using it, so that the next task can pick it up, but unused indices are closed before an
+ *     index for some other reference is loaded (so we don't hold two of them in memory at once), and by {@link #closeAll}.
+ * </p>
+ *
+ * <p>
+ *     References on a Hadoop file system (HDFS or GCS) are copied along with their index files into a directory under
+ *     the local temp directory named for the MD5 of the reference path.  So executors that share a host share one
+ *     local copy of the index (and the OS page cache holding it), and only the first of them has to download it.
+ *     A local copy is reused only if its size and modification time match the remote file's.
+ *     Local references are loaded in place.
+ * </p>
+ */
+public final class BwaIndexManager {
+    private static final Logger log = LogManager.getLogger(BwaIndexManager.class);
+    private static final String[] INDEX_FILE_EXTENSIONS = { ".amb", ".ann", ".bwt", ".pac", ".sa" };
+    private static final Map<String, IndexHandle> indices = new HashMap<>();
+
+    private BwaIndexManager() {}
+
+    /**
+     * Get the index for a reference, localizing and loading it if need be.
+     * Every call must be balanced by a call to {@link #release} once the caller is done with the index.
+     */
+    public static synchronized BwaIndex acquire( final String referencePath ) {
+        Utils.nonNull(referencePath, "referencePath");
+        IndexHandle handle = indices.get(referencePath);
+        if ( handle == null ) {
+            closeUnusedIndices();
+            handle = new IndexHandle(loadIndex(referencePath));
+            indices.put(referencePath, handle);
+        }
+        handle.refCount += 1;
+        return handle.index;
+    }
+
+    /** Say that you're done with an index you acquired. */
+    public static synchronized void release( final String referencePath ) {
+        final IndexHandle handle = indices.get(referencePath);
+        if ( handle == null || handle.refCount == 0 ) {
+            throw new IllegalStateException("The BWA index for " + referencePath + " was released more often than it was acquired.");
+        }
+        handle.refCount -= 1;
+    }
+
+    /** The number of unreleased acquisitions of the index for a reference. */
+    public static synchronized int getRefCount( final String referencePath ) {
+        final IndexHandle handle = indices.get(referencePath);
+        return handle == null ? 0 : handle.refCount;
+    }
+
+    /** Close all the indices.  It's an error to do this while any of them are in use. */
+    public static synchronized void closeAll() {
+        for ( final Map.Entry<String, IndexHandle> entry : indices.entrySet() ) {
+            if ( entry.getValue().refCount != 0 ) {
+                throw new IllegalStateException("The BWA index for " + entry.getKey() + " is still in use.");
+            }
+        }
+        closeUnusedIndices();
+    }
+
+    private static void closeUnusedIndices() {
+        final Iterator<Map.Entry<String, IndexHandle>> itr = indices.entrySet().iterator();
+        while ( itr.hasNext() ) {
+            final Map.Entry<String, IndexHandle> entry = itr.next();
+            if ( entry.getValue().refCount == 0 ) {
+                log.info("Closing BWA index for " + entry.getKey());
+                entry.getValue().index.close();
+                itr.remove();
+            }
+        }
+    }
+
+    private static BwaIndex loadIndex( final String referencePath ) {
+        BWANativeLibrary.load();
+        try {
+            final File localReference =
+                    BucketUtils.isHadoopUrl(referencePath) ? localizeReferenceAndBwaIndexFiles(referencePath) : new File(referencePath);
+            final Stopwatch loadIndexStopwatch = Stopwatch.createStarted();
+            final BwaIndex index = new BwaIndex(localReference);
+            log.info("Time to load BWA index for " + referencePath + ": " + loadIndexStopwatch.elapsed(TimeUnit.SECONDS) + "s");
+            return index;
+        } catch ( final IOException e ) {
+            throw new GATKException("Unable to load BWA index for " + referencePath, e);
+        }
+    }
+
+    /**
+     * Copy a reference and its BWA index files to the local file system, unless they're already there.
+     * Each file is copied under a temporary name and then moved into place, so concurrent copies (by other executors
+     * on the same host) don't see partial files.
+     */
+    public static File localizeReferenceAndBwaIndexFiles( final String referencePath ) throws IOException {
+        final Path remotePath = IOUtils.getPath(referencePath);
+        final File localDir = getLocalDirectory(referencePath);
+        if ( !localDir.isDirectory() && !localDir.mkdirs() && !localDir.isDirectory() ) {
+            throw new IOException("Cannot create directory for local copy of the reference: " + localDir);
+        }
+        final Path localPath = new File(localDir, remotePath.getFileName().toString()).toPath();
+
+        final Stopwatch downloadRefStopwatch = Stopwatch.createStarted();
+        boolean copied = localizeFile(remotePath, localPath);
+        for ( final String extension : INDEX_FILE_EXTENSIONS ) {
+            copied |= localizeFile(remotePath.resolveSibling(remotePath.getFileName() + extension),
+                                    localPath.resolveSibling(localPath.getFileName() + extension));
+        }
+        if ( copied ) {
+            log.info("Time to download reference: " + downloadRefStopwatch.elapsed(TimeUnit.SECONDS) + "s");
+        } else {
+            log.info("Using the local copy of the reference in " + localDir);
+        }
+        return localPath.toFile();
+    }
+
+    /** The directory for the local copy of a reference, named for the MD5 of its path, so that paths don't collide. */
+    @VisibleForTesting
+    static File getLocalDirectory( final String referencePath ) {
+        return new File(System.getProperty("java.io.tmpdir"), "bwaIndex-" + Utils.calcMD5(referencePath));
+    }
+
+    /**
+     * Copy the file, unless there's already a local copy of the same size and modification time.
+     * The copy is given the modification time of the remote file.  Returns true if the file was copied.
+     */
+    private static boolean localizeFile( final Path remotePath, final Path localPath ) throws IOException {
+        final FileTime remoteModifiedTime = Files.getLastModifiedTime(remotePath);
+        // compared to the second, since that's all that some local file systems keep
+        if ( Files.exists(localPath) &&
+                Files.size(localPath) == Files.size(remotePath) &&
+                Files.getLastModifiedTime(localPath).to(TimeUnit.SECONDS) == remoteModifiedTime.to(TimeUnit.SECONDS) ) return false;
+        final Path tmpPath = Files.createTempFile(localPath.getParent(), localPath.getFileName().toString(), ".tmp");
+        try {
+            Files.copy(remotePath, tmpPath, StandardCopyOption.REPLACE_EXISTING);
+            Files.setLastModifiedTime(tmpPath, remoteModifiedTime);
+            Files.move(tmpPath, localPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpPath);
+        }
+        return true;
+    }
+
+    private static final class IndexHandle {
+        final BwaIndex index;
+        int refCount;
+
+        IndexHandle( final BwaIndex index ) { this.index = index; }
+    }
+}
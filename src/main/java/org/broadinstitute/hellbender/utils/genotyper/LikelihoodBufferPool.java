@@ -0,0 +1,104 @@
+package org.broadinstitute.hellbender.utils.genotyper;
+
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Per-thread pool of the short-lived scratch buffers used by {@link ReadLikelihoods}.
+ *
+ * <p>
+ *     Buffers are handed out with a length rounded up to the next power of two so that a released buffer can be
+ *     reused for any later request of a similar size. The content of an acquired buffer is undefined; callers
+ *     must initialize every position they are going to read.
+ * </p>
+ *
+ * <p>
+ *     Each thread keeps its own buckets, so no synchronization is needed. Buffers released by a thread different
+ *     to the one that acquired them are simply pooled by the releasing thread.
+ * </p>
+ */
+final class LikelihoodBufferPool {
+
+    /**
+     * Buffers larger than this (in number of doubles) are never pooled; 8MB per buffer.
+     */
+    static final int MAXIMUM_POOLED_LENGTH = 1 << 20;
+
+    /**
+     * Maximum number of idle buffers kept per size bucket and thread.
+     */
+    static final int MAXIMUM_BUFFERS_PER_BUCKET = 4;
+
+    private static final int BUCKET_COUNT = Integer.numberOfTrailingZeros(MAXIMUM_POOLED_LENGTH) + 1;
+
+    private static final double[] EMPTY = new double[0];
+
+    @SuppressWarnings("unchecked")
+    private static final ThreadLocal<ArrayDeque<double[]>[]> BUCKETS = ThreadLocal.withInitial(() -> {
+        final ArrayDeque<double[]>[] result = (ArrayDeque<double[]>[]) new ArrayDeque<?>[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            result[i] = new ArrayDeque<>(MAXIMUM_BUFFERS_PER_BUCKET);
+        }
+        return result;
+    });
+
+    private LikelihoodBufferPool() {
+    }
+
+    /**
+     * Returns a buffer with at least the requested length.
+     *
+     * @param minimumLength the minimum length of the buffer.
+     * @return never {@code null}; its content is undefined.
+     * @throws IllegalArgumentException if {@code minimumLength} is negative.
+     */
+    static double[] acquire(final int minimumLength) {
+        Utils.validateArg(minimumLength >= 0, "the buffer length cannot be negative");
+        if (minimumLength == 0) {
+            return EMPTY;
+        } else if (minimumLength > MAXIMUM_POOLED_LENGTH) {
+            return new double[minimumLength];
+        }
+        final int bucket = bucketIndex(minimumLength);
+        final double[] pooled = BUCKETS.get()[bucket].pollFirst();
+        return pooled != null ? pooled : new double[1 << bucket];
+    }
+
+    /**
+     * Returns a buffer with at least the requested length with its first {@code minimumLength} positions set to a value.
+     *
+     * @param minimumLength the minimum length of the buffer.
+     * @param value the value to fill the buffer with.
+     * @return never {@code null}.
+     */
+    static double[] acquire(final int minimumLength, final double value) {
+        final double[] result = acquire(minimumLength);
+        Arrays.fill(result, 0, minimumLength, value);
+        return result;
+    }
+
+    /**
+     * Gives a buffer back to the pool. The caller must not use it afterwards.
+     *
+     * <p>Buffers that were not handed out by this pool or that do not fit in it are simply dropped.</p>
+     *
+     * @param buffer the buffer to release; {@code null} is ignored.
+     */
+    static void release(final double[] buffer) {
+        if (buffer == null || buffer.length == 0 || buffer.length > MAXIMUM_POOLED_LENGTH
+                || Integer.bitCount(buffer.length) != 1) {
+            return;
+        }
+        final ArrayDeque<double[]> bucket = BUCKETS.get()[Integer.numberOfTrailingZeros(buffer.length)];
+        if (bucket.size() < MAXIMUM_BUFFERS_PER_BUCKET) {
+            bucket.addFirst(buffer);
+        }
+    }
+
+    // the smallest power of two no less than length.
+    private static int bucketIndex(final int length) {
+        return length == 1 ? 0 : 32 - Integer.numberOfLeadingZeros(length - 1);
+    }
+}
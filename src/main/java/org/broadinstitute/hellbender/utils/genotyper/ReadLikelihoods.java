@@ -23,7 +23,10 @@ import java.util.stream.IntStream;
  *
  * @param <A> the type of the allele the likelihood makes reference to.
  *
- * Note: this class uses FastUtil collections for speed.
+ * Note: this class uses FastUtil collections for speed. The likelihoods of each sample are kept in a single
+ * contiguous array, one row of reads per allele.  Only the per-read scratch arrays of the normalization are recycled
+ * through {@link LikelihoodBufferPool}; the likelihood arrays live as long as this object, so they are allocated
+ * at their exact size.
  *
  * @author Valentin Ruano-Rubio &lt;valentin@broadinstitute.org&gt;
  */
@@ -40,12 +43,21 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
     private final GATKRead[][] readsBySampleIndex;
 
     /**
-     * Indexed per sample, allele and finally read (within sample).
+     * Indexed per sample and then by allele and read (within sample) in a single flat array.
      * <p>
-     *     valuesBySampleIndex[s][a][r] == lnLk(R_r | A_a) where R_r comes from Sample s.
+     *     valuesBySampleIndex[s][a * readCapacityBySampleIndex[s] + r] == lnLk(R_r | A_a) where R_r comes from Sample s.
      * </p>
+     * <p>
+     *     The array may be longer than the number of alleles times the read capacity, and positions beyond the
+     *     sample read count in each allele row are undefined.
+     * </p>
+     */
+    private final double[][] valuesBySampleIndex;
+
+    /**
+     * Length of each allele row in {@link #valuesBySampleIndex} per sample; never less than the sample read count.
      */
-    private final double[][][] valuesBySampleIndex;
+    private final int[] readCapacityBySampleIndex;
 
     /**
      * Sample list
@@ -122,7 +134,8 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
 
         readsBySampleIndex = new GATKRead[sampleCount][];
         readListBySampleIndex = (List<GATKRead>[])new List[sampleCount];
-        valuesBySampleIndex = new double[sampleCount][][];
+        valuesBySampleIndex = new double[sampleCount][];
+        readCapacityBySampleIndex = new int[sampleCount];
         referenceAlleleIndex = findReferenceAllele(alleles);
 
         readIndexBySampleIndex = new Object2IntMap[sampleCount];
@@ -139,11 +152,13 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
                             final SampleList samples,
                             final GATKRead[][] readsBySampleIndex,
                             final Object2IntMap<GATKRead>[] readIndex,
-                            final double[][][] values) {
+                            final double[][] values,
+                            final int[] readCapacities) {
         this.samples = samples;
         this.alleles = alleles;
         this.readsBySampleIndex = readsBySampleIndex;
         this.valuesBySampleIndex = values;
+        this.readCapacityBySampleIndex = readCapacities;
         this.readIndexBySampleIndex = readIndex;
         final int sampleCount = samples.numberOfSamples();
         this.readListBySampleIndex = (List<GATKRead>[])new List[sampleCount];
@@ -171,8 +186,37 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
                 : reads.toArray(new GATKRead[reads.size()]);
         final int sampleReadCount = readsBySampleIndex[sampleIndex].length;
 
-        final double[][] sampleValues = new double[alleleCount][sampleReadCount];
-        valuesBySampleIndex[sampleIndex] = sampleValues;
+        valuesBySampleIndex[sampleIndex] = new double[alleleCount * sampleReadCount];
+        readCapacityBySampleIndex[sampleIndex] = sampleReadCount;
+    }
+
+    // Makes sure that the likelihood array of a sample has room for the requested number of alleles and reads,
+    // moving the current values into a larger array if needed.
+    private void ensureSampleCapacity(final int sampleIndex, final int alleleCount, final int readCount,
+                                      final int newAlleleCount, final int newReadCount) {
+        final double[] oldValues = valuesBySampleIndex[sampleIndex];
+        final int oldCapacity = readCapacityBySampleIndex[sampleIndex];
+        if (newReadCount <= oldCapacity && newAlleleCount * oldCapacity <= oldValues.length) {
+            return;
+        }
+        // grow the rows geometrically so that repeated read additions do not copy the likelihoods each time.
+        final int newCapacity = newReadCount <= oldCapacity ? oldCapacity : Math.max(newReadCount, oldCapacity + (oldCapacity >> 1));
+        final double[] newValues = new double[newAlleleCount * newCapacity];
+        copyValues(oldValues, oldCapacity, newValues, newCapacity, alleleCount, readCount);
+        valuesBySampleIndex[sampleIndex] = newValues;
+        readCapacityBySampleIndex[sampleIndex] = newCapacity;
+    }
+
+    // Copies the likelihoods of the first alleleCount alleles and readCount reads between arrays with different row lengths.
+    private static void copyValues(final double[] source, final int sourceCapacity, final double[] dest, final int destCapacity,
+                                   final int alleleCount, final int readCount) {
+        if (sourceCapacity == destCapacity && readCount == destCapacity) {
+            System.arraycopy(source, 0, dest, 0, alleleCount * readCount);
+        } else {
+            for (int a = 0; a < alleleCount; a++) {
+                System.arraycopy(source, a * sourceCapacity, dest, a * destCapacity, readCount);
+            }
+        }
     }
 
     /**
@@ -183,7 +227,7 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
         final int sampleCount = samples.numberOfSamples();
         final int alleleCount = alleles.numberOfAlleles();
 
-        final double[][][] newLikelihoodValues = new double[sampleCount][alleleCount][];
+        final double[][] newLikelihoodValues = new double[sampleCount][];
 
         @SuppressWarnings({"unchecked", "rawtypes"})
         final Object2IntMap<GATKRead>[] newReadIndexBySampleIndex = new Object2IntMap[sampleCount];
@@ -191,9 +235,9 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
 
         for (int s = 0; s < sampleCount; s++) {
             newReadsBySampleIndex[s] = readsBySampleIndex[s].clone();
-            for (int a = 0; a < alleleCount; a++) {
-                newLikelihoodValues[s][a] = valuesBySampleIndex[s][a].clone();
-            }
+            final int sampleReadCount = newReadsBySampleIndex[s].length;
+            newLikelihoodValues[s] = new double[alleleCount * sampleReadCount];
+            copyValues(valuesBySampleIndex[s], readCapacityBySampleIndex[s], newLikelihoodValues[s], sampleReadCount, alleleCount, sampleReadCount);
         }
 
         // Finally we create the new read-likelihood
@@ -202,10 +246,20 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
                 samples,
                 newReadsBySampleIndex,
                 newReadIndexBySampleIndex,
-                newLikelihoodValues);
+                newLikelihoodValues,
+                readCounts(newReadsBySampleIndex));
     }
 
 
+    // Number of reads per sample, used as the read capacity of freshly packed likelihood arrays.
+    private static int[] readCounts(final GATKRead[][] readsBySampleIndex) {
+        final int[] result = new int[readsBySampleIndex.length];
+        for (int s = 0; s < result.length; s++) {
+            result[s] = readsBySampleIndex[s].length;
+        }
+        return result;
+    }
+
     // Search for the reference allele, if not found the index is {@link MISSING_REF}.
     private static int findReferenceAllele(final AlleleList<?> alleles) {
         return IntStream.range(0, alleles.numberOfAlleles()).filter(i -> alleles.getAllele(i).isReference()).findAny().orElse(MISSING_REF);
@@ -340,47 +394,82 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
         }
 
         for (int s = 0; s < valuesBySampleIndex.length; s++) {
-            final double[][] sampleValues = valuesBySampleIndex[s];
-            final int readCount = readsBySampleIndex[s].length;
-            for (int r = 0; r < readCount; r++) {
-                normalizeLikelihoodsPerRead(bestToZero, maximumLikelihoodDifferenceCap, sampleValues, s, r);
-            }
+            normalizeSampleLikelihoods(bestToZero, maximumLikelihoodDifferenceCap, s);
         }
     }
 
-    // Does the normalizeLikelihoods job for each read.
-    private void normalizeLikelihoodsPerRead(final boolean bestToZero, final double maximumBestAltLikelihoodDifference,
-                                             final double[][] sampleValues, final int sampleIndex, final int readIndex) {
-
-        final BestAllele bestAlternativeAllele = searchBestAllele(sampleIndex,readIndex,false);
-
-        final double worstLikelihoodCap = bestAlternativeAllele.likelihood + maximumBestAltLikelihoodDifference;
-
-        final double referenceLikelihood = referenceAlleleIndex == MISSING_REF ? Double.NEGATIVE_INFINITY :
-                sampleValues[referenceAlleleIndex][readIndex];
+    // Does the normalizeLikelihoods job for each sample, one allele row at a time.
+    private void normalizeSampleLikelihoods(final boolean bestToZero, final double maximumBestAltLikelihoodDifference, final int sampleIndex) {
+        final int readCount = readsBySampleIndex[sampleIndex].length;
+        if (readCount == 0) {
+            return;
+        }
+        final double[] sampleValues = valuesBySampleIndex[sampleIndex];
+        final int readCapacity = readCapacityBySampleIndex[sampleIndex];
+        final int alleleCount = alleles.numberOfAlleles();
 
-        final double bestAbsoluteLikelihood = Math.max(bestAlternativeAllele.likelihood, referenceLikelihood);
+        // first we find the per-read worst likelihood cap and best absolute likelihood.
+        final double[] worstLikelihoodCaps = LikelihoodBufferPool.acquire(readCount);
+        final double[] bestAbsoluteLikelihoods = LikelihoodBufferPool.acquire(readCount);
+        bestAlternativeLikelihoods(sampleValues, readCapacity, readCount, worstLikelihoodCaps);
+        for (int r = 0; r < readCount; r++) {
+            final double bestAlternativeLikelihood = worstLikelihoodCaps[r];
+            final double referenceLikelihood = referenceAlleleIndex == MISSING_REF ? Double.NEGATIVE_INFINITY :
+                    sampleValues[referenceAlleleIndex * readCapacity + r];
+            worstLikelihoodCaps[r] = bestAlternativeLikelihood + maximumBestAltLikelihoodDifference;
+            bestAbsoluteLikelihoods[r] = Math.max(bestAlternativeLikelihood, referenceLikelihood);
+        }
 
-        final int alleleCount = alleles.numberOfAlleles();
         if (bestToZero) {
-            if (bestAbsoluteLikelihood == Double.NEGATIVE_INFINITY) {
-                for (int a = 0; a < alleleCount; a++) {
-                    sampleValues[a][readIndex] = 0;
-                }
-            } else if (worstLikelihoodCap != Double.NEGATIVE_INFINITY) {
-                for (int a = 0; a < alleleCount; a++) {
-                    sampleValues[a][readIndex] = (sampleValues[a][readIndex] < worstLikelihoodCap ? worstLikelihoodCap : sampleValues[a][readIndex]) - bestAbsoluteLikelihood;
+            for (int a = 0; a < alleleCount; a++) {
+                final int offset = a * readCapacity;
+                for (int r = 0; r < readCount; r++) {
+                    final double value = sampleValues[offset + r];
+                    final double cap = worstLikelihoodCaps[r];
+                    sampleValues[offset + r] = (value < cap ? cap : value) - bestAbsoluteLikelihoods[r];
                 }
-            } else {
-                for (int a = 0; a < alleleCount; a++) {
-                    sampleValues[a][readIndex] -= bestAbsoluteLikelihood;
+            }
+            // reads without any finite likelihood are set to 0 across the board.
+            for (int r = 0; r < readCount; r++) {
+                if (bestAbsoluteLikelihoods[r] == Double.NEGATIVE_INFINITY) {
+                    for (int a = 0; a < alleleCount; a++) {
+                        sampleValues[a * readCapacity + r] = 0;
+                    }
                 }
             }
         } else {
             // Guarantee to be the case by enclosing code.
             for (int a = 0; a < alleleCount; a++) {
-                if (sampleValues[a][readIndex] < worstLikelihoodCap) {
-                    sampleValues[a][readIndex] = worstLikelihoodCap;
+                final int offset = a * readCapacity;
+                for (int r = 0; r < readCount; r++) {
+                    if (sampleValues[offset + r] < worstLikelihoodCaps[r]) {
+                        sampleValues[offset + r] = worstLikelihoodCaps[r];
+                    }
+                }
+            }
+        }
+        LikelihoodBufferPool.release(worstLikelihoodCaps);
+        LikelihoodBufferPool.release(bestAbsoluteLikelihoods);
+    }
+
+    // Writes the best non-reference likelihood of each read in the result array, as {@link #searchBestAllele} would find it.
+    private void bestAlternativeLikelihoods(final double[] sampleValues, final int readCapacity, final int readCount, final double[] result) {
+        final int alleleCount = alleles.numberOfAlleles();
+        if (alleleCount == 0 || (alleleCount == 1 && referenceAlleleIndex == 0)) {
+            Arrays.fill(result, 0, readCount, Double.NEGATIVE_INFINITY);
+            return;
+        }
+        final int firstAlleleIndex = referenceAlleleIndex != 0 ? 0 : 1;
+        System.arraycopy(sampleValues, firstAlleleIndex * readCapacity, result, 0, readCount);
+        for (int a = firstAlleleIndex + 1; a < alleleCount; a++) {
+            if (referenceAlleleIndex == a) {
+                continue;
+            }
+            final int offset = a * readCapacity;
+            for (int r = 0; r < readCount; r++) {
+                final double candidateLikelihood = sampleValues[offset + r];
+                if (candidateLikelihood > result[r]) {
+                    result[r] = candidateLikelihood;
                 }
             }
         }
@@ -435,16 +524,17 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
             return new BestAllele(sampleIndex, readIndex, -1, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY);
         }
 
-        final double[][] sampleValues = valuesBySampleIndex[sampleIndex];
+        final double[] sampleValues = valuesBySampleIndex[sampleIndex];
+        final int readCapacity = readCapacityBySampleIndex[sampleIndex];
         int bestAlleleIndex = canBeReference || referenceAlleleIndex != 0 ? 0 : 1;
 
-        double bestLikelihood = sampleValues[bestAlleleIndex][readIndex];
+        double bestLikelihood = sampleValues[bestAlleleIndex * readCapacity + readIndex];
         double secondBestLikelihood = Double.NEGATIVE_INFINITY;
         for (int a = bestAlleleIndex + 1; a < alleleCount; a++) {
             if (!canBeReference && referenceAlleleIndex == a) {
                 continue;
             }
-            final double candidateLikelihood = sampleValues[a][readIndex];
+            final double candidateLikelihood = sampleValues[a * readCapacity + readIndex];
             if (candidateLikelihood > bestLikelihood) {
                 bestAlleleIndex = a;
                 secondBestLikelihood = bestLikelihood;
@@ -521,14 +611,12 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
         //copy old allele likelihoods and set new allele likelihoods to the default value
         for (int s = 0; s < samples.numberOfSamples(); s++) {
             final int sampleReadCount = readsBySampleIndex[s].length;
-            final double[][] newValuesBySampleIndex = Arrays.copyOf(valuesBySampleIndex[s], newAlleleCount);
+            ensureSampleCapacity(s, oldAlleleCount, sampleReadCount, newAlleleCount, sampleReadCount);
+            final double[] sampleValues = valuesBySampleIndex[s];
+            final int readCapacity = readCapacityBySampleIndex[s];
             for (int a = oldAlleleCount; a < newAlleleCount; a++) {
-                newValuesBySampleIndex[a] = new double[sampleReadCount];
-                if (defaultLikelihood != 0.0) {
-                    Arrays.fill(newValuesBySampleIndex[a], defaultLikelihood);
-                }
+                Arrays.fill(sampleValues, a * readCapacity, a * readCapacity + sampleReadCount, defaultLikelihood);
             }
-            valuesBySampleIndex[s] = newValuesBySampleIndex;
         }
     }
 
@@ -558,7 +646,7 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
         final int[] oldToNewAlleleIndexMap = oldToNewAlleleIndexMap(newToOldAlleleMap, oldAlleleCount, newAlleles);
 
         // We calculate the marginal likelihoods.
-        final double[][][] newLikelihoodValues = marginalLikelihoods(oldAlleleCount, newAlleleCount, oldToNewAlleleIndexMap, null);
+        final double[][] newLikelihoodValues = marginalLikelihoods(oldAlleleCount, newAlleleCount, oldToNewAlleleIndexMap, null);
 
         final int sampleCount = samples.numberOfSamples();
 
@@ -574,7 +662,7 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
                 new IndexedAlleleList(newAlleles),
                 samples,
                 newReadsBySampleIndex,
-                newReadIndexBySampleIndex, newLikelihoodValues);
+                newReadIndexBySampleIndex, newLikelihoodValues, readCounts(newReadsBySampleIndex));
     }
 
 
@@ -612,7 +700,7 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
         final int[][] readsToKeep = overlappingReadIndicesBySampleIndex(overlap);
         // We calculate the marginal likelihoods.
 
-        final double[][][] newLikelihoodValues = marginalLikelihoods(oldAlleleCount, newAlleleCount, oldToNewAlleleIndexMap, readsToKeep);
+        final double[][] newLikelihoodValues = marginalLikelihoods(oldAlleleCount, newAlleleCount, oldToNewAlleleIndexMap, readsToKeep);
 
         final int sampleCount = samples.numberOfSamples();
 
@@ -638,7 +726,7 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
         // Finally we create the new read-likelihood
         return new ReadLikelihoods<>(new IndexedAlleleList<>(newAlleles), samples,
                 newReadsBySampleIndex,
-                newReadIndexBySampleIndex, newLikelihoodValues);
+                newReadIndexBySampleIndex, newLikelihoodValues, readCounts(newReadsBySampleIndex));
     }
 
     private int[][] overlappingReadIndicesBySampleIndex(final Locatable overlap) {
@@ -687,32 +775,34 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
     }
 
     // Calculate the marginal likelihoods considering the old -> new allele index mapping.
-    private double[][][] marginalLikelihoods(final int oldAlleleCount, final int newAlleleCount, final int[] oldToNewAlleleIndexMap, final int[][] readsToKeep) {
+    // The result arrays are packed, each allele row being as long as the number of reads kept in the sample.
+    private double[][] marginalLikelihoods(final int oldAlleleCount, final int newAlleleCount, final int[] oldToNewAlleleIndexMap, final int[][] readsToKeep) {
 
         final int sampleCount = samples.numberOfSamples();
-        final double[][][] result = new double[sampleCount][][];
+        final double[][] result = new double[sampleCount][];
 
         for (int s = 0; s < sampleCount; s++) {
             final int sampleReadCount = readsBySampleIndex[s].length;
-            final double[][] oldSampleValues = valuesBySampleIndex[s];
+            final double[] oldSampleValues = valuesBySampleIndex[s];
+            final int oldReadCapacity = readCapacityBySampleIndex[s];
             final int[] sampleReadToKeep = readsToKeep == null || readsToKeep[s].length == sampleReadCount ? null : readsToKeep[s];
             final int newSampleReadCount = sampleReadToKeep == null ? sampleReadCount : sampleReadToKeep.length;
-            final double[][] newSampleValues = result[s] = new double[newAlleleCount][newSampleReadCount];
             // We initiate all likelihoods to -Inf.
-            for (int a = 0; a < newAlleleCount; a++) {
-                Arrays.fill(newSampleValues[a], Double.NEGATIVE_INFINITY);
-            }
+            final double[] newSampleValues = result[s] = new double[newAlleleCount * newSampleReadCount];
+            Arrays.fill(newSampleValues, Double.NEGATIVE_INFINITY);
             // For each old allele and read we update the new table keeping the maximum likelihood.
-            for (int r = 0; r < newSampleReadCount; r++) {
-                for (int a = 0; a < oldAlleleCount; a++) {
-                    final int oldReadIndex = newSampleReadCount == sampleReadCount ? r : sampleReadToKeep[r];
-                    final int newAlleleIndex = oldToNewAlleleIndexMap[a];
-                    if (newAlleleIndex == -1) {
-                        continue;
-                    }
-                    final double likelihood = oldSampleValues[a][oldReadIndex];
-                    if (likelihood > newSampleValues[newAlleleIndex][r]) {
-                        newSampleValues[newAlleleIndex][r] = likelihood;
+            for (int a = 0; a < oldAlleleCount; a++) {
+                final int newAlleleIndex = oldToNewAlleleIndexMap[a];
+                if (newAlleleIndex == -1) {
+                    continue;
+                }
+                final int oldOffset = a * oldReadCapacity;
+                final int newOffset = newAlleleIndex * newSampleReadCount;
+                for (int r = 0; r < newSampleReadCount; r++) {
+                    final int oldReadIndex = sampleReadToKeep == null ? r : sampleReadToKeep[r];
+                    final double likelihood = oldSampleValues[oldOffset + oldReadIndex];
+                    if (likelihood > newSampleValues[newOffset + r]) {
+                        newSampleValues[newOffset + r] = likelihood;
                     }
                 }
             }
@@ -819,9 +909,10 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
         final double log10MaxLikelihoodForTrueAllele = maxErrorsForRead * log10QualPerBase;
 
         final int alleleCount = alleles.numberOfAlleles();
-        final double[][] sampleValues = valuesBySampleIndex[sampleIndex];
+        final double[] sampleValues = valuesBySampleIndex[sampleIndex];
+        final int readCapacity = readCapacityBySampleIndex[sampleIndex];
         for (int a = 0; a < alleleCount; a++) {
-            if (sampleValues[a][readIndex] >= log10MaxLikelihoodForTrueAllele) {
+            if (sampleValues[a * readCapacity + readIndex] >= log10MaxLikelihoodForTrueAllele) {
                 return false;
             }
         }
@@ -863,16 +954,13 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
 
     // Extends the likelihood arrays-matrices.
     private void extendsLikelihoodArrays(final double initialLikelihood, final int sampleIndex, final int sampleReadCount, final int newSampleReadCount) {
-        final double[][] sampleValues = valuesBySampleIndex[sampleIndex];
         final int alleleCount = alleles.numberOfAlleles();
+        ensureSampleCapacity(sampleIndex, alleleCount, sampleReadCount, alleleCount, newSampleReadCount);
+        final double[] sampleValues = valuesBySampleIndex[sampleIndex];
+        final int readCapacity = readCapacityBySampleIndex[sampleIndex];
+        // spare capacity may hold stale values so the new entries are always filled in.
         for (int a = 0; a < alleleCount; a++) {
-            sampleValues[a] = Arrays.copyOf(sampleValues[a], newSampleReadCount);
-        }
-        if (initialLikelihood != 0.0) // the default array new value.
-        {
-            for (int a = 0; a < alleleCount; a++) {
-                Arrays.fill(sampleValues[a], sampleReadCount, newSampleReadCount, initialLikelihood);
-            }
+            Arrays.fill(sampleValues, a * readCapacity + sampleReadCount, a * readCapacity + newSampleReadCount, initialLikelihood);
         }
     }
 
@@ -940,16 +1028,17 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
 
     // Updates per-sample structures according to the addition of the NON_REF allele.
     private void addNonReferenceAlleleLikelihoodsPerSample(final int alleleCount, final int newAlleleCount, final int sampleIndex) {
-        final double[][] sampleValues = valuesBySampleIndex[sampleIndex] = Arrays.copyOf(valuesBySampleIndex[sampleIndex], newAlleleCount);
         final int sampleReadCount = readsBySampleIndex[sampleIndex].length;
+        ensureSampleCapacity(sampleIndex, alleleCount, sampleReadCount, newAlleleCount, sampleReadCount);
+        final double[] sampleValues = valuesBySampleIndex[sampleIndex];
+        final int nonRefOffset = alleleCount * readCapacityBySampleIndex[sampleIndex];
 
-        final double[] nonRefAlleleLikelihoods = sampleValues[alleleCount] = new double [sampleReadCount];
-        Arrays.fill(nonRefAlleleLikelihoods, Double.NEGATIVE_INFINITY);
+        Arrays.fill(sampleValues, nonRefOffset, nonRefOffset + sampleReadCount, Double.NEGATIVE_INFINITY);
         for (int r = 0; r < sampleReadCount; r++) {
             final BestAllele bestAllele = searchBestAllele(sampleIndex,r,true);
             final double secondBestLikelihood = Double.isInfinite(bestAllele.confidence) ? bestAllele.likelihood
                     : bestAllele.likelihood - bestAllele.confidence;
-            nonRefAlleleLikelihoods[r] = secondBestLikelihood;
+            sampleValues[nonRefOffset + r] = secondBestLikelihood;
         }
     }
 
@@ -1198,13 +1287,7 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
         Utils.skimArray(oldSampleReads,firstDeleted, newSampleReads, firstDeleted, removeIndex, firstDeleted);
 
         // Then we skim out the likelihoods of the removed reads.
-        final double[][] oldSampleValues = valuesBySampleIndex[sampleIndex];
-        final double[][] newSampleValues = new double[alleleCount][newSampleReadCount];
-        for (int a = 0; a < alleleCount; a++) {
-            System.arraycopy(oldSampleValues[a], 0, newSampleValues[a], 0, firstDeleted);
-            Utils.skimArray(oldSampleValues[a], firstDeleted, newSampleValues[a], firstDeleted, removeIndex, firstDeleted);
-        }
-        valuesBySampleIndex[sampleIndex] = newSampleValues;
+        skimSampleValues(sampleIndex, alleleCount, sampleReadCount, firstDeleted, removeIndex);
         readsBySampleIndex[sampleIndex] = newSampleReads;
         readListBySampleIndex[sampleIndex] = null; // reset the unmodifiable list.
     }
@@ -1256,18 +1339,23 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
         }
 
         // Then we skim out the likelihoods of the removed reads.
-        final double[][] oldSampleValues = valuesBySampleIndex[sampleIndex];
-        final double[][] newSampleValues = new double[alleleCount][newSampleReadCount];
-        for (int a = 0; a < alleleCount; a++) {
-            System.arraycopy(oldSampleValues[a],0,newSampleValues[a],0,firstDeleted);
-            Utils.skimArray(oldSampleValues[a], firstDeleted, newSampleValues[a], firstDeleted, removeIndex, firstDeleted);
-        }
-        valuesBySampleIndex[sampleIndex] = newSampleValues;
+        skimSampleValues(sampleIndex, alleleCount, sampleReadCount, firstDeleted, removeIndex);
         readsBySampleIndex[sampleIndex] = newSampleReads;
         readListBySampleIndex[sampleIndex] = null; // reset the unmodifiable list.
     }
 
 
+    // Skims out the likelihoods of removed reads in place, the allele rows keep their capacity.
+    private void skimSampleValues(final int sampleIndex, final int alleleCount, final int sampleReadCount,
+                                  final int firstDeleted, final boolean[] removeIndex) {
+        final double[] sampleValues = valuesBySampleIndex[sampleIndex];
+        final int readCapacity = readCapacityBySampleIndex[sampleIndex];
+        for (int a = 0; a < alleleCount; a++) {
+            final int offset = a * readCapacity + firstDeleted;
+            Utils.skimArray(sampleValues, offset, sampleValues, offset, removeIndex, firstDeleted, sampleReadCount - firstDeleted);
+        }
+    }
+
     private Object2IntMap<GATKRead> readIndexBySampleIndex(final int sampleIndex) {
         if (readIndexBySampleIndex[sampleIndex] == null) {
             final GATKRead[] sampleReads = readsBySampleIndex[sampleIndex];
@@ -1307,9 +1395,10 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
         final int sampleReadCount = sampleReads.length;
         for (int a = 0; a < alleleCount; a++) {
             final A allele = alleles.getAllele(a);
-            final double[] readLikelihoods = valuesBySampleIndex[sampleIndex][a];
+            final double[] sampleValues = valuesBySampleIndex[sampleIndex];
+            final int offset = a * readCapacityBySampleIndex[sampleIndex];
             for (int r = 0; r < sampleReadCount; r++)
-                result.add(sampleReads[r], allele, readLikelihoods[r]);
+                result.add(sampleReads[r], allele, sampleValues[offset + r]);
         }
         return result;
     }
@@ -1337,16 +1426,16 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
 
         @Override
         public void set(final int alleleIndex, final int readIndex, final double value) {
-            Utils.validIndex(alleleIndex, valuesBySampleIndex[sampleIndex].length);
-            Utils.validIndex(readIndex, valuesBySampleIndex[sampleIndex][alleleIndex].length);
-            valuesBySampleIndex[sampleIndex][alleleIndex][readIndex] = value;
+            Utils.validIndex(alleleIndex, alleles.numberOfAlleles());
+            Utils.validIndex(readIndex, readsBySampleIndex[sampleIndex].length);
+            valuesBySampleIndex[sampleIndex][alleleIndex * readCapacityBySampleIndex[sampleIndex] + readIndex] = value;
         }
 
         @Override
         public double get(final int alleleIndex, final int readIndex) {
-            Utils.validIndex(alleleIndex, valuesBySampleIndex[sampleIndex].length);
-            Utils.validIndex(readIndex, valuesBySampleIndex[sampleIndex][alleleIndex].length);
-            return valuesBySampleIndex[sampleIndex][alleleIndex][readIndex];
+            Utils.validIndex(alleleIndex, alleles.numberOfAlleles());
+            Utils.validIndex(readIndex, readsBySampleIndex[sampleIndex].length);
+            return valuesBySampleIndex[sampleIndex][alleleIndex * readCapacityBySampleIndex[sampleIndex] + readIndex];
         }
 
         @Override
@@ -1386,8 +1475,8 @@ public final class ReadLikelihoods<A extends Allele> implements SampleList, Alle
         @Override
         public void copyAlleleLikelihoods(final int alleleIndex, final double[] dest, final int offset) {
             Utils.nonNull(dest);
-            Utils.validIndex(alleleIndex, valuesBySampleIndex[sampleIndex].length);
-            System.arraycopy(valuesBySampleIndex[sampleIndex][alleleIndex], 0, dest, offset, numberOfReads());
+            Utils.validIndex(alleleIndex, alleles.numberOfAlleles());
+            System.arraycopy(valuesBySampleIndex[sampleIndex], alleleIndex * readCapacityBySampleIndex[sampleIndex], dest, offset, numberOfReads());
         }
     }
 }
\ No newline at end of file
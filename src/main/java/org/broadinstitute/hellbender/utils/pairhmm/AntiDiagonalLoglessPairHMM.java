@@ -0,0 +1,247 @@
+package org.broadinstitute.hellbender.utils.pairhmm;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.broadinstitute.hellbender.utils.QualityUtils;
+
+/**
+ * Portable Java version of the LOGLESS_CACHING PairHMM that walks the match, insertion and deletion matrices
+ * along anti-diagonals instead of rows.
+ *
+ * <p>All cells on an anti-diagonal are independent of each other, so the inner loop has no loop-carried dependency
+ * and runs over contiguous arrays indexed by read position, which is the shape HotSpot's superword optimization
+ * turns into SIMD instructions. Only the last three diagonals of each matrix are kept, so memory use is linear in
+ * the read length.</p>
+ *
+ * <p>As in the native AVX implementation, every pair is first computed in single precision (which doubles the
+ * number of lanes per vector) and recomputed in double precision only when the single precision result is too
+ * small to be trusted.</p>
+ */
+public final class AntiDiagonalLoglessPairHMM extends PairHMM {
+    static final float INITIAL_CONDITION_FLOAT = (float)Math.pow(2, 120);
+    static final double INITIAL_CONDITION_FLOAT_LOG10 = Math.log10(INITIAL_CONDITION_FLOAT);
+
+    /**
+     * Single precision results (still scaled by {@link #INITIAL_CONDITION_FLOAT}) below this value are recomputed in double precision.
+     */
+    static final float MIN_ACCEPTED_FLOAT = 1e-28f;
+
+    // per-read transition and prior probabilities, indexed by 1-based read position
+    private float[] matchToMatchFloat, indelToMatchFloat, matchToInsertionFloat, insertionToInsertionFloat, matchToDeletionFloat, deletionToDeletionFloat;
+    private float[] priorMatchFloat, priorMismatchFloat;
+    private double[] matchToMatch, indelToMatch, matchToInsertion, insertionToInsertion, matchToDeletion, deletionToDeletion;
+    private double[] priorMatch, priorMismatch;
+
+    // the last three anti-diagonals of each matrix, indexed by read position
+    private float[][] matchDiagonalsFloat, insertionDiagonalsFloat, deletionDiagonalsFloat;
+    private double[][] matchDiagonals, insertionDiagonals, deletionDiagonals;
+    private float[] diagonalPriorFloat;
+    private double[] diagonalPrior;
+
+    private byte[] reversedHaplotype;
+
+    private long doublePrecisionRecomputations = 0;
+
+    @Override
+    public void initialize( final int readMaxLength, final int haplotypeMaxLength ) {
+        super.initialize(readMaxLength, haplotypeMaxLength);
+
+        matchToMatchFloat = new float[paddedMaxReadLength];
+        indelToMatchFloat = new float[paddedMaxReadLength];
+        matchToInsertionFloat = new float[paddedMaxReadLength];
+        insertionToInsertionFloat = new float[paddedMaxReadLength];
+        matchToDeletionFloat = new float[paddedMaxReadLength];
+        deletionToDeletionFloat = new float[paddedMaxReadLength];
+        priorMatchFloat = new float[paddedMaxReadLength];
+        priorMismatchFloat = new float[paddedMaxReadLength];
+
+        matchToMatch = new double[paddedMaxReadLength];
+        indelToMatch = new double[paddedMaxReadLength];
+        matchToInsertion = new double[paddedMaxReadLength];
+        insertionToInsertion = new double[paddedMaxReadLength];
+        matchToDeletion = new double[paddedMaxReadLength];
+        deletionToDeletion = new double[paddedMaxReadLength];
+        priorMatch = new double[paddedMaxReadLength];
+        priorMismatch = new double[paddedMaxReadLength];
+
+        matchDiagonalsFloat = new float[3][paddedMaxReadLength];
+        insertionDiagonalsFloat = new float[3][paddedMaxReadLength];
+        deletionDiagonalsFloat = new float[3][paddedMaxReadLength];
+        matchDiagonals = new double[3][paddedMaxReadLength];
+        insertionDiagonals = new double[3][paddedMaxReadLength];
+        deletionDiagonals = new double[3][paddedMaxReadLength];
+        diagonalPriorFloat = new float[paddedMaxReadLength];
+        diagonalPrior = new double[paddedMaxReadLength];
+
+        reversedHaplotype = new byte[haplotypeMaxLength];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected double subComputeReadLikelihoodGivenHaplotypeLog10( final byte[] haplotypeBases,
+                                                                  final byte[] readBases,
+                                                                  final byte[] readQuals,
+                                                                  final byte[] insertionGOP,
+                                                                  final byte[] deletionGOP,
+                                                                  final byte[] overallGCP,
+                                                                  final int hapStartIndex,
+                                                                  final boolean recacheReadValues,
+                                                                  final int nextHapStartIndex) {
+        if ( ! constantsAreInitialized || recacheReadValues ) {
+            initializeReadValues(readQuals, insertionGOP, deletionGOP, overallGCP);
+            constantsAreInitialized = true;
+        }
+
+        final int haplotypeLength = haplotypeBases.length;
+        for ( int j = 0; j < haplotypeLength; j++ ) {
+            reversedHaplotype[j] = haplotypeBases[haplotypeLength - 1 - j];
+        }
+
+        final float floatResult = computeFloat(readBases, readBases.length, haplotypeLength);
+        if ( floatResult >= MIN_ACCEPTED_FLOAT ) {
+            return Math.log10(floatResult) - INITIAL_CONDITION_FLOAT_LOG10;
+        }
+        doublePrecisionRecomputations++;
+        return Math.log10(computeDouble(readBases, readBases.length, haplotypeLength)) - LoglessPairHMM.INITIAL_CONDITION_LOG10;
+    }
+
+    private void initializeReadValues(final byte[] readQuals, final byte[] insertionGOP, final byte[] deletionGOP, final byte[] overallGCP) {
+        final double[] transition = new double[PairHMMModel.TRANS_PROB_ARRAY_LENGTH];
+        final double tristateCorrection = doNotUseTristateCorrection ? 1.0 : LoglessPairHMM.TRISTATE_CORRECTION;
+        for ( int i = 0; i < readQuals.length; i++ ) {
+            PairHMMModel.qualToTransProbs(transition, insertionGOP[i], deletionGOP[i], overallGCP[i]);
+            final int row = i + 1;
+            matchToMatch[row] = transition[PairHMMModel.matchToMatch];
+            indelToMatch[row] = transition[PairHMMModel.indelToMatch];
+            matchToInsertion[row] = transition[PairHMMModel.matchToInsertion];
+            insertionToInsertion[row] = transition[PairHMMModel.insertionToInsertion];
+            matchToDeletion[row] = transition[PairHMMModel.matchToDeletion];
+            deletionToDeletion[row] = transition[PairHMMModel.deletionToDeletion];
+            priorMatch[row] = QualityUtils.qualToProb(readQuals[i]);
+            priorMismatch[row] = QualityUtils.qualToErrorProb(readQuals[i]) / tristateCorrection;
+
+            matchToMatchFloat[row] = (float)matchToMatch[row];
+            indelToMatchFloat[row] = (float)indelToMatch[row];
+            matchToInsertionFloat[row] = (float)matchToInsertion[row];
+            insertionToInsertionFloat[row] = (float)insertionToInsertion[row];
+            matchToDeletionFloat[row] = (float)matchToDeletion[row];
+            deletionToDeletionFloat[row] = (float)deletionToDeletion[row];
+            priorMatchFloat[row] = (float)priorMatch[row];
+            priorMismatchFloat[row] = (float)priorMismatch[row];
+        }
+    }
+
+    /**
+     * Anti-diagonal d holds the cells (i, d - i). Row 0 and column 0 hold the initial conditions: free deletions
+     * along row 0 and zeros everywhere else, exactly as in {@link LoglessPairHMM}. Every cell read while computing
+     * diagonal d was written while computing diagonal d - 1 or d - 2, so the rotating buffers never need clearing.
+     *
+     * @return the probability of the read given the haplotype, scaled by {@link #INITIAL_CONDITION_FLOAT}
+     */
+    private float computeFloat(final byte[] readBases, final int readLength, final int haplotypeLength) {
+        final float initialValue = INITIAL_CONDITION_FLOAT / haplotypeLength;
+        int prev2 = 0, prev = 1, cur = 2;
+        float result = 0.0f;
+        for ( int d = 0; d <= readLength + haplotypeLength; d++ ) {
+            final float[] matchCur = matchDiagonalsFloat[cur], matchPrev = matchDiagonalsFloat[prev], matchPrev2 = matchDiagonalsFloat[prev2];
+            final float[] insCur = insertionDiagonalsFloat[cur], insPrev = insertionDiagonalsFloat[prev], insPrev2 = insertionDiagonalsFloat[prev2];
+            final float[] delCur = deletionDiagonalsFloat[cur], delPrev = deletionDiagonalsFloat[prev], delPrev2 = deletionDiagonalsFloat[prev2];
+
+            matchCur[0] = insCur[0] = 0.0f;
+            delCur[0] = d <= haplotypeLength ? initialValue : 0.0f;
+            if ( d >= 1 && d <= readLength ) {
+                matchCur[d] = insCur[d] = delCur[d] = 0.0f;
+            }
+
+            final int start = Math.max(1, d - haplotypeLength);
+            final int end = Math.min(readLength, d - 1);
+            final int haplotypeOffset = haplotypeLength - d;
+            for ( int i = start; i <= end; i++ ) {
+                final byte x = readBases[i - 1];
+                final byte y = reversedHaplotype[haplotypeOffset + i];
+                diagonalPriorFloat[i] = x == y || x == (byte) 'N' || y == (byte) 'N' ? priorMatchFloat[i] : priorMismatchFloat[i];
+            }
+            for ( int i = start; i <= end; i++ ) {
+                matchCur[i] = diagonalPriorFloat[i] * (matchPrev2[i - 1] * matchToMatchFloat[i] +
+                        insPrev2[i - 1] * indelToMatchFloat[i] +
+                        delPrev2[i - 1] * indelToMatchFloat[i]);
+                insCur[i] = matchPrev[i - 1] * matchToInsertionFloat[i] + insPrev[i - 1] * insertionToInsertionFloat[i];
+                delCur[i] = matchPrev[i] * matchToDeletionFloat[i] + delPrev[i] * deletionToDeletionFloat[i];
+            }
+
+            // sum the paths ending in the match and insertion states of the last row
+            if ( start <= readLength && readLength <= end ) {
+                result += matchCur[readLength] + insCur[readLength];
+            }
+
+            final int oldest = prev2;
+            prev2 = prev;
+            prev = cur;
+            cur = oldest;
+        }
+        return result;
+    }
+
+    /**
+     * Double precision version of {@link #computeFloat}.
+     *
+     * @return the probability of the read given the haplotype, scaled by {@link LoglessPairHMM#INITIAL_CONDITION}
+     */
+    private double computeDouble(final byte[] readBases, final int readLength, final int haplotypeLength) {
+        final double initialValue = LoglessPairHMM.INITIAL_CONDITION / haplotypeLength;
+        int prev2 = 0, prev = 1, cur = 2;
+        double result = 0.0;
+        for ( int d = 0; d <= readLength + haplotypeLength; d++ ) {
+            final double[] matchCur = matchDiagonals[cur], matchPrev = matchDiagonals[prev], matchPrev2 = matchDiagonals[prev2];
+            final double[] insCur = insertionDiagonals[cur], insPrev = insertionDiagonals[prev], insPrev2 = insertionDiagonals[prev2];
+            final double[] delCur = deletionDiagonals[cur], delPrev = deletionDiagonals[prev], delPrev2 = deletionDiagonals[prev2];
+
+            matchCur[0] = insCur[0] = 0.0;
+            delCur[0] = d <= haplotypeLength ? initialValue : 0.0;
+            if ( d >= 1 && d <= readLength ) {
+                matchCur[d] = insCur[d] = delCur[d] = 0.0;
+            }
+
+            final int start = Math.max(1, d - haplotypeLength);
+            final int end = Math.min(readLength, d - 1);
+            final int haplotypeOffset = haplotypeLength - d;
+            for ( int i = start; i <= end; i++ ) {
+                final byte x = readBases[i - 1];
+                final byte y = reversedHaplotype[haplotypeOffset + i];
+                diagonalPrior[i] = x == y || x == (byte) 'N' || y == (byte) 'N' ? priorMatch[i] : priorMismatch[i];
+            }
+            for ( int i = start; i <= end; i++ ) {
+                matchCur[i] = diagonalPrior[i] * (matchPrev2[i - 1] * matchToMatch[i] +
+                        insPrev2[i - 1] * indelToMatch[i] +
+                        delPrev2[i - 1] * indelToMatch[i]);
+                insCur[i] = matchPrev[i - 1] * matchToInsertion[i] + insPrev[i - 1] * insertionToInsertion[i];
+                delCur[i] = matchPrev[i] * matchToDeletion[i] + delPrev[i] * deletionToDeletion[i];
+            }
+
+            if ( start <= readLength && readLength <= end ) {
+                result += matchCur[readLength] + insCur[readLength];
+            }
+
+            final int oldest = prev2;
+            prev2 = prev;
+            prev = cur;
+            cur = oldest;
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of read/haplotype pairs that had to be recomputed in double precision
+     */
+    @VisibleForTesting
+    long getDoublePrecisionRecomputations() {
+        return doublePrecisionRecomputations;
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        logger.info("Number of read/haplotype pairs recomputed in double precision by the anti-diagonal PairHMM: " + doublePrecisionRecomputations);
+    }
+}
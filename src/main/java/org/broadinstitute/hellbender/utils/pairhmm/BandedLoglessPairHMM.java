@@ -0,0 +1,347 @@
+package org.broadinstitute.hellbender.utils.pairhmm;
+
+import org.broadinstitute.hellbender.utils.BaseUtils;
+import org.broadinstitute.hellbender.utils.QualityUtils;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.Arrays;
+
+import static org.broadinstitute.hellbender.utils.pairhmm.PairHMMModel.*;
+
+/**
+ * LOGLESS_CACHING PairHMM that only fills a band of the read x haplotype matrices around the diagonals on which the
+ * read aligns to the haplotype.
+ *
+ * <p>The band is seeded by matching the read's k-mers against the haplotype: every diagonal supported by at least
+ * {@link #MIN_SEED_VOTES} k-mers (or by any k-mer, if none is) is covered, so that reads with an indel get a band
+ * spanning both of their diagonals. Cells outside the band are treated as having zero probability.</p>
+ *
+ * <p>After each pass the values on the edges of the band are compared with the largest value of their row. If
+ * the band cuts through non-negligible probability mass, the band half-width is doubled and the pair recomputed,
+ * until the band covers the whole matrix. Reads without any seed hit are computed over the full matrix.</p>
+ *
+ * <p>In accuracy-check mode every pair is also computed over the full matrix, and the largest difference between
+ * the banded and full results is tracked (and the full result returned).</p>
+ */
+public final class BandedLoglessPairHMM extends N2MemoryPairHMM {
+
+    public static final int DEFAULT_BAND_HALF_WIDTH = 10;
+    public static final double DEFAULT_MAX_EDGE_RATIO = 1e-8;
+
+    static final int SEED_KMER_SIZE = 10;
+    static final int MIN_SEED_VOTES = 2;
+    /**
+     * k-mers occurring more often than this in the haplotype are too repetitive to seed the band.
+     */
+    static final int MAX_SEED_KMER_OCCURRENCES = 4;
+
+    /**
+     * Differences between banded and full log10 likelihoods larger than this are counted as accuracy failures.
+     */
+    public static final double ACCURACY_CHECK_TOLERANCE = 1e-6;
+
+    private final int initialBandHalfWidth;
+    private final double maxEdgeRatio;
+    private final boolean checkAccuracy;
+
+    // the haplotype the seed index was built for, and its k-mers (bases << 32 | position), sorted
+    private byte[] seedIndexHaplotype;
+    private long[] seedIndex;
+
+    // results of the last call to fillBand
+    private double bandEdgeRatio;
+    private long bandCells;
+
+    // statistics
+    private long computedCells = 0;
+    private long fullMatrixCells = 0;
+    private long bandWidenings = 0;
+    private long accuracyChecks = 0;
+    private long accuracyFailures = 0;
+    private double maxAccuracyError = 0.0;
+
+    public BandedLoglessPairHMM() {
+        this(DEFAULT_BAND_HALF_WIDTH, DEFAULT_MAX_EDGE_RATIO, false);
+    }
+
+    /**
+     * @param initialBandHalfWidth number of cells on each side of the seeded diagonals covered by the first pass
+     * @param maxEdgeRatio the band is widened if the value of any cell on its edge exceeds this fraction of the largest value in its row
+     * @param checkAccuracy if true, compare every banded result with the full matrix computation
+     */
+    public BandedLoglessPairHMM(final int initialBandHalfWidth, final double maxEdgeRatio, final boolean checkAccuracy) {
+        Utils.validateArg(initialBandHalfWidth > 0, "initialBandHalfWidth must be positive");
+        Utils.validateArg(maxEdgeRatio >= 0.0, "maxEdgeRatio must be non-negative");
+        this.initialBandHalfWidth = initialBandHalfWidth;
+        this.maxEdgeRatio = maxEdgeRatio;
+        this.checkAccuracy = checkAccuracy;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected double subComputeReadLikelihoodGivenHaplotypeLog10( final byte[] haplotypeBases,
+                                                                  final byte[] readBases,
+                                                                  final byte[] readQuals,
+                                                                  final byte[] insertionGOP,
+                                                                  final byte[] deletionGOP,
+                                                                  final byte[] overallGCP,
+                                                                  final int hapStartIndex,
+                                                                  final boolean recacheReadValues,
+                                                                  final int nextHapStartIndex) {
+        if ( ! constantsAreInitialized || recacheReadValues ) {
+            LoglessPairHMM.initializeProbabilities(transition, insertionGOP, deletionGOP, overallGCP);
+            constantsAreInitialized = true;
+        }
+
+        final int readLength = readBases.length;
+        final int haplotypeLength = haplotypeBases.length;
+        // the band never covers row 0, so the initial conditions have to be reset every time
+        final double initialValue = LoglessPairHMM.INITIAL_CONDITION / haplotypeLength;
+        Arrays.fill(matchMatrix[0], 0, haplotypeLength + 1, 0.0);
+        Arrays.fill(insertionMatrix[0], 0, haplotypeLength + 1, 0.0);
+        Arrays.fill(deletionMatrix[0], 0, haplotypeLength + 1, initialValue);
+        fullMatrixCells += (long) readLength * haplotypeLength;
+
+        // band limits are expressed as diagonals, j - i
+        final int fullMinDiagonal = 1 - readLength;
+        final int fullMaxDiagonal = haplotypeLength - 1;
+        final int[] seedDiagonals = findSeedDiagonals(haplotypeBases, readBases);
+
+        double sum;
+        if ( seedDiagonals == null ) {
+            sum = fillBand(haplotypeBases, readBases, readQuals, fullMinDiagonal, fullMaxDiagonal, 0);
+            computedCells += bandCells;
+        } else {
+            int halfWidth = initialBandHalfWidth;
+            while ( true ) {
+                final int minDiagonal = Math.max(fullMinDiagonal, seedDiagonals[0] - halfWidth);
+                final int maxDiagonal = Math.min(fullMaxDiagonal, seedDiagonals[1] + halfWidth);
+                sum = fillBand(haplotypeBases, readBases, readQuals, minDiagonal, maxDiagonal, halfWidth);
+                computedCells += bandCells;
+                if ( (minDiagonal == fullMinDiagonal && maxDiagonal == fullMaxDiagonal) || (sum > 0.0 && bandEdgeRatio <= maxEdgeRatio) ) {
+                    break;
+                }
+                bandWidenings++;
+                halfWidth *= 2;
+            }
+        }
+        final double result = Math.log10(sum) - LoglessPairHMM.INITIAL_CONDITION_LOG10;
+
+        if ( ! checkAccuracy ) {
+            return result;
+        }
+        final double fullResult = Math.log10(fillBand(haplotypeBases, readBases, readQuals, fullMinDiagonal, fullMaxDiagonal, 0))
+                - LoglessPairHMM.INITIAL_CONDITION_LOG10;
+        final double error = Math.abs(fullResult - result);
+        accuracyChecks++;
+        maxAccuracyError = Math.max(maxAccuracyError, error);
+        if ( error > ACCURACY_CHECK_TOLERANCE ) {
+            accuracyFailures++;
+            logger.warn(String.format("Banded PairHMM result %f differs from the full matrix result %f for read %s and haplotype %s",
+                    result, fullResult, new String(readBases), new String(haplotypeBases)));
+        }
+        return fullResult;
+    }
+
+    /**
+     * Fills the cells (i, j) with {@code minDiagonal <= j - i <= maxDiagonal}. The cells just outside the band are
+     * set to zero, since the cells on the edge of the band of the next row read them.
+     *
+     * Also sets {@link #bandEdgeRatio} to the largest ratio between a cell on the band edge (not on the matrix
+     * border) and the largest cell in the same row, over the rows further than {@code halfWidth} from the top,
+     * where the free initial deletions no longer dominate.
+     *
+     * @return the sum of the match and insertion values of the last row, scaled by {@link LoglessPairHMM#INITIAL_CONDITION}
+     */
+    private double fillBand(final byte[] haplotypeBases, final byte[] readBases, final byte[] readQuals,
+                            final int minDiagonal, final int maxDiagonal, final int halfWidth) {
+        final int readLength = readBases.length;
+        final int haplotypeLength = haplotypeBases.length;
+        final double tristateCorrection = doNotUseTristateCorrection ? 1.0 : LoglessPairHMM.TRISTATE_CORRECTION;
+        double edgeRatio = 0.0;
+        long cells = 0;
+        for (int i = 1; i <= readLength; i++) {
+            final int lo = Math.max(1, i + minDiagonal);
+            final int hi = Math.min(haplotypeLength, i + maxDiagonal);
+            final double[] match = matchMatrix[i], ins = insertionMatrix[i], del = deletionMatrix[i];
+            if ( lo - 1 <= haplotypeLength ) {
+                match[lo - 1] = ins[lo - 1] = del[lo - 1] = 0.0;
+            }
+            if ( hi + 1 >= 0 && hi + 1 <= haplotypeLength ) {
+                match[hi + 1] = ins[hi + 1] = del[hi + 1] = 0.0;
+            }
+            if ( lo > hi ) {
+                continue;
+            }
+
+            final double[] matchPrev = matchMatrix[i - 1], insPrev = insertionMatrix[i - 1], delPrev = deletionMatrix[i - 1];
+            final double[] trans = transition[i];
+            final byte x = readBases[i - 1];
+            final double priorMatch = QualityUtils.qualToProb(readQuals[i - 1]);
+            final double priorMismatch = QualityUtils.qualToErrorProb(readQuals[i - 1]) / tristateCorrection;
+            double rowMax = 0.0;
+            for (int j = lo; j <= hi; j++) {
+                final byte y = haplotypeBases[j - 1];
+                final double prior = x == y || x == (byte) 'N' || y == (byte) 'N' ? priorMatch : priorMismatch;
+                match[j] = prior * ( matchPrev[j - 1] * trans[matchToMatch] +
+                        insPrev[j - 1] * trans[indelToMatch] +
+                        delPrev[j - 1] * trans[indelToMatch] );
+                ins[j] = matchPrev[j] * trans[matchToInsertion] + insPrev[j] * trans[insertionToInsertion];
+                del[j] = match[j - 1] * trans[matchToDeletion] + del[j - 1] * trans[deletionToDeletion];
+                rowMax = Math.max(rowMax, match[j] + ins[j] + del[j]);
+            }
+            cells += hi - lo + 1;
+
+            if ( rowMax > 0.0 && (i > halfWidth || i == readLength) ) {
+                if ( lo > 1 ) {
+                    edgeRatio = Math.max(edgeRatio, (match[lo] + ins[lo] + del[lo]) / rowMax);
+                }
+                if ( hi < haplotypeLength ) {
+                    edgeRatio = Math.max(edgeRatio, (match[hi] + ins[hi] + del[hi]) / rowMax);
+                }
+            }
+        }
+
+        final int lastLo = Math.max(1, readLength + minDiagonal);
+        final int lastHi = Math.min(haplotypeLength, readLength + maxDiagonal);
+        double sum = 0.0;
+        for (int j = lastLo; j <= lastHi; j++) {
+            sum += matchMatrix[readLength][j] + insertionMatrix[readLength][j];
+        }
+
+        bandEdgeRatio = edgeRatio;
+        bandCells = cells;
+        return sum;
+    }
+
+    /**
+     * @return the smallest and largest diagonal (haplotype offset - read offset) supported by read k-mers found in
+     *         the haplotype, or null if there are none
+     */
+    private int[] findSeedDiagonals(final byte[] haplotypeBases, final byte[] readBases) {
+        if ( readBases.length < SEED_KMER_SIZE || haplotypeBases.length < SEED_KMER_SIZE ) {
+            return null;
+        }
+        if ( seedIndexHaplotype != haplotypeBases ) {
+            seedIndex = buildSeedIndex(haplotypeBases);
+            seedIndexHaplotype = haplotypeBases;
+        }
+
+        // diagonals are in [-readLength, haplotypeLength]; count the votes for each
+        final int diagonalOffset = readBases.length;
+        final int[] votes = new int[readBases.length + haplotypeBases.length + 1];
+        int maxVotes = 0;
+        for (int readPos = 0; readPos + SEED_KMER_SIZE <= readBases.length; readPos++) {
+            final long kmer = encodeKmer(readBases, readPos);
+            if ( kmer < 0 ) {
+                continue;
+            }
+            final int first = lowerBound(seedIndex, kmer << 32);
+            int last = first;
+            while ( last < seedIndex.length && (seedIndex[last] >>> 32) == kmer ) {
+                last++;
+            }
+            if ( last - first > MAX_SEED_KMER_OCCURRENCES ) {
+                continue;
+            }
+            for (int k = first; k < last; k++) {
+                final int haplotypePos = (int) seedIndex[k];
+                final int v = ++votes[haplotypePos - readPos + diagonalOffset];
+                maxVotes = Math.max(maxVotes, v);
+            }
+        }
+        if ( maxVotes == 0 ) {
+            return null;
+        }
+
+        final int minVotes = Math.min(maxVotes, MIN_SEED_VOTES);
+        int minDiagonal = Integer.MAX_VALUE;
+        int maxDiagonal = Integer.MIN_VALUE;
+        for (int d = 0; d < votes.length; d++) {
+            if ( votes[d] >= minVotes ) {
+                minDiagonal = Math.min(minDiagonal, d - diagonalOffset);
+                maxDiagonal = Math.max(maxDiagonal, d - diagonalOffset);
+            }
+        }
+        return new int[]{minDiagonal, maxDiagonal};
+    }
+
+    private static long[] buildSeedIndex(final byte[] haplotypeBases) {
+        final long[] index = new long[haplotypeBases.length - SEED_KMER_SIZE + 1];
+        int size = 0;
+        for (int pos = 0; pos < index.length; pos++) {
+            final long kmer = encodeKmer(haplotypeBases, pos);
+            if ( kmer >= 0 ) {
+                index[size++] = (kmer << 32) | pos;
+            }
+        }
+        final long[] result = Arrays.copyOf(index, size);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * @return the 2-bit encoding of the k-mer starting at {@code start}, or -1 if it contains a non-ACGT base
+     */
+    private static long encodeKmer(final byte[] bases, final int start) {
+        long kmer = 0;
+        for (int i = start; i < start + SEED_KMER_SIZE; i++) {
+            final int baseIndex = BaseUtils.simpleBaseToBaseIndex(bases[i]);
+            if ( baseIndex < 0 ) {
+                return -1;
+            }
+            kmer = (kmer << 2) | baseIndex;
+        }
+        return kmer;
+    }
+
+    private static int lowerBound(final long[] sorted, final long key) {
+        int lo = 0;
+        int hi = sorted.length;
+        while ( lo < hi ) {
+            final int mid = (lo + hi) >>> 1;
+            if ( sorted[mid] < key ) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return the fraction of the cells of the full matrices that have been computed so far (excluding accuracy checks)
+     */
+    public double getComputedCellFraction() {
+        return fullMatrixCells == 0 ? 0.0 : (double) computedCells / fullMatrixCells;
+    }
+
+    public long getBandWidenings() {
+        return bandWidenings;
+    }
+
+    public long getAccuracyChecks() {
+        return accuracyChecks;
+    }
+
+    public long getAccuracyFailures() {
+        return accuracyFailures;
+    }
+
+    public double getMaxAccuracyError() {
+        return maxAccuracyError;
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        logger.info(String.format("Banded PairHMM computed %.1f%% of the matrix cells and widened its band %d times",
+                100.0 * getComputedCellFraction(), bandWidenings));
+        if ( checkAccuracy ) {
+            logger.info(String.format("Banded PairHMM accuracy check: %d of %d pairs differed by more than %g (max difference %g)",
+                    accuracyFailures, accuracyChecks, ACCURACY_CHECK_TOLERANCE, maxAccuracyError));
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package org.broadinstitute.hellbender.utils.pairhmm;
+
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.genotyper.LikelihoodMatrix;
+import org.broadinstitute.hellbender.utils.genotyper.ReadLikelihoods;
+import org.broadinstitute.hellbender.utils.haplotype.Haplotype;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.ReadUtils;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/**
+ * Computes the read x haplotype likelihoods of whole likelihood matrices at once, spreading the work over a
+ * ForkJoin pool.
+ *
+ * <p>Reads and haplotypes are sorted by length and the read x haplotype pairs are cut into tiles of reads and
+ * haplotypes of similar length, so that the PairHMM of each worker thread is sized for (and reused across) the
+ * tiles it picks up and little of its matrices is wasted on padding. Haplotypes of the same length are also
+ * sorted by sequence so that consecutive haplotypes share as long a prefix as possible, which lets PairHMM
+ * implementations that cache columns skip the shared part. Results are written straight into the destination
+ * {@link LikelihoodMatrix}; tiles never share a cell.</p>
+ *
+ * <p>Each worker thread owns its own {@link PairHMM}, created by the supplied factory on first use. Pairs are
+ * evaluated one at a time, so implementations that batch the whole matrix internally (such as the native AVX one,
+ * which has its own threading) fall back to their Java code path here.</p>
+ */
+public final class BatchPairHMMEngine implements Closeable {
+
+    public static final int DEFAULT_READS_PER_TILE = 16;
+    public static final int DEFAULT_HAPLOTYPES_PER_TILE = 8;
+
+    private static final Comparator<Haplotype> HAPLOTYPE_TILE_ORDER = Comparator.<Haplotype>comparingInt(Haplotype::length)
+            .thenComparing(Haplotype::getBases, BatchPairHMMEngine::compareBases);
+
+    private final Supplier<PairHMM> hmmFactory;
+    private final ForkJoinPool pool;
+    private final int readsPerTile;
+    private final int haplotypesPerTile;
+    private final ThreadLocal<PairHMM> threadHMM;
+    private final Queue<PairHMM> createdHMMs = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param implementation PairHMM implementation to run in each worker thread
+     * @param numThreads number of worker threads
+     */
+    public BatchPairHMMEngine(final PairHMM.Implementation implementation, final int numThreads) {
+        this(Utils.nonNull(implementation)::makeNewHMM, numThreads, DEFAULT_READS_PER_TILE, DEFAULT_HAPLOTYPES_PER_TILE);
+    }
+
+    /**
+     * @param hmmFactory creates the PairHMM used by each worker thread
+     * @param numThreads number of worker threads
+     * @param readsPerTile maximum number of reads in a tile
+     * @param haplotypesPerTile maximum number of haplotypes in a tile
+     */
+    public BatchPairHMMEngine(final Supplier<PairHMM> hmmFactory, final int numThreads, final int readsPerTile, final int haplotypesPerTile) {
+        Utils.nonNull(hmmFactory);
+        Utils.validateArg(numThreads > 0, "numThreads must be positive");
+        Utils.validateArg(readsPerTile > 0, "readsPerTile must be positive");
+        Utils.validateArg(haplotypesPerTile > 0, "haplotypesPerTile must be positive");
+        this.hmmFactory = hmmFactory;
+        this.pool = new ForkJoinPool(numThreads);
+        this.readsPerTile = readsPerTile;
+        this.haplotypesPerTile = haplotypesPerTile;
+        this.threadHMM = ThreadLocal.withInitial(() -> {
+            final PairHMM hmm = this.hmmFactory.get();
+            createdHMMs.add(hmm);
+            return hmm;
+        });
+    }
+
+    /**
+     * Computes the likelihoods of every read of every sample given every haplotype in {@code likelihoods}.
+     *
+     * @param likelihoods where to store the log10 likelihoods; the reads in each sample matrix are the ones evaluated.
+     * @param gcp penalty for gap continuations base array map for the reads.
+     */
+    public void computeLog10Likelihoods(final ReadLikelihoods<Haplotype> likelihoods, final Map<GATKRead, byte[]> gcp) {
+        Utils.nonNull(likelihoods);
+        final List<Tile> tiles = new ArrayList<>();
+        for (int s = 0; s < likelihoods.numberOfSamples(); s++) {
+            final LikelihoodMatrix<Haplotype> matrix = likelihoods.sampleMatrix(s);
+            addTiles(tiles, matrix, matrix.reads(), gcp);
+        }
+        run(tiles);
+    }
+
+    /**
+     * Equivalent to {@link PairHMM#computeLog10Likelihoods}, but multi-threaded.
+     *
+     * @param logLikelihoods where to store the log likelihoods where position [a][r] is reserved for the log likelihood of {@code reads[r]}
+     *             conditional to {@code alleles[a]}.
+     * @param processedReads reads to analyze instead of the ones present in the destination read-likelihoods.
+     * @param gcp penalty for gap continuations base array map for processed reads.
+     */
+    public void computeLog10Likelihoods(final LikelihoodMatrix<Haplotype> logLikelihoods,
+                                        final List<GATKRead> processedReads,
+                                        final Map<GATKRead, byte[]> gcp) {
+        Utils.nonNull(logLikelihoods);
+        Utils.nonNull(processedReads);
+        final List<Tile> tiles = new ArrayList<>();
+        addTiles(tiles, logLikelihoods, processedReads, gcp);
+        run(tiles);
+    }
+
+    private void addTiles(final List<Tile> tiles, final LikelihoodMatrix<Haplotype> matrix,
+                          final List<GATKRead> reads, final Map<GATKRead, byte[]> gcp) {
+        Utils.nonNull(gcp);
+        if (reads.isEmpty() || matrix.numberOfAlleles() == 0) {
+            return;
+        }
+        final ReadData[] readData = new ReadData[reads.size()];
+        for (int r = 0; r < readData.length; r++) {
+            readData[r] = new ReadData(r, reads.get(r), gcp);
+        }
+        Arrays.sort(readData, Comparator.comparingInt(rd -> rd.bases.length));
+
+        final List<Haplotype> haplotypes = matrix.alleles();
+        final Integer[] haplotypeOrder = new Integer[haplotypes.size()];
+        for (int a = 0; a < haplotypeOrder.length; a++) {
+            haplotypeOrder[a] = a;
+        }
+        Arrays.sort(haplotypeOrder, (a1, a2) -> HAPLOTYPE_TILE_ORDER.compare(haplotypes.get(a1), haplotypes.get(a2)));
+
+        for (int readStart = 0; readStart < readData.length; readStart += readsPerTile) {
+            final ReadData[] tileReads = Arrays.copyOfRange(readData, readStart, Math.min(readData.length, readStart + readsPerTile));
+            for (int hapStart = 0; hapStart < haplotypeOrder.length; hapStart += haplotypesPerTile) {
+                final int hapEnd = Math.min(haplotypeOrder.length, hapStart + haplotypesPerTile);
+                final int[] tileAlleles = new int[hapEnd - hapStart];
+                final byte[][] tileHaplotypes = new byte[tileAlleles.length][];
+                for (int a = 0; a < tileAlleles.length; a++) {
+                    tileAlleles[a] = haplotypeOrder[hapStart + a];
+                    tileHaplotypes[a] = haplotypes.get(tileAlleles[a]).getBases();
+                }
+                tiles.add(new Tile(matrix, tileReads, tileAlleles, tileHaplotypes));
+            }
+        }
+    }
+
+    private void run(final List<Tile> tiles) {
+        if (tiles.isEmpty()) {
+            return;
+        }
+        pool.invoke(new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(tiles);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+        createdHMMs.forEach(PairHMM::close);
+        createdHMMs.clear();
+    }
+
+    private static int compareBases(final byte[] bases1, final byte[] bases2) {
+        final int length = Math.min(bases1.length, bases2.length);
+        for (int i = 0; i < length; i++) {
+            if (bases1[i] != bases2[i]) {
+                return Byte.compare(bases1[i], bases2[i]);
+            }
+        }
+        return Integer.compare(bases1.length, bases2.length);
+    }
+
+    /**
+     * Per-read inputs to the PairHMM, extracted once per read rather than once per tile.
+     */
+    private static final class ReadData {
+        private final int index;
+        private final byte[] bases;
+        private final byte[] quals;
+        private final byte[] insertionGOP;
+        private final byte[] deletionGOP;
+        private final byte[] overallGCP;
+
+        private ReadData(final int index, final GATKRead read, final Map<GATKRead, byte[]> gcp) {
+            this.index = index;
+            this.bases = read.getBases();
+            this.quals = read.getBaseQualities();
+            this.insertionGOP = ReadUtils.getBaseInsertionQualities(read);
+            this.deletionGOP = ReadUtils.getBaseDeletionQualities(read);
+            this.overallGCP = gcp.get(read);
+        }
+    }
+
+    private final class Tile extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final LikelihoodMatrix<Haplotype> matrix;
+        private final ReadData[] reads;
+        private final int[] alleleIndices;
+        private final byte[][] haplotypes;
+
+        private Tile(final LikelihoodMatrix<Haplotype> matrix, final ReadData[] reads, final int[] alleleIndices, final byte[][] haplotypes) {
+            this.matrix = matrix;
+            this.reads = reads;
+            this.alleleIndices = alleleIndices;
+            this.haplotypes = haplotypes;
+        }
+
+        @Override
+        protected void compute() {
+            final PairHMM hmm = threadHMM.get();
+            // reads are sorted by length, so the last read in the tile is the longest
+            final int readMaxLength = reads[reads.length - 1].bases.length;
+            int haplotypeMaxLength = 0;
+            for (final byte[] haplotype : haplotypes) {
+                haplotypeMaxLength = Math.max(haplotypeMaxLength, haplotype.length);
+            }
+            if (!hmm.initialized || readMaxLength > hmm.maxReadLength || haplotypeMaxLength > hmm.maxHaplotypeLength) {
+                hmm.initialize(Math.max(readMaxLength, hmm.initialized ? hmm.maxReadLength : 1),
+                        Math.max(haplotypeMaxLength, hmm.initialized ? hmm.maxHaplotypeLength : 1));
+            }
+
+            for (final ReadData read : reads) {
+                for (int a = 0; a < haplotypes.length; a++) {
+                    final byte[] nextHaplotype = a == haplotypes.length - 1 ? null : haplotypes[a + 1];
+                    final double lk = hmm.computeReadLikelihoodGivenHaplotypeLog10(haplotypes[a], read.bases, read.quals,
+                            read.insertionGOP, read.deletionGOP, read.overallGCP, a == 0, nextHaplotype);
+                    matrix.set(alleleIndices[a], read.index, lk);
+                }
+            }
+        }
+    }
+}
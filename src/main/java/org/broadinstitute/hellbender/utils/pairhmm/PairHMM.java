@@ -50,6 +50,30 @@ public abstract class PairHMM implements Closeable{
             logger.info("Using the non-hardware-accelerated Java LOGLESS_CACHING PairHMM implementation");
             return hmm;
         }),
+        /* Pure Java LOGLESS_CACHING over anti-diagonals so that the JIT can vectorize it; single precision with a double precision fallback */
+        ANTIDIAGONAL_LOGLESS_CACHING(() -> {
+            final AntiDiagonalLoglessPairHMM hmm = new AntiDiagonalLoglessPairHMM();
+            logger.info("Using the pure Java ANTIDIAGONAL_LOGLESS_CACHING PairHMM implementation");
+            return hmm;
+        }),
+        /* LOGLESS_CACHING restricted to an adaptively widened band around the diagonals where the read aligns to the haplotype */
+        BANDED_LOGLESS_CACHING(() -> {
+            final BandedLoglessPairHMM hmm = new BandedLoglessPairHMM();
+            logger.info("Using the non-hardware-accelerated Java BANDED_LOGLESS_CACHING PairHMM implementation");
+            return hmm;
+        }),
+        /* BANDED_LOGLESS_CACHING that also computes every pair over the full matrix, returns the full result, and logs how far the banded ones were off. Only meant for validating the band */
+        BANDED_LOGLESS_CACHING_ACCURACY_CHECK(() -> {
+            final BandedLoglessPairHMM hmm = new BandedLoglessPairHMM(BandedLoglessPairHMM.DEFAULT_BAND_HALF_WIDTH, BandedLoglessPairHMM.DEFAULT_MAX_EDGE_RATIO, true);
+            logger.info("Using the non-hardware-accelerated Java BANDED_LOGLESS_CACHING PairHMM implementation, checked against the full matrices");
+            return hmm;
+        }),
+        /* LOGLESS_CACHING that computes the columns shared by haplotypes with a common prefix only once per read */
+        PREFIX_TREE_LOGLESS_CACHING(() -> {
+            final PrefixTreeLoglessPairHMM hmm = new PrefixTreeLoglessPairHMM();
+            logger.info("Using the non-hardware-accelerated Java PREFIX_TREE_LOGLESS_CACHING PairHMM implementation");
+            return hmm;
+        }),
         /* Optimized AVX implementation of LOGLESS_CACHING called through JNI. Throws if AVX is not available */
         AVX_LOGLESS_CACHING(() -> {
             // Constructor will throw a UserException if AVX is not available
@@ -0,0 +1,353 @@
+package org.broadinstitute.hellbender.utils.pairhmm;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.broadinstitute.hellbender.utils.QualityUtils;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.genotyper.LikelihoodMatrix;
+import org.broadinstitute.hellbender.utils.haplotype.Haplotype;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.ReadUtils;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LOGLESS_CACHING PairHMM that shares dynamic programming columns between all haplotypes with a common prefix.
+ *
+ * <p>The matrices are filled column by column, one haplotype base per column, so the columns computed for a
+ * haplotype prefix are valid for every haplotype starting with that prefix. Haplotypes are visited in lexicographic
+ * order, which is a depth-first walk of their prefix tree: each haplotype only computes the columns past its longest
+ * common prefix with the previous one, so every edge of the tree is computed exactly once per read.</p>
+ *
+ * <p>The free-deletion initial condition of {@link LoglessPairHMM} depends on the haplotype length, but the
+ * recurrences are linear in it, so all haplotypes are computed with the same initial condition and the result is
+ * rescaled per haplotype at the end.</p>
+ *
+ * <p>Per-read transition and prior probabilities are memoized in an LRU cache keyed by the read's bases and
+ * quality arrays, so that reads seen again in an overlapping assembly region do not recompute them. Each entry
+ * holds eight double arrays as long as the read, so the cache is bounded by its approximate size in bytes rather
+ * than by its number of reads.</p>
+ */
+public final class PrefixTreeLoglessPairHMM extends PairHMM {
+
+    /**
+     * Roughly the per-read values of an assembly region's worth of 150bp reads (about 10KB each).
+     */
+    public static final long DEFAULT_READ_CACHE_BYTES = 8L << 20;
+
+    private final long maxReadValuesCacheBytes;
+    private final Map<ReadKey, ReadValues> readValuesCache = new LinkedHashMap<>(16, 0.75f, true);
+    private long readValuesCacheBytes = 0;
+    private long readValuesCacheHits = 0;
+    private long readValuesCacheMisses = 0;
+
+    // column-major matrices: [haplotype position][read position]
+    private double[][] matchColumns;
+    private double[][] insertionColumns;
+    private double[][] deletionColumns;
+    // running sum of the match and insertion states of the last row over columns 1..j
+    private double[] lastRowSums;
+    private ReadValues currentRead;
+
+    public PrefixTreeLoglessPairHMM() {
+        this(DEFAULT_READ_CACHE_BYTES);
+    }
+
+    /**
+     * @param readCacheBytes approximate maximum size in bytes of the memoized per-read transition and prior probabilities
+     */
+    public PrefixTreeLoglessPairHMM(final long readCacheBytes) {
+        Utils.validateArg(readCacheBytes >= 0, "readCacheBytes must be non-negative");
+        maxReadValuesCacheBytes = readCacheBytes;
+    }
+
+    @Override
+    public void initialize( final int readMaxLength, final int haplotypeMaxLength ) {
+        super.initialize(readMaxLength, haplotypeMaxLength);
+        matchColumns = new double[paddedMaxHaplotypeLength][paddedMaxReadLength];
+        insertionColumns = new double[paddedMaxHaplotypeLength][paddedMaxReadLength];
+        deletionColumns = new double[paddedMaxHaplotypeLength][paddedMaxReadLength];
+        lastRowSums = new double[paddedMaxHaplotypeLength];
+        currentRead = null;
+    }
+
+    /**
+     * Evaluates every read against all haplotypes in prefix order. See {@link PairHMM#computeLog10Likelihoods}.
+     */
+    @Override
+    public void computeLog10Likelihoods(final LikelihoodMatrix<Haplotype> logLikelihoods,
+                                        final List<GATKRead> processedReads,
+                                        final Map<GATKRead, byte[]> gcp) {
+        if (processedReads.isEmpty()) {
+            return;
+        }
+        if (doProfiling) {
+            startTime = System.nanoTime();
+        }
+        final List<Haplotype> alleles = logLikelihoods.alleles();
+        final int alleleCount = alleles.size();
+        final int readMaxLength = findMaxReadLength(processedReads);
+        int haplotypeMaxLength = 0;
+        for (final Haplotype haplotype : alleles) {
+            haplotypeMaxLength = Math.max(haplotypeMaxLength, haplotype.length());
+        }
+        if (!initialized || readMaxLength > maxReadLength || haplotypeMaxLength > maxHaplotypeLength) {
+            initialize(readMaxLength, haplotypeMaxLength);
+        }
+
+        // lexicographic order of the haplotypes and the common prefix length of each with its predecessor
+        final byte[][] haplotypeBases = new byte[alleleCount][];
+        final Integer[] order = new Integer[alleleCount];
+        for (int a = 0; a < alleleCount; a++) {
+            haplotypeBases[a] = alleles.get(a).getBases();
+            order[a] = a;
+        }
+        Arrays.sort(order, (a1, a2) -> compareBases(haplotypeBases[a1], haplotypeBases[a2]));
+        final int[] sharedPrefix = new int[alleleCount];
+        for (int k = 1; k < alleleCount; k++) {
+            sharedPrefix[k] = findCommonPrefixLength(haplotypeBases[order[k - 1]], haplotypeBases[order[k]]);
+        }
+
+        mLogLikelihoodArray = new double[processedReads.size() * alleleCount];
+        int readIndex = 0;
+        for (final GATKRead read : processedReads) {
+            final byte[] readBases = read.getBases();
+            loadRead(readBases, read.getBaseQualities(), ReadUtils.getBaseInsertionQualities(read),
+                    ReadUtils.getBaseDeletionQualities(read), gcp.get(read));
+            for (int k = 0; k < alleleCount; k++) {
+                final int a = order[k];
+                final double lk = computeColumns(haplotypeBases[a], readBases, sharedPrefix[k]);
+                logLikelihoods.set(a, readIndex, lk);
+                mLogLikelihoodArray[readIndex * alleleCount + a] = lk;
+            }
+            readIndex++;
+        }
+        previousHaplotypeBases = null;
+
+        if (doProfiling) {
+            threadLocalPairHMMComputeTimeDiff = (System.nanoTime() - startTime);
+            pairHMMComputeTime += threadLocalPairHMMComputeTimeDiff;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Unlike the other implementations, columns are reused from the previous haplotype whenever the read values
+     * are not recached, whatever the lengths of the two haplotypes.</p>
+     */
+    @Override
+    protected double subComputeReadLikelihoodGivenHaplotypeLog10( final byte[] haplotypeBases,
+                                                                  final byte[] readBases,
+                                                                  final byte[] readQuals,
+                                                                  final byte[] insertionGOP,
+                                                                  final byte[] deletionGOP,
+                                                                  final byte[] overallGCP,
+                                                                  final int hapStartIndex,
+                                                                  final boolean recacheReadValues,
+                                                                  final int nextHapStartIndex) {
+        final int sharedPrefix;
+        if (recacheReadValues || currentRead == null || previousHaplotypeBases == null) {
+            loadRead(readBases, readQuals, insertionGOP, deletionGOP, overallGCP);
+            sharedPrefix = 0;
+        } else {
+            sharedPrefix = findCommonPrefixLength(previousHaplotypeBases, haplotypeBases);
+        }
+        return computeColumns(haplotypeBases, readBases, sharedPrefix);
+    }
+
+    /**
+     * Makes the given read the current one and resets column 0 of the matrices.
+     */
+    private void loadRead(final byte[] readBases, final byte[] readQuals, final byte[] insertionGOP,
+                          final byte[] deletionGOP, final byte[] overallGCP) {
+        final ReadKey key = new ReadKey(readBases, readQuals, insertionGOP, deletionGOP, overallGCP);
+        ReadValues values = readValuesCache.get(key);
+        if (values == null) {
+            readValuesCacheMisses++;
+            values = new ReadValues(readQuals, insertionGOP, deletionGOP, overallGCP, doNotUseTristateCorrection);
+            cacheReadValues(key.copy(), values);
+        } else {
+            readValuesCacheHits++;
+        }
+        currentRead = values;
+
+        // row 0 holds the free deletions; scaling by the maximum haplotype length keeps every haplotype in range
+        final double initialValue = LoglessPairHMM.INITIAL_CONDITION / maxHaplotypeLength;
+        Arrays.fill(matchColumns[0], 0, readBases.length + 1, 0.0);
+        Arrays.fill(insertionColumns[0], 0, readBases.length + 1, 0.0);
+        Arrays.fill(deletionColumns[0], 0, readBases.length + 1, 0.0);
+        for (int j = 0; j < paddedMaxHaplotypeLength; j++) {
+            deletionColumns[j][0] = initialValue;
+        }
+        lastRowSums[0] = 0.0;
+    }
+
+    /**
+     * Adds an entry to the cache, evicting the least recently used ones until it is back within its size bound.
+     */
+    private void cacheReadValues(final ReadKey key, final ReadValues values) {
+        readValuesCache.put(key, values);
+        readValuesCacheBytes += values.sizeInBytes;
+        final Iterator<ReadValues> eldest = readValuesCache.values().iterator();
+        while (readValuesCacheBytes > maxReadValuesCacheBytes && eldest.hasNext()) {
+            readValuesCacheBytes -= eldest.next().sizeInBytes;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Fills columns {@code startColumn + 1} through the haplotype length, assuming the columns up to
+     * {@code startColumn} hold the values for the current read and a haplotype with the same prefix.
+     *
+     * @return the log10 likelihood of the current read given the haplotype
+     */
+    private double computeColumns(final byte[] haplotypeBases, final byte[] readBases, final int startColumn) {
+        final ReadValues read = currentRead;
+        final int readLength = readBases.length;
+        final int haplotypeLength = haplotypeBases.length;
+        Utils.validateArg(haplotypeLength < paddedMaxHaplotypeLength, () -> "Haplotype bases is too long, got " + haplotypeLength + " but max is " + maxHaplotypeLength);
+        Utils.validateArg(readLength < paddedMaxReadLength, () -> "readBases is too long, got " + readLength + " but max is " + maxReadLength);
+        for (int j = startColumn + 1; j <= haplotypeLength; j++) {
+            final double[] matchPrev = matchColumns[j - 1], insPrev = insertionColumns[j - 1], delPrev = deletionColumns[j - 1];
+            final double[] match = matchColumns[j], ins = insertionColumns[j], del = deletionColumns[j];
+            final byte y = haplotypeBases[j - 1];
+            for (int i = 1; i <= readLength; i++) {
+                final byte x = readBases[i - 1];
+                final double prior = x == y || x == (byte) 'N' || y == (byte) 'N' ? read.priorMatch[i] : read.priorMismatch[i];
+                match[i] = prior * ( matchPrev[i - 1] * read.matchToMatch[i] +
+                        insPrev[i - 1] * read.indelToMatch[i] +
+                        delPrev[i - 1] * read.indelToMatch[i] );
+                ins[i] = match[i - 1] * read.matchToInsertion[i] + ins[i - 1] * read.insertionToInsertion[i];
+                del[i] = matchPrev[i] * read.matchToDeletion[i] + delPrev[i] * read.deletionToDeletion[i];
+            }
+            lastRowSums[j] = lastRowSums[j - 1] + match[readLength] + ins[readLength];
+        }
+        // undo the common initial condition and apply this haplotype's: INITIAL_CONDITION / haplotypeLength
+        return Math.log10(lastRowSums[haplotypeLength]) + Math.log10((double) maxHaplotypeLength / haplotypeLength)
+                - LoglessPairHMM.INITIAL_CONDITION_LOG10;
+    }
+
+    @VisibleForTesting
+    long getReadValuesCacheHits() {
+        return readValuesCacheHits;
+    }
+
+    @VisibleForTesting
+    long getReadValuesCacheMisses() {
+        return readValuesCacheMisses;
+    }
+
+    @VisibleForTesting
+    long getReadValuesCacheBytes() {
+        return readValuesCacheBytes;
+    }
+
+    private static int findCommonPrefixLength(final byte[] bases1, final byte[] bases2) {
+        final int length = Math.min(bases1.length, bases2.length);
+        for (int i = 0; i < length; i++) {
+            if (bases1[i] != bases2[i]) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    private static int compareBases(final byte[] bases1, final byte[] bases2) {
+        final int prefix = findCommonPrefixLength(bases1, bases2);
+        if (prefix < bases1.length && prefix < bases2.length) {
+            return Byte.compare(bases1[prefix], bases2[prefix]);
+        }
+        return Integer.compare(bases1.length, bases2.length);
+    }
+
+    /**
+     * Transition and prior probabilities of a read, indexed by 1-based read position.
+     */
+    private static final class ReadValues {
+        private final double[] matchToMatch, indelToMatch, matchToInsertion, insertionToInsertion, matchToDeletion, deletionToDeletion;
+        private final double[] priorMatch, priorMismatch;
+        // the eight arrays above and the five arrays of the key, with 16 bytes of header per array
+        private final long sizeInBytes;
+
+        private ReadValues(final byte[] readQuals, final byte[] insertionGOP, final byte[] deletionGOP,
+                           final byte[] overallGCP, final boolean doNotUseTristateCorrection) {
+            final int paddedLength = readQuals.length + 1;
+            matchToMatch = new double[paddedLength];
+            indelToMatch = new double[paddedLength];
+            matchToInsertion = new double[paddedLength];
+            insertionToInsertion = new double[paddedLength];
+            matchToDeletion = new double[paddedLength];
+            deletionToDeletion = new double[paddedLength];
+            priorMatch = new double[paddedLength];
+            priorMismatch = new double[paddedLength];
+            sizeInBytes = 8 * (16 + 8L * paddedLength) + 5 * (16L + readQuals.length);
+
+            final double[] transition = new double[PairHMMModel.TRANS_PROB_ARRAY_LENGTH];
+            final double tristateCorrection = doNotUseTristateCorrection ? 1.0 : LoglessPairHMM.TRISTATE_CORRECTION;
+            for (int i = 0; i < readQuals.length; i++) {
+                PairHMMModel.qualToTransProbs(transition, insertionGOP[i], deletionGOP[i], overallGCP[i]);
+                matchToMatch[i + 1] = transition[PairHMMModel.matchToMatch];
+                indelToMatch[i + 1] = transition[PairHMMModel.indelToMatch];
+                matchToInsertion[i + 1] = transition[PairHMMModel.matchToInsertion];
+                insertionToInsertion[i + 1] = transition[PairHMMModel.insertionToInsertion];
+                matchToDeletion[i + 1] = transition[PairHMMModel.matchToDeletion];
+                deletionToDeletion[i + 1] = transition[PairHMMModel.deletionToDeletion];
+                priorMatch[i + 1] = QualityUtils.qualToProb(readQuals[i]);
+                priorMismatch[i + 1] = QualityUtils.qualToErrorProb(readQuals[i]) / tristateCorrection;
+            }
+        }
+    }
+
+    /**
+     * Everything the per-read values depend on. The bases are included because reads with the same qualities but
+     * different bases are different reads, even though the values would be the same.
+     */
+    private static final class ReadKey {
+        private final byte[] bases, quals, insertionGOP, deletionGOP, overallGCP;
+        private final int hashCode;
+
+        private ReadKey(final byte[] bases, final byte[] quals, final byte[] insertionGOP, final byte[] deletionGOP, final byte[] overallGCP) {
+            this.bases = bases;
+            this.quals = quals;
+            this.insertionGOP = insertionGOP;
+            this.deletionGOP = deletionGOP;
+            this.overallGCP = overallGCP;
+            int hash = Arrays.hashCode(bases);
+            hash = 31 * hash + Arrays.hashCode(quals);
+            hash = 31 * hash + Arrays.hashCode(insertionGOP);
+            hash = 31 * hash + Arrays.hashCode(deletionGOP);
+            hash = 31 * hash + Arrays.hashCode(overallGCP);
+            this.hashCode = hash;
+        }
+
+        /**
+         * @return a key that does not share its arrays with the caller, for storing in the cache
+         */
+        private ReadKey copy() {
+            return new ReadKey(bases.clone(), quals.clone(), insertionGOP.clone(), deletionGOP.clone(), overallGCP.clone());
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ReadKey)) {
+                return false;
+            }
+            final ReadKey other = (ReadKey) o;
+            return hashCode == other.hashCode && Arrays.equals(bases, other.bases) && Arrays.equals(quals, other.quals)
+                    && Arrays.equals(insertionGOP, other.insertionGOP) && Arrays.equals(deletionGOP, other.deletionGOP)
+                    && Arrays.equals(overallGCP, other.overallGCP);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -9,6 +9,8 @@ import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.haplotype.Haplotype;
 import org.broadinstitute.hellbender.utils.pileup.PileupElement;
 import org.broadinstitute.hellbender.utils.smithwaterman.SWPairwiseAlignment;
+import org.broadinstitute.hellbender.utils.smithwaterman.SmithWatermanAligner;
+import org.broadinstitute.hellbender.utils.smithwaterman.SmithWatermanAlignment;
 
 import java.util.*;
 
@@ -57,14 +59,41 @@ public final class AlignmentUtils {
                                                        final Haplotype refHaplotype,
                                                        final int referenceStart,
                                                        final boolean isInformative) {
+        return createReadAlignedToRef(originalRead, haplotype, refHaplotype, referenceStart, isInformative,
+                                      SmithWatermanAligner.Implementation.JAVA.getAligner());
+    }
+
+    /**
+     * Aligns reads the haplotype with the given Smith-Waterman aligner, and then projects this alignment of
+     * read -> hap onto the reference via the alignment of haplotype (via its getCigar) method.
+     *
+     * @param originalRead the read we want to write aligned to the reference genome
+     * @param haplotype the haplotype that the read should be aligned to, before aligning to the reference
+     * @param referenceStart the start of the reference that haplotype is aligned to.  Provides global coordinate frame.
+     * @param isInformative true if the read is differentially informative for one of the haplotypes
+     * @param aligner the aligner to use for the read -> hap alignment
+     *
+     * @throws IllegalArgumentException if {@code originalRead} is {@code null} or {@code haplotype} is {@code null} or it
+     *   does not have a Cigar or the {@code referenceStart} is invalid (less than 1).
+     *
+     * @return a GATKRead aligned to reference. Never {@code null}.
+     */
+    public static GATKRead createReadAlignedToRef(final GATKRead originalRead,
+                                                       final Haplotype haplotype,
+                                                       final Haplotype refHaplotype,
+                                                       final int referenceStart,
+                                                       final boolean isInformative,
+                                                       final SmithWatermanAligner aligner) {
         Utils.nonNull(originalRead);
+        Utils.nonNull(aligner);
         Utils.nonNull(haplotype);
         Utils.nonNull(refHaplotype);
         Utils.nonNull(haplotype.getCigar());
         if ( referenceStart < 1 ) { throw new IllegalArgumentException("reference start much be >= 1 but got " + referenceStart); }
 
         // compute the smith-waterman alignment of read -> haplotype
-        final SWPairwiseAlignment swPairwiseAlignment = new SWPairwiseAlignment(haplotype.getBases(), originalRead.getBases(), CigarUtils.NEW_SW_PARAMETERS);
+        final SmithWatermanAlignment swPairwiseAlignment = aligner
+                .align(haplotype.getBases(), originalRead.getBases(), CigarUtils.NEW_SW_PARAMETERS, SWPairwiseAlignment.OverhangStrategy.SOFTCLIP);
         if ( swPairwiseAlignment.getAlignmentStart2wrt1() == -1 ) {
             // sw can fail (reasons not clear) so if it happens just don't realign the read
             return originalRead;
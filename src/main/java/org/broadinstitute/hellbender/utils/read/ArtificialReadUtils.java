@@ -578,6 +578,24 @@ public final class ArtificialReadUtils {
         return quals;
     }
 
+    /**
+     * Create random read qualities
+     *
+     * @param random  the random number generator to draw the qualities from
+     * @param length  the length of the read
+     * @param minQual the lowest quality to return
+     * @param maxQual the highest quality to return
+     * @return an array with randomized base qualities between minQual and maxQual, inclusive
+     */
+    public static byte[] createRandomReadQuals(final Random random, final int length, final int minQual, final int maxQual) {
+        Utils.nonNull(random);
+        Utils.validateArg(0 <= minQual && minQual <= maxQual && maxQual <= Byte.MAX_VALUE, "invalid quality range");
+        final byte[] quals = new byte[length];
+        for (int i = 0; i < length; i++)
+            quals[i] = (byte) (minQual + random.nextInt(maxQual - minQual + 1));
+        return quals;
+    }
+
     /**
      * Create random read qualities
      *
@@ -16,6 +16,7 @@ import org.broadinstitute.hellbender.utils.MathUtils;
 import org.broadinstitute.hellbender.utils.SimpleInterval;
 import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.baq.BAQ;
+import org.broadinstitute.hellbender.utils.baq.FastBAQ;
 import org.broadinstitute.hellbender.utils.clipping.ReadClipper;
 import org.broadinstitute.hellbender.utils.collections.NestedIntegerArray;
 import org.broadinstitute.hellbender.utils.read.AlignmentUtils;
@@ -84,7 +85,8 @@ public final class BaseRecalibrationEngine implements Serializable {
         this.readsHeader = readsHeader;
 
         if (recalArgs.enableBAQ) {
-            baq = new BAQ(recalArgs.BAQGOP); // setup the BAQ object with the provided gap open penalty
+            // setup the BAQ object with the provided gap open penalty
+            baq = recalArgs.fastBAQ ? new FastBAQ(recalArgs.BAQGOP) : new BAQ(recalArgs.BAQGOP);
         } else {
             baq = null;
         }
@@ -104,6 +104,14 @@ public final class RecalibrationArgumentCollection implements ArgumentCollection
     @Argument(fullName = "enableBAQ", shortName = "enableBAQ", doc = "do BAQ correction")
     public boolean enableBAQ = false;
 
+    /**
+     * Computes the BAQ in single precision and caches the BAQ of duplicate reads; only used with -enableBAQ.
+     * The BAQ qualities may differ from the default calculation by one in rare cases.
+     */
+    @Hidden
+    @Argument(fullName = "fastBAQ", shortName = "fastBAQ", doc = "use the faster, single precision and cached BAQ calculation", optional = true)
+    public boolean fastBAQ = false;
+
     @Hidden
     @Argument(fullName = "computeIndelBQSRTables", shortName = "indelBQSR", doc = "compute indel BQSR tables")
     public boolean computeIndelBQSRTables = false;
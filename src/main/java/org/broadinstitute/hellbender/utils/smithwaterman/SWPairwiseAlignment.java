@@ -21,7 +21,7 @@ import java.util.List;
  * ****  This class assumes that all bytes come from UPPERCASED chars! ****
  * ************************************************************************
  */
-public final class SWPairwiseAlignment {
+public final class SWPairwiseAlignment implements SmithWatermanAlignment {
 
     /**
      * Holds the core Smith-Waterman alignment parameters of
@@ -159,8 +159,10 @@ public final class SWPairwiseAlignment {
         this(seq1,seq2,ORIGINAL_DEFAULT);
     }
 
+    @Override
     public Cigar getCigar() { return alignmentResult.cigar ; }
 
+    @Override
     public int getAlignmentStart2wrt1() { return alignmentResult.alignment_offset; }
 
     /**
@@ -486,7 +488,7 @@ public final class SWPairwiseAlignment {
         return new SWPairwiseAlignmentResult(AlignmentUtils.consolidateCigar(new Cigar(lce)), alignment_offset);
     }
 
-    private static CigarElement makeElement(final State state, final int length) {
+    static CigarElement makeElement(final State state, final int length) {
         CigarOperator op = null;
         switch (state) {
             case MATCH: op = CigarOperator.M; break;
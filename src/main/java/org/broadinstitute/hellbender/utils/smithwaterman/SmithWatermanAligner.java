@@ -0,0 +1,56 @@
+package org.broadinstitute.hellbender.utils.smithwaterman;
+
+import org.broadinstitute.hellbender.utils.Utils;
+
+/**
+ * Interface for Smith-Waterman aligners of an alternate sequence against a reference sequence.
+ *
+ * All implementations must produce exactly the same alignment as {@link SWPairwiseAlignment}
+ * for the same sequences, {@link SWPairwiseAlignment.Parameters} and {@link SWPairwiseAlignment.OverhangStrategy}.
+ *
+ * As with {@link SWPairwiseAlignment}, implementations assume that all bytes come from UPPERCASED chars.
+ */
+@FunctionalInterface
+public interface SmithWatermanAligner {
+
+    /**
+     * Aligns the alternate sequence to the reference sequence
+     *
+     * @param reference  ref sequence
+     * @param alternate  alt sequence
+     * @param parameters the SW parameters to use
+     * @param overhangStrategy the strategy to use for dealing with overhangs
+     * @return the alignment of {@code alternate} to {@code reference}, never {@code null}
+     */
+    SmithWatermanAlignment align(final byte[] reference, final byte[] alternate,
+                                 final SWPairwiseAlignment.Parameters parameters,
+                                 final SWPairwiseAlignment.OverhangStrategy overhangStrategy);
+
+    /**
+     * The available Smith-Waterman aligners
+     */
+    enum Implementation {
+        /**
+         * Scalar implementation that fills the full scoring and backtrack matrices of every alignment
+         */
+        JAVA(SWPairwiseAlignment::new),
+
+        /**
+         * Farrar-style striped implementation that reuses per-thread buffers across alignments
+         */
+        STRIPED(new StripedSmithWatermanAligner());
+
+        private final SmithWatermanAligner aligner;
+
+        Implementation(final SmithWatermanAligner aligner) {
+            this.aligner = Utils.nonNull(aligner);
+        }
+
+        /**
+         * @return the aligner for this implementation; safe to share between threads
+         */
+        public SmithWatermanAligner getAligner() {
+            return aligner;
+        }
+    }
+}
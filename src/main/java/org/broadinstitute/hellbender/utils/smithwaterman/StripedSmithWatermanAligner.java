@@ -0,0 +1,444 @@
+package org.broadinstitute.hellbender.utils.smithwaterman;
+
+import com.google.common.annotations.VisibleForTesting;
+import htsjdk.samtools.Cigar;
+import htsjdk.samtools.CigarElement;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.AlignmentUtils;
+import org.broadinstitute.hellbender.utils.smithwaterman.SWPairwiseAlignment.OverhangStrategy;
+import org.broadinstitute.hellbender.utils.smithwaterman.SWPairwiseAlignment.Parameters;
+import org.broadinstitute.hellbender.utils.smithwaterman.SWPairwiseAlignment.State;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Smith-Waterman aligner that fills the scoring matrix one reference base (row) at a time with the alternate sequence
+ * laid out in Farrar's striped order.
+ *
+ * <p>The alternate sequence is cut into {@link #LANES} stripes of consecutive bases, and column {@code s} of every stripe
+ * is stored next to each other in segment {@code s} of the row arrays. Within a segment no cell depends on another, so the
+ * inner loop over the lanes of a segment is free of dependencies (and can be auto-vectorized by the JIT). The horizontal
+ * gaps that cross from one stripe into the next are fixed up afterwards by Farrar's "lazy F" sweeps, which rarely need
+ * to go further than the first few segments.</p>
+ *
+ * <p>Only two rows of scores are kept; the backtrack information is stored as one byte per cell (the direction of the step
+ * plus whether the best vertical and horizontal gaps ending in the cell extend a gap of the previous cell), and the gap
+ * lengths are recovered from those flags during the traceback. Scores, tie-breaking and gap lengths are exactly the ones
+ * of {@link SWPairwiseAlignment}, so both produce the same alignments for every {@link OverhangStrategy}.</p>
+ *
+ * <p>All buffers are kept per thread and reused across alignments, so an instance can be shared between threads.</p>
+ */
+public final class StripedSmithWatermanAligner implements SmithWatermanAligner {
+
+    /**
+     * Number of stripes the alternate sequence is cut into
+     */
+    static final int LANES = 8;
+
+    // never let matrix elements drop below this cutoff; the same value SWPairwiseAlignment uses
+    private static final int MATRIX_MIN_CUTOFF = (int) -1.0e8;
+    private static final int LOW_INIT_VALUE = Integer.MIN_VALUE / 2;
+
+    // backtrack flags: the lowest two bits hold the direction of the step
+    private static final byte DIAGONAL = 0;
+    private static final byte HORIZONTAL = 1;
+    private static final byte VERTICAL = 2;
+    private static final byte DIRECTION_MASK = 3;
+    private static final byte VERTICAL_EXTENSION = 4;
+    private static final byte HORIZONTAL_EXTENSION = 8;
+
+    /**
+     * Largest backtrack buffer (in cells) kept for reuse after an alignment; bigger ones are dropped once the
+     * alignment is done, so that a single long alignment doesn't pin its memory to the thread for good
+     */
+    static final int MAX_RETAINED_BACKTRACK_CELLS = 1 << 24;
+
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    @Override
+    public SmithWatermanAlignment align(final byte[] reference, final byte[] alternate, final Parameters parameters, final OverhangStrategy overhangStrategy) {
+        if ( reference == null || reference.length == 0 || alternate == null || alternate.length == 0 )
+            throw new IllegalArgumentException("Non-null, non-empty sequences are required for the Smith-Waterman calculation");
+        Utils.nonNull(parameters);
+        Utils.nonNull(overhangStrategy);
+
+        // avoid running full Smith-Waterman if there is an exact match of alternate in reference
+        if (overhangStrategy == OverhangStrategy.SOFTCLIP || overhangStrategy == OverhangStrategy.IGNORE) {
+            final int matchIndex = Utils.lastIndexOf(reference, alternate);
+            if (matchIndex != -1) {
+                final Cigar cigar = new Cigar(Collections.singletonList(SWPairwiseAlignment.makeElement(State.MATCH, alternate.length)));
+                return new Alignment(AlignmentUtils.consolidateCigar(cigar), matchIndex);
+            }
+        }
+
+        final Buffers buffers = BUFFERS.get();
+        buffers.prepare(reference.length, alternate.length);
+        try {
+            calculateMatrix(reference, alternate, parameters, overhangStrategy, buffers);
+            return calculateCigar(reference.length, alternate.length, overhangStrategy, buffers);
+        } finally {
+            buffers.release();
+        }
+    }
+
+    /**
+     * @return the size (in cells) of the backtrack buffer the current thread keeps for its next alignment
+     */
+    @VisibleForTesting
+    static int retainedBacktrackCells() {
+        return BUFFERS.get().backtrack.length;
+    }
+
+    /**
+     * Fills the backtrack flags, the last column and the bottom row of the scoring matrix
+     */
+    private static void calculateMatrix(final byte[] reference, final byte[] alternate, final Parameters parameters,
+                                        final OverhangStrategy overhangStrategy, final Buffers buffers) {
+        final int w_open = parameters.w_open;
+        final int w_extend = parameters.w_extend;
+        final boolean indelOverhangs = overhangStrategy == OverhangStrategy.INDEL || overhangStrategy == OverhangStrategy.LEADING_INDEL;
+
+        final int refLength = reference.length;
+        final int altLength = alternate.length;
+        final int segmentLength = buffers.segmentLength;
+        final int lastSegment = (segmentLength - 1) * LANES;
+
+        int[] hPrev = buffers.hPrev;
+        int[] h = buffers.h;
+        final int[] e = buffers.e;
+        final int[] f = buffers.f;
+        final int[] diag = buffers.diag;
+        final boolean[] eExtended = buffers.eExtended;
+        final int[] vDiag = buffers.vDiag;
+        final int[] vF = buffers.vF;
+        final byte[] backtrack = buffers.backtrack;
+
+        // the top row of the matrix; the striped padding columns past the end of the alternate are scored like any other
+        for ( int j = 0; j < segmentLength * LANES; j++ ) {
+            hPrev[stripedIndex(j, segmentLength)] = indelOverhangs ? w_open + j * w_extend : 0;
+        }
+        Arrays.fill(e, 0, segmentLength * LANES, LOW_INIT_VALUE);
+
+        for ( int i = 1; i <= refLength; i++ ) {
+            final int[] profile = buffers.profile(reference[i-1], alternate, parameters);
+            // scores of the first column of the matrix, in the previous and the current row
+            final int hDiagBoundary = indelOverhangs && i > 1 ? w_open + (i - 2) * w_extend : 0;
+            final int hLeftBoundary = indelOverhangs ? w_open + (i - 1) * w_extend : 0;
+
+            // segment 0 takes its diagonal and horizontal gap from the last segment of the previous stripe, which has not
+            // been computed yet in this row for the horizontal gap: it is assumed closed and fixed up by the lazy F sweeps
+            vDiag[0] = hDiagBoundary;
+            vF[0] = hLeftBoundary + w_open;
+            for ( int k = 1; k < LANES; k++ ) {
+                vDiag[k] = hPrev[lastSegment + k - 1];
+                vF[k] = LOW_INIT_VALUE;
+            }
+
+            for ( int s = 0; s < segmentLength; s++ ) {
+                final int base = s * LANES;
+                for ( int k = 0; k < LANES; k++ ) {
+                    final int idx = base + k;
+                    final int stepDiag = vDiag[k] + profile[idx];
+                    vDiag[k] = hPrev[idx];
+
+                    final int openDown = hPrev[idx] + w_open;
+                    final int extendDown = e[idx] + w_extend;
+                    final boolean extended = openDown <= extendDown;
+                    final int stepDown = extended ? extendDown : openDown;
+                    final int stepRight = vF[k];
+
+                    final int score = Math.max(MATRIX_MIN_CUTOFF, Math.max(stepDiag, Math.max(stepDown, stepRight)));
+                    diag[idx] = stepDiag;
+                    e[idx] = stepDown;
+                    eExtended[idx] = extended;
+                    f[idx] = stepRight;
+                    h[idx] = score;
+                    vF[k] = Math.max(score + w_open, stepRight + w_extend);
+                }
+            }
+
+            lazyF(h, f, vF, segmentLength, w_open, w_extend);
+
+            // decode the backtrack flags in natural column order
+            final int rowOffset = (i - 1) * altLength;
+            int leftScore = hLeftBoundary;
+            int leftStepRight = LOW_INIT_VALUE;
+            for ( int j = 0; j < altLength; j++ ) {
+                final int idx = stripedIndex(j, segmentLength);
+                final int stepDiag = diag[idx];
+                final int stepDown = e[idx];
+                final int stepRight = f[idx];
+                //priority here will be step diagonal, step right, step down
+                int flags;
+                if ( stepDiag >= stepDown && stepDiag >= stepRight ) {
+                    flags = DIAGONAL;
+                } else if ( stepRight >= stepDown ) {
+                    flags = HORIZONTAL;
+                } else {
+                    flags = VERTICAL;
+                }
+                if ( eExtended[idx] ) {
+                    flags |= VERTICAL_EXTENSION;
+                }
+                if ( leftScore + w_open <= leftStepRight + w_extend ) {
+                    flags |= HORIZONTAL_EXTENSION;
+                }
+                backtrack[rowOffset + j] = (byte) flags;
+                leftScore = h[idx];
+                leftStepRight = stepRight;
+            }
+            buffers.lastColumn[i] = h[stripedIndex(altLength - 1, segmentLength)];
+
+            final int[] tmp = hPrev;
+            hPrev = h;
+            h = tmp;
+        }
+
+        for ( int j = 0; j < altLength; j++ ) {
+            buffers.bottomRow[j + 1] = hPrev[stripedIndex(j, segmentLength)];
+        }
+    }
+
+    /**
+     * Propagates the horizontal gaps that cross from the end of one stripe into the start of the next one,
+     * until no score changes.
+     */
+    private static void lazyF(final int[] h, final int[] f, final int[] vF, final int segmentLength, final int w_open, final int w_extend) {
+        final int lastSegment = (segmentLength - 1) * LANES;
+        while ( true ) {
+            // the first stripe starts at the first column of the matrix, so it is always exact
+            vF[0] = LOW_INIT_VALUE;
+            for ( int k = 1; k < LANES; k++ ) {
+                vF[k] = Math.max(h[lastSegment + k - 1] + w_open, f[lastSegment + k - 1] + w_extend);
+            }
+            for ( int s = 0; s < segmentLength; s++ ) {
+                final int base = s * LANES;
+                boolean changed = false;
+                for ( int k = 0; k < LANES; k++ ) {
+                    final int idx = base + k;
+                    if ( vF[k] > f[idx] ) {
+                        f[idx] = vF[k];
+                        h[idx] = Math.max(h[idx], vF[k]);
+                        changed = true;
+                    }
+                    vF[k] = Math.max(h[idx] + w_open, f[idx] + w_extend);
+                }
+                if ( ! changed ) {
+                    // every later segment already accounts for the scores of this one
+                    if ( s == 0 ) {
+                        return;
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates the CIGAR for the alignment from the backtrack flags, exactly as {@link SWPairwiseAlignment} does
+     * from its backtrack matrix
+     */
+    private static SmithWatermanAlignment calculateCigar(final int refLength, final int altLength,
+                                                         final OverhangStrategy overhangStrategy, final Buffers buffers) {
+        // p holds the position we start backtracking from; we will be assembling a cigar in the backwards order
+        int p1 = 0, p2 = 0;
+
+        int maxscore = Integer.MIN_VALUE; // sw scores are allowed to be negative
+        int segment_length = 0; // length of the segment (continuous matches, insertions or deletions)
+
+        // if we want to consider overhangs as legitimate operators, then just start from the corner of the matrix
+        if ( overhangStrategy == OverhangStrategy.INDEL ) {
+            p1 = refLength;
+            p2 = altLength;
+        } else {
+            // look for the largest score on the rightmost column. we use >= combined with the traversal direction
+            // to ensure that if two scores are equal, the one closer to diagonal gets picked
+            p2 = altLength;
+            for ( int i = 1; i <= refLength; i++ ) {
+                final int curScore = buffers.lastColumn[i];
+                if ( curScore >= maxscore ) {
+                    p1 = i;
+                    maxscore = curScore;
+                }
+            }
+            // now look for a larger score on the bottom-most row
+            if ( overhangStrategy != OverhangStrategy.LEADING_INDEL ) {
+                for ( int j = 1; j <= altLength; j++ ) {
+                    final int curScore = buffers.bottomRow[j];
+                    if ( curScore > maxscore ||
+                            (curScore == maxscore && Math.abs(refLength - j) < Math.abs(p1 - p2) ) ) {
+                        p1 = refLength;
+                        p2 = j;
+                        maxscore = curScore;
+                        segment_length = altLength - j; // end of sequence 2 is overhanging; we will just record it as 'M' segment
+                    }
+                }
+            }
+        }
+        final List<CigarElement> lce = new ArrayList<>(5);
+        if ( segment_length > 0 && overhangStrategy == OverhangStrategy.SOFTCLIP ) {
+            lce.add(SWPairwiseAlignment.makeElement(State.CLIP, segment_length));
+            segment_length = 0;
+        }
+
+        final byte[] backtrack = buffers.backtrack;
+        State state = State.MATCH;
+        do {
+            final int flags = backtrack[(p1 - 1) * altLength + p2 - 1];
+            final State new_state;
+            int step_length = 1;
+            switch ( flags & DIRECTION_MASK ) {
+                case HORIZONTAL:
+                    new_state = State.INSERTION;
+                    // the gap is as long as the run of extensions ending at this cell
+                    for ( int j = p2; (backtrack[(p1 - 1) * altLength + j - 1] & HORIZONTAL_EXTENSION) != 0; j-- ) {
+                        step_length++;
+                    }
+                    p2 -= step_length;
+                    break;
+                case VERTICAL:
+                    new_state = State.DELETION;
+                    for ( int i = p1; (backtrack[(i - 1) * altLength + p2 - 1] & VERTICAL_EXTENSION) != 0; i-- ) {
+                        step_length++;
+                    }
+                    p1 -= step_length;
+                    break;
+                default:
+                    new_state = State.MATCH;
+                    p1--;
+                    p2--;
+            }
+
+            if ( new_state == state ) segment_length += step_length;
+            else {
+                lce.add(SWPairwiseAlignment.makeElement(state, segment_length));
+                segment_length = step_length;
+                state = new_state;
+            }
+        } while ( p1 > 0 && p2 > 0 );
+
+        final int alignment_offset;
+        if ( overhangStrategy == OverhangStrategy.SOFTCLIP ) {
+            lce.add(SWPairwiseAlignment.makeElement(state, segment_length));
+            if ( p2 > 0 ) lce.add(SWPairwiseAlignment.makeElement(State.CLIP, p2));
+            alignment_offset = p1;
+        } else if ( overhangStrategy == OverhangStrategy.IGNORE ) {
+            lce.add(SWPairwiseAlignment.makeElement(state, segment_length + p2));
+            alignment_offset = p1 - p2;
+        } else {  // overhangStrategy == OverhangStrategy.INDEL || overhangStrategy == OverhangStrategy.LEADING_INDEL
+            lce.add(SWPairwiseAlignment.makeElement(state, segment_length));
+            if ( p1 > 0 ) {
+                lce.add(SWPairwiseAlignment.makeElement(State.DELETION, p1));
+            } else if ( p2 > 0 ) {
+                lce.add(SWPairwiseAlignment.makeElement(State.INSERTION, p2));
+            }
+            alignment_offset = 0;
+        }
+
+        Collections.reverse(lce);
+        return new Alignment(AlignmentUtils.consolidateCigar(new Cigar(lce)), alignment_offset);
+    }
+
+    /**
+     * @return the position of the column for the {@code j}-th alternate base in the striped row arrays
+     */
+    private static int stripedIndex(final int j, final int segmentLength) {
+        return (j % segmentLength) * LANES + j / segmentLength;
+    }
+
+    private static final class Alignment implements SmithWatermanAlignment {
+        private final Cigar cigar;
+        private final int alignmentOffset;
+
+        private Alignment(final Cigar cigar, final int alignmentOffset) {
+            this.cigar = cigar;
+            this.alignmentOffset = alignmentOffset;
+        }
+
+        @Override
+        public Cigar getCigar() {
+            return cigar;
+        }
+
+        @Override
+        public int getAlignmentStart2wrt1() {
+            return alignmentOffset;
+        }
+    }
+
+    /**
+     * Per-thread working memory, grown as needed and reused across alignments, except for backtrack buffers of more
+     * than {@link #MAX_RETAINED_BACKTRACK_CELLS} cells
+     */
+    private static final class Buffers {
+        private int segmentLength;
+
+        private int[] hPrev = new int[0];
+        private int[] h = new int[0];
+        private int[] e = new int[0];
+        private int[] f = new int[0];
+        private int[] diag = new int[0];
+        private boolean[] eExtended = new boolean[0];
+        private final int[] vDiag = new int[LANES];
+        private final int[] vF = new int[LANES];
+
+        // striped query profiles, indexed by reference base, built lazily for the current alignment
+        private final int[][] profiles = new int[256][];
+        private final boolean[] profileReady = new boolean[256];
+
+        private int[] lastColumn = new int[0];
+        private int[] bottomRow = new int[0];
+        private byte[] backtrack = new byte[0];
+
+        private void prepare(final int refLength, final int altLength) {
+            segmentLength = (altLength + LANES - 1) / LANES;
+            final int stripedLength = segmentLength * LANES;
+            if ( h.length < stripedLength ) {
+                hPrev = new int[stripedLength];
+                h = new int[stripedLength];
+                e = new int[stripedLength];
+                f = new int[stripedLength];
+                diag = new int[stripedLength];
+                eExtended = new boolean[stripedLength];
+            }
+            if ( lastColumn.length < refLength + 1 ) {
+                lastColumn = new int[refLength + 1];
+            }
+            if ( bottomRow.length < altLength + 1 ) {
+                bottomRow = new int[altLength + 1];
+            }
+            final long cells = (long) refLength * altLength;
+            Utils.validateArg(cells <= Integer.MAX_VALUE, () -> "sequences are too long to align: " + refLength + " x " + altLength);
+            if ( backtrack.length < cells ) {
+                backtrack = new byte[(int) cells];
+            }
+            Arrays.fill(profileReady, false);
+        }
+
+        private void release() {
+            if ( backtrack.length > MAX_RETAINED_BACKTRACK_CELLS ) {
+                backtrack = new byte[0];
+            }
+        }
+
+        private int[] profile(final byte refBase, final byte[] alternate, final Parameters parameters) {
+            final int key = refBase & 0xFF;
+            if ( ! profileReady[key] ) {
+                final int stripedLength = segmentLength * LANES;
+                if ( profiles[key] == null || profiles[key].length < stripedLength ) {
+                    profiles[key] = new int[stripedLength];
+                }
+                final int[] profile = profiles[key];
+                for ( int j = 0; j < stripedLength; j++ ) {
+                    // padding columns past the end of the alternate never feed back into real columns
+                    profile[stripedIndex(j, segmentLength)] = j < alternate.length && alternate[j] == refBase ? parameters.w_match : parameters.w_mismatch;
+                }
+                profileReady[key] = true;
+            }
+            return profiles[key];
+        }
+    }
+}
@@ -8,19 +8,37 @@ import htsjdk.samtools.util.BlockCompressedOutputStream;
 import htsjdk.samtools.util.BlockCompressedStreamConstants;
 import htsjdk.samtools.util.RuntimeIOException;
 import org.apache.commons.io.FileUtils;
+import org.apache.spark.Partitioner;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaRDD;
 import org.broadinstitute.hellbender.engine.spark.datasources.ReadsSparkSink;
 import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.read.ReadsWriteFormat;
 import org.broadinstitute.hellbender.utils.read.ReadUtils;
+import scala.Tuple2;
 
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
 
 /**
  * Miscellaneous Spark-related utilities
  */
 public final class SparkUtils {
 
+    /**
+     * Number of read positions sampled from each input partition when estimating coverage for
+     * {@link #coverageBalancedCoordinateSort}.
+     */
+    public static final int DEFAULT_COVERAGE_SAMPLES_PER_PARTITION = 1000;
+
     private SparkUtils() {}
 
     /**
@@ -81,4 +99,211 @@ public final class SparkUtils {
             throw new RuntimeIOException(ioe);
         }
     }
+
+    /**
+     * Sorts reads by coordinate into numPartitions partitions holding roughly equal numbers of reads.
+     *
+     * Partitioning by input split (or by an even split of the genome) puts all the reads of a high-coverage region
+     * (centromeres, amplifications, collapsed repeats) into a handful of partitions that then run far longer than the
+     * rest. Here the read positions are sampled first, and the partition boundaries are placed at quantiles of the
+     * sampled coverage, so that hot genomic ranges are spread over as many partitions as their share of the reads
+     * calls for. The result is coordinate sorted both within and across partitions: all the reads of partition i
+     * precede those of partition i+1. Reads that start at the same position may be split across neighbouring
+     * partitions, and are ordered by name hash rather than by {@link org.broadinstitute.hellbender.utils.read.ReadCoordinateComparator}'s
+     * tie-breaking rules. Reads with no assigned position go last.
+     *
+     * Note that the input is traversed once for the coverage sample and once for the shuffle, so callers that have
+     * already paid for an expensive lineage may want to cache the input first.
+     *
+     * @param reads reads to sort
+     * @param header header defining the contig order
+     * @param numPartitions number of partitions of the result
+     * @return the reads, sorted by coordinate into coverage-balanced partitions
+     */
+    public static JavaRDD<GATKRead> coverageBalancedCoordinateSort( final JavaRDD<GATKRead> reads, final SAMFileHeader header,
+                                                                    final int numPartitions ) {
+        Utils.nonNull(reads);
+        Utils.nonNull(header);
+        Utils.validateArg(numPartitions > 0, "the number of partitions must be positive");
+
+        final JavaPairRDD<ReadCoordinateKey, GATKRead> keyedReads =
+                reads.mapToPair(read -> new Tuple2<>(ReadCoordinateKey.of(read, header), read));
+        final CoverageBalancedPartitioner partitioner =
+                CoverageBalancedPartitioner.fromSample(keyedReads.keys(), numPartitions, DEFAULT_COVERAGE_SAMPLES_PER_PARTITION);
+        return keyedReads.repartitionAndSortWithinPartitions(partitioner).values();
+    }
+
+    /**
+     * A compact sort key for a read: its assigned contig index and start, plus a hash of its name that lets the reads
+     * piled up at a single position be split across partitions.
+     */
+    public static final class ReadCoordinateKey implements Comparable<ReadCoordinateKey>, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final int contigIndex;
+        private final int start;
+        private final int nameHash;
+
+        public ReadCoordinateKey( final int contigIndex, final int start, final int nameHash ) {
+            this.contigIndex = contigIndex;
+            this.start = start;
+            this.nameHash = nameHash;
+        }
+
+        public static ReadCoordinateKey of( final GATKRead read, final SAMFileHeader header ) {
+            final int nameHash = read.getName() == null ? 0 : read.getName().hashCode();
+            if ( ReadUtils.readHasNoAssignedPosition(read) ) {
+                return new ReadCoordinateKey(Integer.MAX_VALUE, Integer.MAX_VALUE, nameHash);
+            }
+            final int contigIndex = ReadUtils.getAssignedReferenceIndex(read, header);
+            return new ReadCoordinateKey(contigIndex < 0 ? Integer.MAX_VALUE : contigIndex, read.getAssignedStart(), nameHash);
+        }
+
+        public int getContigIndex() { return contigIndex; }
+        public int getStart() { return start; }
+
+        @Override
+        public int compareTo( final ReadCoordinateKey that ) {
+            int result = Integer.compare(contigIndex, that.contigIndex);
+            if ( result == 0 ) {
+                result = Integer.compare(start, that.start);
+                if ( result == 0 ) {
+                    result = Integer.compare(nameHash, that.nameHash);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public boolean equals( final Object obj ) {
+            if ( this == obj ) return true;
+            if ( !(obj instanceof ReadCoordinateKey) ) return false;
+            final ReadCoordinateKey that = (ReadCoordinateKey)obj;
+            return contigIndex == that.contigIndex && start == that.start && nameHash == that.nameHash;
+        }
+
+        @Override
+        public int hashCode() {
+            return 47 * (47 * contigIndex + start) + nameHash;
+        }
+
+        @Override
+        public String toString() {
+            return contigIndex + ":" + start + "#" + nameHash;
+        }
+    }
+
+    /**
+     * Range partitioner on {@link ReadCoordinateKey}s whose boundaries are the weighted quantiles of a sample of keys,
+     * so that each partition receives about the same number of reads regardless of how coverage varies along the genome.
+     */
+    public static final class CoverageBalancedPartitioner extends Partitioner {
+        private static final long serialVersionUID = 1L;
+
+        // partition i holds the keys in [upperBounds[i-1], upperBounds[i]); the last partition is open-ended
+        private final ReadCoordinateKey[] upperBounds;
+
+        public CoverageBalancedPartitioner( final ReadCoordinateKey[] upperBounds ) {
+            Utils.nonNull(upperBounds);
+            for ( int idx = 1; idx < upperBounds.length; ++idx ) {
+                Utils.validateArg(upperBounds[idx-1].compareTo(upperBounds[idx]) < 0, "partition bounds must be strictly increasing");
+            }
+            this.upperBounds = upperBounds.clone();
+        }
+
+        /**
+         * Builds a partitioner from a reservoir sample of samplesPerPartition keys taken from each partition of keys.
+         * Every sampled key stands for (partition size / partition sample size) keys, so that sparsely sampled large
+         * partitions are weighed properly, and the bounds are placed wherever the cumulative weight crosses a multiple
+         * of (total weight / numPartitions). Duplicate bounds, which arise when there are fewer distinct keys than
+         * partitions, are dropped, so the partitioner may end up with fewer than numPartitions partitions.
+         */
+        public static CoverageBalancedPartitioner fromSample( final JavaRDD<ReadCoordinateKey> keys, final int numPartitions,
+                                                              final int samplesPerPartition ) {
+            Utils.validateArg(numPartitions > 0, "the number of partitions must be positive");
+            Utils.validateArg(samplesPerPartition > 0, "the number of samples per partition must be positive");
+            final List<Tuple2<Long, List<ReadCoordinateKey>>> sketches = keys.mapPartitionsWithIndex((partitionIdx, keyItr) -> {
+                final Random random = new Random(partitionIdx);
+                final List<ReadCoordinateKey> reservoir = new ArrayList<>(samplesPerPartition);
+                long count = 0;
+                while ( keyItr.hasNext() ) {
+                    final ReadCoordinateKey key = keyItr.next();
+                    if ( count < samplesPerPartition ) {
+                        reservoir.add(key);
+                    } else {
+                        final long slot = (long)(random.nextDouble() * (count + 1));
+                        if ( slot < samplesPerPartition ) {
+                            reservoir.set((int)slot, key);
+                        }
+                    }
+                    ++count;
+                }
+                return Collections.singletonList(new Tuple2<>(count, reservoir)).iterator();
+            }, false).collect();
+
+            final List<Tuple2<ReadCoordinateKey, Double>> weightedKeys = new ArrayList<>();
+            for ( final Tuple2<Long, List<ReadCoordinateKey>> sketch : sketches ) {
+                final List<ReadCoordinateKey> sample = sketch._2();
+                final double weight = sample.isEmpty() ? 0. : (double)sketch._1() / sample.size();
+                for ( final ReadCoordinateKey key : sample ) {
+                    weightedKeys.add(new Tuple2<>(key, weight));
+                }
+            }
+            return new CoverageBalancedPartitioner(computeBounds(weightedKeys, numPartitions));
+        }
+
+        static ReadCoordinateKey[] computeBounds( final List<Tuple2<ReadCoordinateKey, Double>> weightedKeys, final int numPartitions ) {
+            if ( weightedKeys.isEmpty() || numPartitions == 1 ) {
+                return new ReadCoordinateKey[0];
+            }
+            final List<Tuple2<ReadCoordinateKey, Double>> sortedKeys = new ArrayList<>(weightedKeys);
+            sortedKeys.sort(Comparator.comparing(Tuple2::_1));
+            double totalWeight = 0.;
+            for ( final Tuple2<ReadCoordinateKey, Double> weightedKey : sortedKeys ) {
+                totalWeight += weightedKey._2();
+            }
+            final double weightPerPartition = totalWeight / numPartitions;
+
+            final List<ReadCoordinateKey> bounds = new ArrayList<>(numPartitions - 1);
+            double cumulativeWeight = 0.;
+            double nextTarget = weightPerPartition;
+            for ( final Tuple2<ReadCoordinateKey, Double> weightedKey : sortedKeys ) {
+                if ( bounds.size() == numPartitions - 1 ) {
+                    break;
+                }
+                if ( cumulativeWeight >= nextTarget ) {
+                    final ReadCoordinateKey bound = weightedKey._1();
+                    if ( bounds.isEmpty() || bounds.get(bounds.size() - 1).compareTo(bound) < 0 ) {
+                        bounds.add(bound);
+                    }
+                    nextTarget += weightPerPartition;
+                }
+                cumulativeWeight += weightedKey._2();
+            }
+            return bounds.toArray(new ReadCoordinateKey[bounds.size()]);
+        }
+
+        @Override
+        public int numPartitions() {
+            return upperBounds.length + 1;
+        }
+
+        @Override
+        public int getPartition( final Object key ) {
+            final int idx = Arrays.binarySearch(upperBounds, (ReadCoordinateKey)key);
+            // an exact match on a bound starts the next partition; otherwise idx is -(insertion point) - 1
+            return idx >= 0 ? idx + 1 : -idx - 1;
+        }
+
+        @Override
+        public boolean equals( final Object obj ) {
+            return obj instanceof CoverageBalancedPartitioner &&
+                    Arrays.equals(upperBounds, ((CoverageBalancedPartitioner)obj).upperBounds);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(upperBounds);
+        }
+    }
 }
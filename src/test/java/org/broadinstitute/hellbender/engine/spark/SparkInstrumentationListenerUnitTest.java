@@ -0,0 +1,108 @@
+package org.broadinstitute.hellbender.engine.spark;
+
+import org.apache.spark.Accumulator;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.broadcast.Broadcast;
+import org.broadinstitute.hellbender.utils.report.GATKReport;
+import org.broadinstitute.hellbender.utils.report.GATKReportTable;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import scala.Tuple2;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class SparkInstrumentationListenerUnitTest extends BaseTest {
+
+    @Test(groups = "spark")
+    public void testInstrumentation() throws InterruptedException {
+        final JavaSparkContext ctx = SparkContextFactory.getTestSparkContext();
+        final SparkInstrumentationListener listener = SparkInstrumentationListener.register(ctx);
+        try {
+            final List<Integer> values = new ArrayList<>();
+            for ( int i = 0; i < 1000; i++ ) {
+                values.add(i);
+            }
+            final Broadcast<int[]> broadcast = ctx.broadcast(new int[100000]);
+            final Accumulator<Integer> evens = ctx.accumulator(0, "evenValues");
+            final List<Tuple2<Integer, Integer>> counts = ctx.parallelize(values, 4)
+                    .mapToPair(i -> {
+                        if ( i % 2 == 0 ) {
+                            evens.add(1);
+                        }
+                        return new Tuple2<>(i % 10 + broadcast.getValue()[0], 1);
+                    })
+                    .reduceByKey((a, b) -> a + b, 3)
+                    .collect();
+            Assert.assertEquals(counts.size(), 10);
+
+            // listener events are delivered asynchronously
+            final long deadline = System.currentTimeMillis() + 30000;
+            while ( listener.getStageMetrics().stream().filter(SparkInstrumentationListener.StageMetrics::isCompleted).count() < 2
+                    && System.currentTimeMillis() < deadline ) {
+                Thread.sleep(50);
+            }
+
+            final List<SparkInstrumentationListener.StageMetrics> stages = listener.getStageMetrics();
+            Assert.assertEquals(stages.size(), 2);
+            final SparkInstrumentationListener.StageMetrics mapStage = stages.get(0);
+            final SparkInstrumentationListener.StageMetrics reduceStage = stages.get(1);
+            Assert.assertTrue(mapStage.isCompleted());
+            Assert.assertEquals(mapStage.getNumTasks(), 4);
+            Assert.assertEquals(mapStage.getNumTasksEnded(), 4);
+            Assert.assertTrue(mapStage.getShuffleWriteRecords() > 0);
+            Assert.assertTrue(mapStage.getShuffleWriteBytes() > 0);
+            Assert.assertTrue(mapStage.getSkewRatio() >= 1.0);
+            Assert.assertTrue(reduceStage.isCompleted());
+            Assert.assertEquals(reduceStage.getNumTasks(), 3);
+            Assert.assertEquals(reduceStage.getShuffleReadRecords(), mapStage.getShuffleWriteRecords());
+
+            final List<SparkInstrumentationListener.PartitionMetrics> largest = listener.getLargestPartitions();
+            Assert.assertFalse(largest.isEmpty());
+            for ( int i = 1; i < largest.size(); i++ ) {
+                Assert.assertTrue(largest.get(i - 1).getRecords() >= largest.get(i).getRecords());
+            }
+
+            Assert.assertTrue(listener.getBroadcastSizes().containsKey(broadcast.id()));
+            Assert.assertTrue(listener.getBroadcastSizes().get(broadcast.id()) > 0);
+
+            final List<String> accumulatorValues = listener.getAccumulatorValues().stream()
+                    .filter(a -> a.getName().equals("evenValues"))
+                    .map(SparkInstrumentationListener.AccumulatorValue::getValue)
+                    .collect(Collectors.toList());
+            Assert.assertEquals(accumulatorValues, Collections.singletonList("500"));
+
+            final File reportFile = createTempFile("instrumentation", ".txt");
+            listener.writeReport(reportFile);
+            final GATKReport report = new GATKReport(reportFile);
+            final GATKReportTable stagesTable = report.getTable(SparkInstrumentationListener.STAGES_TABLE_NAME);
+            Assert.assertEquals(stagesTable.getNumRows(), 2);
+            Assert.assertEquals(Long.parseLong(stagesTable.get(0, "shuffleWriteRecords").toString()), mapStage.getShuffleWriteRecords());
+            Assert.assertEquals(report.getTable(SparkInstrumentationListener.LARGEST_PARTITIONS_TABLE_NAME).getNumRows(), largest.size());
+            Assert.assertTrue(report.getTable(SparkInstrumentationListener.BROADCASTS_TABLE_NAME).getNumRows() >= 1);
+            Assert.assertTrue(report.getTable(SparkInstrumentationListener.ACCUMULATORS_TABLE_NAME).getNumRows() >= 1);
+        } finally {
+            listener.stopListening();
+        }
+    }
+
+    @Test(groups = "spark")
+    public void testStoppedListenerIgnoresEvents() throws InterruptedException {
+        final JavaSparkContext ctx = SparkContextFactory.getTestSparkContext();
+        final SparkInstrumentationListener listener = SparkInstrumentationListener.register(ctx);
+        listener.stopListening();
+        final JavaPairRDD<Integer, Integer> rdd = ctx.parallelizePairs(Arrays.asList(new Tuple2<>(1, 1), new Tuple2<>(2, 2)), 2);
+        Assert.assertEquals(rdd.count(), 2);
+        Thread.sleep(500);
+        Assert.assertTrue(listener.getStageMetrics().isEmpty());
+        final File reportFile = createTempFile("instrumentation", ".txt");
+        listener.writeReport(reportFile);
+        Assert.assertEquals(new GATKReport(reportFile).getTable(SparkInstrumentationListener.STAGES_TABLE_NAME).getNumRows(), 0);
+    }
+}
@@ -1,9 +1,13 @@
 package org.broadinstitute.hellbender.engine.spark.datasources;
 
 
+import htsjdk.samtools.BAMRecordCodec;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SAMRecordCoordinateComparator;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
@@ -23,10 +27,15 @@ import org.testng.Assert;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.DataProvider;
+import org.seqdoop.hadoop_bam.SplittingBAMIndex;
+import org.seqdoop.hadoop_bam.SplittingBAMIndexer;
+import org.seqdoop.hadoop_bam.util.SeekableArrayStream;
 import org.testng.annotations.Test;
 
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -129,6 +138,81 @@ public class ReadsSparkSinkUnitTest extends BaseTest {
         Assert.assertEquals(rddParallelReads.count(), rddParallelReads2.count());
     }
 
+    @DataProvider(name = "loadReadsBAMForSplittingIndex")
+    public Object[][] loadReadsBAMForSplittingIndex() {
+        return new Object[][]{
+                {testDataDir + "tools/BQSR/HiSeq.1mb.1RG.2k_lines.bam", "ReadsSparkSinkSplittingIndexTest1"},
+                {testDataDir + "tools/BQSR/CEUTrio.HiSeq.WGS.b37.ch20.1m-1m1k.NA12878.bam", "ReadsSparkSinkSplittingIndexTest2"},
+        };
+    }
+
+    @Test(dataProvider = "loadReadsBAMForSplittingIndex", groups = "spark")
+    public void readsSinkSplittingIndexTest(String inputBam, String outputFileName) throws IOException {
+        final File outputFile = createTempFile(outputFileName, ".bam");
+        new File(outputFile.getAbsolutePath() + SplittingBAMIndexer.OUTPUT_FILE_EXTENSION).deleteOnExit();
+        assertSplittingIndexWritingWorks(inputBam, outputFile.getAbsolutePath());
+    }
+
+    @Test(dataProvider = "loadReadsBAMForSplittingIndex", groups = "spark")
+    public void readsSinkSplittingIndexHDFSTest(String inputBam, String outputFileName) throws IOException {
+        final String outputHDFSPath = MiniClusterUtils.getTempPath(cluster, outputFileName, ".bam").toString();
+        assertSplittingIndexWritingWorks(inputBam, outputHDFSPath);
+    }
+
+    private void assertSplittingIndexWritingWorks(String inputBam, String outputPath) throws IOException {
+        JavaSparkContext ctx = SparkContextFactory.getTestSparkContext();
+
+        ReadsSparkSource readSource = new ReadsSparkSource(ctx);
+        JavaRDD<GATKRead> rddParallelReads = readSource.getParallelReads(inputBam, null);
+        SAMFileHeader header = readSource.getHeader(inputBam, null, null);
+
+        // use several reducers so that the index is stitched together from several partial indices
+        ReadsSparkSink.writeReads(ctx, outputPath, null, rddParallelReads, header, ReadsWriteFormat.SINGLE, 3, true);
+
+        final Path output = new Path(outputPath);
+        final Path indexPath = new Path(outputPath + SplittingBAMIndexer.OUTPUT_FILE_EXTENSION);
+        final FileSystem fs = output.getFileSystem(ctx.hadoopConfiguration());
+        Assert.assertTrue(fs.exists(indexPath), "no splitting index was written");
+
+        final byte[] bamBytes;
+        try (final InputStream in = fs.open(output)) {
+            bamBytes = IOUtils.toByteArray(in);
+        }
+        final List<Long> virtualOffsets = new ArrayList<>();
+        try (final InputStream in = fs.open(indexPath)) {
+            final DataInputStream data = new DataInputStream(in);
+            while (data.available() > 0) {
+                virtualOffsets.add(data.readLong());
+            }
+        }
+        try (final InputStream in = fs.open(indexPath)) {
+            Assert.assertEquals(new SplittingBAMIndex(in).size(), virtualOffsets.size());
+        }
+        // the index ends with the virtual offset of the end of the file, and every other entry starts a record
+        Assert.assertEquals((long) virtualOffsets.get(virtualOffsets.size() - 1), ((long) bamBytes.length) << 16);
+        Assert.assertTrue(virtualOffsets.size() > 1);
+        for (int i = 0; i < virtualOffsets.size() - 1; i++) {
+            Assert.assertTrue(virtualOffsets.get(i) < virtualOffsets.get(i + 1), "splitting index entries are not increasing");
+            final BlockCompressedInputStream bgzf = new BlockCompressedInputStream(new SeekableArrayStream(bamBytes));
+            bgzf.seek(virtualOffsets.get(i));
+            final BAMRecordCodec codec = new BAMRecordCodec(header);
+            codec.setInputStream(bgzf);
+            Assert.assertNotNull(codec.decode(), "splitting index entry does not point at a record");
+        }
+        Assert.assertEquals(Arrays.copyOfRange(bamBytes, bamBytes.length - BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK.length, bamBytes.length),
+                BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK);
+
+        // no partial indices or temporary directories are left behind next to the output
+        for (final FileStatus sibling : fs.listStatus(output.getParent())) {
+            Assert.assertFalse(sibling.getPath().getName().endsWith(ReadsSparkSink.PARTIAL_SPLITTING_INDEX_EXTENSION));
+        }
+
+        JavaRDD<GATKRead> rddParallelReads2 = readSource.getParallelReads(outputPath, null);
+        final List<GATKRead> writtenReads = rddParallelReads2.collect();
+        assertReadsAreSorted(header, writtenReads);
+        Assert.assertEquals(rddParallelReads.count(), writtenReads.size());
+    }
+
     private static void assertReadsAreSorted(SAMFileHeader header, List<GATKRead> writtenReads) {
         final SAMRecordCoordinateComparator comparator = new SAMRecordCoordinateComparator();
         // Assert that the reads are sorted.
@@ -19,6 +19,7 @@ import org.testng.annotations.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -58,6 +59,61 @@ public final class CollectMultipleMetricsIntegrationTest extends CommandLineProg
         validateInsertSizeMetrics(outBase, expectedInsertSizeResults);
     }
 
+    @Test(dataProvider="metricsTestFiles")
+    public void testParallelCollectors(
+            final String fileName,
+            final String referenceName,
+            final String expectedInsertSizeResults) throws IOException {
+
+        ArgumentsBuilder args = new ArgumentsBuilder();
+        String outBase = setupMultipleCollector(args, fileName, referenceName);
+
+        args.add("--PROGRAM");
+        args.add("CollectInsertSizeMetrics");
+        args.add("--PARALLEL_COLLECTORS");
+        args.add("true");
+
+        this.runCommandLine(args.getArgsArray());
+
+        validateInsertSizeMetrics(outBase, expectedInsertSizeResults);
+    }
+
+    @DataProvider(name="parallelTestFiles")
+    public Object[][] parallelTestFiles() {
+        return new Object[][] {
+                {"insert_size_metrics_test.sam"},
+                {"insert_size_metrics_test.bam"},
+        };
+    }
+
+    // Runs every program, with a reference, so that the collectors share the records and the reference bases
+    // they're handed, and checks that each of them writes the same metrics as when they run serially.
+    @Test(dataProvider="parallelTestFiles")
+    public void testAllProgramsInParallelMatchSerial(final String fileName) throws IOException {
+        final File serialDir = runAllPrograms(fileName, false);
+        final File parallelDir = runAllPrograms(fileName, true);
+
+        // the charts aren't compared, just the metrics
+        final File[] serialOutputs = serialDir.listFiles((dir, name) -> !name.endsWith(".pdf"));
+        Assert.assertEquals(serialOutputs.length, CollectMultipleMetrics.Program.values().length);
+        for (final File serialOutput : serialOutputs) {
+            IntegrationTestSpec.assertEqualTextFiles(new File(parallelDir, serialOutput.getName()), serialOutput, "#");
+        }
+    }
+
+    // returns the directory holding the outputs
+    private File runAllPrograms(final String fileName, final boolean parallel) throws IOException {
+        final ArgumentsBuilder args = new ArgumentsBuilder();
+        final String outBase = setupMultipleCollector(args, fileName, hg19_chr1_1M_Reference);
+        // PROGRAM defaults to all of them
+        args.add("--PARALLEL_COLLECTORS");
+        args.add(Boolean.toString(parallel));
+
+        this.runCommandLine(args.getArgsArray());
+
+        return new File(outBase).getParentFile();
+    }
+
     private String setupMultipleCollector(
             final ArgumentsBuilder args,
             final String fileName,
@@ -138,4 +194,37 @@ public final class CollectMultipleMetricsIntegrationTest extends CommandLineProg
         }
     }
 
+    @Test(dataProvider="metricsTestFiles")
+    public void testCustomCollectorsInParallel(
+            final String fileName,
+            final String referenceName,
+            final String expectedInsertSizeResults) throws IOException {
+        final TestCustomCollector testCollector1 = new TestCustomCollector();
+        final TestCustomCollector testCollector2 = new TestCustomCollector();
+
+        ArgumentsBuilder args = new ArgumentsBuilder();
+        setupMultipleCollector(args, fileName, referenceName);
+        args.add("--PARALLEL_COLLECTORS");
+        args.add("true");
+
+        CollectMultipleMetrics multipleCollectorTool = new CollectMultipleMetrics();
+        multipleCollectorTool.setProgramsToRun(Arrays.asList(outbase -> testCollector1, outbase -> testCollector2));
+        multipleCollectorTool.instanceMain(args.getArgsArray());
+
+        Assert.assertEquals(testCollector1.count, 52L);
+        Assert.assertEquals(testCollector2.count, 52L);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testParallelCollectorFailure() throws IOException {
+        final SinglePassSamProgram failingCollector = new TestCustomCollector() {
+            @Override
+            protected void acceptRead(final SAMRecord rec, final ReferenceSequence ref) {
+                if (++count == 10) throw new IllegalStateException("collector failed");
+            }
+        };
+        SinglePassSamProgram.makeItSo(new File(TEST_DATA_DIR, "insert_size_metrics_test.bam"), null, true, 0,
+                Arrays.asList(new TestCustomCollector(), failingCollector), true);
+    }
+
 }
@@ -4,6 +4,7 @@ import htsjdk.samtools.util.SequenceUtil;
 import org.broadinstitute.hellbender.CommandLineProgramTest;
 import org.broadinstitute.hellbender.utils.test.BaseTest;
 import org.broadinstitute.hellbender.utils.test.IntegrationTestSpec;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.File;
@@ -12,8 +13,13 @@ import java.io.IOException;
 public final class CollectWgsMetricsIntegrationTest extends CommandLineProgramTest {
     private static final File TEST_DATA_DIR = new File(getTestDataDir(), "picard/analysis/directed/CollectWgsMetrics");
 
-    @Test
-    public void test() throws IOException {
+    @DataProvider(name = "algorithms")
+    public Object[][] algorithms() {
+        return new Object[][] { { false }, { true } };
+    }
+
+    @Test(dataProvider = "algorithms")
+    public void test( final boolean useFastAlgorithm ) throws IOException {
         final File input = new File(NA12878_20_21_WGS_bam);
         final File refFile = new File(b37_reference_20_21);
         final File expectedFile = new File(TEST_DATA_DIR, "CollectWgsMetrics.txt");
@@ -24,12 +30,32 @@ public final class CollectWgsMetricsIntegrationTest extends CommandLineProgramTe
                 "--reference", refFile.getAbsolutePath(),
                 "--VALIDATION_STRINGENCY", "LENIENT",
                 "--STOP_AFTER", "10000000",
-                "--INCLUDE_BQ_HISTOGRAM", "TRUE"
+                "--INCLUDE_BQ_HISTOGRAM", "TRUE",
+                "--USE_FAST_ALGORITHM", Boolean.toString(useFastAlgorithm)
         };
         runCommandLine(args);
         IntegrationTestSpec.assertEqualTextFiles(outfile, expectedFile, "#");
     }
 
+    @Test
+    public void testShardedMatchesSerial() throws IOException {
+        final File input = new File(getTestDataDir(), "picard/analysis/directed/CollectTargetedPcrMetrics/microbam.bam");
+        final File refFile = new File(b37_reference_20_21);
+        final File serialOut = BaseTest.createTempFile("testCollectWgsMetrics.serial", ".metrics");
+        final File shardedOut = BaseTest.createTempFile("testCollectWgsMetrics.sharded", ".metrics");
+        for (final String[] run : new String[][]{ { serialOut.getAbsolutePath(), "1" }, { shardedOut.getAbsolutePath(), "4" } }) {
+            runCommandLine(new String[]{
+                    "--input", input.getAbsolutePath(),
+                    "--output", run[0],
+                    "--reference", refFile.getAbsolutePath(),
+                    "--INCLUDE_BQ_HISTOGRAM", "TRUE",
+                    "--USE_FAST_ALGORITHM", "TRUE",
+                    "--NUM_THREADS", run[1]
+            });
+        }
+        IntegrationTestSpec.assertEqualTextFiles(shardedOut, serialOut, "#");
+    }
+
     @Test(expectedExceptions = SequenceUtil.SequenceListsDifferException.class)  //regression test for https://github.com/broadinstitute/gatk/issues/918
     public void testDictionaryValidation() {
         final File input = new File(TEST_DATA_DIR, "exome-read-counts-NA12878.bam");
@@ -265,5 +265,61 @@ public final class MarkDuplicatesIntegrationTest extends AbstractMarkDuplicatesC
         };
     }
 
+    @DataProvider(name = "testPackedReadEndsDataProvider")
+    public Object[][] testPackedReadEndsDataProvider() {
+        final List<Object[]> tests = new ArrayList<>();
+        for (final String sam : Arrays.asList("optical_dupes.sam", "markDups.test2reads.bam",
+                "example.chr1.1-1K.markedDups.bam", "example.chr1.1-1K.unmarkedDups.bam")) {
+            // everything in memory, and then with a budget so small that most of the read ends spill to disk
+            tests.add(new Object[]{new File(TEST_DATA_DIR, sam), 1, false});
+            tests.add(new Object[]{new File(TEST_DATA_DIR, sam), 4, true});
+        }
+        return tests.toArray(new Object[tests.size()][]);
+    }
+
+    @Test(dataProvider = "testPackedReadEndsDataProvider")
+    public void testPackedReadEndsMatchObjects(final File sam, final int numThreads, final boolean spill) {
+        final File outputDir = IOUtil.createTempDir(TEST_BASE_NAME + ".", ".tmp");
+        outputDir.deleteOnExit();
+        final File expectedSam = new File(outputDir, TEST_BASE_NAME + ".sam");
+        final File actualSam = new File(outputDir, TEST_BASE_NAME + ".packed.sam");
+
+        final MarkDuplicates expected = runMarkDuplicates(sam, expectedSam, false, 1, false);
+        final MarkDuplicates actual = runMarkDuplicates(sam, actualSam, true, numThreads, spill);
+        Assert.assertEquals(getDuplicateFlags(actualSam), getDuplicateFlags(expectedSam));
+        Assert.assertEquals(actual.numOpticalDuplicates(), expected.numOpticalDuplicates());
+    }
+
+    private static MarkDuplicates runMarkDuplicates(final File sam, final File outputSam, final boolean packed,
+                                                    final int numThreads, final boolean spill) {
+        outputSam.deleteOnExit();
+        final File metricsFile = new File(outputSam.getParentFile(), outputSam.getName() + ".duplicate_metrics");
+        metricsFile.deleteOnExit();
+        final MarkDuplicates markDuplicates = new MarkDuplicates();
+        markDuplicates.setupOpticalDuplicateFinder();
+        markDuplicates.INPUT = CollectionUtil.makeList(sam);
+        markDuplicates.OUTPUT = outputSam;
+        markDuplicates.METRICS_FILE = metricsFile;
+        markDuplicates.TMP_DIR = CollectionUtil.makeList(outputSam.getParentFile());
+        markDuplicates.USE_PACKED_READ_ENDS = packed;
+        markDuplicates.NUM_THREADS = numThreads;
+        if (spill) {
+            // room for about 20 read ends
+            markDuplicates.SORTING_COLLECTION_SIZE_RATIO = 20.0 * PackedReadEndsCollection.SIZE_OF / Runtime.getRuntime().maxMemory();
+        }
+        // Needed to suppress calling CommandLineProgram.getVersion(), which doesn't work for code not in a jar
+        markDuplicates.PROGRAM_RECORD_ID = null;
+        Assert.assertEquals(markDuplicates.doWork(), null);
+        return markDuplicates;
+    }
 
+    private static List<Boolean> getDuplicateFlags(final File sam) {
+        final SamReader reader = SamReaderFactory.makeDefault().open(sam);
+        final List<Boolean> duplicateFlags = new ArrayList<>();
+        for (final SAMRecord record : reader) {
+            duplicateFlags.add(record.getDuplicateReadFlag());
+        }
+        CloserUtil.close(reader);
+        return duplicateFlags;
+    }
 }
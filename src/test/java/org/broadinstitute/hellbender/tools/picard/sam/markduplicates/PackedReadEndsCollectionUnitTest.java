@@ -0,0 +1,107 @@
+package org.broadinstitute.hellbender.tools.picard.sam.markduplicates;
+
+import htsjdk.samtools.util.CollectionUtil;
+import htsjdk.samtools.util.IOUtil;
+import org.broadinstitute.hellbender.utils.read.markduplicates.ReadEndsForMarkDuplicates;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+public final class PackedReadEndsCollectionUnitTest {
+
+    /** Makes read ends with few distinct positions, so that there are plenty of ties, added in file order. */
+    static List<ReadEndsForMarkDuplicates> randomReadEnds(final int count, final Random random) {
+        final List<ReadEndsForMarkDuplicates> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final ReadEndsForMarkDuplicates ends = new ReadEndsForMarkDuplicates();
+            ends.libraryId = (short) random.nextInt(3);
+            ends.read1ReferenceIndex = random.nextInt(3);
+            ends.read1Coordinate = random.nextInt(40) - 5;
+            ends.orientation = (byte) random.nextInt(6);
+            if (random.nextBoolean()) {
+                ends.read2ReferenceIndex = random.nextInt(3);
+                ends.read2Coordinate = random.nextInt(40) - 5;
+                // the pair is added when its second read is seen, so its first read can come earlier in the file
+                ends.read1IndexInFile = Math.max(0, 2L * i - random.nextInt(50));
+                ends.read2IndexInFile = 2L * i;
+            } else {
+                ends.read1IndexInFile = 2L * i;
+            }
+            ends.score = (short) random.nextInt(Short.MAX_VALUE);
+            ends.readGroup = (short) (random.nextInt(5) - 1);
+            ends.tile = (short) (random.nextInt(Short.MAX_VALUE) * (random.nextBoolean() ? 1 : -1));
+            ends.x = (short) random.nextInt(1 << 16);
+            ends.y = (short) random.nextInt(1 << 16);
+            ends.orientationForOpticalDuplicates = (byte) (random.nextInt(7) - 1);
+            list.add(ends);
+        }
+        return list;
+    }
+
+    static void assertSameReadEnds(final ReadEndsForMarkDuplicates actual, final ReadEndsForMarkDuplicates expected) {
+        Assert.assertEquals(actual.libraryId, expected.libraryId);
+        Assert.assertEquals(actual.read1ReferenceIndex, expected.read1ReferenceIndex);
+        Assert.assertEquals(actual.read1Coordinate, expected.read1Coordinate);
+        Assert.assertEquals(actual.orientation, expected.orientation);
+        Assert.assertEquals(actual.read2ReferenceIndex, expected.read2ReferenceIndex);
+        Assert.assertEquals(actual.read2Coordinate, expected.read2Coordinate);
+        Assert.assertEquals(actual.read1IndexInFile, expected.read1IndexInFile);
+        Assert.assertEquals(actual.read2IndexInFile, expected.read2IndexInFile);
+        Assert.assertEquals(actual.score, expected.score);
+        Assert.assertEquals(actual.readGroup, expected.readGroup);
+        Assert.assertEquals(actual.tile, expected.tile);
+        Assert.assertEquals(actual.x, expected.x);
+        Assert.assertEquals(actual.y, expected.y);
+        Assert.assertEquals(actual.orientationForOpticalDuplicates, expected.orientationForOpticalDuplicates);
+    }
+
+    @DataProvider(name = "sortings")
+    public Object[][] sortings() {
+        return new Object[][] {
+                // count, maxRecordsInRam, numThreads
+                {0, 100, 1},
+                {1, 100, 1},
+                {1000, 5000, 1},
+                {5500, 1000, 1},
+                {5500, 1000, 4},
+                {300000, 1000000, 4},
+                {300000, 140000, 3},
+        };
+    }
+
+    @Test(dataProvider = "sortings")
+    public void testSortsLikeReadEndsMDComparator(final int count, final int maxRecordsInRam, final int numThreads) {
+        final List<ReadEndsForMarkDuplicates> readEnds = randomReadEnds(count, new Random(count));
+        final File tmpDir = IOUtil.createTempDir("packedReadEnds.", ".tmp");
+        tmpDir.deleteOnExit();
+
+        final PackedReadEndsCollection collection = new PackedReadEndsCollection(maxRecordsInRam, numThreads, CollectionUtil.makeList(tmpDir));
+        readEnds.forEach(collection::add);
+        collection.doneAdding();
+
+        final List<ReadEndsForMarkDuplicates> expected = new ArrayList<>(readEnds);
+        expected.sort(new MarkDuplicates.ReadEndsMDComparator());
+        final Iterator<ReadEndsForMarkDuplicates> actual = collection.iterator();
+        for (final ReadEndsForMarkDuplicates expectedEnds : expected) {
+            Assert.assertTrue(actual.hasNext());
+            assertSameReadEnds(actual.next(), expectedEnds);
+        }
+        Assert.assertFalse(actual.hasNext());
+
+        collection.cleanup();
+        Assert.assertEquals(tmpDir.listFiles().length, 0);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testNoAddingAfterDoneAdding() {
+        final PackedReadEndsCollection collection = new PackedReadEndsCollection(10, 1, CollectionUtil.makeList(IOUtil.getDefaultTmpDir()));
+        collection.doneAdding();
+        collection.add(new ReadEndsForMarkDuplicates());
+    }
+}
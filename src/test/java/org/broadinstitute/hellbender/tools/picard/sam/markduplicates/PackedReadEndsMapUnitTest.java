@@ -0,0 +1,47 @@
+package org.broadinstitute.hellbender.tools.picard.sam.markduplicates;
+
+import org.broadinstitute.hellbender.utils.read.markduplicates.ReadEndsForMarkDuplicates;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Random;
+
+public final class PackedReadEndsMapUnitTest {
+
+    @DataProvider(name = "budgets")
+    public Object[][] budgets() {
+        return new Object[][] {
+                // maxRecordsInRam: big enough for all, then small enough that most of them spill
+                {100000},
+                {100},
+        };
+    }
+
+    @Test(dataProvider = "budgets")
+    public void testPutAndRemove(final int maxRecordsInRam) {
+        final Random random = new Random(maxRecordsInRam);
+        final List<ReadEndsForMarkDuplicates> readEnds = PackedReadEndsCollectionUnitTest.randomReadEnds(5000, random);
+        final PackedReadEndsMap map = new PackedReadEndsMap(maxRecordsInRam, 100);
+
+        // all on one sequence, as the disk-based map wants the sequences in order; put them all in, removing a few along the way so that the probing has to skip over moved entries
+        for (int i = 0; i < readEnds.size(); i++) {
+            map.put(0, "RG:read" + i, readEnds.get(i));
+            if (i % 7 == 3) {
+                PackedReadEndsCollectionUnitTest.assertSameReadEnds(map.remove(0, "RG:read" + (i - 2)), readEnds.get(i - 2));
+            }
+        }
+        Assert.assertTrue(map.sizeInRam() <= map.size());
+        Assert.assertNull(map.remove(0, "RG:absent"));
+
+        for (int i = 0; i < readEnds.size(); i++) {
+            if (i % 7 == 1 && i + 2 < readEnds.size()) continue;
+            final ReadEndsForMarkDuplicates removed = map.remove(0, "RG:read" + i);
+            Assert.assertNotNull(removed, "read" + i);
+            PackedReadEndsCollectionUnitTest.assertSameReadEnds(removed, readEnds.get(i));
+            Assert.assertNull(map.remove(0, "RG:read" + i));
+        }
+        Assert.assertEquals(map.size(), 0);
+    }
+}
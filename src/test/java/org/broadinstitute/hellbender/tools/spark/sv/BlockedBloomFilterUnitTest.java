@@ -0,0 +1,106 @@
+package org.broadinstitute.hellbender.tools.spark.sv;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public final class BlockedBloomFilterUnitTest extends BaseTest {
+    private static final int RAND_SEED = 0xdeadf00;
+    private static final int N_KMERS = 100000;
+
+    @Test
+    void noFalseNegativesTest() {
+        final Random rng = new Random(RAND_SEED);
+        final List<SVKmer> kmers = new ArrayList<>(N_KMERS);
+        final BlockedBloomFilter filter = new BlockedBloomFilter(N_KMERS);
+        for ( int idx = 0; idx != N_KMERS; ++idx ) {
+            final SVKmer kmer = PackedSVKmerSetUnitTest.randomKmer(rng);
+            kmers.add(kmer);
+            filter.add(kmer);
+        }
+        kmers.forEach(kmer -> Assert.assertTrue(filter.mightContain(kmer)));
+        kmers.forEach(kmer -> Assert.assertTrue(filter.mightContain(kmer.getValHigh(), kmer.getValLow())));
+    }
+
+    @Test
+    void falsePositiveRateTest() {
+        final Random rng = new Random(RAND_SEED);
+        final Set<SVKmer> kmers = new HashSet<>();
+        final BlockedBloomFilter filter = new BlockedBloomFilter(N_KMERS);
+        while ( kmers.size() != N_KMERS ) {
+            final SVKmer kmer = PackedSVKmerSetUnitTest.randomKmer(rng);
+            kmers.add(kmer);
+            filter.add(kmer);
+        }
+        int nFalsePositives = 0;
+        int nTests = 0;
+        while ( nTests != N_KMERS ) {
+            final SVKmer kmer = PackedSVKmerSetUnitTest.randomKmer(rng);
+            if ( kmers.contains(kmer) ) continue;
+            nTests += 1;
+            if ( filter.mightContain(kmer) ) nFalsePositives += 1;
+        }
+        final double measuredRate = (double)nFalsePositives / nTests;
+        final double estimatedRate = filter.getEstimatedFalsePositiveRate();
+        Assert.assertTrue(estimatedRate < .02);
+        Assert.assertEquals(measuredRate, estimatedRate, .005);
+    }
+
+    @Test
+    void stringsTest() {
+        final BlockedBloomFilter filter = new BlockedBloomFilter(N_KMERS);
+        for ( int idx = 0; idx != N_KMERS; idx += 2 ) {
+            filter.add("read" + idx);
+        }
+        int nFalsePositives = 0;
+        for ( int idx = 0; idx != N_KMERS; idx += 2 ) {
+            Assert.assertTrue(filter.mightContain("read" + idx));
+            if ( filter.mightContain("read" + (idx + 1)) ) nFalsePositives += 1;
+        }
+        Assert.assertTrue(nFalsePositives < .01 * N_KMERS);
+    }
+
+    @Test
+    void emptyFilterTest() {
+        final BlockedBloomFilter filter = new BlockedBloomFilter(0);
+        Assert.assertFalse(filter.mightContain("read"));
+        Assert.assertEquals(filter.getEstimatedFalsePositiveRate(), 0.);
+    }
+
+    @Test
+    void serializationTest() {
+        final Random rng = new Random(RAND_SEED);
+        final List<SVKmer> kmers = new ArrayList<>(N_KMERS);
+        final BlockedBloomFilter filter = new BlockedBloomFilter(N_KMERS);
+        for ( int idx = 0; idx != N_KMERS; ++idx ) {
+            final SVKmer kmer = PackedSVKmerSetUnitTest.randomKmer(rng);
+            kmers.add(kmer);
+            filter.add(kmer);
+        }
+
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final Output out = new Output(bos);
+        final Kryo kryo = new Kryo();
+        kryo.writeClassAndObject(out, filter);
+        out.flush();
+
+        final ByteArrayInputStream bis = new ByteArrayInputStream(bos.toByteArray());
+        final Input in = new Input(bis);
+        final BlockedBloomFilter filter2 = (BlockedBloomFilter)kryo.readClassAndObject(in);
+
+        Assert.assertEquals(filter2.getNBytes(), filter.getNBytes());
+        Assert.assertEquals(filter2.getEstimatedFalsePositiveRate(), filter.getEstimatedFalsePositiveRate());
+        kmers.forEach(kmer -> Assert.assertTrue(filter2.mightContain(kmer)));
+    }
+}
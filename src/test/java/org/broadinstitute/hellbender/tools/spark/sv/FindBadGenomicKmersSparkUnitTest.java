@@ -9,10 +9,12 @@ import org.broadinstitute.hellbender.engine.datasources.ReferenceMultiSource;
 import org.broadinstitute.hellbender.engine.datasources.ReferenceWindowFunctions;
 import org.broadinstitute.hellbender.engine.spark.SparkContextFactory;
 import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.utils.BaseUtils;
 import org.broadinstitute.hellbender.utils.SimpleInterval;
 import org.broadinstitute.hellbender.utils.test.BaseTest;
 import org.testng.Assert;
 import org.testng.annotations.Test;
+import scala.Tuple2;
 
 import java.io.*;
 import java.util.*;
@@ -48,6 +50,54 @@ public class FindBadGenomicKmersSparkUnitTest extends BaseTest {
         Assert.assertEquals(badKmers.get(0), SVKmerizer.toKmer(polyA));
     }
 
+    @Test
+    public void superKmersTest() {
+        final int nPartitions = 7;
+        final String seq = "ACGTTGCATTAGCCGATAGGCTAANNCAGGATTACAGGATTTACAGGCCATTAGGCAGTACCAGGTAGACCATTTGACNGATACCAGATAGGACATAGACA";
+        final List<Tuple2<Integer, byte[]>> superKmers =
+                FindBadGenomicKmersSpark.getSuperKmers(seq.getBytes(), KMER_SIZE, nPartitions);
+
+        // each valid kmer must be in exactly one super-kmer, and the super-kmers mustn't have any other kmers
+        final List<SVKmer> expectedKmers = new ArrayList<>();
+        new SVKmerizer(seq, KMER_SIZE).forEachRemaining(expectedKmers::add);
+        final List<SVKmer> actualKmers = new ArrayList<>();
+        final Map<SVKmer, Integer> kmerPartitions = new HashMap<>();
+        for ( final Tuple2<Integer, byte[]> superKmer : superKmers ) {
+            Assert.assertTrue(superKmer._1 >= 0 && superKmer._1 < nPartitions);
+            final SVKmerizer kmerizer = new SVKmerizer(superKmer._2, KMER_SIZE);
+            while ( kmerizer.hasNext() ) {
+                final SVKmer kmer = kmerizer.next();
+                actualKmers.add(kmer);
+                kmerPartitions.put(kmer.canonical(KMER_SIZE), superKmer._1);
+            }
+        }
+        Assert.assertEquals(actualKmers, expectedKmers);
+
+        // the reverse-complemented sequence puts each canonical kmer into the same partition
+        final String rcSeq = new String(BaseUtils.simpleReverseComplement(seq.getBytes()));
+        for ( final Tuple2<Integer, byte[]> superKmer :
+                FindBadGenomicKmersSpark.getSuperKmers(rcSeq.getBytes(), KMER_SIZE, nPartitions) ) {
+            final SVKmerizer kmerizer = new SVKmerizer(superKmer._2, KMER_SIZE);
+            while ( kmerizer.hasNext() ) {
+                Assert.assertEquals(kmerPartitions.get(kmerizer.next().canonical(KMER_SIZE)), superKmer._1);
+            }
+        }
+    }
+
+    @Test(groups = "spark")
+    public void spillingTest() throws IOException {
+        final JavaSparkContext ctx = SparkContextFactory.getTestSparkContext();
+        final ReferenceMultiSource ref = new ReferenceMultiSource((PipelineOptions)null,
+                REFERENCE_FILE_NAME,
+                ReferenceWindowFunctions.IDENTITY_FUNCTION);
+        final Set<SVKmer> expected =
+                new HashSet<>(FindBadGenomicKmersSpark.findBadGenomicKmers(ctx, KMER_SIZE, 0., ref, null, null));
+        final List<SVKmer> spilled =
+                FindBadGenomicKmersSpark.findBadGenomicKmers(ctx, KMER_SIZE, 0., ref, null, null, 1000);
+        Assert.assertEquals(spilled.size(), expected.size());
+        Assert.assertEquals(new HashSet<>(spilled), expected);
+    }
+
     @Test(groups = "spark")
     public void miniRefTest() throws IOException {
         final JavaSparkContext ctx = SparkContextFactory.getTestSparkContext();
@@ -1,6 +1,8 @@
 package org.broadinstitute.hellbender.tools.spark.sv;
 
 import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMReadGroupRecord;
+import org.apache.spark.SparkConf;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.apache.spark.broadcast.Broadcast;
@@ -11,6 +13,7 @@ import org.broadinstitute.hellbender.tools.spark.utils.HopscotchUniqueMultiMap;
 import org.broadinstitute.hellbender.tools.spark.utils.HopscotchSet;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.broadinstitute.hellbender.utils.test.SparkTestUtils;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 import scala.Tuple2;
@@ -91,11 +94,8 @@ public final class FindBreakpointEvidenceSparkUnitTest extends BaseTest {
     @Test(groups = "spark")
     public void getAssemblyQNamesTest() throws FileNotFoundException {
         final Set<SVKmer> expectedKmers = SVUtils.readKmersFile(params.kSize, kmersFile, null);
-        final HopscotchUniqueMultiMap<SVKmer, Integer, FindBreakpointEvidenceSpark.KmerAndInterval> kmerAndIntervalSet =
-                new HopscotchUniqueMultiMap<>(expectedKmers.size());
-        expectedKmers.stream().
-                map(kmer -> new FindBreakpointEvidenceSpark.KmerAndInterval(kmer, 0))
-                .forEach(kmerAndIntervalSet::add);
+        final PackedSVKmerIntervalMultiMap kmerAndIntervalSet = new PackedSVKmerIntervalMultiMap(expectedKmers.size());
+        expectedKmers.forEach(kmer -> kmerAndIntervalSet.add(kmer, 0));
         final Set<String> actualAssemblyQNames = new HashSet<>();
         FindBreakpointEvidenceSpark.getAssemblyQNames(params, ctx, kmerAndIntervalSet, reads)
                 .stream()
@@ -113,7 +113,85 @@ public final class FindBreakpointEvidenceSparkUnitTest extends BaseTest {
                 .forEach(qNameMultiMap::add);
         final String expectedFile = fastqFile;
         FindBreakpointEvidenceSpark.generateFastqs(ctx, qNameMultiMap, reads, 2, true,
-                intervalAndFastqBytes -> compareFastqs(intervalAndFastqBytes, expectedFile));
+                (fastqsByInterval, nIntervals) ->
+                        fastqsByInterval
+                                .map(intervalAndFastqBytes -> compareFastqs(intervalAndFastqBytes, expectedFile))
+                                .collect());
+    }
+
+    @Test(groups = "spark")
+    public void projectedReadsTest() {
+        final JavaRDD<SVReadProjection> projections = SVReadProjection.projectAndCache(reads, header);
+        final JavaRDD<GATKRead> projectedReads = SVReadProjection.toReads(projections, header);
+        final List<GATKRead> expectedReads = reads.collect();
+        final List<GATKRead> actualReads = projectedReads.collect();
+        Assert.assertEquals(actualReads.size(), expectedReads.size());
+        final Map<String, Integer> contigIdMap = readMetadataExpected.getContigNameMap();
+        final String[] contigNames = new String[contigIdMap.size()];
+        contigIdMap.forEach((name, id) -> contigNames[id] = name);
+        final String[] readGroupIds =
+                header.getReadGroups().stream().map(SAMReadGroupRecord::getReadGroupId).toArray(String[]::new);
+        final Map<String, Integer> readGroupIdMap = new HashMap<>();
+        for ( int idx = 0; idx != readGroupIds.length; ++idx ) readGroupIdMap.put(readGroupIds[idx], idx);
+        for ( int idx = 0; idx != expectedReads.size(); ++idx ) {
+            final GATKRead expected = expectedReads.get(idx);
+            assertSameRead(actualReads.get(idx), expected);
+            final SVReadProjection roundTripped =
+                    SparkTestUtils.roundTripInKryo(new SVReadProjection(expected, contigIdMap, readGroupIdMap),
+                                                    SVReadProjection.class, new SparkConf());
+            assertSameRead(roundTripped.toRead(contigNames, readGroupIds), expected);
+        }
+
+        // the evidence found in the projected reads must print the same, as that's what goes to the evidence dir
+        final ReadClassifier readClassifier = new ReadClassifier(readMetadataExpected);
+        for ( int idx = 0; idx != expectedReads.size(); ++idx ) {
+            Assert.assertEquals(getEvidenceText(readClassifier, actualReads.get(idx)),
+                                getEvidenceText(readClassifier, expectedReads.get(idx)));
+        }
+
+        final JavaRDD<GATKRead> projectedMappedReads = projectedReads.filter(read -> !read.isUnmapped());
+        Assert.assertEquals(expectedIntervalList,
+                FindBreakpointEvidenceSpark.getIntervals(params, broadcastMetadata, header, projectedMappedReads, locations));
+        final Set<String> actualQNames = new HashSet<>();
+        FindBreakpointEvidenceSpark.getQNames(params, ctx, broadcastMetadata, expectedIntervalList, projectedMappedReads)
+                .stream()
+                .map(qNameAndInterval -> qNameAndInterval.getKey())
+                .forEach(actualQNames::add);
+        Assert.assertEquals(expectedQNames, actualQNames);
+        projections.unpersist();
+    }
+
+    private static void assertSameRead( final GATKRead actual, final GATKRead expected ) {
+        Assert.assertEquals(actual.getName(), expected.getName());
+        Assert.assertEquals(actual.isUnmapped(), expected.isUnmapped());
+        Assert.assertEquals(actual.getContig(), expected.getContig());
+        Assert.assertEquals(actual.getStart(), expected.getStart());
+        Assert.assertEquals(actual.getCigar(), expected.getCigar());
+        Assert.assertEquals(actual.getMappingQuality(), expected.getMappingQuality());
+        Assert.assertEquals(actual.isReverseStrand(), expected.isReverseStrand());
+        Assert.assertEquals(actual.isPaired(), expected.isPaired());
+        if ( expected.isPaired() ) {
+            Assert.assertEquals(actual.isFirstOfPair(), expected.isFirstOfPair());
+            Assert.assertEquals(actual.mateIsUnmapped(), expected.mateIsUnmapped());
+            Assert.assertEquals(actual.getMateContig(), expected.getMateContig());
+            Assert.assertEquals(actual.getMateStart(), expected.getMateStart());
+            Assert.assertEquals(actual.mateIsReverseStrand(), expected.mateIsReverseStrand());
+        }
+        Assert.assertEquals(actual.getFragmentLength(), expected.getFragmentLength());
+        Assert.assertEquals(actual.isSecondaryAlignment(), expected.isSecondaryAlignment());
+        Assert.assertEquals(actual.isSupplementaryAlignment(), expected.isSupplementaryAlignment());
+        Assert.assertEquals(actual.isDuplicate(), expected.isDuplicate());
+        Assert.assertEquals(actual.failsVendorQualityCheck(), expected.failsVendorQualityCheck());
+        Assert.assertEquals(actual.getReadGroup(), expected.getReadGroup());
+        Assert.assertEquals(actual.getAttributeAsString("SA"), expected.getAttributeAsString("SA"));
+        Assert.assertEquals(actual.getBases(), expected.getBases());
+        Assert.assertEquals(actual.getBaseQualities(), expected.getBaseQualities());
+    }
+
+    private static List<String> getEvidenceText( final ReadClassifier readClassifier, final GATKRead read ) {
+        final List<String> evidenceText = new ArrayList<>();
+        readClassifier.apply(read).forEachRemaining(evidence -> evidenceText.add(evidence.toString()));
+        return evidenceText;
     }
 
     private static Tuple2<Integer, String> compareFastqs(
@@ -0,0 +1,70 @@
+package org.broadinstitute.hellbender.tools.spark.sv;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+
+public final class PackedSVKmerIntervalMultiMapUnitTest extends BaseTest {
+    private static final int RAND_SEED = 0xdeadf00;
+    private static final int N_KMERS = 5000;
+    private static final int N_INTERVALS = 7;
+
+    @Test
+    void multipleIntervalsTest() {
+        final PackedSVKmerIntervalMultiMap kmerMultiMap = new PackedSVKmerIntervalMultiMap();
+        final SVKmer kmer = SVKmerizer.toKmer("ACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACG");
+        Assert.assertTrue(kmerMultiMap.add(kmer, 1));
+        Assert.assertTrue(kmerMultiMap.add(kmer, 2));
+        Assert.assertFalse(kmerMultiMap.add(new SVKmer(kmer), 1));
+        Assert.assertEquals(kmerMultiMap.size(), 2);
+        Assert.assertEquals(intervalIds(kmerMultiMap, kmer), new HashSet<>(Arrays.asList(1, 2)));
+        Assert.assertTrue(kmerMultiMap.containsKey(kmer));
+        Assert.assertFalse(kmerMultiMap.containsKey(new SVKmer(51)));
+        Assert.assertTrue(intervalIds(kmerMultiMap, new SVKmer(51)).isEmpty());
+    }
+
+    @Test
+    void loadAndSerializeTest() {
+        final Random rng = new Random(RAND_SEED);
+        final Map<SVKmer, Set<Integer>> expected = new HashMap<>();
+        final PackedSVKmerIntervalMultiMap kmerMultiMap = new PackedSVKmerIntervalMultiMap();
+        int nEntries = 0;
+        for ( int idx = 0; idx != N_KMERS; ++idx ) {
+            final SVKmer kmer = PackedSVKmerSetUnitTest.randomKmer(rng);
+            final int nIntervals = 1 + rng.nextInt(3);
+            for ( int intervalNo = 0; intervalNo != nIntervals; ++intervalNo ) {
+                final int intervalId = rng.nextInt(N_INTERVALS);
+                final boolean isNew = expected.computeIfAbsent(kmer, k -> new HashSet<>()).add(intervalId);
+                Assert.assertEquals(kmerMultiMap.add(kmer, intervalId), isNew);
+                if ( isNew ) nEntries += 1;
+            }
+        }
+        Assert.assertEquals(kmerMultiMap.size(), nEntries);
+        expected.forEach((kmer, ids) -> Assert.assertEquals(intervalIds(kmerMultiMap, kmer), ids));
+
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final Output out = new Output(bos);
+        final Kryo kryo = new Kryo();
+        kryo.writeClassAndObject(out, kmerMultiMap);
+        out.flush();
+
+        final ByteArrayInputStream bis = new ByteArrayInputStream(bos.toByteArray());
+        final Input in = new Input(bis);
+        final PackedSVKmerIntervalMultiMap kmerMultiMap2 = (PackedSVKmerIntervalMultiMap)kryo.readClassAndObject(in);
+        Assert.assertEquals(kmerMultiMap2.size(), nEntries);
+        expected.forEach((kmer, ids) -> Assert.assertEquals(intervalIds(kmerMultiMap2, kmer), ids));
+    }
+
+    private static Set<Integer> intervalIds( final PackedSVKmerIntervalMultiMap kmerMultiMap, final SVKmer kmer ) {
+        final Set<Integer> ids = new HashSet<>();
+        kmerMultiMap.forEachIntervalId(kmer, ids::add);
+        return ids;
+    }
+}
@@ -0,0 +1,88 @@
+package org.broadinstitute.hellbender.tools.spark.sv;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+public final class PackedSVKmerSetUnitTest extends BaseTest {
+    private static final int RAND_SEED = 0xdeadf00;
+    private static final int N_KMERS = 10000;
+    private static final int K = 51;
+
+    static SVKmer randomKmer( final Random rng ) {
+        final long mask = (1L << K) - 1L;
+        return new SVKmer(rng.nextLong() & mask, rng.nextLong() & mask);
+    }
+
+    @Test
+    void noDupsTest() {
+        final PackedSVKmerSet kmerSet = new PackedSVKmerSet();
+        final SVKmer kmer = SVKmerizer.toKmer("ACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACG");
+        Assert.assertTrue(kmerSet.add(kmer));
+        Assert.assertFalse(kmerSet.add(new SVKmer(kmer)));
+        Assert.assertEquals(kmerSet.size(), 1);
+        Assert.assertTrue(kmerSet.contains(kmer));
+        Assert.assertFalse(kmerSet.contains(kmer.reverseComplement(K)));
+    }
+
+    @Test
+    void loadRandomKmersTest() {
+        final Random rng = new Random(RAND_SEED);
+        final Set<SVKmer> expected = new HashSet<>();
+        final PackedSVKmerSet kmerSet = new PackedSVKmerSet(); // starts small, so it'll resize a bunch of times
+        for ( int idx = 0; idx != N_KMERS; ++idx ) {
+            final SVKmer kmer = randomKmer(rng);
+            Assert.assertEquals(kmerSet.add(kmer), expected.add(kmer));
+        }
+        Assert.assertEquals(kmerSet.size(), expected.size());
+        expected.forEach(kmer -> Assert.assertTrue(kmerSet.contains(kmer)));
+        for ( int idx = 0; idx != N_KMERS; ++idx ) {
+            final SVKmer kmer = randomKmer(rng);
+            Assert.assertEquals(kmerSet.contains(kmer), expected.contains(kmer));
+        }
+    }
+
+    @Test
+    void serializationTest() {
+        final Random rng = new Random(RAND_SEED);
+        final Set<SVKmer> expected = new HashSet<>();
+        for ( int idx = 0; idx != N_KMERS; ++idx ) {
+            expected.add(randomKmer(rng));
+        }
+        final PackedSVKmerSet kmerSet = new PackedSVKmerSet(expected);
+
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final Output out = new Output(bos);
+        final Kryo kryo = new Kryo();
+        kryo.writeClassAndObject(out, kmerSet);
+        out.flush();
+
+        final ByteArrayInputStream bis = new ByteArrayInputStream(bos.toByteArray());
+        final Input in = new Input(bis);
+        final PackedSVKmerSet kmerSet2 = (PackedSVKmerSet)kryo.readClassAndObject(in);
+
+        Assert.assertEquals(kmerSet2.size(), expected.size());
+        expected.forEach(kmer -> Assert.assertTrue(kmerSet2.contains(kmer)));
+        Assert.assertFalse(kmerSet2.contains(randomKmer(rng)));
+    }
+
+    @Test
+    void capacityTest() {
+        Assert.assertEquals(PackedSVKmerSet.doubleCapacity(PackedSVKmerSet.MAX_CAPACITY/2), PackedSVKmerSet.MAX_CAPACITY);
+        Assert.assertEquals(PackedSVKmerSet.capacityFor(PackedSVKmerSet.maxLoad(PackedSVKmerSet.MAX_CAPACITY)), PackedSVKmerSet.MAX_CAPACITY);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    void tooBigTest() {
+        PackedSVKmerSet.doubleCapacity(PackedSVKmerSet.MAX_CAPACITY);
+    }
+}
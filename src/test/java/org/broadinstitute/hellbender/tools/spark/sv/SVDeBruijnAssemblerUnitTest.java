@@ -0,0 +1,119 @@
+package org.broadinstitute.hellbender.tools.spark.sv;
+
+import org.apache.commons.io.FileUtils;
+import org.broadinstitute.hellbender.tools.spark.sv.RunSGAViaProcessBuilderOnSpark.ContigsCollection;
+import org.broadinstitute.hellbender.utils.BaseUtils;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import scala.Tuple2;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public final class SVDeBruijnAssemblerUnitTest extends BaseTest {
+    private static final int RAND_SEED = 0xdeadf00;
+    private static final int READ_LENGTH = 101;
+    private static final File TEST_DATA_DIR =
+            new File("src/test/resources/org/broadinstitute/hellbender/tools/spark/sv/RunSGAViaProcessBuilderOnSpark/");
+
+    @Test
+    void tiledReadsTest() {
+        final String seq = randomSequence(new Random(RAND_SEED), 600);
+        final ContigsCollection contigs = new SVDeBruijnAssembler().assemble(tile(seq));
+        Assert.assertEquals(contigs.getContents().size(), 1);
+        final String contig = contigs.getContents().get(0)._2().toString();
+        Assert.assertTrue(contig.equals(seq) || contig.equals(reverseComplement(seq)));
+        Assert.assertEquals(contigs.getContents().get(0)._1().toString(), ">contig-0 600 0");
+    }
+
+    @Test
+    void fastqRecordsTest() {
+        final String seq = randomSequence(new Random(RAND_SEED), 600);
+        final List<byte[]> fastqRecords = new ArrayList<>();
+        int readNo = 0;
+        for ( final byte[] read : tile(seq) ) {
+            final char[] quals = new char[read.length];
+            Arrays.fill(quals, 'I');
+            fastqRecords.add(("@read" + readNo++ + "\n" + new String(read) + "\n+\n" + new String(quals) + "\n").getBytes());
+        }
+        final ContigsCollection contigs = new SVDeBruijnAssembler().assembleFastqRecords(fastqRecords);
+        Assert.assertEquals(contigs.toPackedFasta(), new SVDeBruijnAssembler().assemble(tile(seq)).toPackedFasta());
+    }
+
+    @Test
+    void errorsTest() {
+        final String seq = randomSequence(new Random(RAND_SEED), 600);
+        final List<byte[]> reads = tile(seq);
+
+        // a sequencing error seen once is dropped, and one seen twice near the end of a read makes a tip
+        final byte[] errorRead = seq.substring(0, READ_LENGTH).getBytes();
+        errorRead[READ_LENGTH - 10] = (byte)(errorRead[READ_LENGTH - 10] == 'A' ? 'C' : 'A');
+        reads.add(errorRead);
+        reads.add(errorRead.clone());
+        final byte[] singleErrorRead = seq.substring(200, 200 + READ_LENGTH).getBytes();
+        singleErrorRead[50] = (byte)(singleErrorRead[50] == 'A' ? 'C' : 'A');
+        reads.add(singleErrorRead);
+
+        final ContigsCollection contigs = new SVDeBruijnAssembler().assemble(reads);
+        Assert.assertEquals(contigs.getContents().size(), 1);
+        final String contig = contigs.getContents().get(0)._2().toString();
+        Assert.assertTrue(contig.equals(seq) || contig.equals(reverseComplement(seq)));
+    }
+
+    @Test
+    void sgaComparisonTest() throws IOException {
+        final String fastq = FileUtils.readFileToString(new File(TEST_DATA_DIR, "4.raw.fastq"), StandardCharsets.UTF_8);
+        final ContigsCollection contigs = new SVDeBruijnAssembler().assembleFastq(fastq);
+        final ContigsCollection sgaContigs = new ContigsCollection(
+                FileUtils.readLines(new File(TEST_DATA_DIR, "4.raw.pp.ec.filter.pass.merged.rmdup-contigs.fa"),
+                                    StandardCharsets.UTF_8));
+
+        // most of the kmers in SGA's long contigs should be in our contigs, too
+        final int kSize = SVDeBruijnAssembler.DEFAULT_KMER_SIZE;
+        final Set<SVKmer> kmers = new HashSet<>();
+        for ( final Tuple2<ContigsCollection.ContigID, ContigsCollection.ContigSequence> contig : contigs.getContents() ) {
+            new SVKmerizer(contig._2().toString(), kSize).forEachRemaining(kmer -> kmers.add(kmer.canonical(kSize)));
+        }
+        int nSGAKmers = 0;
+        int nFound = 0;
+        for ( final Tuple2<ContigsCollection.ContigID, ContigsCollection.ContigSequence> contig : sgaContigs.getContents() ) {
+            if ( contig._2().toString().length() < 1000 ) continue;
+            final SVKmerizer kmerizer = new SVKmerizer(contig._2().toString(), kSize);
+            while ( kmerizer.hasNext() ) {
+                nSGAKmers += 1;
+                if ( kmers.contains(kmerizer.next().canonical(kSize)) ) nFound += 1;
+            }
+        }
+        Assert.assertTrue(nFound >= .9*nSGAKmers);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    void evenKTest() {
+        new SVDeBruijnAssembler(50, 2, 0, 100);
+    }
+
+    private static List<byte[]> tile( final String seq ) {
+        final List<byte[]> reads = new ArrayList<>();
+        for ( int start = 0; start + READ_LENGTH <= seq.length(); start += 7 ) {
+            final String read = seq.substring(start, start + READ_LENGTH);
+            reads.add(read.getBytes());
+            reads.add(reverseComplement(read).getBytes());
+        }
+        reads.add(seq.substring(seq.length() - READ_LENGTH).getBytes());
+        reads.add(seq.substring(seq.length() - READ_LENGTH).getBytes());
+        return reads;
+    }
+
+    private static String randomSequence( final Random rng, final int length ) {
+        final StringBuilder sb = new StringBuilder(length);
+        for ( int idx = 0; idx != length; ++idx ) sb.append(BaseUtils.BASE_CHARS[rng.nextInt(4)]);
+        return sb.toString();
+    }
+
+    private static String reverseComplement( final String seq ) {
+        return new String(BaseUtils.simpleReverseComplement(seq.getBytes()));
+    }
+}
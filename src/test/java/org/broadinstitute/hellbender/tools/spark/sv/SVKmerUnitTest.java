@@ -5,6 +5,10 @@ import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 /**
  * Unit tests for SVKmer and SVKmerizer.
  */
@@ -122,4 +126,42 @@ public class SVKmerUnitTest extends BaseTest {
         Assert.assertEquals(kmerizer.next(), SVKmerizer.toKmer("TTTTT"));
         Assert.assertTrue(!kmerizer.hasNext());
     }
+
+    @Test
+    public void testCanonicalKmerCallback() {
+        final Random rng = new Random(0xdeadf00);
+        final char[] bases = {'A', 'C', 'G', 'T', 'a', 'c', 'g', 't', 'N'};
+        final int kSize = 31;
+        for ( int trial = 0; trial != 100; ++trial ) {
+            // mostly homopolymer runs, so that the entropy filter has something to do
+            final StringBuilder sb = new StringBuilder();
+            while ( sb.length() < 300 ) {
+                final char base = bases[rng.nextInt(rng.nextInt(10) == 0 ? bases.length : 4)];
+                for ( int runLength = 1 + rng.nextInt(rng.nextBoolean() ? 2 : 20); runLength > 0; --runLength ) sb.append(base);
+            }
+            final byte[] seq = sb.toString().getBytes();
+            for ( final double minEntropy : new double[] {0., SVConstants.MIN_ENTROPY, 1.8} ) {
+                final List<SVKmer> expected = new ArrayList<>();
+                new SVKmerizerWithLowComplexityFilter(seq, kSize, minEntropy)
+                        .forEachRemaining(kmer -> expected.add(kmer.canonical(kSize)));
+
+                final List<SVKmer> actual = new ArrayList<>();
+                SVKmerizer.forEachCanonicalKmer(seq, kSize, minEntropy,
+                        ( valHigh, valLow ) -> actual.add(new SVKmer(valHigh, valLow)));
+                Assert.assertEquals(actual, expected);
+
+                final long[] buffer = new long[2*seq.length];
+                final int nKmers = SVKmerizer.canonicalKmers(seq, kSize, minEntropy, buffer);
+                Assert.assertEquals(nKmers, expected.size());
+                for ( int idx = 0; idx != nKmers; ++idx ) {
+                    Assert.assertEquals(new SVKmer(buffer[2*idx], buffer[2*idx+1]), expected.get(idx));
+                }
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testCanonicalKmerCallbackWithEvenK() {
+        SVKmerizer.forEachCanonicalKmer("ACGTACGTACGT".getBytes(), 10, ( valHigh, valLow ) -> {});
+    }
 }
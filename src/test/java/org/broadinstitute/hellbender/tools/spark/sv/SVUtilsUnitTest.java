@@ -4,8 +4,8 @@ import org.broadinstitute.hellbender.utils.test.BaseTest;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
-import java.util.Iterator;
-import java.util.NoSuchElementException;
+import java.io.File;
+import java.util.*;
 
 /**
  * Unit tests for SVUtils.
@@ -16,4 +16,18 @@ public class SVUtilsUnitTest extends BaseTest {
     void hashMapCapacityTest() {
         Assert.assertEquals(SVUtils.hashMapCapacity(150),201);
     }
+
+    @Test
+    void kmersFileTest() {
+        final int kSize = 11;
+        final List<SVKmer> kmers = Arrays.asList(SVKmerizer.toKmer("ACGTACGTACG"), SVKmerizer.toKmer("TTTTTCCCCCG"),
+                                                 SVKmerizer.toKmer("AAAAAAAAAAA"));
+        final File textFile = createTempFile("kmers", ".txt");
+        SVUtils.writeKmersFile(kSize, textFile.getPath(), null, kmers);
+        Assert.assertEquals(SVUtils.readKmersFile(kSize, textFile.getPath(), null), new HashSet<>(kmers));
+
+        final File binaryFile = createTempFile("kmers", ".bin");
+        SVUtils.writeKmersBinaryFile(kSize, binaryFile.getPath(), null, kmers);
+        Assert.assertEquals(SVUtils.readKmersFile(kSize, binaryFile.getPath(), null), new HashSet<>(kmers));
+    }
 }
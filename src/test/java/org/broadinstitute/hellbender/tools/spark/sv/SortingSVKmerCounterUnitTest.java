@@ -0,0 +1,69 @@
+package org.broadinstitute.hellbender.tools.spark.sv;
+
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+public final class SortingSVKmerCounterUnitTest extends BaseTest {
+    private static final int RAND_SEED = 0xdeadf00;
+    private static final int N_DISTINCT_KMERS = 2000;
+    private static final int N_KMERS = 20000;
+
+    @Test
+    void radixSortTest() {
+        final Random rng = new Random(RAND_SEED);
+        final int nPairs = 1000;
+        final long[] pairs = new long[2*nPairs];
+        for ( int idx = 0; idx != pairs.length; ++idx ) {
+            // a few distinct high values so that ties are broken by the low value
+            pairs[idx] = (idx & 1) == 0 ? rng.nextInt(4) : rng.nextLong() & Long.MAX_VALUE;
+        }
+        final List<SVKmer> expected = new ArrayList<>(nPairs);
+        for ( int idx = 0; idx != nPairs; ++idx ) expected.add(new SVKmer(pairs[2*idx], pairs[2*idx+1]));
+        Collections.sort(expected);
+
+        SortingSVKmerCounter.radixSort(pairs, new long[pairs.length], nPairs);
+        for ( int idx = 0; idx != nPairs; ++idx ) {
+            Assert.assertEquals(new SVKmer(pairs[2*idx], pairs[2*idx+1]), expected.get(idx));
+        }
+    }
+
+    @DataProvider(name = "maxKmersInMemory")
+    public Object[][] getMaxKmersInMemory() {
+        return new Object[][] { {N_KMERS}, {3000}, {100} };
+    }
+
+    @Test(dataProvider = "maxKmersInMemory")
+    void countTest( final int maxKmersInMemory ) {
+        final Random rng = new Random(RAND_SEED);
+        final SVKmer[] distinctKmers = new SVKmer[N_DISTINCT_KMERS];
+        for ( int idx = 0; idx != N_DISTINCT_KMERS; ++idx ) {
+            distinctKmers[idx] = PackedSVKmerSetUnitTest.randomKmer(rng);
+        }
+        final Map<SVKmer, Integer> expectedCounts = new HashMap<>();
+        try ( final SortingSVKmerCounter counter = new SortingSVKmerCounter(maxKmersInMemory) ) {
+            for ( int idx = 0; idx != N_KMERS; ++idx ) {
+                // skew the distribution so that there are kmers with low and high counts
+                final SVKmer kmer = distinctKmers[(int)(N_DISTINCT_KMERS*Math.pow(rng.nextDouble(), 3.))];
+                expectedCounts.merge(kmer, 1, Integer::sum);
+                counter.add(kmer);
+            }
+            Assert.assertEquals(counter.getNSpills() > 0, maxKmersInMemory < N_KMERS);
+
+            final long maxCount = 10;
+            final List<SVKmer> expected = expectedCounts.entrySet().stream()
+                    .filter(entry -> entry.getValue() > maxCount)
+                    .map(Map.Entry::getKey)
+                    .sorted()
+                    .collect(Collectors.toList());
+            Assert.assertFalse(expected.isEmpty());
+            Assert.assertTrue(expected.size() < expectedCounts.size());
+            Assert.assertEquals(counter.getKmersWithCountAbove(maxCount), expected);
+            Assert.assertEquals(counter.getNSpills(), 0);
+        }
+    }
+}
@@ -9,6 +9,9 @@ import org.testng.annotations.Test;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public final class GenotypeLikelihoodCalculatorsUnitTest extends BaseTest {
 
@@ -90,6 +93,59 @@ public final class GenotypeLikelihoodCalculatorsUnitTest extends BaseTest {
         new GenotypeLikelihoodCalculators().genotypeCount(1, -1);
     }
 
+    @Test
+    public void testGenotypeCountLargePloidy() {
+        Assert.assertEquals(calcs.genotypeCount(100, 3), 5151);
+        Assert.assertEquals(calcs.genotypeCount(1, Integer.MAX_VALUE), Integer.MAX_VALUE);
+        Assert.assertEquals(calcs.genotypeCount(Integer.MAX_VALUE, 1), 1);
+        Assert.assertEquals(calcs.genotypeCount(Integer.MAX_VALUE - 1, 2), Integer.MAX_VALUE);
+        // C(34, 16) = 2,203,961,430 > Integer.MAX_VALUE > C(33, 16) = 1,166,803,110
+        Assert.assertEquals(calcs.genotypeCount(16, 18), 1_166_803_110);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testGenotypeCountJustOverflows() {
+        calcs.genotypeCount(16, 19);
+    }
+
+    @Test
+    public void testHighPloidyGenotypeAlleleCounts() {
+        final int ploidy = 40;
+        final int alleleCount = 4;
+        final GenotypeLikelihoodCalculator calculator = new GenotypeLikelihoodCalculators().getInstance(ploidy, alleleCount);
+        Assert.assertEquals(calculator.genotypeCount(), 12341);
+        // random access and sequential iteration must agree.
+        GenotypeAlleleCounts expected = GenotypeAlleleCounts.first(ploidy);
+        for (int i = 0; i < calculator.genotypeCount(); i++) {
+            final GenotypeAlleleCounts actual = calculator.genotypeAlleleCountsAt(i);
+            Assert.assertEquals(actual, expected);
+            Assert.assertEquals(actual.index(), i);
+            expected = expected.next();
+        }
+        Assert.assertEquals(calculator.genotypeAlleleCountsAt(calculator.genotypeCount() - 1).alleleCountFor(alleleCount - 1), ploidy);
+    }
+
+    @Test
+    public void testConcurrentGetInstance() throws Exception {
+        final GenotypeLikelihoodCalculators calculators = new GenotypeLikelihoodCalculators();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<GenotypeLikelihoodCalculator>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                final int ploidy = 1 + i % 25;
+                final int alleleCount = 1 + i % 4;
+                futures.add(executor.submit(() -> calculators.getInstance(ploidy, alleleCount)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                final GenotypeLikelihoodCalculator calculator = futures.get(i).get();
+                Assert.assertEquals(calculator.ploidy(), 1 + i % 25);
+                Assert.assertEquals(calculator.genotypeCount(), calculators.genotypeCount(1 + i % 25, 1 + i % 4));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void testComputeMaxAcceptableAlleleCount(){
         Assert.assertEquals(1024, GenotypeLikelihoodCalculators.computeMaxAcceptableAlleleCount(1, 1024));
@@ -41,6 +41,32 @@ public final class IndependentSampleGenotypesModelUnitTest {
         }
     }
 
+    @Test
+    public void testParallelCalculateLikelihoods() {
+        final int sampleCount = IndependentSampleGenotypesModel.MINIMUM_SAMPLES_PER_CHUNK * 20 + 3;
+        final Random rnd = new Random(13);
+        final int[] ploidies = new int[sampleCount];
+        final int[] readCounts = new int[sampleCount];
+        for (int i = 0; i < sampleCount; i++) {
+            ploidies[i] = 1 + rnd.nextInt(4);
+            readCounts[i] = rnd.nextInt(30);
+        }
+        final ReadLikelihoods<Allele> likelihoods = ReadLikelihoodsUnitTester.readLikelihoods(4, readCounts);
+        final PloidyModel ploidyModel = new HeterogeneousPloidyModel(SampleListUnitTester.sampleList(sampleCount), ploidies);
+        final GenotypingData<Allele> data = new GenotypingData<>(ploidyModel, likelihoods);
+
+        final GenotypingLikelihoods<Allele> expected = new IndependentSampleGenotypesModel().calculateLikelihoods(likelihoods, data);
+        try (final IndependentSampleGenotypesModel model = new IndependentSampleGenotypesModel(10, 50, 4)) {
+            for (int repeat = 0; repeat < 3; repeat++) {
+                final GenotypingLikelihoods<Allele> actual = model.calculateLikelihoods(likelihoods, data);
+                Assert.assertEquals(actual.numberOfSamples(), sampleCount);
+                for (int i = 0; i < sampleCount; i++) {
+                    Assert.assertEquals(actual.sampleLikelihoods(i).getAsVector(), expected.sampleLikelihoods(i).getAsVector());
+                }
+            }
+        }
+    }
+
     private AlleleList<Allele> discardAllelesAtRandom(final AlleleList<Allele> likelihoods, final int discardAlleleCount) {
         final Random rnd = Utils.getRandomGenerator();
         final List<Allele> subset = new ArrayList<>(likelihoods.asListOfAlleles());
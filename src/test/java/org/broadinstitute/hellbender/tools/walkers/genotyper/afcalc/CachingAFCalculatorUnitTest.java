@@ -0,0 +1,147 @@
+package org.broadinstitute.hellbender.tools.walkers.genotyper.afcalc;
+
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.GenotypeBuilder;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.VariantContextBuilder;
+import org.broadinstitute.hellbender.tools.walkers.genotyper.GenotypeCalculationArgumentCollection;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public final class CachingAFCalculatorUnitTest extends BaseTest {
+
+    private static final Allele A = Allele.create("A", true);
+    private static final Allele C = Allele.create("C");
+    private static final Allele G = Allele.create("G");
+    private static final Allele T = Allele.create("T");
+    private static final Allele Gref = Allele.create("G", true);
+
+    private static final double[] PRIORS = new double[]{-0.001, -3.0, -3.3, -3.5, -3.6, -3.7, -3.8};
+
+    @Test
+    public void testCachedResultsMatchDelegate() {
+        final CachingAFCalculator calculator = new CachingAFCalculator(new IndependentAllelesDiploidExactAFCalculator(),
+                CachingAFCalculator.DEFAULT_CACHE_SIZE, CachingAFCalculator.NO_FAST_PATH);
+        final AFCalculator exact = new IndependentAllelesDiploidExactAFCalculator();
+
+        final VariantContext first = makeVC(Arrays.asList(A, C), new int[]{0, 10, 100}, new int[]{20, 0, 40}, new int[]{0, 30, 90});
+        assertSameResult(calculator.getLog10PNonRef(first, 2, 2, PRIORS), exact.getLog10PNonRef(first, 2, 2, PRIORS));
+        Assert.assertEquals(calculator.getCacheMisses(), 1);
+        Assert.assertEquals(calculator.getCacheHits(), 0);
+
+        // same PLs at a site with different alleles reuses the result, remapped to the new alleles
+        final VariantContext second = makeVC(Arrays.asList(Gref, T), new int[]{0, 10, 100}, new int[]{20, 0, 40}, new int[]{0, 30, 90});
+        final AFCalculationResult remapped = calculator.getLog10PNonRef(second, 2, 2, PRIORS);
+        Assert.assertEquals(calculator.getCacheHits(), 1);
+        Assert.assertEquals(remapped.getAllelesUsedInGenotyping(), Arrays.asList(Gref, T));
+        assertSameResult(remapped, exact.getLog10PNonRef(second, 2, 2, PRIORS));
+
+        // multi-allelic sites
+        final VariantContext third = makeVC(Arrays.asList(A, C, G), new int[]{0, 10, 100, 5, 60, 90}, new int[]{30, 40, 90, 0, 60, 90});
+        final VariantContext fourth = makeVC(Arrays.asList(Gref, C, T), new int[]{0, 10, 100, 5, 60, 90}, new int[]{30, 40, 90, 0, 60, 90});
+        assertSameResult(calculator.getLog10PNonRef(third, 2, 2, PRIORS), exact.getLog10PNonRef(third, 2, 2, PRIORS));
+        assertSameResult(calculator.getLog10PNonRef(fourth, 2, 2, PRIORS), exact.getLog10PNonRef(fourth, 2, 2, PRIORS));
+        Assert.assertEquals(calculator.getCacheMisses(), 2);
+        Assert.assertEquals(calculator.getCacheHits(), 2);
+
+        // different priors are a different key
+        final double[] otherPriors = PRIORS.clone();
+        otherPriors[1] = -2.0;
+        assertSameResult(calculator.getLog10PNonRef(first, 2, 2, otherPriors), exact.getLog10PNonRef(first, 2, 2, otherPriors));
+        Assert.assertEquals(calculator.getCacheMisses(), 3);
+    }
+
+    @Test
+    public void testCacheIsBounded() {
+        final CachingAFCalculator calculator = new CachingAFCalculator(new IndependentAllelesDiploidExactAFCalculator(), 1, CachingAFCalculator.NO_FAST_PATH);
+        final VariantContext first = makeVC(Arrays.asList(A, C), new int[]{0, 10, 100});
+        final VariantContext second = makeVC(Arrays.asList(A, C), new int[]{0, 20, 100});
+        calculator.getLog10PNonRef(first, 2, 2, PRIORS);
+        calculator.getLog10PNonRef(first, 2, 2, PRIORS);
+        Assert.assertEquals(calculator.getCacheHits(), 1);
+        calculator.getLog10PNonRef(second, 2, 2, PRIORS);
+        calculator.getLog10PNonRef(first, 2, 2, PRIORS);
+        Assert.assertEquals(calculator.getCacheHits(), 1);
+        Assert.assertEquals(calculator.getCacheMisses(), 3);
+    }
+
+    @Test
+    public void testNoCache() {
+        final CachingAFCalculator calculator = new CachingAFCalculator(new IndependentAllelesDiploidExactAFCalculator(), 0, CachingAFCalculator.NO_FAST_PATH);
+        final VariantContext vc = makeVC(Arrays.asList(A, C), new int[]{0, 10, 100});
+        calculator.getLog10PNonRef(vc, 2, 2, PRIORS);
+        calculator.getLog10PNonRef(vc, 2, 2, PRIORS);
+        Assert.assertEquals(calculator.getCacheHits(), 0);
+    }
+
+    @Test
+    public void testFastPath() {
+        final CachingAFCalculator calculator = new CachingAFCalculator(new IndependentAllelesDiploidExactAFCalculator(), 0, 60);
+        final AFCalculator exact = new IndependentAllelesDiploidExactAFCalculator();
+
+        final VariantContext clearlyHomRef = makeVC(Arrays.asList(A, C, G), new int[]{0, 60, 200, 80, 200, 200}, new int[]{0, 90, 900, 99, 900, 900});
+        final AFCalculationResult fast = calculator.getLog10PNonRef(clearlyHomRef, 2, 2, PRIORS);
+        final AFCalculationResult expected = exact.getLog10PNonRef(clearlyHomRef, 2, 2, PRIORS);
+        Assert.assertEquals(calculator.getFastPathCount(), 1);
+        Assert.assertEquals(fast.getAllelesUsedInGenotyping(), clearlyHomRef.getAlleles());
+        Assert.assertEquals(fast.getAlleleCountsOfMLE(), new int[]{0, 0});
+        for (final Allele allele : clearlyHomRef.getAlternateAlleles()) {
+            Assert.assertFalse(fast.isPolymorphic(allele, -2.0));
+            Assert.assertFalse(expected.isPolymorphic(allele, -2.0));
+        }
+        Assert.assertEquals(fast.getLog10PosteriorOfAFEq0(), 0.0, 1e-5);
+        Assert.assertEquals(fast.getLog10PosteriorOfAFGT0(), expected.getLog10PosteriorOfAFGT0(), 1.0);
+
+        // a single PL below the threshold takes the exact calculation
+        final VariantContext uncertain = makeVC(Arrays.asList(A, C), new int[]{0, 60, 200}, new int[]{0, 59, 200});
+        assertSameResult(calculator.getLog10PNonRef(uncertain, 2, 2, PRIORS), exact.getLog10PNonRef(uncertain, 2, 2, PRIORS));
+        Assert.assertEquals(calculator.getFastPathCount(), 1);
+
+        // as does any sample that is not most likely hom-ref
+        final VariantContext variant = makeVC(Arrays.asList(A, C), new int[]{0, 60, 200}, new int[]{100, 0, 200});
+        assertSameResult(calculator.getLog10PNonRef(variant, 2, 2, PRIORS), exact.getLog10PNonRef(variant, 2, 2, PRIORS));
+        Assert.assertEquals(calculator.getFastPathCount(), 1);
+    }
+
+    @Test
+    public void testProvider() {
+        final AFCalculatorProvider provider = new CachingAFCalculatorProvider(
+                new FixedAFCalculatorProvider(AFCalculatorImplementation.EXACT_INDEPENDENT, new GenotypeCalculationArgumentCollection(), false), 10, CachingAFCalculator.NO_FAST_PATH);
+        final AFCalculator calculator = provider.getInstance(2, 2);
+        Assert.assertTrue(calculator instanceof CachingAFCalculator);
+        Assert.assertSame(provider.getInstance(2, 2), calculator);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeCacheSize() {
+        new CachingAFCalculator(new IndependentAllelesDiploidExactAFCalculator(), -1, CachingAFCalculator.NO_FAST_PATH);
+    }
+
+    private static void assertSameResult(final AFCalculationResult actual, final AFCalculationResult expected) {
+        Assert.assertEquals(actual.getAllelesUsedInGenotyping(), expected.getAllelesUsedInGenotyping());
+        Assert.assertEquals(actual.getAlleleCountsOfMLE(), expected.getAlleleCountsOfMLE());
+        Assert.assertEquals(actual.getLog10LikelihoodOfAFEq0(), expected.getLog10LikelihoodOfAFEq0(), 1e-10);
+        Assert.assertEquals(actual.getLog10LikelihoodOfAFGT0(), expected.getLog10LikelihoodOfAFGT0(), 1e-10);
+        Assert.assertEquals(actual.getLog10PriorOfAFEq0(), expected.getLog10PriorOfAFEq0(), 1e-10);
+        Assert.assertEquals(actual.getLog10PriorOfAFGT0(), expected.getLog10PriorOfAFGT0(), 1e-10);
+        for (final Allele allele : expected.getAllelesUsedInGenotyping()) {
+            if (allele.isNonReference()) {
+                Assert.assertEquals(actual.getLog10PosteriorOfAFEq0ForAllele(allele), expected.getLog10PosteriorOfAFEq0ForAllele(allele), 1e-10);
+            }
+        }
+    }
+
+    private static VariantContext makeVC(final List<Allele> alleles, final int[]... pls) {
+        final List<Genotype> genotypes = new ArrayList<>(pls.length);
+        for (int i = 0; i < pls.length; i++) {
+            genotypes.add(new GenotypeBuilder("sample" + i, Arrays.asList(Allele.NO_CALL, Allele.NO_CALL)).PL(pls[i]).make());
+        }
+        return new VariantContextBuilder("test", "1", 1, 1, alleles).genotypes(genotypes).make();
+    }
+}
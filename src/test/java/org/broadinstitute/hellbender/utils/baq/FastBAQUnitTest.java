@@ -0,0 +1,126 @@
+package org.broadinstitute.hellbender.utils.baq;
+
+import org.broadinstitute.hellbender.utils.BaseUtils;
+import org.broadinstitute.hellbender.utils.RandomDNA;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public final class FastBAQUnitTest extends BaseTest {
+
+    @DataProvider(name = "RandomReads")
+    public Object[][] makeRandomReads() {
+        final Random random = new Random(5);
+        final RandomDNA randomDNA = new RandomDNA(random);
+        final List<Object[]> tests = new ArrayList<>();
+        for ( final int readLength : Arrays.asList(1, 2, 10, 36, 101, 250) ) {
+            for ( final int bandWidth : Arrays.asList(3, 7, 20) ) {
+                for ( int rep = 0; rep < 3; rep++ ) {
+                    // the reference window is padded by half the band width on either side, as in BQSR
+                    final byte[] ref = randomDNA.nextBases(readLength + bandWidth / 2 * 2);
+                    final byte[] read = Arrays.copyOfRange(ref, bandWidth / 2, bandWidth / 2 + readLength);
+                    for ( int i = 0; i < readLength; i++ ) {
+                        if ( random.nextInt(15) == 0 ) {
+                            read[i] = BaseUtils.baseIndexToSimpleBase(random.nextInt(4));
+                        }
+                    }
+                    final byte[] quals = ArtificialReadUtils.createRandomReadQuals(random, readLength, 2, 41);
+                    tests.add(new Object[]{ref, read, quals, bandWidth});
+                }
+            }
+        }
+        return tests.toArray(new Object[][]{});
+    }
+
+    @Test(dataProvider = "RandomReads")
+    public void testMatchesBAQ(final byte[] ref, final byte[] read, final byte[] quals, final int bandWidth) {
+        final BAQ expectedBAQ = new BAQ(1.0e-3, 0.1, bandWidth, (byte) 4);
+        final FastBAQ baq = new FastBAQ(1.0e-3, 0.1, bandWidth, (byte) 4, 0);
+
+        final BAQ.BAQCalculationResult expected = expectedBAQ.calcBAQFromHMM(ref, read, quals, 0, read.length);
+        final BAQ.BAQCalculationResult actual = baq.calcBAQFromHMM(ref, read, quals, 0, read.length);
+        for ( int i = 0; i < read.length; i++ ) {
+            Assert.assertEquals(actual.bq[i], expected.bq[i], 1, "BAQ differs at " + i);
+            Assert.assertEquals(actual.state[i], expected.state[i], "state differs at " + i);
+        }
+    }
+
+    @Test
+    public void testKnownBAQ() {
+        // the same data as in BAQUnitTest
+        final byte[] ref = "GCTTTTCCTCCTCCTG".getBytes();
+        final byte[] read = "GCTTTTTCTCCTCCTG".getBytes();
+        final byte[] quals = phred("IIHGGGIHHIIHHIIH");
+        final byte[] expected = phred("EI410..0HIIHHIIE");
+
+        final FastBAQ baq = new FastBAQ(1.0e-3, 0.1, 7, (byte) 4, FastBAQ.DEFAULT_CACHE_SIZE);
+        final GATKRead gatkRead = ArtificialReadUtils.createArtificialRead(read, quals, read.length + "M");
+        final BAQ.BAQCalculationResult result = baq.calcBAQFromHMM(gatkRead, ref, 0);
+        Assert.assertEquals(result.bq, expected);
+    }
+
+    @Test
+    public void testCache() {
+        final byte[] ref = new RandomDNA(11).nextBases(106);
+        final byte[] bases = Arrays.copyOfRange(ref, 3, 103);
+        bases[50] = bases[50] == 'A' ? (byte) 'C' : (byte) 'A';
+        final byte[] quals = new byte[bases.length];
+        Arrays.fill(quals, (byte) 30);
+
+        final FastBAQ baq = new FastBAQ(1.0e-3, 0.1, 7, (byte) 4, 2);
+        final GATKRead read = ArtificialReadUtils.createArtificialRead(bases, quals, "100M");
+        final GATKRead duplicate = read.copy();
+
+        final BAQ.BAQCalculationResult first = baq.calcBAQFromHMM(read, ref, -3);
+        Assert.assertEquals(baq.getCacheMisses(), 1);
+        Assert.assertEquals(baq.getCacheHits(), 0);
+        final byte[] expectedBQ = first.bq.clone();
+        // callers may modify the result, which must not corrupt the cache
+        Arrays.fill(first.bq, (byte) 0);
+
+        final BAQ.BAQCalculationResult second = baq.calcBAQFromHMM(duplicate, ref, -3);
+        Assert.assertEquals(baq.getCacheHits(), 1);
+        Assert.assertEquals(second.bq, expectedBQ);
+
+        // a different cigar is a different key
+        final GATKRead deletion = read.copy();
+        deletion.setCigar("50M1D50M");
+        baq.calcBAQFromHMM(deletion, ref, -3);
+        Assert.assertEquals(baq.getCacheMisses(), 2);
+
+        // the cache is bounded, evicting the least recently used entries
+        final GATKRead other = read.copy();
+        final byte[] otherQuals = quals.clone();
+        otherQuals[0] = 20;
+        other.setBaseQualities(otherQuals);
+        baq.calcBAQFromHMM(other, ref, -3);
+        Assert.assertEquals(baq.getCacheMisses(), 3);
+        baq.calcBAQFromHMM(read, ref, -3);
+        Assert.assertEquals(baq.getCacheMisses(), 4);
+    }
+
+    @Test
+    public void testReadsThatCannotBeBAQedAreCached() {
+        final FastBAQ baq = new FastBAQ();
+        final GATKRead read = ArtificialReadUtils.createArtificialRead(new byte[]{'A', 'C'}, new byte[]{30, 30}, "2S");
+        Assert.assertNull(baq.calcBAQFromHMM(read, "ACGT".getBytes(), 0));
+        Assert.assertNull(baq.calcBAQFromHMM(read, "ACGT".getBytes(), 0));
+        Assert.assertEquals(baq.getCacheHits(), 1);
+    }
+
+    private static byte[] phred(final String quals) {
+        final byte[] bytes = quals.getBytes();
+        for ( int i = 0; i < bytes.length; i++ ) {
+            bytes[i] -= 33;
+        }
+        return bytes;
+    }
+}
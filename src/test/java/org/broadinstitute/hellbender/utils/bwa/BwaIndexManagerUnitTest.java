@@ -0,0 +1,98 @@
+package org.broadinstitute.hellbender.utils.bwa;
+
+import com.github.lindenb.jbwa.jni.BwaIndex;
+import org.apache.commons.io.FileUtils;
+import org.broadinstitute.hellbender.utils.NativeUtils;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public final class BwaIndexManagerUnitTest extends BaseTest {
+    private static final String REFERENCE = "src/test/resources/org/broadinstitute/hellbender/tools/spark/bwa/BwaSpark/ref.fa";
+
+    private void skipJBWATestOnUnsupportedPlatforms() {
+        if ( ! NativeUtils.runningOnLinux() && ! NativeUtils.runningOnMac() ) {
+            throw new SkipException("jbwa not available on this platform");
+        }
+        if ( NativeUtils.runningOnPPCArchitecture() ) {
+            throw new SkipException("jbwa not available for this architecture");
+        }
+    }
+
+    @AfterMethod
+    public void closeIndices() {
+        BwaIndexManager.closeAll();
+    }
+
+    @Test
+    public void testIndexIsShared() {
+        skipJBWATestOnUnsupportedPlatforms();
+
+        final BwaIndex index1 = BwaIndexManager.acquire(REFERENCE);
+        final BwaIndex index2 = BwaIndexManager.acquire(REFERENCE);
+        Assert.assertSame(index1, index2);
+        Assert.assertEquals(BwaIndexManager.getRefCount(REFERENCE), 2);
+        BwaIndexManager.release(REFERENCE);
+        BwaIndexManager.release(REFERENCE);
+        Assert.assertEquals(BwaIndexManager.getRefCount(REFERENCE), 0);
+
+        // an unused index stays loaded
+        Assert.assertSame(BwaIndexManager.acquire(REFERENCE), index1);
+        BwaIndexManager.release(REFERENCE);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testCantCloseIndexInUse() {
+        skipJBWATestOnUnsupportedPlatforms();
+
+        BwaIndexManager.acquire(REFERENCE);
+        try {
+            BwaIndexManager.closeAll();
+        } finally {
+            BwaIndexManager.release(REFERENCE);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testUnbalancedRelease() {
+        BwaIndexManager.release(REFERENCE);
+    }
+
+    @Test
+    public void testLocalDirectoriesDontCollide() {
+        // these two paths have the same String hash code
+        final String[] referenceUris = { new File("Aa/ref.fa").toURI().toString(), new File("BB/ref.fa").toURI().toString() };
+        Assert.assertEquals(referenceUris[0].hashCode(), referenceUris[1].hashCode());
+        Assert.assertNotEquals(BwaIndexManager.getLocalDirectory(referenceUris[0]), BwaIndexManager.getLocalDirectory(referenceUris[1]));
+    }
+
+    @Test
+    public void testLocalizeOnce() throws IOException {
+        final String referenceUri = new File(REFERENCE).toURI().toString();
+        final File localReference1 = BwaIndexManager.localizeReferenceAndBwaIndexFiles(referenceUri);
+        final long lastModified = localReference1.lastModified();
+        final File localReference2 = BwaIndexManager.localizeReferenceAndBwaIndexFiles(referenceUri);
+        try {
+            Assert.assertEquals(localReference2, localReference1);
+            Assert.assertEquals(localReference2.lastModified(), lastModified);
+
+            // a stale local copy of the same size is replaced
+            Assert.assertTrue(localReference1.setLastModified(lastModified - 3600000L));
+            final File localReference3 = BwaIndexManager.localizeReferenceAndBwaIndexFiles(referenceUri);
+            Assert.assertEquals(localReference3, localReference1);
+            Assert.assertEquals(localReference3.lastModified() / 1000, new File(REFERENCE).lastModified() / 1000);
+
+            for ( final String extension : new String[] { "", ".amb", ".ann", ".bwt", ".pac", ".sa" } ) {
+                Assert.assertEquals(new File(localReference1.getPath() + extension).length(),
+                                    new File(REFERENCE + extension).length());
+            }
+        } finally {
+            FileUtils.deleteDirectory(localReference1.getParentFile());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.broadinstitute.hellbender.utils.genotyper;
+
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public final class LikelihoodBufferPoolUnitTest extends BaseTest {
+
+    @Test
+    public void testAcquireRoundsUpToPowerOfTwo() {
+        Assert.assertEquals(LikelihoodBufferPool.acquire(0).length, 0);
+        Assert.assertEquals(LikelihoodBufferPool.acquire(1).length, 1);
+        Assert.assertEquals(LikelihoodBufferPool.acquire(3).length, 4);
+        Assert.assertEquals(LikelihoodBufferPool.acquire(1024).length, 1024);
+        Assert.assertEquals(LikelihoodBufferPool.acquire(1025).length, 2048);
+        Assert.assertEquals(LikelihoodBufferPool.acquire(LikelihoodBufferPool.MAXIMUM_POOLED_LENGTH + 1).length,
+                LikelihoodBufferPool.MAXIMUM_POOLED_LENGTH + 1);
+    }
+
+    @Test
+    public void testReleasedBuffersAreReused() {
+        final double[] buffer = LikelihoodBufferPool.acquire(100);
+        LikelihoodBufferPool.release(buffer);
+        Assert.assertSame(LikelihoodBufferPool.acquire(65), buffer);
+        // not released again, so a new one is handed out.
+        Assert.assertNotSame(LikelihoodBufferPool.acquire(65), buffer);
+    }
+
+    @Test
+    public void testForeignBuffersAreNotPooled() {
+        final double[] buffer = new double[100];
+        LikelihoodBufferPool.release(buffer);
+        Assert.assertEquals(LikelihoodBufferPool.acquire(100).length, 128);
+    }
+
+    @Test
+    public void testAcquireAndFill() {
+        final double[] buffer = LikelihoodBufferPool.acquire(10);
+        buffer[3] = 1.0;
+        LikelihoodBufferPool.release(buffer);
+        final double[] filled = LikelihoodBufferPool.acquire(10, Double.NEGATIVE_INFINITY);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(filled[i], Double.NEGATIVE_INFINITY);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeLength() {
+        LikelihoodBufferPool.acquire(-1);
+    }
+}
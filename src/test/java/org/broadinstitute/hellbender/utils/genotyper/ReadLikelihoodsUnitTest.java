@@ -172,6 +172,47 @@ public final class ReadLikelihoodsUnitTest {
         }
     }
 
+    @Test(dataProvider = "dataSets")
+    public void testAddReadsAfterFiltering(final String[] samples, final Allele[] alleles, final Map<String,List<GATKRead>> reads) {
+        final ReadLikelihoods<Allele> result = new ReadLikelihoods<>(new IndexedSampleList(samples), new IndexedAlleleList<>(alleles), reads);
+        if (alleles.length == 0) {
+            throw new SkipException("no alleles");
+        }
+        final double[][][] likelihoods = fillWithRandomLikelihoods(samples, alleles, result);
+        for (int s = 0; s < samples.length; s++) {
+            for (int r = 1; r < result.sampleReadCount(s); r += 2) {
+                for (int a = 0; a < alleles.length; a++) {
+                    result.sampleMatrix(s).set(a, r, -10000);
+                }
+            }
+        }
+        result.filterPoorlyModeledReads(2.0);
+
+        // the reads removed are added back, reusing the space left behind in the likelihood arrays.
+        final Map<String,List<GATKRead>> removedReads = new LinkedHashMap<>(samples.length);
+        for (int s = 0; s < samples.length; s++) {
+            final List<GATKRead> sampleReads = reads.get(samples[s]);
+            final List<GATKRead> removed = new ArrayList<>();
+            for (int r = 1; r < sampleReads.size(); r += 2) {
+                removed.add(sampleReads.get(r));
+            }
+            removedReads.put(samples[s], removed);
+        }
+        result.addReads(removedReads, -1.5);
+
+        for (int s = 0; s < samples.length; s++) {
+            final int keptReadCount = (reads.get(samples[s]).size() + 1) / 2;
+            Assert.assertEquals(result.sampleReadCount(s), reads.get(samples[s]).size());
+            final LikelihoodMatrix<Allele> sampleMatrix = result.sampleMatrix(s);
+            for (int a = 0; a < alleles.length; a++) {
+                for (int r = 0; r < result.sampleReadCount(s); r++) {
+                    final double expected = r < keptReadCount ? likelihoods[s][a][r * 2] : -1.5;
+                    Assert.assertEquals(sampleMatrix.get(a, r), expected);
+                }
+            }
+        }
+    }
+
     @Test(dataProvider = "dataSets")
     public void testFilterReadsToOverlap(final String[] samples, final Allele[] alleles, final Map<String,List<GATKRead>> reads) {
         final ReadLikelihoods<Allele> original = new ReadLikelihoods<>(new IndexedSampleList(samples), new IndexedAlleleList<>(alleles), reads);
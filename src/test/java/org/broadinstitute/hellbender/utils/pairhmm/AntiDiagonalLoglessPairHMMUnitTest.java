@@ -0,0 +1,117 @@
+package org.broadinstitute.hellbender.utils.pairhmm;
+
+import org.broadinstitute.hellbender.utils.BaseUtils;
+import org.broadinstitute.hellbender.utils.RandomDNA;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public final class AntiDiagonalLoglessPairHMMUnitTest extends BaseTest {
+
+    private static final double TOLERANCE = 1e-4;
+
+    @DataProvider(name = "RandomPairs")
+    public Object[][] makeRandomPairs() {
+        final Random random = new Random(13);
+        final RandomDNA randomDNA = new RandomDNA(random);
+        final List<Object[]> tests = new ArrayList<>();
+        for ( final int readLength : Arrays.asList(1, 2, 10, 36, 101, 150) ) {
+            for ( final int haplotypeLength : Arrays.asList(1, 5, 50, 120, 300) ) {
+                for ( final boolean tristate : Arrays.asList(true, false) ) {
+                    final byte[] haplotype = randomDNA.nextBases(haplotypeLength);
+                    tests.add(new Object[]{randomDNA.nextBases(readLength), haplotype, ArtificialReadUtils.createRandomReadQuals(random, readLength, 6, 40), tristate});
+                    if ( readLength <= haplotypeLength ) {
+                        // a read drawn from the haplotype with a few errors, whose likelihood fits in single precision
+                        final int offset = random.nextInt(haplotypeLength - readLength + 1);
+                        final byte[] read = Arrays.copyOfRange(haplotype, offset, offset + readLength);
+                        read[random.nextInt(readLength)] = 'N';
+                        read[random.nextInt(readLength)] = BaseUtils.baseIndexToSimpleBase(random.nextInt(4));
+                        tests.add(new Object[]{read, haplotype, ArtificialReadUtils.createRandomReadQuals(random, readLength, 6, 40), tristate});
+                    }
+                }
+            }
+        }
+        return tests.toArray(new Object[][]{});
+    }
+
+    @Test(dataProvider = "RandomPairs")
+    public void testMatchesLoglessPairHMM(final byte[] read, final byte[] haplotype, final byte[] quals, final boolean tristate) {
+        final byte[] insQuals = Utils.dupBytes((byte)45, read.length);
+        final byte[] delQuals = Utils.dupBytes((byte)45, read.length);
+        final byte[] gcp = Utils.dupBytes((byte)10, read.length);
+
+        final LoglessPairHMM expectedHMM = new LoglessPairHMM();
+        final AntiDiagonalLoglessPairHMM hmm = new AntiDiagonalLoglessPairHMM();
+        if ( ! tristate ) {
+            expectedHMM.doNotUseTristateCorrection();
+            hmm.doNotUseTristateCorrection();
+        }
+        expectedHMM.initialize(read.length, haplotype.length);
+        hmm.initialize(read.length, haplotype.length);
+
+        final double expected = expectedHMM.computeReadLikelihoodGivenHaplotypeLog10(haplotype, read, quals, insQuals, delQuals, gcp, true, null);
+        final double actual = hmm.computeReadLikelihoodGivenHaplotypeLog10(haplotype, read, quals, insQuals, delQuals, gcp, true, null);
+        Assert.assertEquals(actual, expected, Math.max(TOLERANCE, Math.abs(expected) * 1e-6));
+    }
+
+    @Test
+    public void testReadValuesAreReusedAcrossHaplotypes() {
+        final Random random = new Random(7);
+        final RandomDNA randomDNA = new RandomDNA(random);
+        final byte[] read = randomDNA.nextBases(80);
+        final byte[] quals = ArtificialReadUtils.createRandomReadQuals(random, read.length, 10, 40);
+        final byte[] insQuals = Utils.dupBytes((byte)40, read.length);
+        final byte[] delQuals = Utils.dupBytes((byte)40, read.length);
+        final byte[] gcp = Utils.dupBytes((byte)10, read.length);
+
+        final LoglessPairHMM expectedHMM = new LoglessPairHMM();
+        final AntiDiagonalLoglessPairHMM hmm = new AntiDiagonalLoglessPairHMM();
+        expectedHMM.initialize(read.length, 200);
+        hmm.initialize(read.length, 200);
+        for ( int i = 0; i < 10; i++ ) {
+            final byte[] haplotype = randomDNA.nextBases(100 + 10 * i);
+            final double expected = expectedHMM.computeReadLikelihoodGivenHaplotypeLog10(haplotype, read, quals, insQuals, delQuals, gcp, true, null);
+            final double actual = hmm.computeReadLikelihoodGivenHaplotypeLog10(haplotype, read, quals, insQuals, delQuals, gcp, i == 0, null);
+            Assert.assertEquals(actual, expected, TOLERANCE);
+        }
+    }
+
+    @Test
+    public void testDoublePrecisionFallback() {
+        // a long read that mismatches everywhere has a likelihood far below what single precision can represent
+        final int length = 150;
+        final byte[] read = Utils.dupBytes((byte)'A', length);
+        final byte[] haplotype = Utils.dupBytes((byte)'C', length);
+        final byte[] quals = Utils.dupBytes((byte)40, length);
+        final byte[] insQuals = Utils.dupBytes((byte)45, length);
+        final byte[] delQuals = Utils.dupBytes((byte)45, length);
+        final byte[] gcp = Utils.dupBytes((byte)10, length);
+
+        final LoglessPairHMM expectedHMM = new LoglessPairHMM();
+        final AntiDiagonalLoglessPairHMM hmm = new AntiDiagonalLoglessPairHMM();
+        expectedHMM.initialize(length, length);
+        hmm.initialize(length, length);
+
+        final double expected = expectedHMM.computeReadLikelihoodGivenHaplotypeLog10(haplotype, read, quals, insQuals, delQuals, gcp, true, null);
+        final double actual = hmm.computeReadLikelihoodGivenHaplotypeLog10(haplotype, read, quals, insQuals, delQuals, gcp, true, null);
+        Assert.assertEquals(hmm.getDoublePrecisionRecomputations(), 1);
+        Assert.assertEquals(actual, expected, TOLERANCE);
+
+        // an exact match never needs the fallback
+        hmm.computeReadLikelihoodGivenHaplotypeLog10(read, read, quals, insQuals, delQuals, gcp, true, null);
+        Assert.assertEquals(hmm.getDoublePrecisionRecomputations(), 1);
+    }
+
+    @Test
+    public void testImplementation() {
+        Assert.assertTrue(PairHMM.Implementation.ANTIDIAGONAL_LOGLESS_CACHING.makeNewHMM() instanceof AntiDiagonalLoglessPairHMM);
+    }
+}
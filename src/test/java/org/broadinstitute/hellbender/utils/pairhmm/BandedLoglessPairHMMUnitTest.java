@@ -0,0 +1,143 @@
+package org.broadinstitute.hellbender.utils.pairhmm;
+
+import org.broadinstitute.hellbender.utils.BaseUtils;
+import org.broadinstitute.hellbender.utils.RandomDNA;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public final class BandedLoglessPairHMMUnitTest extends BaseTest {
+
+    private static final double TOLERANCE = 1e-6;
+
+    @DataProvider(name = "ReadsAndHaplotypes")
+    public Object[][] makeReadsAndHaplotypes() {
+        final Random random = new Random(5);
+        final RandomDNA randomDNA = new RandomDNA(random);
+        final byte[] haplotype = randomDNA.nextBases(600);
+        final List<Object[]> tests = new ArrayList<>();
+        for (final int start : Arrays.asList(0, 17, 200, 300)) {
+            final byte[] exact = Arrays.copyOfRange(haplotype, start, start + 250);
+            tests.add(new Object[]{"exact " + start, exact, haplotype});
+
+            final byte[] snps = exact.clone();
+            for (int i = 0; i < 5; i++) {
+                final int position = random.nextInt(snps.length);
+                snps[position] = BaseUtils.baseIndexToSimpleBase((BaseUtils.simpleBaseToBaseIndex(snps[position]) + 1) % 4);
+            }
+            tests.add(new Object[]{"snps " + start, snps, haplotype});
+
+            for (final int indelLength : Arrays.asList(3, 40)) {
+                final byte[] deletion = new byte[250];
+                System.arraycopy(haplotype, start, deletion, 0, 100);
+                System.arraycopy(haplotype, start + 100 + indelLength, deletion, 100, 150);
+                tests.add(new Object[]{"deletion " + indelLength + " " + start, deletion, haplotype});
+
+                final byte[] insertion = new byte[250];
+                System.arraycopy(haplotype, start, insertion, 0, 100);
+                System.arraycopy(randomDNA.nextBases(indelLength), 0, insertion, 100, indelLength);
+                System.arraycopy(haplotype, start + 100, insertion, 100 + indelLength, 150 - indelLength);
+                tests.add(new Object[]{"insertion " + indelLength + " " + start, insertion, haplotype});
+            }
+        }
+        // a read that overhangs the start of the haplotype
+        final byte[] overhang = new byte[250];
+        System.arraycopy(randomDNA.nextBases(30), 0, overhang, 0, 30);
+        System.arraycopy(haplotype, 0, overhang, 30, 220);
+        tests.add(new Object[]{"overhang", overhang, haplotype});
+        // a read unrelated to the haplotype is computed over the full matrix
+        tests.add(new Object[]{"unrelated", randomDNA.nextBases(250), haplotype});
+        // reads shorter than the seed k-mer
+        tests.add(new Object[]{"short", Arrays.copyOfRange(haplotype, 50, 55), haplotype});
+        return tests.toArray(new Object[][]{});
+    }
+
+    @Test(dataProvider = "ReadsAndHaplotypes")
+    public void testMatchesLoglessPairHMM(final String description, final byte[] read, final byte[] haplotype) {
+        final byte[] quals = Utils.dupBytes((byte)30, read.length);
+        final byte[] insQuals = Utils.dupBytes((byte)45, read.length);
+        final byte[] delQuals = Utils.dupBytes((byte)45, read.length);
+        final byte[] gcp = Utils.dupBytes((byte)10, read.length);
+
+        final LoglessPairHMM expectedHMM = new LoglessPairHMM();
+        expectedHMM.initialize(read.length, haplotype.length);
+        final double expected = expectedHMM.computeReadLikelihoodGivenHaplotypeLog10(haplotype, read, quals, insQuals, delQuals, gcp, true, null);
+
+        final BandedLoglessPairHMM hmm = new BandedLoglessPairHMM();
+        hmm.initialize(read.length, haplotype.length);
+        final double actual = hmm.computeReadLikelihoodGivenHaplotypeLog10(haplotype, read, quals, insQuals, delQuals, gcp, true, null);
+        Assert.assertEquals(actual, expected, TOLERANCE, description);
+
+        final BandedLoglessPairHMM checkingHMM = new BandedLoglessPairHMM(BandedLoglessPairHMM.DEFAULT_BAND_HALF_WIDTH, BandedLoglessPairHMM.DEFAULT_MAX_EDGE_RATIO, true);
+        checkingHMM.initialize(read.length, haplotype.length);
+        Assert.assertEquals(checkingHMM.computeReadLikelihoodGivenHaplotypeLog10(haplotype, read, quals, insQuals, delQuals, gcp, true, null), expected, 1e-12);
+        Assert.assertEquals(checkingHMM.getAccuracyChecks(), 1);
+        Assert.assertEquals(checkingHMM.getAccuracyFailures(), 0, description);
+    }
+
+    @Test
+    public void testBandSavesWork() {
+        final Random random = new Random(11);
+        final RandomDNA randomDNA = new RandomDNA(random);
+        final byte[] haplotype = randomDNA.nextBases(600);
+        final byte[] quals = Utils.dupBytes((byte)30, 250);
+        final byte[] insQuals = Utils.dupBytes((byte)45, 250);
+        final byte[] delQuals = Utils.dupBytes((byte)45, 250);
+        final byte[] gcp = Utils.dupBytes((byte)10, 250);
+
+        final BandedLoglessPairHMM hmm = new BandedLoglessPairHMM();
+        hmm.initialize(250, 600);
+        for (int start = 0; start + 250 <= 600; start += 25) {
+            final byte[] read = Arrays.copyOfRange(haplotype, start, start + 250);
+            read[random.nextInt(250)] = 'A';
+            hmm.computeReadLikelihoodGivenHaplotypeLog10(haplotype, read, quals, insQuals, delQuals, gcp, true, null);
+        }
+        Assert.assertEquals(hmm.getBandWidenings(), 0);
+        Assert.assertTrue(hmm.getComputedCellFraction() < 0.1, "computed fraction " + hmm.getComputedCellFraction());
+    }
+
+    @Test
+    public void testNarrowBandIsWidened() {
+        final Random random = new Random(2);
+        final RandomDNA randomDNA = new RandomDNA(random);
+        final byte[] haplotype = randomDNA.nextBases(300);
+        // a read with a 6 base deletion in its last bases: only the first diagonal gets seed votes
+        final byte[] read = new byte[100];
+        System.arraycopy(haplotype, 50, read, 0, 95);
+        System.arraycopy(haplotype, 151, read, 95, 5);
+        final byte[] quals = Utils.dupBytes((byte)30, read.length);
+        final byte[] insQuals = Utils.dupBytes((byte)20, read.length);
+        final byte[] delQuals = Utils.dupBytes((byte)20, read.length);
+        final byte[] gcp = Utils.dupBytes((byte)10, read.length);
+
+        final LoglessPairHMM expectedHMM = new LoglessPairHMM();
+        expectedHMM.initialize(read.length, haplotype.length);
+        final double expected = expectedHMM.computeReadLikelihoodGivenHaplotypeLog10(haplotype, read, quals, insQuals, delQuals, gcp, true, null);
+
+        final BandedLoglessPairHMM hmm = new BandedLoglessPairHMM(1, BandedLoglessPairHMM.DEFAULT_MAX_EDGE_RATIO, false);
+        hmm.initialize(read.length, haplotype.length);
+        Assert.assertEquals(hmm.computeReadLikelihoodGivenHaplotypeLog10(haplotype, read, quals, insQuals, delQuals, gcp, true, null), expected, TOLERANCE);
+        Assert.assertTrue(hmm.getBandWidenings() > 0);
+    }
+
+    @Test
+    public void testImplementation() {
+        Assert.assertTrue(PairHMM.Implementation.BANDED_LOGLESS_CACHING.makeNewHMM() instanceof BandedLoglessPairHMM);
+
+        final PairHMM checkingHMM = PairHMM.Implementation.BANDED_LOGLESS_CACHING_ACCURACY_CHECK.makeNewHMM();
+        Assert.assertTrue(checkingHMM instanceof BandedLoglessPairHMM);
+        final byte[] haplotype = new RandomDNA(1).nextBases(100);
+        final byte[] read = Arrays.copyOfRange(haplotype, 20, 70);
+        final byte[] quals = Utils.dupBytes((byte)30, read.length);
+        checkingHMM.initialize(read.length, haplotype.length);
+        checkingHMM.computeReadLikelihoodGivenHaplotypeLog10(haplotype, read, quals, quals, quals, Utils.dupBytes((byte)10, read.length), true, null);
+        Assert.assertEquals(((BandedLoglessPairHMM) checkingHMM).getAccuracyChecks(), 1);
+    }
+}
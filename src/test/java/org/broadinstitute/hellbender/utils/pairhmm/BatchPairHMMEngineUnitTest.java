@@ -0,0 +1,111 @@
+package org.broadinstitute.hellbender.utils.pairhmm;
+
+import org.broadinstitute.hellbender.utils.BaseUtils;
+import org.broadinstitute.hellbender.utils.RandomDNA;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.genotyper.IndexedAlleleList;
+import org.broadinstitute.hellbender.utils.genotyper.IndexedSampleList;
+import org.broadinstitute.hellbender.utils.genotyper.LikelihoodMatrix;
+import org.broadinstitute.hellbender.utils.genotyper.ReadLikelihoods;
+import org.broadinstitute.hellbender.utils.haplotype.Haplotype;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public final class BatchPairHMMEngineUnitTest extends BaseTest {
+
+    @DataProvider(name = "EngineConfigurations")
+    public Object[][] makeEngineConfigurations() {
+        return new Object[][]{
+                {PairHMM.Implementation.LOGLESS_CACHING, 1, 16, 8},
+                {PairHMM.Implementation.LOGLESS_CACHING, 4, 3, 2},
+                {PairHMM.Implementation.ORIGINAL, 3, 5, 1},
+                {PairHMM.Implementation.ANTIDIAGONAL_LOGLESS_CACHING, 4, 7, 3},
+        };
+    }
+
+    @Test(dataProvider = "EngineConfigurations")
+    public void testMatchesSingleThreadedPairHMM(final PairHMM.Implementation implementation, final int numThreads,
+                                                 final int readsPerTile, final int haplotypesPerTile) {
+        final Random random = new Random(31);
+        final RandomDNA randomDNA = new RandomDNA(random);
+        final List<Haplotype> haplotypes = new ArrayList<>();
+        final byte[] reference = randomDNA.nextBases(140);
+        haplotypes.add(new Haplotype(reference, true));
+        for (int i = 0; i < 9; i++) {
+            // haplotypes of a few different lengths, several sharing a prefix with the reference
+            final byte[] bases = Arrays.copyOf(reference, 100 + 10 * (i % 4));
+            bases[bases.length / 2 + i] = BaseUtils.baseIndexToSimpleBase((BaseUtils.simpleBaseToBaseIndex(bases[bases.length / 2 + i]) + 1) % 4);
+            haplotypes.add(new Haplotype(bases, false));
+        }
+
+        final Map<String, List<GATKRead>> readsBySample = new LinkedHashMap<>();
+        final Map<GATKRead, byte[]> gcp = new HashMap<>();
+        for (final String sample : Arrays.asList("sample1", "sample2")) {
+            final List<GATKRead> reads = new ArrayList<>();
+            for (int r = 0; r < 37; r++) {
+                final int length = 30 + random.nextInt(70);
+                final int start = random.nextInt(reference.length - length);
+                final byte[] bases = Arrays.copyOfRange(reference, start, start + length);
+                bases[random.nextInt(length)] = 'A';
+                final byte[] quals = ArtificialReadUtils.createRandomReadQuals(random, length, 10, 39);
+                final GATKRead read = ArtificialReadUtils.createArtificialRead(bases, quals, length + "M");
+                read.setName(sample + "_" + r);
+                reads.add(read);
+                gcp.put(read, Utils.dupBytes((byte)10, length));
+            }
+            readsBySample.put(sample, reads);
+        }
+
+        final ReadLikelihoods<Haplotype> expected = new ReadLikelihoods<>(new IndexedSampleList(readsBySample.keySet()), new IndexedAlleleList<>(haplotypes), readsBySample);
+        final PairHMM hmm = implementation.makeNewHMM();
+        for (int s = 0; s < expected.numberOfSamples(); s++) {
+            final LikelihoodMatrix<Haplotype> matrix = expected.sampleMatrix(s);
+            hmm.computeLog10Likelihoods(matrix, matrix.reads(), gcp);
+        }
+
+        final ReadLikelihoods<Haplotype> actual = new ReadLikelihoods<>(new IndexedSampleList(readsBySample.keySet()), new IndexedAlleleList<>(haplotypes), readsBySample);
+        try (final BatchPairHMMEngine engine = new BatchPairHMMEngine(implementation::makeNewHMM, numThreads, readsPerTile, haplotypesPerTile)) {
+            engine.computeLog10Likelihoods(actual, gcp);
+        }
+
+        for (int s = 0; s < expected.numberOfSamples(); s++) {
+            final LikelihoodMatrix<Haplotype> expectedMatrix = expected.sampleMatrix(s);
+            final LikelihoodMatrix<Haplotype> actualMatrix = actual.sampleMatrix(s);
+            for (int a = 0; a < expectedMatrix.numberOfAlleles(); a++) {
+                for (int r = 0; r < expectedMatrix.numberOfReads(); r++) {
+                    Assert.assertTrue(actualMatrix.get(a, r) < 0.0);
+                    Assert.assertEquals(actualMatrix.get(a, r), expectedMatrix.get(a, r), 1e-9, "sample " + s + " allele " + a + " read " + r);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyMatrix() {
+        final Map<String, List<GATKRead>> readsBySample = new LinkedHashMap<>();
+        readsBySample.put("sample", new ArrayList<>());
+        final ReadLikelihoods<Haplotype> likelihoods = new ReadLikelihoods<>(new IndexedSampleList("sample"),
+                new IndexedAlleleList<>(new Haplotype("ACGT".getBytes(), true)), readsBySample);
+        try (final BatchPairHMMEngine engine = new BatchPairHMMEngine(PairHMM.Implementation.LOGLESS_CACHING, 2)) {
+            engine.computeLog10Likelihoods(likelihoods, new HashMap<>());
+        }
+        Assert.assertEquals(likelihoods.sampleMatrix(0).numberOfReads(), 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testBadThreadCount() {
+        new BatchPairHMMEngine(PairHMM.Implementation.LOGLESS_CACHING, 0);
+    }
+}
@@ -0,0 +1,157 @@
+package org.broadinstitute.hellbender.utils.pairhmm;
+
+import org.broadinstitute.hellbender.utils.BaseUtils;
+import org.broadinstitute.hellbender.utils.RandomDNA;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.genotyper.IndexedAlleleList;
+import org.broadinstitute.hellbender.utils.genotyper.IndexedSampleList;
+import org.broadinstitute.hellbender.utils.genotyper.LikelihoodMatrix;
+import org.broadinstitute.hellbender.utils.genotyper.ReadLikelihoods;
+import org.broadinstitute.hellbender.utils.haplotype.Haplotype;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public final class PrefixTreeLoglessPairHMMUnitTest extends BaseTest {
+
+    private static final double TOLERANCE = 1e-9;
+
+    @Test
+    public void testMatchesLoglessPairHMM() {
+        final Random random = new Random(17);
+        final RandomDNA randomDNA = new RandomDNA(random);
+        final byte[] reference = randomDNA.nextBases(150);
+        // haplotypes that share prefixes of various lengths and have various lengths
+        final List<Haplotype> haplotypes = new ArrayList<>();
+        haplotypes.add(new Haplotype(Arrays.copyOf(reference, 120), true));
+        for (int i = 0; i < 12; i++) {
+            final byte[] bases = Arrays.copyOf(reference, 90 + 5 * i);
+            final int position = random.nextInt(bases.length);
+            bases[position] = BaseUtils.baseIndexToSimpleBase((BaseUtils.simpleBaseToBaseIndex(bases[position]) + 1) % 4);
+            haplotypes.add(new Haplotype(bases, false));
+        }
+        haplotypes.add(new Haplotype(Arrays.copyOf(reference, 90), false)); // a prefix of the reference haplotype
+        Collections.shuffle(haplotypes, random);
+
+        final List<GATKRead> reads = new ArrayList<>();
+        final Map<GATKRead, byte[]> gcp = new HashMap<>();
+        for (int r = 0; r < 25; r++) {
+            final int length = 20 + random.nextInt(60);
+            final int start = random.nextInt(90 - length);
+            final byte[] bases = Arrays.copyOfRange(reference, start, start + length);
+            bases[random.nextInt(length)] = 'N';
+            final byte[] quals = ArtificialReadUtils.createRandomReadQuals(random, length, 6, 40);
+            final GATKRead read = ArtificialReadUtils.createArtificialRead(bases, quals, length + "M");
+            reads.add(read);
+            gcp.put(read, Utils.dupBytes((byte)10, length));
+        }
+
+        final LikelihoodMatrix<Haplotype> expected = makeMatrix(haplotypes, reads);
+        final LoglessPairHMM loglessHMM = new LoglessPairHMM();
+        loglessHMM.computeLog10Likelihoods(expected, reads, gcp);
+
+        final LikelihoodMatrix<Haplotype> actual = makeMatrix(haplotypes, reads);
+        final PrefixTreeLoglessPairHMM hmm = new PrefixTreeLoglessPairHMM();
+        hmm.computeLog10Likelihoods(actual, reads, gcp);
+        assertMatricesEqual(actual, expected);
+        final double[] expectedArray = loglessHMM.getLogLikelihoodArray();
+        final double[] actualArray = hmm.getLogLikelihoodArray();
+        Assert.assertEquals(actualArray.length, expectedArray.length);
+        for (int i = 0; i < expectedArray.length; i++) {
+            Assert.assertEquals(actualArray[i], expectedArray[i], TOLERANCE);
+        }
+
+        // a second region with the same reads reuses their transition and prior probabilities
+        Assert.assertEquals(hmm.getReadValuesCacheHits(), 0);
+        Assert.assertEquals(hmm.getReadValuesCacheMisses(), reads.size());
+        final LikelihoodMatrix<Haplotype> again = makeMatrix(haplotypes, reads);
+        hmm.computeLog10Likelihoods(again, reads, gcp);
+        assertMatricesEqual(again, expected);
+        Assert.assertEquals(hmm.getReadValuesCacheHits(), reads.size());
+    }
+
+    @Test
+    public void testReadCacheIsBoundedBySize() {
+        final Random random = new Random(5);
+        final RandomDNA randomDNA = new RandomDNA(random);
+        final byte[] reference = randomDNA.nextBases(300);
+        final List<Haplotype> haplotypes = Collections.singletonList(new Haplotype(reference, true));
+        final List<GATKRead> reads = new ArrayList<>();
+        final Map<GATKRead, byte[]> gcp = new HashMap<>();
+        for (int r = 0; r < 10; r++) {
+            final int start = random.nextInt(200);
+            final byte[] bases = Arrays.copyOfRange(reference, start, start + 100);
+            final GATKRead read = ArtificialReadUtils.createArtificialRead(bases, ArtificialReadUtils.createRandomReadQuals(random, 100, 6, 40), "100M");
+            reads.add(read);
+            gcp.put(read, Utils.dupBytes((byte)10, 100));
+        }
+
+        final LikelihoodMatrix<Haplotype> expected = makeMatrix(haplotypes, reads);
+        new LoglessPairHMM().computeLog10Likelihoods(expected, reads, gcp);
+
+        // room for the values of two or three of the reads
+        final long cacheBytes = 20000;
+        final PrefixTreeLoglessPairHMM hmm = new PrefixTreeLoglessPairHMM(cacheBytes);
+        for (int pass = 1; pass <= 2; pass++) {
+            final LikelihoodMatrix<Haplotype> actual = makeMatrix(haplotypes, reads);
+            hmm.computeLog10Likelihoods(actual, reads, gcp);
+            assertMatricesEqual(actual, expected);
+            Assert.assertTrue(hmm.getReadValuesCacheBytes() > 0 && hmm.getReadValuesCacheBytes() <= cacheBytes);
+            // the reads are visited in the same order, so the least recently used ones are gone by the time they come back
+            Assert.assertEquals(hmm.getReadValuesCacheMisses(), pass * reads.size());
+        }
+    }
+
+    @Test
+    public void testSinglePairsReuseColumnsAcrossLengths() {
+        final Random random = new Random(3);
+        final RandomDNA randomDNA = new RandomDNA(random);
+        final byte[] haplotype = randomDNA.nextBases(100);
+        final byte[] shorter = Arrays.copyOf(haplotype, 80);
+        final byte[] read = Arrays.copyOfRange(haplotype, 10, 60);
+        final byte[] quals = Utils.dupBytes((byte)30, read.length);
+        final byte[] insQuals = Utils.dupBytes((byte)45, read.length);
+        final byte[] delQuals = Utils.dupBytes((byte)45, read.length);
+        final byte[] gcp = Utils.dupBytes((byte)10, read.length);
+
+        final LoglessPairHMM expectedHMM = new LoglessPairHMM();
+        expectedHMM.initialize(read.length, haplotype.length);
+        final PrefixTreeLoglessPairHMM hmm = new PrefixTreeLoglessPairHMM(0);
+        hmm.initialize(read.length, haplotype.length);
+
+        for (final byte[] hap : Arrays.asList(haplotype, shorter, haplotype)) {
+            final double expected = expectedHMM.computeReadLikelihoodGivenHaplotypeLog10(hap, read, quals, insQuals, delQuals, gcp, true, null);
+            final double actual = hmm.computeReadLikelihoodGivenHaplotypeLog10(hap, read, quals, insQuals, delQuals, gcp, hap == haplotype && hmm.getReadValuesCacheMisses() == 0, null);
+            Assert.assertEquals(actual, expected, TOLERANCE);
+        }
+        Assert.assertEquals(hmm.getReadValuesCacheMisses(), 1);
+    }
+
+    @Test
+    public void testImplementation() {
+        Assert.assertTrue(PairHMM.Implementation.PREFIX_TREE_LOGLESS_CACHING.makeNewHMM() instanceof PrefixTreeLoglessPairHMM);
+    }
+
+    private static void assertMatricesEqual(final LikelihoodMatrix<Haplotype> actual, final LikelihoodMatrix<Haplotype> expected) {
+        for (int a = 0; a < expected.numberOfAlleles(); a++) {
+            for (int r = 0; r < expected.numberOfReads(); r++) {
+                Assert.assertEquals(actual.get(a, r), expected.get(a, r), TOLERANCE, "allele " + a + " read " + r);
+            }
+        }
+    }
+
+    private static LikelihoodMatrix<Haplotype> makeMatrix(final List<Haplotype> haplotypes, final List<GATKRead> reads) {
+        final Map<String, List<GATKRead>> readsBySample = Collections.singletonMap("sample", reads);
+        return new ReadLikelihoods<>(new IndexedSampleList("sample"), new IndexedAlleleList<>(haplotypes), readsBySample).sampleMatrix(0);
+    }
+}
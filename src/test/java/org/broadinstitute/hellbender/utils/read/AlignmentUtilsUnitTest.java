@@ -6,6 +6,7 @@ import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.haplotype.Haplotype;
 import org.broadinstitute.hellbender.utils.pileup.PileupElement;
 import org.broadinstitute.hellbender.utils.smithwaterman.SWPairwiseAlignment;
+import org.broadinstitute.hellbender.utils.smithwaterman.SmithWatermanAligner;
 import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.DataProvider;
@@ -164,6 +165,12 @@ public final class AlignmentUtilsUnitTest {
             Assert.assertEquals(alignedRead.getStart(), expectedReadStart);
             Assert.assertEquals(alignedRead.getCigar(), expectedCigar);
             Assert.assertNotNull(alignedRead.getAttributeAsInteger("HC"));
+
+            for ( final SmithWatermanAligner.Implementation implementation : SmithWatermanAligner.Implementation.values() ) {
+                final GATKRead readAlignedWith = AlignmentUtils.createReadAlignedToRef(read, haplotype, haplotype, refStart, true, implementation.getAligner());
+                Assert.assertEquals(readAlignedWith.getStart(), expectedReadStart, implementation.name());
+                Assert.assertEquals(readAlignedWith.getCigar(), expectedCigar, implementation.name());
+            }
         }
 
         Assert.assertEquals(read, originalReadCopy, "createReadAlignedToRef seems be modifying the original read!");
@@ -2,6 +2,7 @@ package org.broadinstitute.hellbender.utils.read;
 
 import htsjdk.samtools.Cigar;
 import htsjdk.samtools.TextCigarCodec;
+import org.broadinstitute.hellbender.utils.smithwaterman.SmithWatermanAligner;
 import org.broadinstitute.hellbender.utils.test.ReadClipperTestUtils;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
@@ -333,8 +334,10 @@ public final class CigarUtilsUnitTest {
 
     @Test(dataProvider = "testData_testComputeCigar")
     public void testComputeCigar(String s1, String s2, String expectedCigar) throws Exception {
-        final Cigar actualCigar = CigarUtils.calculateCigar(s1.getBytes(), s2.getBytes());
         final Cigar decode = TextCigarCodec.decode(expectedCigar);
-        Assert.assertEquals(actualCigar, decode);
+        Assert.assertEquals(CigarUtils.calculateCigar(s1.getBytes(), s2.getBytes()), decode);
+        for ( final SmithWatermanAligner.Implementation implementation : SmithWatermanAligner.Implementation.values() ) {
+            Assert.assertEquals(CigarUtils.calculateCigar(s1.getBytes(), s2.getBytes(), implementation.getAligner()), decode, implementation.name());
+        }
     }
 }
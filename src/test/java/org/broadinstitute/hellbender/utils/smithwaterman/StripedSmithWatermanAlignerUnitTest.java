@@ -0,0 +1,122 @@
+package org.broadinstitute.hellbender.utils.smithwaterman;
+
+import org.broadinstitute.hellbender.utils.BaseUtils;
+import org.broadinstitute.hellbender.utils.RandomDNA;
+import org.broadinstitute.hellbender.utils.read.CigarUtils;
+import org.broadinstitute.hellbender.utils.test.BaseTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public final class StripedSmithWatermanAlignerUnitTest extends BaseTest {
+
+    private static final List<SWPairwiseAlignment.Parameters> PARAMETERS = Arrays.asList(
+            SWPairwiseAlignment.ORIGINAL_DEFAULT, SWPairwiseAlignment.STANDARD_NGS, CigarUtils.NEW_SW_PARAMETERS,
+            new SWPairwiseAlignment.Parameters(50, -100, -220, -12), new SWPairwiseAlignment.Parameters(5, -4, 0, -5));
+
+    @DataProvider(name = "RandomPairs")
+    public Object[][] makeRandomPairs() {
+        final Random random = new Random(17);
+        final RandomDNA randomDNA = new RandomDNA(random);
+        final List<Object[]> tests = new ArrayList<>();
+        for ( final int refLength : Arrays.asList(1, 7, 16, 33, 100, 250) ) {
+            for ( final int altLength : Arrays.asList(1, 3, 8, 9, 30, 101) ) {
+                final byte[] ref = randomDNA.nextBases(refLength);
+                // an unrelated sequence, and one derived from the reference with mismatches and indels
+                tests.add(new Object[]{ref, randomDNA.nextBases(altLength)});
+                tests.add(new Object[]{ref, mutate(random, ref, altLength)});
+            }
+        }
+        // low complexity sequences have many ties between paths
+        tests.add(new Object[]{"TGTGTGTGTGTGTGACAGAGAGAGAGAGAGAGAGAGAGAGAGAGA".getBytes(), "ACAGAGAGAGAGAGAGAGAGAGAGAGAGAGAGAGAGAGAGAGAGAGAGAGA".getBytes()});
+        tests.add(new Object[]{"AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA".getBytes(), "AAAAAAAAAACAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA".getBytes()});
+        tests.add(new Object[]{"NNNNNNNNNNACGTACGTTTTTTTTTACGTNNNNNNNNNN".getBytes(), "NNNNNNNNNNACGTACGTACGTNNNNNNNNNN".getBytes()});
+        return tests.toArray(new Object[][]{});
+    }
+
+    @Test(dataProvider = "RandomPairs")
+    public void testMatchesSWPairwiseAlignment(final byte[] ref, final byte[] alt) {
+        final SmithWatermanAligner aligner = SmithWatermanAligner.Implementation.STRIPED.getAligner();
+        for ( final SWPairwiseAlignment.Parameters parameters : PARAMETERS ) {
+            for ( final SWPairwiseAlignment.OverhangStrategy strategy : SWPairwiseAlignment.OverhangStrategy.values() ) {
+                final SWPairwiseAlignment expected = new SWPairwiseAlignment(ref, alt, parameters, strategy);
+                final SmithWatermanAlignment actual = aligner.align(ref, alt, parameters, strategy);
+                Assert.assertEquals(actual.getCigar(), expected.getCigar(), strategy + " " + new String(ref) + " " + new String(alt));
+                Assert.assertEquals(actual.getAlignmentStart2wrt1(), expected.getAlignmentStart2wrt1(), strategy + " " + new String(ref) + " " + new String(alt));
+            }
+        }
+    }
+
+    @Test
+    public void testBuffersAreReusedAcrossSequenceLengths() {
+        // long alignments followed by short ones must not see stale scores from the larger buffers
+        final Random random = new Random(3);
+        final RandomDNA randomDNA = new RandomDNA(random);
+        final SmithWatermanAligner aligner = SmithWatermanAligner.Implementation.STRIPED.getAligner();
+        for ( final int length : Arrays.asList(300, 5, 120, 2, 64) ) {
+            final byte[] ref = randomDNA.nextBases(length + 10);
+            final byte[] alt = mutate(random, ref, length);
+            final SWPairwiseAlignment expected = new SWPairwiseAlignment(ref, alt, CigarUtils.NEW_SW_PARAMETERS, SWPairwiseAlignment.OverhangStrategy.INDEL);
+            final SmithWatermanAlignment actual = aligner.align(ref, alt, CigarUtils.NEW_SW_PARAMETERS, SWPairwiseAlignment.OverhangStrategy.INDEL);
+            Assert.assertEquals(actual.getCigar(), expected.getCigar());
+            Assert.assertEquals(actual.getAlignmentStart2wrt1(), expected.getAlignmentStart2wrt1());
+        }
+    }
+
+    @Test
+    public void testLargeBacktrackBufferIsNotRetained() {
+        final Random random = new Random(5);
+        final RandomDNA randomDNA = new RandomDNA(random);
+        final SmithWatermanAligner aligner = SmithWatermanAligner.Implementation.STRIPED.getAligner();
+        final byte[] smallRef = randomDNA.nextBases(100);
+        aligner.align(smallRef, mutate(random, smallRef, 90), CigarUtils.NEW_SW_PARAMETERS, SWPairwiseAlignment.OverhangStrategy.INDEL);
+        Assert.assertTrue(StripedSmithWatermanAligner.retainedBacktrackCells() >= 100 * 90);
+
+        final int length = (int) Math.sqrt(StripedSmithWatermanAligner.MAX_RETAINED_BACKTRACK_CELLS) + 100;
+        final byte[] bigRef = randomDNA.nextBases(length);
+        aligner.align(bigRef, mutate(random, bigRef, length), CigarUtils.NEW_SW_PARAMETERS, SWPairwiseAlignment.OverhangStrategy.INDEL);
+        Assert.assertTrue(StripedSmithWatermanAligner.retainedBacktrackCells() <= StripedSmithWatermanAligner.MAX_RETAINED_BACKTRACK_CELLS);
+    }
+
+    @Test
+    public void testImplementations() {
+        final byte[] ref = "AAACCCCC".getBytes();
+        final byte[] alt = "CCCCCGGG".getBytes();
+        for ( final SmithWatermanAligner.Implementation implementation : SmithWatermanAligner.Implementation.values() ) {
+            final SmithWatermanAlignment alignment = implementation.getAligner().align(ref, alt, SWPairwiseAlignment.ORIGINAL_DEFAULT, SWPairwiseAlignment.OverhangStrategy.SOFTCLIP);
+            Assert.assertEquals(alignment.getAlignmentStart2wrt1(), 3);
+            Assert.assertEquals(alignment.getCigar().toString(), "5M3S");
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testEmptySequence() {
+        SmithWatermanAligner.Implementation.STRIPED.getAligner().align(new byte[0], "ACGT".getBytes(), SWPairwiseAlignment.ORIGINAL_DEFAULT, SWPairwiseAlignment.OverhangStrategy.SOFTCLIP);
+    }
+
+    /**
+     * @return a sequence of {@code length} bases drawn from {@code ref} with some mismatches, insertions and deletions
+     */
+    private static byte[] mutate(final Random random, final byte[] ref, final int length) {
+        final byte[] bases = new byte[length];
+        int r = random.nextInt(Math.max(1, ref.length / 4));
+        for ( int i = 0; i < length; i++ ) {
+            final int event = random.nextInt(20);
+            if ( event == 0 ) {
+                r += 1 + random.nextInt(4); // deletion
+            }
+            if ( event == 1 || r >= ref.length ) {
+                bases[i] = BaseUtils.baseIndexToSimpleBase(random.nextInt(4)); // insertion or overhang
+            } else {
+                bases[i] = event == 2 ? BaseUtils.baseIndexToSimpleBase(random.nextInt(4)) : ref[r];
+                r++;
+            }
+        }
+        return bases;
+    }
+}
@@ -1,15 +1,24 @@
 package org.broadinstitute.hellbender.utils.spark;
 
 import htsjdk.samtools.*;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
 import org.broadinstitute.hellbender.engine.ReadsDataSource;
+import org.broadinstitute.hellbender.engine.spark.SparkContextFactory;
 import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.ReadCoordinateComparator;
 import org.broadinstitute.hellbender.utils.test.BaseTest;
 import org.testng.Assert;
 import org.testng.annotations.Test;
+import scala.Tuple2;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class SparkUtilsUnitTest extends BaseTest {
 
@@ -47,4 +56,67 @@ public class SparkUtilsUnitTest extends BaseTest {
 
         Assert.assertEquals(actualCount, expectedReadCount, "Wrong number of reads in final BAM file");
     }
+
+    @Test(groups = "spark")
+    public void testCoverageBalancedCoordinateSort() {
+        final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeader(2, 1, 1000000);
+        final List<GATKRead> reads = new ArrayList<>();
+        // sparse background coverage on both contigs...
+        for ( int contig = 0; contig < 2; ++contig ) {
+            for ( int start = 1; start < 1000000; start += 10000 ) {
+                reads.add(ArtificialReadUtils.createArtificialRead(header, "bg" + contig + "_" + start, contig, start, 100));
+            }
+        }
+        // ...and a hot spot with 20x as many reads as the whole background, many of them piled up at a single position
+        for ( int idx = 0; idx < 4000; ++idx ) {
+            final int start = idx < 1000 ? 500000 : 500000 + idx % 200;
+            reads.add(ArtificialReadUtils.createArtificialRead(header, "hot" + idx, 0, start, 100));
+        }
+
+        final JavaSparkContext ctx = SparkContextFactory.getTestSparkContext();
+        final JavaRDD<GATKRead> input = ctx.parallelize(reads, 3);
+        final int numPartitions = 8;
+        final JavaRDD<GATKRead> balanced = SparkUtils.coverageBalancedCoordinateSort(input, header, numPartitions);
+
+        final List<Integer> partitionSizes = balanced.mapPartitions(readItr -> {
+            int count = 0;
+            while ( readItr.hasNext() ) { readItr.next(); ++count; }
+            return Collections.singletonList(count);
+        }).collect();
+        Assert.assertEquals(partitionSizes.size(), numPartitions);
+        final int expectedSize = reads.size() / numPartitions;
+        for ( final int size : partitionSizes ) {
+            Assert.assertTrue(size > expectedSize / 2 && size < 2 * expectedSize, "unbalanced partition sizes " + partitionSizes);
+        }
+
+        final List<GATKRead> sorted = balanced.collect();
+        Assert.assertEquals(sorted.size(), reads.size());
+        for ( int idx = 1; idx < sorted.size(); ++idx ) {
+            Assert.assertTrue(ReadCoordinateComparator.compareCoordinates(sorted.get(idx - 1), sorted.get(idx), header) <= 0,
+                    "reads are not in coordinate order");
+        }
+    }
+
+    @Test
+    public void testCoverageBalancedPartitionerBounds() {
+        final List<Tuple2<SparkUtils.ReadCoordinateKey, Double>> weightedKeys = new ArrayList<>();
+        for ( int start = 1; start <= 10; ++start ) {
+            weightedKeys.add(new Tuple2<>(new SparkUtils.ReadCoordinateKey(0, start, 0), 1.0));
+        }
+        // one key standing for as many reads as the rest put together
+        weightedKeys.add(new Tuple2<>(new SparkUtils.ReadCoordinateKey(1, 1, 0), 10.0));
+
+        final SparkUtils.ReadCoordinateKey[] bounds = SparkUtils.CoverageBalancedPartitioner.computeBounds(weightedKeys, 4);
+        Assert.assertEquals(bounds.length, 2, "a single key cannot be split, so only three partitions are possible");
+        Assert.assertEquals(bounds[0], new SparkUtils.ReadCoordinateKey(0, 6, 0));
+        Assert.assertEquals(bounds[1], new SparkUtils.ReadCoordinateKey(1, 1, 0));
+
+        final SparkUtils.CoverageBalancedPartitioner partitioner = new SparkUtils.CoverageBalancedPartitioner(bounds);
+        Assert.assertEquals(partitioner.numPartitions(), bounds.length + 1);
+        Assert.assertEquals(partitioner.getPartition(new SparkUtils.ReadCoordinateKey(0, 1, 0)), 0);
+        Assert.assertEquals(partitioner.getPartition(new SparkUtils.ReadCoordinateKey(0, 6, 0)), 1);
+        Assert.assertEquals(partitioner.getPartition(new SparkUtils.ReadCoordinateKey(0, 7, 0)), 1);
+        Assert.assertEquals(partitioner.getPartition(new SparkUtils.ReadCoordinateKey(Integer.MAX_VALUE, Integer.MAX_VALUE, 0)),
+                partitioner.numPartitions() - 1);
+    }
 }